@@ -0,0 +1,194 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.os.Handler;
+
+import androidx.annotation.Nullable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+
+/*
+ * Caches the Twilio access tokens per identity. The JWT exp claim is decoded
+ * locally and the listener is told to fetch a new token refreshLeadMs before the
+ * cached one expires, so connect never has to wait for the token server.
+ */
+public class AccessTokenStore {
+
+    public static final long DEFAULT_REFRESH_LEAD_MS = 60 * 1000;
+    // a token this close to expiring is not handed out for a new call
+    private static final long EXPIRY_MARGIN_MS = 5 * 1000;
+
+    public interface Clock {
+        long currentTimeMillis();
+    }
+
+    public interface Listener {
+        void onRefreshNeeded(String identity, long expiresAt);
+    }
+
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    public static class Token {
+        public final String jwt;
+        public final String identity;
+        public final long expiresAt;
+
+        Token(String jwt, String identity, long expiresAt) {
+            this.jwt = jwt;
+            this.identity = identity;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final Clock clock;
+    private final Handler handler;
+    private final Listener listener;
+    private final HashMap<String, Token> tokens = new HashMap<>();
+    private final HashMap<String, Runnable> refreshTimers = new HashMap<>();
+    private String lastIdentity;
+    private long refreshLeadMs = DEFAULT_REFRESH_LEAD_MS;
+
+    public AccessTokenStore(Handler handler, Listener listener) {
+        this(SYSTEM_CLOCK, handler, listener);
+    }
+
+    public AccessTokenStore(Clock clock, Handler handler, Listener listener) {
+        this.clock = clock;
+        this.handler = handler;
+        this.listener = listener;
+    }
+
+    /*
+     * Decodes and caches the token, throws IllegalArgumentException when it is not a valid JWT
+     */
+    public synchronized Token put(String jwt) {
+        Token token = decode(jwt);
+        tokens.put(token.identity, token);
+        lastIdentity = token.identity;
+        scheduleRefresh(token);
+        return token;
+    }
+
+    /*
+     * Valid token for the identity, the last stored identity when null
+     */
+    @Nullable
+    public synchronized Token get(@Nullable String identity) {
+        Token token = tokens.get(identity != null ? identity : lastIdentity);
+        if (token == null || token.expiresAt - EXPIRY_MARGIN_MS <= clock.currentTimeMillis()) {
+            return null;
+        }
+        return token;
+    }
+
+    public synchronized void setRefreshLeadMs(long refreshLeadMs) {
+        this.refreshLeadMs = Math.max(0, refreshLeadMs);
+        for (Token token : tokens.values()) {
+            scheduleRefresh(token);
+        }
+    }
+
+    public synchronized void clear() {
+        for (Runnable timer : refreshTimers.values()) {
+            handler.removeCallbacks(timer);
+        }
+        refreshTimers.clear();
+        tokens.clear();
+        lastIdentity = null;
+    }
+
+    private void scheduleRefresh(final Token token) {
+        Runnable previous = refreshTimers.remove(token.identity);
+        if (previous != null) {
+            handler.removeCallbacks(previous);
+        }
+        Runnable timer = new Runnable() {
+            @Override
+            public void run() {
+                synchronized (AccessTokenStore.this) {
+                    if (refreshTimers.get(token.identity) != this) {
+                        return;
+                    }
+                    refreshTimers.remove(token.identity);
+                }
+                listener.onRefreshNeeded(token.identity, token.expiresAt);
+            }
+        };
+        refreshTimers.put(token.identity, timer);
+        long delay = token.expiresAt - refreshLeadMs - clock.currentTimeMillis();
+        handler.postDelayed(timer, Math.max(0, delay));
+    }
+
+    static Token decode(String jwt) {
+        if (jwt == null) {
+            throw new IllegalArgumentException("The access token is empty");
+        }
+        String[] parts = jwt.split("\\.");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("The access token is not a JWT");
+        }
+        JSONObject claims;
+        try {
+            byte[] payload = decodeBase64Url(parts[1]);
+            claims = new JSONObject(new String(payload, "UTF-8"));
+        } catch (JSONException | IllegalArgumentException | UnsupportedEncodingException e) {
+            throw new IllegalArgumentException("The access token payload can't be decoded", e);
+        }
+        long exp = claims.optLong("exp", 0);
+        if (exp <= 0) {
+            throw new IllegalArgumentException("The access token has no exp claim");
+        }
+        String identity = null;
+        JSONObject grants = claims.optJSONObject("grants");
+        if (grants != null) {
+            identity = grants.optString("identity", null);
+        }
+        if (identity == null) {
+            identity = claims.optString("sub", "");
+        }
+        return new Token(jwt, identity, exp * 1000);
+    }
+
+    private static final String BASE64_URL = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+
+    /*
+     * Base64url, java.util.Base64 needs API 26 and android.util.Base64 isn't
+     * available to the JVM tests
+     */
+    static byte[] decodeBase64Url(String value) {
+        int length = value.length();
+        // tolerated even though a JWT isn't padded
+        while (length > 0 && value.charAt(length - 1) == '=') {
+            length--;
+        }
+        if (length % 4 == 1) {
+            throw new IllegalArgumentException("Invalid base64url length");
+        }
+        byte[] decoded = new byte[length * 3 / 4];
+        int bits = 0;
+        int bitCount = 0;
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            int digit = BASE64_URL.indexOf(value.charAt(i));
+            if (digit < 0) {
+                throw new IllegalArgumentException("Invalid base64url character " + value.charAt(i));
+            }
+            bits = (bits << 6) | digit;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                decoded[n++] = (byte) (bits >> bitCount);
+                bits &= (1 << bitCount) - 1;
+            }
+        }
+        return decoded;
+    }
+}
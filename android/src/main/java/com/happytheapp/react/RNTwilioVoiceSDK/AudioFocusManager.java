@@ -5,6 +5,7 @@ import android.media.AudioAttributes;
 import android.media.AudioFocusRequest;
 import android.media.AudioManager;
 import android.os.Build;
+import android.os.Handler;
 
 import com.facebook.react.bridge.ReactApplicationContext;
 
@@ -16,16 +17,37 @@ public class AudioFocusManager {
     private AudioManager audioManager;
     private int originalAudioMode = AudioManager.MODE_NORMAL;
     private AudioFocusRequest focusRequest;
+    // written on the audio thread, read from the call actor too
+    private volatile boolean hasFocus = false;
+    private AudioManager.OnAudioFocusChangeListener focusChangeListener = new AudioManager.OnAudioFocusChangeListener() {
+        @Override
+        public void onAudioFocusChange(int i) { }
+    };
+    private Handler focusChangeHandler;
 
     public AudioFocusManager(ReactApplicationContext reactContext) {
         audioManager = (AudioManager) reactContext.getSystemService(Context.AUDIO_SERVICE);
     }
 
+    /*
+     * Focus changes are delivered on the handler thread
+     */
+    public void setOnAudioFocusChangeListener(AudioManager.OnAudioFocusChangeListener listener, Handler handler) {
+        focusChangeListener = listener;
+        focusChangeHandler = handler;
+    }
+
+    public boolean hasFocus() {
+        return hasFocus;
+    }
+
 
     public void setAudioFocus() {
-        if (audioManager == null) {
+        // with several calls only the first one takes the focus
+        if (audioManager == null || hasFocus) {
             return;
         }
+        hasFocus = true;
         originalAudioMode = audioManager.getMode();
         // Request audio focus before making any device switch
         if (Build.VERSION.SDK_INT >= 26) {
@@ -33,18 +55,19 @@ public class AudioFocusManager {
                     .setUsage(AudioAttributes.USAGE_VOICE_COMMUNICATION)
                     .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
                     .build();
-            focusRequest = new AudioFocusRequest.Builder(AudioManager.AUDIOFOCUS_GAIN_TRANSIENT_EXCLUSIVE)
+            AudioFocusRequest.Builder builder = new AudioFocusRequest.Builder(AudioManager.AUDIOFOCUS_GAIN_TRANSIENT_EXCLUSIVE)
                     .setAudioAttributes(playbackAttributes)
-                    .setAcceptsDelayedFocusGain(true)
-                    .setOnAudioFocusChangeListener(new AudioManager.OnAudioFocusChangeListener() {
-                        @Override
-                        public void onAudioFocusChange(int i) { }
-                    })
-                    .build();
+                    .setAcceptsDelayedFocusGain(true);
+            if (focusChangeHandler != null) {
+                builder.setOnAudioFocusChangeListener(focusChangeListener, focusChangeHandler);
+            } else {
+                builder.setOnAudioFocusChangeListener(focusChangeListener);
+            }
+            focusRequest = builder.build();
             audioManager.requestAudioFocus(focusRequest);
         } else {
             audioManager.requestAudioFocus(
-                    null,
+                    focusChangeListener,
                     AudioManager.STREAM_VOICE_CALL,
                     AudioManager.AUDIOFOCUS_GAIN_TRANSIENT_EXCLUSIVE
             );
@@ -58,23 +81,54 @@ public class AudioFocusManager {
         audioManager.setMode(AudioManager.MODE_IN_COMMUNICATION);
     }
 
-    public void unsetAudioFocus() {
+    /*
+     * Returns the CallResourceLedger resources given back, none when the focus
+     * wasn't held
+     */
+    public int unsetAudioFocus() {
+        if (audioManager == null || !hasFocus) {
+            return 0;
+        }
+        hasFocus = false;
+        audioManager.setMode(originalAudioMode);
+        abandonFocus();
+        return CallResourceLedger.AUDIO_FOCUS | CallResourceLedger.AUDIO_MODE;
+    }
+
+    /*
+     * Another app took the focus for good, the system won't give it back. The focus
+     * and the audio mode are given back so the next setAudioFocus() asks again.
+     */
+    public int onFocusLost() {
+        return unsetAudioFocus();
+    }
+
+    /*
+     * Gives back the focus and the audio mode whatever hasFocus says, for what
+     * unsetAudioFocus() missed
+     */
+    public void releaseLeaks() {
         if (audioManager == null) {
             return;
         }
-        audioManager.setMode(originalAudioMode);
+        if (hasFocus || focusRequest != null) {
+            hasFocus = false;
+            abandonFocus();
+        }
+        if (audioManager.getMode() == AudioManager.MODE_IN_COMMUNICATION
+                && originalAudioMode != AudioManager.MODE_IN_COMMUNICATION) {
+            audioManager.setMode(originalAudioMode);
+        }
+    }
+
+    private void abandonFocus() {
         if (Build.VERSION.SDK_INT >= 26) {
             if (focusRequest != null) {
                 audioManager.abandonAudioFocusRequest(focusRequest);
+                focusRequest = null;
             }
         } else {
-            audioManager.abandonAudioFocus(null);
+            audioManager.abandonAudioFocus(focusChangeListener);
         }
     }
-
-    public void setSpeakerPhone(Boolean value) {
-        // TODO check whether it is necessary to call setAudioFocus again
-        // setAudioFocus();
-        audioManager.setSpeakerphoneOn(value);
-    }
 }
@@ -0,0 +1,604 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.media.AudioDeviceCallback;
+import android.media.AudioDeviceInfo;
+import android.media.AudioManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_AUDIO_FOCUS;
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_AUDIO_ROUTE_CHANGE;
+import static com.happytheapp.react.RNTwilioVoiceSDK.TwilioVoiceSDKModule.TAG;
+
+/*
+ * Owns the audio focus and the output route of the calls. Every AudioManager call
+ * runs on the audio thread so a slow setSpeakerphoneOn or SCO start never blocks
+ * the bridge or the call actor. The available outputs are cached and kept up to
+ * date by a device callback, each route switch is timed, a Bluetooth switch until
+ * its SCO link is up. The route is set with setCommunicationDevice from API 31.
+ * The calls are paused while another app holds the focus for a while.
+ */
+public class AudioRouteManager {
+
+    public enum Route {
+        EARPIECE, SPEAKER, BLUETOOTH, WIRED;
+
+        int mask() {
+            return 1 << ordinal();
+        }
+
+        public String toJS() {
+            return name().toLowerCase(Locale.US);
+        }
+
+        /*
+         * null when the name is not a known route
+         */
+        @Nullable
+        public static Route fromJS(@Nullable String name) {
+            if (name == null) {
+                return null;
+            }
+            try {
+                return Route.valueOf(name.toUpperCase(Locale.US));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    /*
+     * Called on the audio thread when another app takes the focus, e.g. a navigation
+     * prompt, and once the focus is back
+     */
+    public interface FocusListener {
+        void onPauseCalls();
+        void onResumeCalls();
+    }
+
+    // automatic route selection order
+    private static final Route[] PRIORITY = { Route.BLUETOOTH, Route.WIRED, Route.EARPIECE, Route.SPEAKER };
+
+    private final ReactApplicationContext reactContext;
+    private final AudioManager audioManager;
+    private final AudioFocusManager audioFocusManager;
+    private final EventManager eventManager;
+    private final CallResourceLedger ledger;
+    private final Handler handler;
+    private final LatencyHistogram routeSwitch = new LatencyHistogram();
+
+    // written on the audio thread only
+    private volatile int availableRoutes = Route.EARPIECE.mask() | Route.SPEAKER.mask();
+    private volatile Route route = Route.EARPIECE;
+    // route picked by the app, null lets the manager choose
+    private Route selectedRoute;
+    private boolean scoStarted = false;
+    private boolean scoConnected = false;
+    // System.nanoTime() of a Bluetooth switch waiting for its link, 0 when none
+    private long pendingSwitchStartedAt = 0;
+    private volatile FocusListener focusListener;
+    private boolean pausedForFocus = false;
+    private boolean duckedForFocus = false;
+    // API 23+, null before
+    private AudioDeviceCallback deviceCallback;
+    // API 31+, null before
+    private AudioManager.OnCommunicationDeviceChangedListener communicationDeviceListener;
+    // before API 31, null after
+    private BroadcastReceiver scoReceiver;
+
+    private final AudioManager.OnAudioFocusChangeListener focusChangeListener = new AudioManager.OnAudioFocusChangeListener() {
+        @Override
+        public void onAudioFocusChange(int focusChange) {
+            onFocusChange(focusChange);
+        }
+    };
+
+    public AudioRouteManager(ReactApplicationContext reactContext, EventManager eventManager,
+                             CallResourceLedger ledger) {
+        this.reactContext = reactContext;
+        this.eventManager = eventManager;
+        this.ledger = ledger;
+        audioManager = (AudioManager) reactContext.getSystemService(Context.AUDIO_SERVICE);
+        audioFocusManager = new AudioFocusManager(reactContext);
+
+        HandlerThread thread = new HandlerThread(TAG + "-audio");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        audioFocusManager.setOnAudioFocusChangeListener(focusChangeListener, handler);
+
+        if (audioManager != null && Build.VERSION.SDK_INT >= 23) {
+            deviceCallback = new AudioDeviceCallback() {
+                @Override
+                public void onAudioDevicesAdded(AudioDeviceInfo[] addedDevices) {
+                    onDevicesChanged();
+                }
+
+                @Override
+                public void onAudioDevicesRemoved(AudioDeviceInfo[] removedDevices) {
+                    onDevicesChanged();
+                }
+            };
+            audioManager.registerAudioDeviceCallback(deviceCallback, handler);
+        }
+        if (audioManager != null && Build.VERSION.SDK_INT >= 31) {
+            registerCommunicationDeviceListener();
+        } else if (audioManager != null) {
+            scoReceiver = new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    int state = intent.getIntExtra(AudioManager.EXTRA_SCO_AUDIO_STATE, AudioManager.SCO_AUDIO_STATE_ERROR);
+                    if (state == AudioManager.SCO_AUDIO_STATE_CONNECTED) {
+                        onBluetoothConnected();
+                    } else if (state == AudioManager.SCO_AUDIO_STATE_DISCONNECTED) {
+                        scoConnected = false;
+                    }
+                }
+            };
+            reactContext.registerReceiver(scoReceiver,
+                    new IntentFilter(AudioManager.ACTION_SCO_AUDIO_STATE_UPDATED), null, handler);
+        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                availableRoutes = queryAvailableRoutes();
+            }
+        });
+    }
+
+    public void setFocusListener(@Nullable FocusListener focusListener) {
+        this.focusListener = focusListener;
+    }
+
+    @RequiresApi(31)
+    private void registerCommunicationDeviceListener() {
+        communicationDeviceListener = new AudioManager.OnCommunicationDeviceChangedListener() {
+            @Override
+            public void onCommunicationDeviceChanged(@Nullable AudioDeviceInfo device) {
+                if (device != null && routeOf(device.getType()) == Route.BLUETOOTH) {
+                    onBluetoothConnected();
+                }
+            }
+        };
+        audioManager.addOnCommunicationDeviceChangedListener(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                handler.post(command);
+            }
+        }, communicationDeviceListener);
+    }
+
+    public void requestFocus() {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (audioManager == null || audioFocusManager.hasFocus()) {
+                    return;
+                }
+                audioFocusManager.setAudioFocus();
+                availableRoutes = queryAvailableRoutes();
+                applyRoute(resolveRoute(), true);
+                // the calls held since the focus was lost for good
+                resumeAfterFocus();
+            }
+        });
+    }
+
+    /*
+     * Gives the focus back and restores the default route, the app selection is forgotten
+     */
+    public void abandonFocus() {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (audioManager == null) {
+                    return;
+                }
+                selectedRoute = null;
+                pendingSwitchStartedAt = 0;
+                // the calls are over, only the volume is given back
+                pausedForFocus = false;
+                restoreDucking();
+                if (Build.VERSION.SDK_INT >= 31) {
+                    audioManager.clearCommunicationDevice();
+                } else {
+                    resetLegacyRoute();
+                }
+                route = Route.EARPIECE;
+                ledger.releaseAll(audioFocusManager.unsetAudioFocus());
+            }
+        });
+    }
+
+    /*
+     * Once no call is left, after abandonFocus: force releases the focus request or
+     * the communication mode still held, the ended calls the focus wasn't confirmed
+     * given back for are reported as leaking it
+     */
+    public void releaseLeaks() {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                audioFocusManager.releaseLeaks();
+                ledger.reportLeaks(CallResourceLedger.AUDIO_FOCUS | CallResourceLedger.AUDIO_MODE);
+            }
+        });
+    }
+
+    /*
+     * Selects the output, null goes back to the automatic choice. The promise
+     * is resolved with the route once it is applied.
+     */
+    public void setRoute(@Nullable final Route requested, @Nullable final Promise promise) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (requested != null && (availableRoutes & requested.mask()) == 0) {
+                    if (promise != null) {
+                        promise.reject("route_unavailable", "The audio route " + requested.toJS() + " is not available");
+                    }
+                    return;
+                }
+                selectedRoute = requested;
+                // without focus there is no call, the route is applied with the focus
+                if (audioManager != null && audioFocusManager.hasFocus()) {
+                    applyRoute(resolveRoute(), false);
+                }
+                if (promise != null) {
+                    promise.resolve(getRoutes());
+                }
+            }
+        });
+    }
+
+    public WritableMap getRoutes() {
+        WritableMap params = Arguments.createMap();
+        params.putString("route", route.toJS());
+        params.putArray("availableRoutes", routesToArray(availableRoutes));
+        params.putBoolean("focus", audioFocusManager.hasFocus());
+        return params;
+    }
+
+    /*
+     * Stops the audio thread once the focus and route releases already queued are done
+     */
+    public void quit() {
+        if (deviceCallback != null) {
+            audioManager.unregisterAudioDeviceCallback(deviceCallback);
+        }
+        if (communicationDeviceListener != null) {
+            audioManager.removeOnCommunicationDeviceChangedListener(communicationDeviceListener);
+        }
+        if (scoReceiver != null) {
+            reactContext.unregisterReceiver(scoReceiver);
+        }
+        handler.getLooper().quitSafely();
+    }
+
+    public WritableMap getMetrics() {
+        return routeSwitch.toMap();
+    }
+
+    /*
+     * The metrics of a manager that didn't switch any route yet
+     */
+    public static WritableMap emptyMetrics() {
+        return new LatencyHistogram().toMap();
+    }
+
+    // region audio thread only
+    private void onDevicesChanged() {
+        int available = queryAvailableRoutes();
+        if (available == availableRoutes) {
+            return;
+        }
+        availableRoutes = available;
+        if (BuildConfig.DEBUG) {
+            Log.d(TAG, "audio devices changed, available routes " + available);
+        }
+        if (audioFocusManager.hasFocus()) {
+            // the selected device may be gone or a headset was plugged in
+            Route next = resolveRoute();
+            if (next != route) {
+                applyRoute(next, false);
+                return;
+            }
+        }
+        sendRouteChange(-1);
+    }
+
+    private void onFocusChange(int focusChange) {
+        String state;
+        switch (focusChange) {
+            case AudioManager.AUDIOFOCUS_GAIN:
+            case AudioManager.AUDIOFOCUS_GAIN_TRANSIENT:
+                state = "gain";
+                break;
+            case AudioManager.AUDIOFOCUS_LOSS:
+                state = "loss";
+                break;
+            case AudioManager.AUDIOFOCUS_LOSS_TRANSIENT:
+            case AudioManager.AUDIOFOCUS_LOSS_TRANSIENT_CAN_DUCK:
+                state = "lossTransient";
+                break;
+            default:
+                return;
+        }
+        if (BuildConfig.DEBUG) {
+            Log.d(TAG, "audio focus " + state);
+        }
+        // nothing to pause or restore without a call
+        if (audioFocusManager.hasFocus()) {
+            switch (focusChange) {
+                case AudioManager.AUDIOFOCUS_LOSS:
+                    // held like a transient loss, until the focus is requested again
+                    pauseForFocus();
+                    ledger.releaseAll(audioFocusManager.onFocusLost());
+                    break;
+                case AudioManager.AUDIOFOCUS_LOSS_TRANSIENT:
+                    pauseForFocus();
+                    break;
+                case AudioManager.AUDIOFOCUS_LOSS_TRANSIENT_CAN_DUCK:
+                    duckForFocus();
+                    break;
+                case AudioManager.AUDIOFOCUS_GAIN:
+                case AudioManager.AUDIOFOCUS_GAIN_TRANSIENT:
+                    restoreDucking();
+                    resumeAfterFocus();
+                    // whoever took the focus may have changed the mode and the route
+                    audioManager.setMode(AudioManager.MODE_IN_COMMUNICATION);
+                    applyRoute(resolveRoute(), true);
+                    break;
+                default:
+                    break;
+            }
+        }
+        WritableMap params = Arguments.createMap();
+        params.putString("state", state);
+        params.putBoolean("callsPaused", pausedForFocus);
+        eventManager.sendEvent(EVENT_AUDIO_FOCUS, params);
+    }
+
+    private void pauseForFocus() {
+        FocusListener listener = focusListener;
+        if (pausedForFocus || listener == null) {
+            return;
+        }
+        pausedForFocus = true;
+        listener.onPauseCalls();
+    }
+
+    private void resumeAfterFocus() {
+        FocusListener listener = focusListener;
+        if (!pausedForFocus) {
+            return;
+        }
+        pausedForFocus = false;
+        if (listener != null) {
+            listener.onResumeCalls();
+        }
+    }
+
+    // from API 26 the system ducks the call itself
+    private void duckForFocus() {
+        if (Build.VERSION.SDK_INT >= 26 || duckedForFocus) {
+            return;
+        }
+        duckedForFocus = true;
+        audioManager.adjustStreamVolume(AudioManager.STREAM_VOICE_CALL, AudioManager.ADJUST_LOWER, 0);
+    }
+
+    private void restoreDucking() {
+        if (!duckedForFocus) {
+            return;
+        }
+        duckedForFocus = false;
+        audioManager.adjustStreamVolume(AudioManager.STREAM_VOICE_CALL, AudioManager.ADJUST_RAISE, 0);
+    }
+
+    private Route resolveRoute() {
+        int available = availableRoutes;
+        if (selectedRoute != null && (available & selectedRoute.mask()) != 0) {
+            return selectedRoute;
+        }
+        for (Route candidate : PRIORITY) {
+            if ((available & candidate.mask()) != 0) {
+                return candidate;
+            }
+        }
+        return Route.SPEAKER;
+    }
+
+    private void applyRoute(Route next, boolean force) {
+        if (next == route && !force) {
+            return;
+        }
+        long start = System.nanoTime();
+        route = next;
+        boolean waitingForLink = Build.VERSION.SDK_INT >= 31
+                ? applyCommunicationDevice(next)
+                : applyLegacyRoute(next);
+        if (waitingForLink) {
+            // completed by onBluetoothConnected
+            pendingSwitchStartedAt = start;
+            return;
+        }
+        pendingSwitchStartedAt = 0;
+        completeSwitch(start);
+    }
+
+    private void completeSwitch(long start) {
+        long elapsed = System.nanoTime() - start;
+        routeSwitch.recordNanos(elapsed);
+        if (BuildConfig.DEBUG) {
+            Log.d(TAG, "audio route " + route.toJS() + " in " + elapsed / 1000 + "us");
+        }
+        sendRouteChange(elapsed / 1000000.0);
+    }
+
+    private void onBluetoothConnected() {
+        scoConnected = true;
+        if (pendingSwitchStartedAt != 0 && route == Route.BLUETOOTH) {
+            long start = pendingSwitchStartedAt;
+            pendingSwitchStartedAt = 0;
+            completeSwitch(start);
+        }
+    }
+
+    /*
+     * True when the switch waits for the Bluetooth device to be used
+     */
+    @RequiresApi(31)
+    private boolean applyCommunicationDevice(Route next) {
+        AudioDeviceInfo device = null;
+        for (AudioDeviceInfo candidate : audioManager.getAvailableCommunicationDevices()) {
+            if (routeOf(candidate.getType()) == next) {
+                device = candidate;
+                break;
+            }
+        }
+        if (device == null) {
+            // the system default, the earpiece or a wired headset
+            audioManager.clearCommunicationDevice();
+            return false;
+        }
+        AudioDeviceInfo current = audioManager.getCommunicationDevice();
+        if (current != null && current.getId() == device.getId()) {
+            return false;
+        }
+        return audioManager.setCommunicationDevice(device) && next == Route.BLUETOOTH;
+    }
+
+    /*
+     * Before API 31, true when the switch waits for the SCO link
+     */
+    @SuppressWarnings("deprecation")
+    private boolean applyLegacyRoute(Route next) {
+        switch (next) {
+            case SPEAKER:
+                stopSco();
+                audioManager.setSpeakerphoneOn(true);
+                return false;
+            case BLUETOOTH:
+                audioManager.setSpeakerphoneOn(false);
+                if (!scoStarted) {
+                    // the SCO link comes up asynchronously, ACTION_SCO_AUDIO_STATE_UPDATED tells when
+                    audioManager.startBluetoothSco();
+                    scoStarted = true;
+                }
+                audioManager.setBluetoothScoOn(true);
+                return !scoConnected;
+            default:
+                // earpiece and wired headset, the system prefers the headset when plugged in
+                stopSco();
+                audioManager.setSpeakerphoneOn(false);
+                return false;
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private void resetLegacyRoute() {
+        stopSco();
+        audioManager.setSpeakerphoneOn(false);
+    }
+
+    @SuppressWarnings("deprecation")
+    private void stopSco() {
+        if (!scoStarted) {
+            return;
+        }
+        audioManager.setBluetoothScoOn(false);
+        audioManager.stopBluetoothSco();
+        scoStarted = false;
+        scoConnected = false;
+    }
+
+    @Nullable
+    private static Route routeOf(int deviceType) {
+        switch (deviceType) {
+            case AudioDeviceInfo.TYPE_BUILTIN_EARPIECE:
+                return Route.EARPIECE;
+            case AudioDeviceInfo.TYPE_BUILTIN_SPEAKER:
+                return Route.SPEAKER;
+            case AudioDeviceInfo.TYPE_WIRED_HEADSET:
+            case AudioDeviceInfo.TYPE_WIRED_HEADPHONES:
+            case AudioDeviceInfo.TYPE_USB_HEADSET:
+                return Route.WIRED;
+            case AudioDeviceInfo.TYPE_BLUETOOTH_SCO:
+                return Route.BLUETOOTH;
+            default:
+                return null;
+        }
+    }
+
+    private int queryAvailableRoutes() {
+        if (audioManager == null) {
+            return Route.SPEAKER.mask();
+        }
+        int available = Route.SPEAKER.mask();
+        if (Build.VERSION.SDK_INT >= 23) {
+            AudioDeviceInfo[] devices = audioManager.getDevices(AudioManager.GET_DEVICES_OUTPUTS);
+            for (AudioDeviceInfo device : devices) {
+                Route candidate = routeOf(device.getType());
+                if (candidate != null) {
+                    available |= candidate.mask();
+                }
+            }
+        } else {
+            available |= queryLegacyRoutes();
+        }
+        return available;
+    }
+
+    // no device list before API 23, assume a phone with an earpiece
+    @SuppressWarnings("deprecation")
+    private int queryLegacyRoutes() {
+        int available = Route.EARPIECE.mask();
+        if (audioManager.isWiredHeadsetOn()) {
+            available |= Route.WIRED.mask();
+        }
+        if (audioManager.isBluetoothScoAvailableOffCall() && audioManager.isBluetoothA2dpOn()) {
+            available |= Route.BLUETOOTH.mask();
+        }
+        return available;
+    }
+
+    // switchMs is negative when only the available routes changed
+    private void sendRouteChange(double switchMs) {
+        WritableMap params = Arguments.createMap();
+        params.putString("route", route.toJS());
+        params.putArray("availableRoutes", routesToArray(availableRoutes));
+        if (switchMs >= 0) {
+            params.putDouble("switchMs", switchMs);
+        }
+        eventManager.sendEvent(EVENT_AUDIO_ROUTE_CHANGE, params);
+    }
+    // endregion
+
+    private static WritableArray routesToArray(int mask) {
+        WritableArray routes = Arguments.createArray();
+        for (Route candidate : Route.values()) {
+            if ((mask & candidate.mask()) != 0) {
+                routes.pushString(candidate.toJS());
+            }
+        }
+        return routes;
+    }
+}
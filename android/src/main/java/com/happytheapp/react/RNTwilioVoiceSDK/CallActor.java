@@ -0,0 +1,67 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+
+import static com.happytheapp.react.RNTwilioVoiceSDK.TwilioVoiceSDKModule.TAG;
+
+/*
+ * Single thread on which every call state change is applied: the Twilio call
+ * listeners (calls are created on this thread so their callbacks land here),
+ * the React methods and the host lifecycle. Nothing touched from the actor needs
+ * to be synchronized and the bridge thread is never blocked by the SDK.
+ */
+public class CallActor {
+
+    private final Handler handler;
+
+    public CallActor() {
+        HandlerThread thread = new HandlerThread(TAG + "-call", Process.THREAD_PRIORITY_AUDIO);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    public boolean isActorThread() {
+        return Looper.myLooper() == handler.getLooper();
+    }
+
+    /*
+     * Runs the message right away when already on the actor thread, queues it otherwise
+     */
+    public void execute(Runnable message) {
+        if (isActorThread()) {
+            message.run();
+        } else {
+            handler.post(message);
+        }
+    }
+
+    public void post(Runnable message) {
+        handler.post(message);
+    }
+
+    public void postDelayed(Runnable message, long delayMs) {
+        handler.postDelayed(message, delayMs);
+    }
+
+    public void postAtTime(Runnable message, long uptimeMillis) {
+        handler.postAtTime(message, uptimeMillis);
+    }
+
+    public void cancel(Runnable message) {
+        handler.removeCallbacks(message);
+    }
+
+    public Handler getHandler() {
+        return handler;
+    }
+
+    /*
+     * Stops the actor thread once the messages already due are run, later ones are dropped
+     */
+    public void quit() {
+        handler.getLooper().quitSafely();
+    }
+}
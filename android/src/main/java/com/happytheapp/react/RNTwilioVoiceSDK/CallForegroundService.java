@@ -0,0 +1,127 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.net.wifi.WifiManager;
+import android.os.Build;
+import android.os.IBinder;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
+
+import static com.happytheapp.react.RNTwilioVoiceSDK.TwilioVoiceSDKModule.TAG;
+
+/*
+ * Foreground service owning the calls while the app is in the background, so the
+ * process is neither killed nor throttled mid call. It holds a Wi-Fi lock only: the
+ * audio path keeps the CPU awake while a call is up, a partial wake lock would only
+ * keep it awake longer. It is not sticky, a killed process isn't revived for it.
+ */
+public class CallForegroundService extends Service {
+
+    public static final String CHANNEL_ID = TAG + "-calls";
+    public static final int NOTIFICATION_ID = 0x7a1c;
+
+    private static final String EXTRA_TITLE = "title";
+    private static final String EXTRA_TEXT = "text";
+
+    @Nullable
+    private WifiManager.WifiLock wifiLock;
+
+    public static void start(Context context, String title, String text) {
+        Intent intent = new Intent(context, CallForegroundService.class);
+        intent.putExtra(EXTRA_TITLE, title);
+        intent.putExtra(EXTRA_TEXT, text);
+        try {
+            ContextCompat.startForegroundService(context, intent);
+        } catch (RuntimeException e) {
+            // not allowed from the background on Android 12+, the call goes on without the service
+            Log.e(TAG, "The call service can't be started", e);
+        }
+    }
+
+    public static void stop(Context context) {
+        context.stopService(new Intent(context, CallForegroundService.class));
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void onCreate() {
+        super.onCreate();
+        WifiManager wifiManager = (WifiManager) getApplicationContext().getSystemService(Context.WIFI_SERVICE);
+        if (wifiManager != null) {
+            // keeps the Wi-Fi radio out of power save, the packets of the call aren't delayed
+            wifiLock = wifiManager.createWifiLock(WifiManager.WIFI_MODE_FULL_HIGH_PERF, TAG + ":call");
+            wifiLock.setReferenceCounted(false);
+            wifiLock.acquire();
+        }
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        String title = intent != null ? intent.getStringExtra(EXTRA_TITLE) : null;
+        String text = intent != null ? intent.getStringExtra(EXTRA_TEXT) : null;
+        Notification notification = buildNotification(title, text);
+        if (Build.VERSION.SDK_INT >= 29) {
+            try {
+                startForeground(NOTIFICATION_ID, notification,
+                        ServiceInfo.FOREGROUND_SERVICE_TYPE_PHONE_CALL | ServiceInfo.FOREGROUND_SERVICE_TYPE_MICROPHONE);
+            } catch (SecurityException e) {
+                // the microphone type needs RECORD_AUDIO to be granted
+                startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_PHONE_CALL);
+            }
+        } else {
+            startForeground(NOTIFICATION_ID, notification);
+        }
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        if (wifiLock != null && wifiLock.isHeld()) {
+            wifiLock.release();
+        }
+        super.onDestroy();
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    private Notification buildNotification(@Nullable String title, @Nullable String text) {
+        if (Build.VERSION.SDK_INT >= 26) {
+            NotificationManager notificationManager =
+                    (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+            if (notificationManager != null && notificationManager.getNotificationChannel(CHANNEL_ID) == null) {
+                NotificationChannel channel = new NotificationChannel(CHANNEL_ID, "Calls",
+                        NotificationManager.IMPORTANCE_LOW);
+                notificationManager.createNotificationChannel(channel);
+            }
+        }
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_call_white_24dp)
+                .setContentTitle(title != null ? title : "Call in progress")
+                .setCategory(NotificationCompat.CATEGORY_CALL)
+                .setOngoing(true);
+        if (text != null) {
+            builder.setContentText(text);
+        }
+        // tapping the notification brings the app back
+        Intent launchIntent = getPackageManager().getLaunchIntentForPackage(getPackageName());
+        if (launchIntent != null) {
+            int flags = Build.VERSION.SDK_INT >= 23 ? PendingIntent.FLAG_IMMUTABLE : 0;
+            builder.setContentIntent(PendingIntent.getActivity(this, 0, launchIntent, flags));
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,92 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import androidx.annotation.Nullable;
+
+import com.twilio.voice.CallInvite;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Bounded LRU of the parsed call invites keyed by call SID. It also remembers the
+ * SIDs already seen so duplicated pushes and invites arriving after their cancel
+ * are dropped before they reach JS.
+ */
+public class CallInviteCache {
+
+    public static final int DEFAULT_CAPACITY = 16;
+    // SIDs are remembered longer than the invites themselves
+    private static final int SEEN_CAPACITY_FACTOR = 8;
+
+    private final LinkedHashMap<String, CallInvite> invites;
+    private final LinkedHashMap<String, Boolean> seen;
+
+    public CallInviteCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public CallInviteCache(final int capacity) {
+        invites = new LinkedHashMap<String, CallInvite>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CallInvite> eldest) {
+                return size() > capacity;
+            }
+        };
+        final int seenCapacity = capacity * SEEN_CAPACITY_FACTOR;
+        seen = new LinkedHashMap<String, Boolean>(seenCapacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > seenCapacity;
+            }
+        };
+    }
+
+    /*
+     * True when a push for this SID was already handled, it can be dropped without parsing
+     */
+    public synchronized boolean isKnown(@Nullable String callSid) {
+        return callSid != null && seen.containsKey(callSid);
+    }
+
+    /*
+     * Adds the invite, false when it is a duplicate or was already cancelled
+     */
+    public synchronized boolean put(CallInvite invite) {
+        String callSid = invite.getCallSid();
+        if (callSid == null || seen.containsKey(callSid)) {
+            return false;
+        }
+        seen.put(callSid, Boolean.TRUE);
+        invites.put(callSid, invite);
+        return true;
+    }
+
+    /*
+     * Drops the pending invite, false when there was nothing to cancel
+     */
+    public synchronized boolean cancel(@Nullable String callSid) {
+        if (callSid == null) {
+            return false;
+        }
+        boolean pending = invites.remove(callSid) != null;
+        // a cancel that arrives before its invite makes the invite late
+        seen.put(callSid, Boolean.TRUE);
+        return pending;
+    }
+
+    @Nullable
+    public synchronized CallInvite get(String callSid) {
+        return invites.get(callSid);
+    }
+
+    @Nullable
+    public synchronized CallInvite take(String callSid) {
+        return invites.remove(callSid);
+    }
+
+    public synchronized List<CallInvite> pending() {
+        return new ArrayList<>(invites.values());
+    }
+}
@@ -0,0 +1,271 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+import static com.happytheapp.react.RNTwilioVoiceSDK.TwilioVoiceSDKModule.TAG;
+
+/*
+ * Append-only ring of fixed size binary records in a memory mapped file, so the
+ * call history survives a crash or a process kill. Records are never forced to
+ * disk, the page cache is flushed by the kernel. Each slot carries a CRC, a slot
+ * torn by a crash in the middle of a write is skipped when the file is read back.
+ *
+ * Slot layout, 64 bytes: seq(8) time(8) session(4) callId(4) type(2) unused(2)
+ * code(4) payload(28, ASCII) crc(4)
+ */
+public class CallJournal {
+
+    public static final String FILE_NAME = TAG + ".journal";
+    public static final int SLOT_SIZE = 64;
+    public static final int DEFAULT_SLOT_COUNT = 4096;
+
+    public static final short TYPE_METHOD = 1;
+    public static final short TYPE_STATE = 2;
+    public static final short TYPE_ERROR = 3;
+    public static final short TYPE_SID = 4;
+
+    private static final String[] TYPE_NAMES = { "", "method", "state", "error", "sid" };
+
+    private static final int OFFSET_SEQ = 0;
+    private static final int OFFSET_TIME = 8;
+    private static final int OFFSET_SESSION = 16;
+    private static final int OFFSET_CALL_ID = 20;
+    private static final int OFFSET_TYPE = 24;
+    private static final int OFFSET_CODE = 28;
+    private static final int OFFSET_PAYLOAD = 32;
+    private static final int PAYLOAD_SIZE = 28;
+    private static final int OFFSET_CRC = 60;
+
+    private final File file;
+    private final int slotCount;
+    private boolean opened = false;
+    private MappedByteBuffer buffer;
+    private final byte[] scratch = new byte[SLOT_SIZE];
+    private final ByteBuffer slot = ByteBuffer.wrap(scratch);
+    private final CRC32 crc = new CRC32();
+    private long nextSeq = 1;
+    private int nextSlot = 0;
+    // process runs are told apart as the call handles restart at 1
+    private int session = 1;
+
+    public CallJournal(File file) {
+        this(file, DEFAULT_SLOT_COUNT);
+    }
+
+    public CallJournal(File file, int slotCount) {
+        this.file = file;
+        this.slotCount = slotCount;
+    }
+
+    /*
+     * Maps the file and finds where to append, done on the first record when not called before
+     */
+    public synchronized void open() {
+        if (opened) {
+            return;
+        }
+        opened = true;
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, (long) slotCount * SLOT_SIZE);
+            recover();
+        } catch (IOException e) {
+            Log.e(TAG, "The call journal can't be opened, nothing will be recorded", e);
+            buffer = null;
+        } finally {
+            // the mapping stays valid once the file is closed
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    // finds the newest valid record, writing goes on right after it
+    private void recover() {
+        long maxSeq = 0;
+        int maxSession = 0;
+        int maxSlot = -1;
+        for (int i = 0; i < slotCount; i++) {
+            if (!readSlot(i)) {
+                continue;
+            }
+            long seq = slot.getLong(OFFSET_SEQ);
+            if (seq > maxSeq) {
+                maxSeq = seq;
+                maxSession = slot.getInt(OFFSET_SESSION);
+                maxSlot = i;
+            }
+        }
+        nextSeq = maxSeq + 1;
+        nextSlot = (maxSlot + 1) % slotCount;
+        session = maxSession + 1;
+    }
+
+    public void recordMethod(@Nullable String handle, String method) {
+        append(handle, TYPE_METHOD, 0, method);
+    }
+
+    public void recordState(String handle, CallStateMachine.State state) {
+        append(handle, TYPE_STATE, state.ordinal(), state.name());
+    }
+
+    public void recordError(@Nullable String handle, int code, @Nullable String message) {
+        append(handle, TYPE_ERROR, code, message);
+    }
+
+    public void recordSid(String handle, String sid) {
+        append(handle, TYPE_SID, 0, sid);
+    }
+
+    private synchronized void append(@Nullable String handle, short type, int code, @Nullable String payload) {
+        open();
+        if (buffer == null) {
+            return;
+        }
+        slot.putLong(OFFSET_SEQ, nextSeq);
+        slot.putLong(OFFSET_TIME, System.currentTimeMillis());
+        slot.putInt(OFFSET_SESSION, session);
+        slot.putInt(OFFSET_CALL_ID, callId(handle));
+        slot.putShort(OFFSET_TYPE, type);
+        slot.putShort(OFFSET_TYPE + 2, (short) 0);
+        slot.putInt(OFFSET_CODE, code);
+        int length = payload != null ? Math.min(payload.length(), PAYLOAD_SIZE) : 0;
+        for (int i = 0; i < PAYLOAD_SIZE; i++) {
+            char c = i < length ? payload.charAt(i) : 0;
+            scratch[OFFSET_PAYLOAD + i] = (byte) (c < 128 ? c : '?');
+        }
+        crc.reset();
+        crc.update(scratch, 0, OFFSET_CRC);
+        slot.putInt(OFFSET_CRC, (int) crc.getValue());
+
+        buffer.position(nextSlot * SLOT_SIZE);
+        buffer.put(scratch);
+        nextSeq++;
+        nextSlot = (nextSlot + 1) % slotCount;
+    }
+
+    // copies the slot into scratch, false when it is empty or torn
+    private boolean readSlot(int index) {
+        buffer.position(index * SLOT_SIZE);
+        buffer.get(scratch);
+        if (slot.getLong(OFFSET_SEQ) <= 0) {
+            return false;
+        }
+        crc.reset();
+        crc.update(scratch, 0, OFFSET_CRC);
+        return slot.getInt(OFFSET_CRC) == (int) crc.getValue();
+    }
+
+    /*
+     * Records of the last calls, oldest call first. Each call is
+     * {session, handle, sid, events: [{seq, time, type, code, payload}]}
+     */
+    public synchronized WritableArray export(int lastCalls) {
+        WritableArray calls = Arguments.createArray();
+        open();
+        if (buffer == null || lastCalls <= 0) {
+            return calls;
+        }
+        // keys of the wanted calls, newest first
+        ArrayList<Long> keys = new ArrayList<>();
+        for (int n = 1; n <= slotCount && keys.size() < lastCalls; n++) {
+            int i = (nextSlot - n + slotCount) % slotCount;
+            if (!readSlot(i) || slot.getInt(OFFSET_CALL_ID) == 0) {
+                continue;
+            }
+            Long key = callKey(slot.getInt(OFFSET_SESSION), slot.getInt(OFFSET_CALL_ID));
+            if (!keys.contains(key)) {
+                keys.add(key);
+            }
+        }
+        ArrayList<WritableMap> callMaps = new ArrayList<>(keys.size());
+        ArrayList<WritableArray> events = new ArrayList<>(keys.size());
+        for (int k = 0; k < keys.size(); k++) {
+            long key = keys.get(k);
+            WritableMap call = Arguments.createMap();
+            call.putInt("session", (int) (key >>> 32));
+            call.putString("handle", "call-" + (int) key);
+            callMaps.add(call);
+            events.add(Arguments.createArray());
+        }
+        // oldest record first
+        for (int n = 0; n < slotCount; n++) {
+            int i = (nextSlot + n) % slotCount;
+            if (!readSlot(i)) {
+                continue;
+            }
+            int k = keys.indexOf(callKey(slot.getInt(OFFSET_SESSION), slot.getInt(OFFSET_CALL_ID)));
+            if (k < 0) {
+                continue;
+            }
+            short type = slot.getShort(OFFSET_TYPE);
+            String payload = readPayload();
+            if (type == TYPE_SID) {
+                callMaps.get(k).putString("sid", payload);
+            }
+            WritableMap event = Arguments.createMap();
+            event.putDouble("seq", slot.getLong(OFFSET_SEQ));
+            event.putDouble("time", slot.getLong(OFFSET_TIME));
+            event.putString("type", type > 0 && type < TYPE_NAMES.length ? TYPE_NAMES[type] : String.valueOf(type));
+            event.putInt("code", slot.getInt(OFFSET_CODE));
+            event.putString("payload", payload);
+            events.get(k).pushMap(event);
+        }
+        for (int k = keys.size() - 1; k >= 0; k--) {
+            callMaps.get(k).putArray("events", events.get(k));
+            calls.pushMap(callMaps.get(k));
+        }
+        return calls;
+    }
+
+    private String readPayload() {
+        int length = 0;
+        while (length < PAYLOAD_SIZE && scratch[OFFSET_PAYLOAD + length] != 0) {
+            length++;
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) scratch[OFFSET_PAYLOAD + i];
+        }
+        return new String(chars);
+    }
+
+    private static Long callKey(int session, int callId) {
+        return ((long) session << 32) | (callId & 0xffffffffL);
+    }
+
+    // the number of a "call-N" handle, 0 when there is no handle
+    static int callId(@Nullable String handle) {
+        if (handle == null || !handle.startsWith("call-")) {
+            return 0;
+        }
+        int id = 0;
+        for (int i = 5; i < handle.length(); i++) {
+            char c = handle.charAt(i);
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+            id = id * 10 + (c - '0');
+        }
+        return id;
+    }
+}
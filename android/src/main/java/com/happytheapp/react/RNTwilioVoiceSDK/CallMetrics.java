@@ -0,0 +1,231 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.os.SystemClock;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Records the key moments of each call with a monotonic clock and folds them into
+ * latency histograms. Each call handle has its own timeline, created when connect()
+ * is invoked, so concurrent calls don't mix their latencies. The mark* methods only
+ * write primitive fields of the timeline so they can be called from the call
+ * listener without allocating.
+ */
+public class CallMetrics {
+
+    public interface Clock {
+        long elapsedRealtimeNanos();
+    }
+
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long elapsedRealtimeNanos() {
+            return SystemClock.elapsedRealtimeNanos();
+        }
+    };
+
+    // in elapsed realtime nanos, 0 when not reached
+    private static class Timeline {
+        long connectInvokedAt;
+        long connectReturnedAt;
+        long ringingAt;
+        long connectedAt;
+        long reconnectingAt;
+        long disconnectedAt;
+        int reconnects;
+    }
+
+    private final Clock clock;
+    private final LatencyHistogram voiceConnect = new LatencyHistogram();
+    private final LatencyHistogram timeToRing = new LatencyHistogram();
+    private final LatencyHistogram timeToConnect = new LatencyHistogram();
+    private final LatencyHistogram reconnectDuration = new LatencyHistogram();
+
+    // timelines of the live calls, removed once disconnected, a redial starts its timeline over
+    private final HashMap<String, Timeline> timelines = new HashMap<>();
+    private Timeline lastTimeline;
+
+    // time spent building the module and its managers, in nanos
+    private final LinkedHashMap<String, Long> initNanos = new LinkedHashMap<>();
+
+    public CallMetrics() {
+        this(SYSTEM_CLOCK);
+    }
+
+    public CallMetrics(Clock clock) {
+        this.clock = clock;
+    }
+
+    public long now() {
+        return clock.elapsedRealtimeNanos();
+    }
+
+    /*
+     * invokedAt is now() when connect() was called, before the call had a handle
+     */
+    public synchronized void markConnectInvoked(String handle, long invokedAt) {
+        Timeline timeline = new Timeline();
+        timeline.connectInvokedAt = invokedAt;
+        timelines.put(handle, timeline);
+        lastTimeline = timeline;
+    }
+
+    /*
+     * A dropped call is dialled again under the same handle, the attempt gets its own
+     * connect latencies from now
+     */
+    public synchronized void markRedial(String handle) {
+        Timeline timeline = timeline(handle);
+        long now = now();
+        if (timeline.reconnectingAt != 0) {
+            // dropped while reconnecting
+            reconnectDuration.recordNanos(now - timeline.reconnectingAt);
+            timeline.reconnectingAt = 0;
+        }
+        timeline.connectInvokedAt = now;
+        timeline.connectReturnedAt = 0;
+        timeline.ringingAt = 0;
+        timeline.connectedAt = 0;
+    }
+
+    public synchronized void markConnectReturned(String handle) {
+        Timeline timeline = timeline(handle);
+        timeline.connectReturnedAt = now();
+        if (timeline.connectInvokedAt != 0) {
+            voiceConnect.recordNanos(timeline.connectReturnedAt - timeline.connectInvokedAt);
+        }
+    }
+
+    public synchronized void markRinging(String handle) {
+        Timeline timeline = timeline(handle);
+        if (timeline.ringingAt != 0) {
+            return;
+        }
+        timeline.ringingAt = now();
+        if (timeline.connectInvokedAt != 0) {
+            timeToRing.recordNanos(timeline.ringingAt - timeline.connectInvokedAt);
+        }
+    }
+
+    public synchronized void markConnected(String handle) {
+        Timeline timeline = timeline(handle);
+        if (timeline.connectedAt != 0) {
+            return;
+        }
+        timeline.connectedAt = now();
+        if (timeline.connectInvokedAt != 0) {
+            timeToConnect.recordNanos(timeline.connectedAt - timeline.connectInvokedAt);
+        }
+    }
+
+    public synchronized void markReconnecting(String handle) {
+        Timeline timeline = timeline(handle);
+        if (timeline.reconnectingAt == 0) {
+            timeline.reconnectingAt = now();
+        }
+    }
+
+    public synchronized void markReconnected(String handle) {
+        Timeline timeline = timeline(handle);
+        if (timeline.reconnectingAt == 0) {
+            return;
+        }
+        reconnectDuration.recordNanos(now() - timeline.reconnectingAt);
+        timeline.reconnectingAt = 0;
+        timeline.reconnects++;
+    }
+
+    public synchronized void markDisconnected(String handle) {
+        Timeline timeline = timelines.remove(handle);
+        if (timeline == null) {
+            return;
+        }
+        timeline.disconnectedAt = now();
+        if (timeline.reconnectingAt != 0) {
+            // the call dropped while reconnecting
+            reconnectDuration.recordNanos(timeline.disconnectedAt - timeline.reconnectingAt);
+            timeline.reconnectingAt = 0;
+        }
+    }
+
+    // a call that didn't go through connect(), e.g. an accepted invite, starts its timeline here
+    private Timeline timeline(String handle) {
+        Timeline timeline = timelines.get(handle);
+        if (timeline == null) {
+            timeline = new Timeline();
+            timelines.put(handle, timeline);
+            lastTimeline = timeline;
+        }
+        return timeline;
+    }
+
+    public synchronized void recordInit(String name, long nanos) {
+        initNanos.put(name, nanos);
+    }
+
+    public LatencyHistogram getVoiceConnect() {
+        return voiceConnect;
+    }
+
+    public LatencyHistogram getTimeToRing() {
+        return timeToRing;
+    }
+
+    public LatencyHistogram getTimeToConnect() {
+        return timeToConnect;
+    }
+
+    public LatencyHistogram getReconnectDuration() {
+        return reconnectDuration;
+    }
+
+    public synchronized int getLiveCallCount() {
+        return timelines.size();
+    }
+
+    public synchronized WritableMap toMap() {
+        WritableMap metrics = Arguments.createMap();
+        metrics.putMap("voiceConnect", voiceConnect.toMap());
+        metrics.putMap("timeToRing", timeToRing.toMap());
+        metrics.putMap("timeToConnect", timeToConnect.toMap());
+        metrics.putMap("reconnectDuration", reconnectDuration.toMap());
+
+        // offsets in ms from connect() for the last call and for each live call
+        metrics.putMap("lastCall", timelineToMap(lastTimeline));
+        WritableMap calls = Arguments.createMap();
+        for (Map.Entry<String, Timeline> entry : timelines.entrySet()) {
+            calls.putMap(entry.getKey(), timelineToMap(entry.getValue()));
+        }
+        metrics.putMap("calls", calls);
+
+        WritableMap init = Arguments.createMap();
+        for (Map.Entry<String, Long> entry : initNanos.entrySet()) {
+            init.putDouble(entry.getKey(), entry.getValue() / 1000000.0);
+        }
+        metrics.putMap("init", init);
+        return metrics;
+    }
+
+    private static WritableMap timelineToMap(Timeline timeline) {
+        WritableMap map = Arguments.createMap();
+        if (timeline != null && timeline.connectInvokedAt != 0) {
+            putOffset(map, timeline, "connectReturned", timeline.connectReturnedAt);
+            putOffset(map, timeline, "ringing", timeline.ringingAt);
+            putOffset(map, timeline, "connected", timeline.connectedAt);
+            putOffset(map, timeline, "disconnected", timeline.disconnectedAt);
+            map.putInt("reconnects", timeline.reconnects);
+        }
+        return map;
+    }
+
+    private static void putOffset(WritableMap map, Timeline timeline, String key, long at) {
+        if (at != 0) {
+            map.putDouble(key, (at - timeline.connectInvokedAt) / 1000000.0);
+        }
+    }
+}
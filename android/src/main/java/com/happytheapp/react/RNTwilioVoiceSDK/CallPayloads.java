@@ -0,0 +1,111 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.HashMap;
+
+/*
+ * Builds the call maps sent to JS. Every event of a call gets the next version of
+ * that call and, after the first event, only the fields changed since the previous
+ * one: sid, from and to are sent once. Promise results stay full maps at the version
+ * of the last event. JS drops an event older than what it already applied.
+ *
+ * Call actor only.
+ */
+public class CallPayloads {
+
+    private static class Sent {
+        long version = 0;
+        String sid;
+        String from;
+        String to;
+        String state;
+    }
+
+    private final HashMap<String, Sent> sentByHandle = new HashMap<>();
+
+    /*
+     * Delta map of an event, last forgets the call once the map is built
+     */
+    public WritableMap event(String handle, @Nullable VoiceCall call, boolean last) {
+        return event(handle, call, call != null ? call.getState().name() : null, last);
+    }
+
+    /*
+     * Same with the state of the handle instead of the one of the call, e.g. a dropped
+     * call that is dialled again is CONNECTING while its Twilio call is DISCONNECTED
+     */
+    public WritableMap event(String handle, @Nullable VoiceCall call, @Nullable String state, boolean last) {
+        Sent sent = sentByHandle.get(handle);
+        boolean first = sent == null;
+        if (first) {
+            sent = new Sent();
+        }
+        sent.version++;
+        WritableMap params = Arguments.createMap();
+        params.putString("handle", handle);
+        params.putDouble("version", sent.version);
+        if (call != null) {
+            String sid = call.getSid();
+            String from = call.getFrom();
+            String to = call.getTo();
+            if (sid != null && (first || !sid.equals(sent.sid))) {
+                params.putString("sid", sid);
+            }
+            if (from != null && (first || !from.equals(sent.from))) {
+                params.putString("from", from);
+            }
+            if (to != null && (first || !to.equals(sent.to))) {
+                params.putString("to", to);
+            }
+            if (state != null && (first || !state.equals(sent.state))) {
+                params.putString("state", state);
+            }
+            sent.sid = sid;
+            sent.from = from;
+            sent.to = to;
+            sent.state = state;
+        }
+        if (last) {
+            sentByHandle.remove(handle);
+        } else if (first) {
+            sentByHandle.put(handle, sent);
+        }
+        return params;
+    }
+
+    /*
+     * Every field of the call at the version of its last event
+     */
+    public WritableMap full(String handle, @Nullable VoiceCall call) {
+        return full(handle, call, call != null ? call.getState().name() : null);
+    }
+
+    /*
+     * Same with the state of the handle, what JS resyncs to after a missed event
+     */
+    public WritableMap full(String handle, @Nullable VoiceCall call, @Nullable String state) {
+        Sent sent = sentByHandle.get(handle);
+        WritableMap params = Arguments.createMap();
+        params.putString("handle", handle);
+        params.putDouble("version", sent != null ? sent.version : 0);
+        if (call != null) {
+            if (call.getSid() != null) {
+                params.putString("sid", call.getSid());
+            }
+            if (call.getFrom() != null) {
+                params.putString("from", call.getFrom());
+            }
+            if (call.getTo() != null) {
+                params.putString("to", call.getTo());
+            }
+            if (state != null) {
+                params.putString("state", state);
+            }
+        }
+        return params;
+    }
+}
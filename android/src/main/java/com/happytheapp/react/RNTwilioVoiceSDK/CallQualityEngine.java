@@ -0,0 +1,270 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_QUALITY_WARNING;
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_QUALITY_WARNING_CLEARED;
+import static com.happytheapp.react.RNTwilioVoiceSDK.TwilioVoiceSDKModule.TAG;
+
+/*
+ * Keeps sliding window aggregates (mean, p90, trend) of the stats samples of the
+ * sampled call and raises quality warnings. Each sample is added in constant time,
+ * a warning is raised when the window mean crosses its threshold and only cleared
+ * once the mean is back past the clear threshold.
+ */
+public class CallQualityEngine implements CallStatsSampler.SampleListener {
+
+    public static final int DEFAULT_WINDOW_SIZE = 10;
+    // fewer samples than this are not enough to raise a warning
+    public static final int MIN_SAMPLES = 3;
+
+    public static final String METRIC_JITTER = "jitter";
+    public static final String METRIC_RTT = "rtt";
+    public static final String METRIC_PACKET_LOSS = "packetLoss";
+    public static final String METRIC_MOS = "mos";
+
+    private static final int PERCENTILE_BUCKETS = 50;
+
+    /*
+     * Fixed size window with running sums. The percentile comes from a bucket
+     * histogram, the trend is the mean of the newer half minus the mean of the older half.
+     */
+    private static class Window {
+        private final float[] values;
+        private final int half;
+        private final double min;
+        private final double bucketWidth;
+        private final int[] buckets = new int[PERCENTILE_BUCKETS];
+        private int head = 0;
+        private int size = 0;
+        private double sum = 0;
+        private double newerSum = 0;
+
+        Window(int capacity, double min, double max) {
+            values = new float[capacity];
+            half = capacity / 2;
+            this.min = min;
+            bucketWidth = (max - min) / PERCENTILE_BUCKETS;
+        }
+
+        void add(float value) {
+            int capacity = values.length;
+            if (size == capacity) {
+                float oldest = values[head];
+                sum -= oldest;
+                buckets[bucket(oldest)]--;
+                size--;
+            }
+            values[head] = value;
+            head = (head + 1) % capacity;
+            size++;
+            sum += value;
+            newerSum += value;
+            buckets[bucket(value)]++;
+            if (size > half) {
+                // the sample half a window back moves from the newer to the older half
+                newerSum -= values[(head - half - 1 + capacity) % capacity];
+            }
+        }
+
+        void clear() {
+            head = 0;
+            size = 0;
+            sum = 0;
+            newerSum = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = 0;
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        double mean() {
+            return size > 0 ? sum / size : 0;
+        }
+
+        double trend() {
+            int newer = Math.min(size, half);
+            int older = size - newer;
+            if (newer == 0 || older == 0) {
+                return 0;
+            }
+            return newerSum / newer - (sum - newerSum) / older;
+        }
+
+        // upper bound of the bucket holding the percentile
+        double percentile(double fraction) {
+            if (size == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(fraction * size);
+            int seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return min + (i + 1) * bucketWidth;
+                }
+            }
+            return min + PERCENTILE_BUCKETS * bucketWidth;
+        }
+
+        private int bucket(float value) {
+            int i = (int) ((value - min) / bucketWidth);
+            return Math.max(0, Math.min(PERCENTILE_BUCKETS - 1, i));
+        }
+    }
+
+    private static class Metric {
+        final String name;
+        final String warning;
+        final boolean higherIsWorse;
+        final double min;
+        final double max;
+        double raiseThreshold;
+        double clearThreshold;
+        Window window;
+        boolean active = false;
+
+        Metric(String name, String warning, boolean higherIsWorse, double min, double max,
+               double raiseThreshold, double clearThreshold) {
+            this.name = name;
+            this.warning = warning;
+            this.higherIsWorse = higherIsWorse;
+            this.min = min;
+            this.max = max;
+            this.raiseThreshold = raiseThreshold;
+            this.clearThreshold = clearThreshold;
+        }
+
+        boolean crossesRaise(double value) {
+            return higherIsWorse ? value >= raiseThreshold : value <= raiseThreshold;
+        }
+
+        boolean crossesClear(double value) {
+            return higherIsWorse ? value <= clearThreshold : value >= clearThreshold;
+        }
+    }
+
+    private final EventManager eventManager;
+    private final Metric jitter = new Metric(METRIC_JITTER, "high-jitter", true, 0, 200, 30, 25);
+    private final Metric rtt = new Metric(METRIC_RTT, "high-rtt", true, 0, 2000, 400, 300);
+    private final Metric packetLoss = new Metric(METRIC_PACKET_LOSS, "high-packet-loss", true, 0, 100, 3, 1);
+    private final Metric mos = new Metric(METRIC_MOS, "low-mos", false, 1, 5, 3.5, 3.8);
+    private final Metric[] metrics = { jitter, rtt, packetLoss, mos };
+    private int windowSize;
+    private String handle;
+
+    public CallQualityEngine(EventManager eventManager) {
+        this.eventManager = eventManager;
+        setWindowSize(DEFAULT_WINDOW_SIZE);
+    }
+
+    public synchronized void setWindowSize(int windowSize) {
+        this.windowSize = Math.max(4, windowSize);
+        for (Metric metric : metrics) {
+            metric.window = new Window(this.windowSize, metric.min, metric.max);
+            metric.active = false;
+        }
+    }
+
+    /*
+     * Returns false when the metric name is unknown
+     */
+    public synchronized boolean setThresholds(String name, double raiseThreshold, double clearThreshold) {
+        for (Metric metric : metrics) {
+            if (metric.name.equals(name)) {
+                metric.raiseThreshold = raiseThreshold;
+                // the clear threshold can't be on the wrong side of the raise one
+                metric.clearThreshold = metric.higherIsWorse
+                        ? Math.min(raiseThreshold, clearThreshold)
+                        : Math.max(raiseThreshold, clearThreshold);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Starts over for a new call, warnings of the previous call are dropped
+     */
+    public synchronized void reset(@Nullable String handle) {
+        this.handle = handle;
+        for (Metric metric : metrics) {
+            metric.window.clear();
+            metric.active = false;
+        }
+    }
+
+    @Override
+    public synchronized void onSample(String sampleHandle, float jitterValue, float rttValue, float packetLossValue, float audioLevelValue, float mosValue) {
+        // only the call of the last reset is watched
+        if (handle == null || !handle.equals(sampleHandle)) {
+            return;
+        }
+        add(jitter, jitterValue);
+        add(rtt, rttValue);
+        add(packetLoss, packetLossValue);
+        // no MOS is reported until the remote track has stats
+        if (mosValue > 0) {
+            add(mos, mosValue);
+        }
+    }
+
+    private void add(Metric metric, float value) {
+        Window window = metric.window;
+        window.add(value);
+        if (window.size() < MIN_SAMPLES) {
+            return;
+        }
+        double mean = window.mean();
+        if (!metric.active && metric.crossesRaise(mean)) {
+            metric.active = true;
+            sendWarning(EVENT_QUALITY_WARNING, metric);
+        } else if (metric.active && metric.crossesClear(mean)) {
+            metric.active = false;
+            sendWarning(EVENT_QUALITY_WARNING_CLEARED, metric);
+        }
+    }
+
+    private void sendWarning(String eventName, Metric metric) {
+        if (BuildConfig.DEBUG) {
+            Log.d(TAG, eventName + " " + metric.warning + " mean " + metric.window.mean());
+        }
+        WritableMap params = metricToMap(metric);
+        params.putString("warning", metric.warning);
+        params.putString("metric", metric.name);
+        if (handle != null) {
+            params.putString("handle", handle);
+        }
+        eventManager.sendEvent(eventName, params);
+    }
+
+    private static WritableMap metricToMap(Metric metric) {
+        WritableMap params = Arguments.createMap();
+        params.putDouble("mean", metric.window.mean());
+        params.putDouble("p90", metric.window.percentile(0.9));
+        params.putDouble("trend", metric.window.trend());
+        params.putInt("samples", metric.window.size());
+        params.putBoolean("active", metric.active);
+        return params;
+    }
+
+    public synchronized WritableMap toMap() {
+        WritableMap params = Arguments.createMap();
+        if (handle != null) {
+            params.putString("handle", handle);
+        }
+        params.putInt("windowSize", windowSize);
+        for (Metric metric : metrics) {
+            params.putMap(metric.name, metricToMap(metric));
+        }
+        return params;
+    }
+}
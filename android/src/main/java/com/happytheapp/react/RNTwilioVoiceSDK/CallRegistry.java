@@ -0,0 +1,208 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Keeps track of every call handled by the module. Calls are keyed by a local
+ * handle assigned when the call is created, the call SID is bound to the handle
+ * as soon as it is known so calls can be looked up by either one. Each handle
+ * owns a CallStateMachine until the call is removed. Every change publishes a
+ * new CallStateSnapshot.
+ */
+public class CallRegistry {
+
+    private final ConcurrentHashMap<String, VoiceCall> callsByHandle = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> handlesBySid = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CallStateMachine> statesByHandle = new ConcurrentHashMap<>();
+    private final AtomicInteger handleSequence = new AtomicInteger();
+    private volatile String activeHandle;
+    @Nullable
+    private final CallJournal journal;
+    private volatile CallStateSnapshot snapshot = CallStateSnapshot.EMPTY;
+
+    public CallRegistry() {
+        this(null);
+    }
+
+    public CallRegistry(@Nullable CallJournal journal) {
+        this.journal = journal;
+    }
+
+    public String newHandle() {
+        String handle = "call-" + handleSequence.incrementAndGet();
+        statesByHandle.put(handle, new CallStateMachine());
+        return handle;
+    }
+
+    /*
+     * Applies a state transition, false when the handle is unknown or the transition isn't allowed
+     */
+    public boolean transition(String handle, CallStateMachine.State next) {
+        CallStateMachine stateMachine = statesByHandle.get(handle);
+        if (stateMachine == null || !stateMachine.moveTo(next)) {
+            return false;
+        }
+        if (journal != null) {
+            journal.recordState(handle, next);
+        }
+        publish();
+        return true;
+    }
+
+    /*
+     * Puts the handle back to CONNECTING before it is dialled again, the call stays
+     * registered until the new one replaces it but its SID is unbound
+     */
+    public void restart(String handle) {
+        if (!statesByHandle.containsKey(handle)) {
+            return;
+        }
+        statesByHandle.put(handle, new CallStateMachine());
+        VoiceCall call = callsByHandle.get(handle);
+        if (call != null && call.getSid() != null) {
+            handlesBySid.remove(call.getSid());
+        }
+        if (journal != null) {
+            journal.recordState(handle, CallStateMachine.State.CONNECTING);
+        }
+        publish();
+    }
+
+    @Nullable
+    public CallStateMachine.State getState(String handle) {
+        CallStateMachine stateMachine = statesByHandle.get(handle);
+        return stateMachine != null ? stateMachine.getState() : null;
+    }
+
+    public void put(String handle, VoiceCall call) {
+        if (call == null) {
+            return;
+        }
+        boolean changed = false;
+        VoiceCall previous = callsByHandle.put(handle, call);
+        if (previous == null) {
+            // the newest call becomes the active one
+            activeHandle = handle;
+        }
+        String sid = call.getSid();
+        if (sid != null && handlesBySid.put(sid, handle) == null) {
+            changed = true;
+            if (journal != null) {
+                journal.recordSid(handle, sid);
+            }
+        }
+        if (changed || previous != call) {
+            publish();
+        }
+    }
+
+    public boolean contains(String handle) {
+        return callsByHandle.containsKey(handle);
+    }
+
+    /*
+     * Looks up a call by handle or call SID
+     */
+    @Nullable
+    public VoiceCall get(@Nullable String handleOrSid) {
+        String handle = resolveHandle(handleOrSid);
+        return handle != null ? callsByHandle.get(handle) : null;
+    }
+
+    @Nullable
+    public String resolveHandle(@Nullable String handleOrSid) {
+        if (handleOrSid == null) {
+            return null;
+        }
+        if (callsByHandle.containsKey(handleOrSid)) {
+            return handleOrSid;
+        }
+        return handlesBySid.get(handleOrSid);
+    }
+
+    @Nullable
+    public VoiceCall remove(String handle) {
+        VoiceCall call = callsByHandle.remove(handle);
+        statesByHandle.remove(handle);
+        if (call != null && call.getSid() != null) {
+            handlesBySid.remove(call.getSid());
+        }
+        if (handle.equals(activeHandle)) {
+            activeHandle = null;
+            for (String remaining : callsByHandle.keySet()) {
+                activeHandle = remaining;
+                break;
+            }
+        }
+        if (call != null) {
+            publish();
+        }
+        return call;
+    }
+
+    @Nullable
+    public String getActiveHandle() {
+        return activeHandle;
+    }
+
+    @Nullable
+    public VoiceCall getActiveCall() {
+        String handle = activeHandle;
+        return handle != null ? callsByHandle.get(handle) : null;
+    }
+
+    public void setActiveHandle(String handle) {
+        if (callsByHandle.containsKey(handle) && !handle.equals(activeHandle)) {
+            activeHandle = handle;
+            publish();
+        }
+    }
+
+    /*
+     * Latest published snapshot, safe to read from any thread
+     */
+    public CallStateSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /*
+     * Latest snapshot, null when the reader already has its version
+     */
+    @Nullable
+    public CallStateSnapshot getSnapshotIfChanged(long knownVersion) {
+        CallStateSnapshot current = snapshot;
+        return current.version != knownVersion ? current : null;
+    }
+
+    private synchronized void publish() {
+        ArrayList<CallStateSnapshot.Entry> entries = new ArrayList<>(callsByHandle.size());
+        for (Map.Entry<String, VoiceCall> entry : callsByHandle.entrySet()) {
+            CallStateMachine stateMachine = statesByHandle.get(entry.getKey());
+            if (stateMachine == null) {
+                continue;
+            }
+            VoiceCall call = entry.getValue();
+            entries.add(new CallStateSnapshot.Entry(entry.getKey(), call.getSid(), call.getFrom(), call.getTo(),
+                    stateMachine.getState()));
+        }
+        snapshot = new CallStateSnapshot(snapshot.version + 1, activeHandle, entries);
+    }
+
+    public boolean isEmpty() {
+        return callsByHandle.isEmpty();
+    }
+
+    public int size() {
+        return callsByHandle.size();
+    }
+
+    public List<String> handles() {
+        return new ArrayList<>(callsByHandle.keySet());
+    }
+}
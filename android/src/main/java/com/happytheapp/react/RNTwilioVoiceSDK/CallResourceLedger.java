@@ -0,0 +1,168 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/*
+ * Resources taken on behalf of each call, as a bit mask per call handle. The focus,
+ * the audio mode and the proximity sensor are shared by the calls. A call that ends
+ * keeps its share until the manager owning the resource confirms it was given back
+ * to the system, with release() or releaseAll(). Once the last call is gone the
+ * managers force release what the system still holds, then reportLeaks() counts
+ * whatever the ended calls were never confirmed to give back as leaked. Every
+ * share acquired ends up either released or leaked.
+ *
+ * Called from the call actor and from the manager threads, hence synchronized.
+ */
+public class CallResourceLedger {
+
+    public static final int AUDIO_FOCUS = 1;
+    public static final int AUDIO_MODE = 1 << 1;
+    public static final int PROXIMITY_LISTENER = 1 << 2;
+    public static final int PROXIMITY_WAKE_LOCK = 1 << 3;
+    public static final int HELD_EVENTS = 1 << 4;
+
+    private static final String[] NAMES = {
+            "audioFocus", "audioMode", "proximityListener", "proximityWakeLock", "heldEvents"
+    };
+
+    // calls going on, a call holding nothing isn't counted
+    private final HashMap<String, Integer> held = new HashMap<>();
+    // calls that ended with resources not confirmed released yet
+    private final HashMap<String, Integer> ended = new HashMap<>();
+    private final int[] acquired = new int[NAMES.length];
+    private final int[] released = new int[NAMES.length];
+    private final int[] leaked = new int[NAMES.length];
+
+    public synchronized void acquire(@Nullable String handle, int resources) {
+        if (handle == null) {
+            return;
+        }
+        Integer mask = held.get(handle);
+        int previous = mask != null ? mask : 0;
+        count(acquired, resources & ~previous);
+        held.put(handle, previous | resources);
+    }
+
+    /*
+     * Given back by the call, whether it goes on or ended. Only what it holds is counted.
+     */
+    public synchronized void release(@Nullable String handle, int resources) {
+        if (handle == null) {
+            return;
+        }
+        if (held.containsKey(handle)) {
+            give(held, handle, resources, released);
+        } else if (ended.containsKey(handle)) {
+            give(ended, handle, resources, released);
+        }
+    }
+
+    /*
+     * Given back by whichever calls hold them, e.g. the focus abandoned once the calls
+     * are over or the events held for the call in the background
+     */
+    public synchronized void releaseAll(int resources) {
+        giveAll(held, resources, released);
+        giveAll(ended, resources, released);
+    }
+
+    /*
+     * The call ended, what it holds waits for its managers to release it
+     */
+    public synchronized void close(String handle) {
+        Integer mask = held.remove(handle);
+        if (mask == null) {
+            return;
+        }
+        Integer previous = ended.get(handle);
+        ended.put(handle, previous != null ? previous | mask : mask);
+    }
+
+    /*
+     * After the managers force released what the system still held: the resources
+     * the ended calls weren't confirmed to give back are counted as leaked, returned
+     * as a mask. Each manager checks its own resources.
+     */
+    public int reportLeaks(int resources) {
+        HashMap<String, Integer> leaks = new HashMap<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, Integer>> entries = ended.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<String, Integer> entry = entries.next();
+                int mask = entry.getValue();
+                if ((mask & resources) == 0) {
+                    continue;
+                }
+                leaks.put(entry.getKey(), mask & resources);
+                count(leaked, mask & resources);
+                if ((mask & ~resources) == 0) {
+                    entries.remove();
+                } else {
+                    entry.setValue(mask & ~resources);
+                }
+            }
+        }
+        int all = 0;
+        for (Map.Entry<String, Integer> leak : leaks.entrySet()) {
+            all |= leak.getValue();
+            for (int i = 0; i < NAMES.length; i++) {
+                if ((leak.getValue() & (1 << i)) != 0) {
+                    NativeLog.w(NativeLog.CODE_RESOURCE_LEAK, leak.getKey(), NAMES[i], 0);
+                }
+            }
+        }
+        return all;
+    }
+
+    private static void give(HashMap<String, Integer> calls, String handle, int resources, int[] counters) {
+        int mask = calls.get(handle);
+        count(counters, mask & resources);
+        if ((mask & ~resources) == 0) {
+            calls.remove(handle);
+        } else {
+            calls.put(handle, mask & ~resources);
+        }
+    }
+
+    private static void giveAll(HashMap<String, Integer> calls, int resources, int[] counters) {
+        Iterator<Map.Entry<String, Integer>> entries = calls.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, Integer> entry = entries.next();
+            int mask = entry.getValue();
+            count(counters, mask & resources);
+            if ((mask & ~resources) == 0) {
+                entries.remove();
+            } else {
+                entry.setValue(mask & ~resources);
+            }
+        }
+    }
+
+    private static void count(int[] counters, int resources) {
+        for (int i = 0; i < counters.length; i++) {
+            if ((resources & (1 << i)) != 0) {
+                counters[i]++;
+            }
+        }
+    }
+
+    public synchronized WritableMap toMap() {
+        WritableMap map = Arguments.createMap();
+        map.putInt("liveCalls", held.size());
+        for (int i = 0; i < NAMES.length; i++) {
+            WritableMap counters = Arguments.createMap();
+            counters.putInt("acquired", acquired[i]);
+            counters.putInt("released", released[i]);
+            counters.putInt("leaked", leaked[i]);
+            map.putMap(NAMES[i], counters);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,53 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+/*
+ * Lifecycle of a single call as seen by the module. Transitions that are not
+ * allowed from the current state are refused, which is how late or duplicated
+ * callbacks (e.g. a ringing after a local disconnect) are ignored.
+ */
+public class CallStateMachine {
+
+    public enum State {
+        CONNECTING,
+        RINGING,
+        CONNECTED,
+        RECONNECTING,
+        DISCONNECTING,
+        DISCONNECTED
+    }
+
+    private State state = State.CONNECTING;
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isEnded() {
+        return state == State.DISCONNECTING || state == State.DISCONNECTED;
+    }
+
+    public boolean canMoveTo(State next) {
+        switch (state) {
+            case CONNECTING:
+                return next != State.CONNECTING && next != State.RECONNECTING;
+            case RINGING:
+                return next == State.CONNECTED || next == State.DISCONNECTING || next == State.DISCONNECTED;
+            case CONNECTED:
+                return next == State.RECONNECTING || next == State.DISCONNECTING || next == State.DISCONNECTED;
+            case RECONNECTING:
+                return next == State.CONNECTED || next == State.DISCONNECTING || next == State.DISCONNECTED;
+            case DISCONNECTING:
+                return next == State.DISCONNECTED;
+            default:
+                return false;
+        }
+    }
+
+    public boolean moveTo(State next) {
+        if (!canMoveTo(next)) {
+            return false;
+        }
+        state = next;
+        return true;
+    }
+}
@@ -0,0 +1,76 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Immutable view of every call at one version. A new snapshot is published by the
+ * CallRegistry on each change, readers holding the current version can skip the
+ * conversion to a bridge map entirely.
+ */
+public final class CallStateSnapshot {
+
+    public static final CallStateSnapshot EMPTY =
+            new CallStateSnapshot(0, null, Collections.<Entry>emptyList());
+
+    public static final class Entry {
+        public final String handle;
+        @Nullable public final String sid;
+        @Nullable public final String from;
+        @Nullable public final String to;
+        public final CallStateMachine.State state;
+
+        public Entry(String handle, @Nullable String sid, @Nullable String from, @Nullable String to,
+                     CallStateMachine.State state) {
+            this.handle = handle;
+            this.sid = sid;
+            this.from = from;
+            this.to = to;
+            this.state = state;
+        }
+    }
+
+    public final long version;
+    @Nullable public final String activeHandle;
+    public final List<Entry> calls;
+
+    public CallStateSnapshot(long version, @Nullable String activeHandle, List<Entry> calls) {
+        this.version = version;
+        this.activeHandle = activeHandle;
+        this.calls = Collections.unmodifiableList(new ArrayList<>(calls));
+    }
+
+    public WritableMap toMap() {
+        WritableMap params = Arguments.createMap();
+        params.putDouble("version", version);
+        if (activeHandle != null) {
+            params.putString("activeHandle", activeHandle);
+        }
+        WritableArray callValues = Arguments.createArray();
+        for (int i = 0; i < calls.size(); i++) {
+            Entry entry = calls.get(i);
+            WritableMap call = Arguments.createMap();
+            call.putString("handle", entry.handle);
+            if (entry.sid != null) {
+                call.putString("sid", entry.sid);
+            }
+            if (entry.from != null) {
+                call.putString("from", entry.from);
+            }
+            if (entry.to != null) {
+                call.putString("to", entry.to);
+            }
+            call.putString("state", entry.state.name());
+            callValues.pushMap(call);
+        }
+        params.putArray("calls", callValues);
+        return params;
+    }
+}
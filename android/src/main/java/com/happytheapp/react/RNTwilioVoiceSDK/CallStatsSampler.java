@@ -0,0 +1,253 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import androidx.annotation.Nullable;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import com.facebook.react.bridge.WritableMap;
+
+import com.twilio.voice.LocalAudioTrackStats;
+import com.twilio.voice.RemoteAudioTrackStats;
+import com.twilio.voice.StatsListener;
+import com.twilio.voice.StatsReport;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_STATS;
+import static com.happytheapp.react.RNTwilioVoiceSDK.TwilioVoiceSDKModule.TAG;
+
+/*
+ * Polls Call.getStats() for every connected call and keeps the samples of each call
+ * in its own StatsRing, a fixed-size ring of primitive arrays. Samples are sent to
+ * JS in batches, one bridge event every batchSize samples of a call, with one array
+ * per metric and the handle of the call.
+ */
+public class CallStatsSampler {
+
+    public static final int DEFAULT_INTERVAL_MS = 1000;
+    public static final int DEFAULT_BATCH_SIZE = 5;
+    public static final int DEFAULT_CAPACITY = 300;
+
+    /*
+     * Called on the sampler thread for every recorded sample
+     */
+    public interface SampleListener {
+        void onSample(String handle, float jitter, float rtt, float packetLoss, float audioLevel, float mos);
+    }
+
+    // the sampling state of one call, its ring is guarded by the sampler
+    private class Sampled implements StatsListener, Runnable {
+        final String handle;
+        final VoiceCall call;
+        final StatsRing ring = new StatsRing(capacity);
+        // only touched on the sampler thread
+        boolean stopped;
+        long lastPacketsLost;
+        long lastPacketsReceived;
+
+        Sampled(String handle, VoiceCall call) {
+            this.handle = handle;
+            this.call = call;
+        }
+
+        // polls the call
+        @Override
+        public void run() {
+            if (stopped) {
+                return;
+            }
+            call.getStats(this);
+            handler.postDelayed(this, intervalMs);
+        }
+
+        @Override
+        public void onStats(List<StatsReport> statsReports) {
+            record(this, statsReports);
+        }
+    }
+
+    private final EventManager eventManager;
+    private final Handler handler;
+    private final int capacity;
+
+    private int intervalMs = DEFAULT_INTERVAL_MS;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private volatile SampleListener sampleListener;
+
+    // guarded by this, the last call stays around for getHistory() once it ended
+    private final HashMap<String, Sampled> sampled = new HashMap<>();
+    private Sampled last;
+
+    public CallStatsSampler(EventManager eventManager) {
+        this(eventManager, DEFAULT_CAPACITY);
+    }
+
+    public CallStatsSampler(EventManager eventManager, int capacity) {
+        this.eventManager = eventManager;
+        this.capacity = capacity;
+
+        HandlerThread thread = new HandlerThread(TAG + "-stats");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    public synchronized void configure(int intervalMs, int batchSize) {
+        this.intervalMs = Math.max(100, intervalMs);
+        this.batchSize = Math.max(1, Math.min(batchSize, capacity));
+    }
+
+    public void setSampleListener(@Nullable SampleListener sampleListener) {
+        this.sampleListener = sampleListener;
+    }
+
+    /*
+     * Starts sampling the call of the handle, a redialed call starts a new history
+     */
+    public void start(final String handle, final VoiceCall call) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                Sampled previous;
+                Sampled next;
+                synchronized (CallStatsSampler.this) {
+                    previous = sampled.get(handle);
+                    if (previous != null && previous.call == call) {
+                        return;
+                    }
+                    next = new Sampled(handle, call);
+                    sampled.put(handle, next);
+                    last = next;
+                }
+                if (previous != null) {
+                    stopSampling(previous);
+                }
+                if (BuildConfig.DEBUG) {
+                    Log.d(TAG, "start stats sampler for " + handle + " every " + intervalMs + "ms");
+                }
+                handler.post(next);
+            }
+        });
+    }
+
+    /*
+     * Stops sampling the call of the handle, or every call when null
+     */
+    public void stop(@Nullable final String handle) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                ArrayList<Sampled> stopped = new ArrayList<>();
+                synchronized (CallStatsSampler.this) {
+                    if (handle == null) {
+                        stopped.addAll(sampled.values());
+                        sampled.clear();
+                    } else {
+                        Sampled entry = sampled.remove(handle);
+                        if (entry != null) {
+                            stopped.add(entry);
+                        }
+                    }
+                }
+                for (Sampled entry : stopped) {
+                    stopSampling(entry);
+                }
+            }
+        });
+    }
+
+    /*
+     * Stops sampling every call and the sampler thread
+     */
+    public void quit() {
+        stop(null);
+        handler.getLooper().quitSafely();
+    }
+
+    private void stopSampling(Sampled entry) {
+        entry.stopped = true;
+        handler.removeCallbacks(entry);
+        flush(entry);
+    }
+
+    private void record(Sampled entry, List<StatsReport> statsReports) {
+        if (entry.stopped || statsReports == null) {
+            return;
+        }
+        // a single call carries one local and one remote audio track
+        LocalAudioTrackStats local = null;
+        RemoteAudioTrackStats remote = null;
+        for (int i = 0; i < statsReports.size(); i++) {
+            StatsReport report = statsReports.get(i);
+            if (local == null && !report.getLocalAudioTrackStats().isEmpty()) {
+                local = report.getLocalAudioTrackStats().get(0);
+            }
+            if (remote == null && !report.getRemoteAudioTrackStats().isEmpty()) {
+                remote = report.getRemoteAudioTrackStats().get(0);
+            }
+        }
+        if (local == null && remote == null) {
+            return;
+        }
+
+        float loss = 0;
+        if (remote != null) {
+            long lost = remote.packetsLost - entry.lastPacketsLost;
+            long received = remote.packetsReceived - entry.lastPacketsReceived;
+            if (lost > 0 && lost + received > 0) {
+                loss = 100f * lost / (lost + received);
+            }
+            entry.lastPacketsLost = remote.packetsLost;
+            entry.lastPacketsReceived = remote.packetsReceived;
+        }
+
+        float sampleJitter = remote != null ? remote.jitter : local.jitter;
+        float sampleRtt = local != null ? local.roundTripTime : 0;
+        float sampleAudioLevel = remote != null ? remote.audioLevel : 0;
+        float sampleMos = remote != null ? remote.mos : 0;
+        boolean batchReady;
+        synchronized (this) {
+            entry.ring.add(System.currentTimeMillis(), sampleJitter, sampleRtt, loss, sampleAudioLevel, sampleMos);
+            batchReady = entry.ring.unsent() >= batchSize;
+        }
+        SampleListener listener = sampleListener;
+        if (listener != null) {
+            listener.onSample(entry.handle, sampleJitter, sampleRtt, loss, sampleAudioLevel, sampleMos);
+        }
+        if (batchReady) {
+            flush(entry);
+        }
+    }
+
+    private void flush(Sampled entry) {
+        WritableMap params;
+        synchronized (this) {
+            if (entry.ring.unsent() == 0) {
+                return;
+            }
+            params = entry.ring.toMap(entry.ring.unsent());
+            entry.ring.markSent();
+        }
+        params.putString("handle", entry.handle);
+        eventManager.sendEvent(EVENT_STATS, params);
+    }
+
+    /*
+     * The samples kept for the handle, of the last call sampled when null
+     */
+    public synchronized WritableMap getHistory(@Nullable String handle) {
+        Sampled entry = handle != null ? sampled.get(handle) : last;
+        if (entry == null && last != null && last.handle.equals(handle)) {
+            entry = last;
+        }
+        if (entry == null) {
+            // the same empty columns as a call without samples
+            return new StatsRing(1).toMap(0);
+        }
+        WritableMap history = entry.ring.toMap(entry.ring.size());
+        history.putString("handle", entry.handle);
+        return history;
+    }
+}
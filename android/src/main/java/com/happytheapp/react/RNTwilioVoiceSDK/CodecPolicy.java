@@ -0,0 +1,133 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import com.twilio.voice.AudioCodec;
+import com.twilio.voice.OpusCodec;
+import com.twilio.voice.PcmuCodec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * Chooses the audio codec preferences of a new call from the quality of the
+ * current link. Opus is preferred with a max average bitrate that follows the
+ * link, PCMU (a fixed 64kbps) is kept as the fallback.
+ */
+public class CodecPolicy {
+
+    public enum LinkQuality { UNKNOWN, LOW, MEDIUM, HIGH }
+
+    public enum Mode {
+        // Opus with a bitrate picked from the link quality
+        AUTO,
+        OPUS,
+        PCMU,
+        // no preference, the SDK defaults apply
+        DEFAULT
+    }
+
+    public interface NetworkClassifier {
+        LinkQuality classify();
+    }
+
+    // Opus max average bitrates in bps
+    public static final int DEFAULT_LOW_BITRATE = 12000;
+    public static final int DEFAULT_MEDIUM_BITRATE = 24000;
+    public static final int DEFAULT_HIGH_BITRATE = 40000;
+
+    public static class Choice {
+        public final String codec;
+        // 0 when the codec default applies
+        public final int maxAverageBitrate;
+        public final LinkQuality linkQuality;
+
+        Choice(String codec, int maxAverageBitrate, LinkQuality linkQuality) {
+            this.codec = codec;
+            this.maxAverageBitrate = maxAverageBitrate;
+            this.linkQuality = linkQuality;
+        }
+
+        /*
+         * Codecs in order of preference, null when the SDK defaults apply
+         */
+        @Nullable
+        public List<AudioCodec> toAudioCodecs() {
+            List<AudioCodec> codecs = new ArrayList<>(2);
+            if (OpusCodec.NAME.equals(codec)) {
+                codecs.add(maxAverageBitrate > 0 ? new OpusCodec(maxAverageBitrate) : new OpusCodec());
+                codecs.add(new PcmuCodec());
+            } else if (PcmuCodec.NAME.equals(codec)) {
+                codecs.add(new PcmuCodec());
+                codecs.add(new OpusCodec());
+            } else {
+                return null;
+            }
+            return codecs;
+        }
+
+        public WritableMap toMap() {
+            WritableMap params = Arguments.createMap();
+            params.putString("name", codec);
+            if (maxAverageBitrate > 0) {
+                params.putInt("maxAverageBitrate", maxAverageBitrate);
+            }
+            params.putString("linkQuality", linkQuality.name().toLowerCase(Locale.US));
+            return params;
+        }
+    }
+
+    private final NetworkClassifier classifier;
+    private Mode mode = Mode.AUTO;
+    private int lowBitrate = DEFAULT_LOW_BITRATE;
+    private int mediumBitrate = DEFAULT_MEDIUM_BITRATE;
+    private int highBitrate = DEFAULT_HIGH_BITRATE;
+
+    public CodecPolicy(NetworkClassifier classifier) {
+        this.classifier = classifier;
+    }
+
+    public synchronized void configure(Mode mode, int lowBitrate, int mediumBitrate, int highBitrate) {
+        this.mode = mode;
+        // Opus supports 6 to 510 kbps
+        this.lowBitrate = clampBitrate(lowBitrate);
+        this.mediumBitrate = clampBitrate(mediumBitrate);
+        this.highBitrate = clampBitrate(highBitrate);
+    }
+
+    public synchronized Choice choose() {
+        switch (mode) {
+            case DEFAULT:
+                return new Choice("default", 0, LinkQuality.UNKNOWN);
+            case PCMU:
+                return new Choice(PcmuCodec.NAME, 0, LinkQuality.UNKNOWN);
+            case OPUS:
+                return new Choice(OpusCodec.NAME, 0, LinkQuality.UNKNOWN);
+            default:
+                break;
+        }
+        LinkQuality linkQuality = classifier.classify();
+        int bitrate;
+        switch (linkQuality) {
+            case LOW:
+                bitrate = lowBitrate;
+                break;
+            case HIGH:
+                bitrate = highBitrate;
+                break;
+            default:
+                // not known, the middle ground
+                bitrate = mediumBitrate;
+                break;
+        }
+        return new Choice(OpusCodec.NAME, bitrate, linkQuality);
+    }
+
+    private static int clampBitrate(int bitrate) {
+        return Math.max(6000, Math.min(510000, bitrate));
+    }
+}
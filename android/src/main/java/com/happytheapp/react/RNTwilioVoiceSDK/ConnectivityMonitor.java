@@ -0,0 +1,266 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import android.os.Build;
+import android.telephony.TelephonyManager;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+
+import java.util.HashSet;
+
+import static com.happytheapp.react.RNTwilioVoiceSDK.TwilioVoiceSDKModule.TAG;
+
+/*
+ * Tracks whether a network with internet access is up through a ConnectivityManager
+ * network callback, so a redial can wait for the network instead of failing again.
+ * From API 24 only the default network is followed: switching it, e.g. from Wi-Fi to
+ * mobile, brings the new one without losing the old one. Before, every network with
+ * internet access is. The listener is called on the ConnectivityManager thread. The network key tells
+ * networks apart (Wi-Fi SSID or mobile operator) for the caches keyed per network.
+ * The link is classified from the mobile generation and the bandwidth estimate.
+ */
+public class ConnectivityMonitor implements CodecPolicy.NetworkClassifier {
+
+    public interface Listener {
+        void onNetworkAvailable();
+        void onNetworkLost();
+    }
+
+    public static final String NO_NETWORK = "none";
+
+    // upstream bandwidth estimates, below LOW the link can't carry more than a low bitrate
+    private static final int LOW_BANDWIDTH_KBPS = 150;
+    private static final int MEDIUM_BANDWIDTH_KBPS = 1000;
+
+    private final ConnectivityManager connectivityManager;
+    private final WifiManager wifiManager;
+    private final TelephonyManager telephonyManager;
+    // computed again on the next read after any network change
+    private volatile String networkKey;
+    private final boolean defaultNetworkOnly;
+    // guarded by networks, the default network or every network with internet access
+    @Nullable private Network defaultNetwork;
+    private final HashSet<Network> networks = new HashSet<>();
+    private volatile boolean connected;
+    private volatile Listener listener;
+
+    private final ConnectivityManager.NetworkCallback networkCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onAvailable(Network network) {
+            boolean becameAvailable;
+            synchronized (networks) {
+                if (defaultNetworkOnly) {
+                    becameAvailable = defaultNetwork == null;
+                    defaultNetwork = network;
+                } else {
+                    becameAvailable = networks.isEmpty();
+                    networks.add(network);
+                }
+                connected = true;
+            }
+            networkKey = null;
+            if (BuildConfig.DEBUG) {
+                Log.d(TAG, "network available");
+            }
+            Listener current = listener;
+            if (becameAvailable && current != null) {
+                current.onNetworkAvailable();
+            }
+        }
+
+        @Override
+        public void onLost(Network network) {
+            boolean lost;
+            synchronized (networks) {
+                if (defaultNetworkOnly) {
+                    // a network that is no longer the default one going away changes nothing
+                    lost = network.equals(defaultNetwork);
+                    if (lost) {
+                        defaultNetwork = null;
+                    }
+                } else {
+                    networks.remove(network);
+                    lost = networks.isEmpty();
+                }
+                if (lost) {
+                    connected = false;
+                }
+            }
+            networkKey = null;
+            if (BuildConfig.DEBUG) {
+                Log.d(TAG, "network lost");
+            }
+            Listener current = listener;
+            if (lost && current != null) {
+                current.onNetworkLost();
+            }
+        }
+    };
+
+    public ConnectivityMonitor(ReactApplicationContext reactContext) {
+        this(reactContext, Build.VERSION.SDK_INT >= 24);
+    }
+
+    /*
+     * defaultNetworkOnly follows the default network, only available from API 24
+     */
+    public ConnectivityMonitor(ReactApplicationContext reactContext, boolean defaultNetworkOnly) {
+        this.defaultNetworkOnly = defaultNetworkOnly;
+        connectivityManager = (ConnectivityManager) reactContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        // the application context avoids leaking the WifiManager before API 24
+        wifiManager = (WifiManager) reactContext.getApplicationContext().getSystemService(Context.WIFI_SERVICE);
+        telephonyManager = (TelephonyManager) reactContext.getSystemService(Context.TELEPHONY_SERVICE);
+        connected = queryConnected();
+        if (connectivityManager == null) {
+            return;
+        }
+        if (defaultNetworkOnly) {
+            connectivityManager.registerDefaultNetworkCallback(networkCallback);
+        } else {
+            NetworkRequest request = new NetworkRequest.Builder()
+                    .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                    .build();
+            connectivityManager.registerNetworkCallback(request, networkCallback);
+        }
+    }
+
+    /*
+     * Unregisters the network callback, the monitor can't be used afterwards
+     */
+    public void stop() {
+        listener = null;
+        if (connectivityManager != null) {
+            connectivityManager.unregisterNetworkCallback(networkCallback);
+        }
+    }
+
+    public void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /*
+     * "wifi:<ssid>", "cell:<mcc+mnc>", "other:<type>" or NO_NETWORK
+     */
+    public String getNetworkKey() {
+        String key = networkKey;
+        if (key == null) {
+            key = queryNetworkKey();
+            networkKey = key;
+        }
+        return key;
+    }
+
+    @SuppressWarnings("deprecation")
+    private String queryNetworkKey() {
+        if (connectivityManager == null) {
+            return NO_NETWORK;
+        }
+        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        if (networkInfo == null || !networkInfo.isConnected()) {
+            return NO_NETWORK;
+        }
+        if (networkInfo.getType() == ConnectivityManager.TYPE_WIFI) {
+            WifiInfo wifiInfo = wifiManager != null ? wifiManager.getConnectionInfo() : null;
+            String ssid = wifiInfo != null ? wifiInfo.getSSID() : null;
+            // the SSID is hidden without the location permission
+            if (ssid == null || "<unknown ssid>".equals(ssid)) {
+                return "wifi";
+            }
+            return "wifi:" + ssid;
+        }
+        if (networkInfo.getType() == ConnectivityManager.TYPE_MOBILE) {
+            String operator = telephonyManager != null ? telephonyManager.getNetworkOperator() : null;
+            return operator != null && !operator.isEmpty() ? "cell:" + operator : "cell";
+        }
+        return "other:" + networkInfo.getTypeName();
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public CodecPolicy.LinkQuality classify() {
+        if (connectivityManager == null) {
+            return CodecPolicy.LinkQuality.UNKNOWN;
+        }
+        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        if (networkInfo == null || !networkInfo.isConnected()) {
+            return CodecPolicy.LinkQuality.UNKNOWN;
+        }
+        CodecPolicy.LinkQuality quality = CodecPolicy.LinkQuality.UNKNOWN;
+        if (networkInfo.getType() == ConnectivityManager.TYPE_MOBILE) {
+            quality = classifyMobile(networkInfo.getSubtype());
+            if (quality == CodecPolicy.LinkQuality.LOW) {
+                return quality;
+            }
+        }
+        // the estimate also catches a congested Wi-Fi, it is only available from API 23
+        if (Build.VERSION.SDK_INT >= 23) {
+            NetworkCapabilities capabilities = connectivityManager.getNetworkCapabilities(connectivityManager.getActiveNetwork());
+            int upstreamKbps = capabilities != null ? capabilities.getLinkUpstreamBandwidthKbps() : 0;
+            if (upstreamKbps > 0) {
+                if (upstreamKbps < LOW_BANDWIDTH_KBPS) {
+                    return CodecPolicy.LinkQuality.LOW;
+                }
+                if (upstreamKbps < MEDIUM_BANDWIDTH_KBPS) {
+                    return CodecPolicy.LinkQuality.MEDIUM;
+                }
+                if (quality == CodecPolicy.LinkQuality.UNKNOWN) {
+                    return CodecPolicy.LinkQuality.HIGH;
+                }
+            }
+        }
+        return quality;
+    }
+
+    private static CodecPolicy.LinkQuality classifyMobile(int networkType) {
+        switch (networkType) {
+            case TelephonyManager.NETWORK_TYPE_GPRS:
+            case TelephonyManager.NETWORK_TYPE_EDGE:
+            case TelephonyManager.NETWORK_TYPE_CDMA:
+            case TelephonyManager.NETWORK_TYPE_1xRTT:
+            case TelephonyManager.NETWORK_TYPE_IDEN:
+            case TelephonyManager.NETWORK_TYPE_GSM:
+                return CodecPolicy.LinkQuality.LOW;
+            case TelephonyManager.NETWORK_TYPE_UMTS:
+            case TelephonyManager.NETWORK_TYPE_EVDO_0:
+            case TelephonyManager.NETWORK_TYPE_EVDO_A:
+            case TelephonyManager.NETWORK_TYPE_EVDO_B:
+            case TelephonyManager.NETWORK_TYPE_HSDPA:
+            case TelephonyManager.NETWORK_TYPE_HSUPA:
+            case TelephonyManager.NETWORK_TYPE_HSPA:
+            case TelephonyManager.NETWORK_TYPE_EHRPD:
+            case TelephonyManager.NETWORK_TYPE_HSPAP:
+            case TelephonyManager.NETWORK_TYPE_TD_SCDMA:
+                return CodecPolicy.LinkQuality.MEDIUM;
+            case TelephonyManager.NETWORK_TYPE_LTE:
+            case TelephonyManager.NETWORK_TYPE_IWLAN:
+            case TelephonyManager.NETWORK_TYPE_NR:
+                return CodecPolicy.LinkQuality.HIGH;
+            default:
+                return CodecPolicy.LinkQuality.UNKNOWN;
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private boolean queryConnected() {
+        if (connectivityManager == null) {
+            // no way to know, don't hold redials back
+            return true;
+        }
+        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnected();
+    }
+}
@@ -0,0 +1,240 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_DTMF_PROGRESS;
+
+/*
+ * Per call queue of DTMF sequences sent one tone at a time, a ',' waits pauseMs
+ * instead, a trailing ',' is waited for before the sequence is done. Sequences
+ * queued before the call is connected are held until start() and a reconnecting
+ * call is paused. The tones are timed on the call actor thread against absolute
+ * due times, so the pacing doesn't drift and a late tick (e.g. a busy thread)
+ * doesn't send the next tones in a burst. Only the "sending" progress events can
+ * be dropped by a full event queue, "done" and "cancelled" always reach JS.
+ *
+ * Call actor only.
+ */
+public class DtmfScheduler {
+
+    public interface Clock {
+        long uptimeMillis();
+    }
+
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long uptimeMillis() {
+            return SystemClock.uptimeMillis();
+        }
+    };
+
+    public static final long DEFAULT_TONE_INTERVAL_MS = 250;
+    public static final long DEFAULT_PAUSE_MS = 500;
+    public static final char PAUSE = ',';
+    // how long the SDK plays each tone
+    private static final long TONE_MS = 100;
+
+    private static class Sequence {
+        final int id;
+        final String digits;
+        @Nullable final Promise promise;
+        int sent = 0;
+
+        Sequence(int id, String digits, @Nullable Promise promise) {
+            this.id = id;
+            this.digits = digits;
+            this.promise = promise;
+        }
+    }
+
+    private class Queue implements Runnable {
+        final String handle;
+        final ArrayDeque<Sequence> sequences = new ArrayDeque<>();
+        // null until connected, or while reconnecting
+        @Nullable VoiceCall call;
+        long nextAt = 0;
+        boolean scheduled = false;
+
+        Queue(String handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public void run() {
+            scheduled = false;
+            tick(this);
+        }
+    }
+
+    private final CallActor callActor;
+    private final EventManager eventManager;
+    // the time base of CallActor.postAtTime
+    private final Clock clock;
+    private final HashMap<String, Queue> queues = new HashMap<>();
+    private int lastSequenceId = 0;
+    private long toneIntervalMs = DEFAULT_TONE_INTERVAL_MS;
+    private long pauseMs = DEFAULT_PAUSE_MS;
+
+    public DtmfScheduler(CallActor callActor, EventManager eventManager) {
+        this(callActor, eventManager, SYSTEM_CLOCK);
+    }
+
+    public DtmfScheduler(CallActor callActor, EventManager eventManager, Clock clock) {
+        this.callActor = callActor;
+        this.eventManager = eventManager;
+        this.clock = clock;
+    }
+
+    public void configure(long toneIntervalMs, long pauseMs) {
+        this.toneIntervalMs = Math.max(TONE_MS, toneIntervalMs);
+        this.pauseMs = Math.max(0, pauseMs);
+    }
+
+    public static boolean isValid(String digits) {
+        if (digits.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < digits.length(); i++) {
+            char c = digits.charAt(i);
+            if ((c < '0' || c > '9') && c != '*' && c != '#' && c != PAUSE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Queues the digits after the sequences already queued for the call, the promise
+     * is resolved with the sequence id once the last tone is sent
+     */
+    public int enqueue(String handle, String digits, @Nullable Promise promise) {
+        Queue queue = queues.get(handle);
+        if (queue == null) {
+            queue = new Queue(handle);
+            queues.put(handle, queue);
+        }
+        Sequence sequence = new Sequence(++lastSequenceId, digits, promise);
+        queue.sequences.add(sequence);
+        schedule(queue);
+        return sequence.id;
+    }
+
+    /*
+     * Sends the queued tones to the call, on connect and on reconnect
+     */
+    public void start(String handle, VoiceCall call) {
+        Queue queue = queues.get(handle);
+        if (queue == null) {
+            queue = new Queue(handle);
+            queues.put(handle, queue);
+        }
+        queue.call = call;
+        schedule(queue);
+    }
+
+    /*
+     * Holds the remaining tones until start(), a tone sent while reconnecting is lost
+     */
+    public void pause(String handle) {
+        Queue queue = queues.get(handle);
+        if (queue == null) {
+            return;
+        }
+        queue.call = null;
+        if (queue.scheduled) {
+            callActor.cancel(queue);
+            queue.scheduled = false;
+        }
+    }
+
+    /*
+     * Drops every sequence of the call, their promises are rejected
+     */
+    public void cancel(String handle, String reason) {
+        Queue queue = queues.remove(handle);
+        if (queue == null) {
+            return;
+        }
+        if (queue.scheduled) {
+            callActor.cancel(queue);
+        }
+        Sequence sequence;
+        while ((sequence = queue.sequences.poll()) != null) {
+            sendProgress(queue.handle, sequence, null, "cancelled");
+            if (sequence.promise != null) {
+                sequence.promise.reject("dtmf_cancelled", "The digits weren't all sent: " + reason);
+            }
+        }
+    }
+
+    private void schedule(Queue queue) {
+        if (queue.scheduled || queue.call == null || queue.sequences.isEmpty()) {
+            return;
+        }
+        queue.scheduled = true;
+        long now = clock.uptimeMillis();
+        if (queue.nextAt < now) {
+            queue.nextAt = now;
+        }
+        callActor.postAtTime(queue, queue.nextAt);
+    }
+
+    private void tick(Queue queue) {
+        Sequence sequence = queue.sequences.peek();
+        if (sequence == null || queue.call == null) {
+            return;
+        }
+        if (sequence.sent == sequence.digits.length()) {
+            // the trailing pause is over
+            complete(queue, sequence, PAUSE);
+            schedule(queue);
+            return;
+        }
+        char digit = sequence.digits.charAt(sequence.sent++);
+        long delayMs;
+        if (digit == PAUSE) {
+            delayMs = pauseMs;
+        } else {
+            queue.call.sendDigits(String.valueOf(digit));
+            delayMs = toneIntervalMs;
+        }
+        // from the due time rather than now, a late tick still leaves one tone length before the next
+        queue.nextAt = Math.max(queue.nextAt + delayMs, clock.uptimeMillis() + Math.min(delayMs, TONE_MS));
+        if (sequence.sent < sequence.digits.length() || digit == PAUSE) {
+            sendProgress(queue.handle, sequence, digit, "sending");
+        } else {
+            complete(queue, sequence, digit);
+        }
+        schedule(queue);
+    }
+
+    private void complete(Queue queue, Sequence sequence, char digit) {
+        queue.sequences.poll();
+        sendProgress(queue.handle, sequence, digit, "done");
+        if (sequence.promise != null) {
+            sequence.promise.resolve(sequence.id);
+        }
+    }
+
+    private void sendProgress(String handle, Sequence sequence, @Nullable Character digit, String state) {
+        WritableMap params = Arguments.createMap();
+        params.putString("handle", handle);
+        params.putInt("sequence", sequence.id);
+        if (digit != null) {
+            params.putString("digit", String.valueOf(digit));
+        }
+        params.putInt("sent", sequence.sent);
+        params.putInt("total", sequence.digits.length());
+        params.putString("state", state);
+        eventManager.sendEvent(EVENT_DTMF_PROGRESS, params, "sending".equals(state));
+    }
+}
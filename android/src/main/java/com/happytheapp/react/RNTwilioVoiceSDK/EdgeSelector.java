@@ -0,0 +1,282 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static com.happytheapp.react.RNTwilioVoiceSDK.TwilioVoiceSDKModule.TAG;
+
+/*
+ * Picks the Twilio region with the lowest round trip time. Each edge is probed in
+ * the background with TCP connects to its signalling host, the best region is
+ * cached per network for ttlMs. Connect never waits for a probe, it uses the cached
+ * region or the SDK default while the first probe of a network runs.
+ */
+public class EdgeSelector {
+
+    public static final long DEFAULT_TTL_MS = 30 * 60 * 1000;
+    public static final int DEFAULT_PROBE_TIMEOUT_MS = 1500;
+    public static final int PROBES_PER_EDGE = 3;
+    public static final int DEFAULT_PORT = 443;
+
+    public static final String[] DEFAULT_REGIONS = { "au1", "br1", "de1", "ie1", "jp1", "sg1", "us1", "us2" };
+
+    public interface Clock {
+        long elapsedRealtime();
+    }
+
+    /*
+     * Round trip time to an edge in ms, -1 when it can't be reached
+     */
+    public interface Prober {
+        long measure(Edge edge, int timeoutMs);
+    }
+
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long elapsedRealtime() {
+            return SystemClock.elapsedRealtime();
+        }
+    };
+
+    // best of PROBES_PER_EDGE TCP connects to the signalling host
+    public static final Prober TCP_PROBER = new Prober() {
+        @Override
+        public long measure(Edge edge, int timeoutMs) {
+            return measureTcp(edge, timeoutMs);
+        }
+    };
+
+    public static class Edge {
+        public final String region;
+        public final String host;
+        public final int port;
+
+        public Edge(String region, String host, int port) {
+            this.region = region;
+            this.host = host;
+            this.port = port;
+        }
+
+        public static Edge forRegion(String region) {
+            return new Edge(region, "chunderw-vpc-gll-" + region + ".twilio.com", DEFAULT_PORT);
+        }
+    }
+
+    private static class Result {
+        final String region;
+        final HashMap<String, Long> rttMs;
+        final long measuredAt;
+
+        Result(@Nullable String region, HashMap<String, Long> rttMs, long measuredAt) {
+            this.region = region;
+            this.rttMs = rttMs;
+            this.measuredAt = measuredAt;
+        }
+    }
+
+    private final Handler handler;
+    private final Clock clock;
+    private final Prober prober;
+    private final HashMap<String, Result> results = new HashMap<>();
+    // networks with a probe queued or running
+    private final HashMap<String, List<Promise>> probing = new HashMap<>();
+    private List<Edge> edges = new ArrayList<>();
+    private boolean enabled = false;
+    private long ttlMs = DEFAULT_TTL_MS;
+    private int probeTimeoutMs = DEFAULT_PROBE_TIMEOUT_MS;
+
+    public EdgeSelector() {
+        this(startProbeThread(), SYSTEM_CLOCK, TCP_PROBER);
+    }
+
+    /*
+     * Probes are run on the handler
+     */
+    public EdgeSelector(Handler handler, Clock clock, Prober prober) {
+        for (String region : DEFAULT_REGIONS) {
+            edges.add(Edge.forRegion(region));
+        }
+        this.handler = handler;
+        this.clock = clock;
+        this.prober = prober;
+    }
+
+    private static Handler startProbeThread() {
+        HandlerThread thread = new HandlerThread(TAG + "-edge");
+        thread.start();
+        return new Handler(thread.getLooper());
+    }
+
+    /*
+     * Stops the probe thread, a probe in progress still completes
+     */
+    public void quit() {
+        handler.getLooper().quitSafely();
+    }
+
+    public synchronized void configure(boolean enabled, @Nullable List<Edge> edges, long ttlMs, int probeTimeoutMs) {
+        this.enabled = enabled;
+        if (edges != null && !edges.isEmpty()) {
+            this.edges = new ArrayList<>(edges);
+            // measured against other edges
+            results.clear();
+        }
+        this.ttlMs = Math.max(0, ttlMs);
+        this.probeTimeoutMs = Math.max(100, probeTimeoutMs);
+    }
+
+    /*
+     * Cached region for the network, null when disabled or not measured yet.
+     * A stale or missing result starts a probe in the background.
+     */
+    @Nullable
+    public synchronized String getRegion(String networkKey) {
+        if (!enabled || ConnectivityMonitor.NO_NETWORK.equals(networkKey)) {
+            return null;
+        }
+        Result result = results.get(networkKey);
+        if (result == null || isStale(result)) {
+            probe(networkKey, null);
+        }
+        return result != null ? result.region : null;
+    }
+
+    /*
+     * Measures again when the cached result of the network is stale
+     */
+    public synchronized void refresh(String networkKey) {
+        if (!enabled || ConnectivityMonitor.NO_NETWORK.equals(networkKey)) {
+            return;
+        }
+        Result result = results.get(networkKey);
+        if (result == null || isStale(result)) {
+            probe(networkKey, null);
+        }
+    }
+
+    /*
+     * Probes every edge now, the promise is resolved with {network, region, rtt: {region: ms}}
+     */
+    public synchronized void probe(final String networkKey, @Nullable Promise promise) {
+        List<Promise> waiting = probing.get(networkKey);
+        if (waiting != null) {
+            if (promise != null) {
+                waiting.add(promise);
+            }
+            return;
+        }
+        waiting = new ArrayList<>();
+        if (promise != null) {
+            waiting.add(promise);
+        }
+        probing.put(networkKey, waiting);
+        final List<Edge> toProbe = edges;
+        final int timeoutMs = probeTimeoutMs;
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                runProbe(networkKey, toProbe, timeoutMs);
+            }
+        });
+    }
+
+    private boolean isStale(Result result) {
+        return clock.elapsedRealtime() - result.measuredAt > ttlMs;
+    }
+
+    // probe thread only
+    private void runProbe(String networkKey, List<Edge> toProbe, int timeoutMs) {
+        HashMap<String, Long> rttMs = new HashMap<>();
+        String best = null;
+        long bestRtt = Long.MAX_VALUE;
+        for (Edge edge : toProbe) {
+            long rtt = prober.measure(edge, timeoutMs);
+            if (rtt < 0) {
+                continue;
+            }
+            rttMs.put(edge.region, rtt);
+            if (rtt < bestRtt) {
+                bestRtt = rtt;
+                best = edge.region;
+            }
+        }
+        if (BuildConfig.DEBUG) {
+            Log.d(TAG, "edge probe on " + networkKey + " best " + best + " " + rttMs);
+        }
+        Result result = new Result(best, rttMs, clock.elapsedRealtime());
+        List<Promise> waiting;
+        synchronized (this) {
+            // an unreachable set of edges is not cached, the next connect probes again
+            if (best != null) {
+                results.put(networkKey, result);
+            }
+            waiting = probing.remove(networkKey);
+        }
+        if (waiting != null) {
+            for (Promise promise : waiting) {
+                promise.resolve(resultToMap(networkKey, result));
+            }
+        }
+    }
+
+    // best TCP connect time in ms, -1 when the edge can't be reached
+    private static long measureTcp(Edge edge, int timeoutMs) {
+        InetAddress address;
+        try {
+            // resolved once so DNS isn't part of the round trip
+            address = InetAddress.getByName(edge.host);
+        } catch (IOException e) {
+            return -1;
+        }
+        long best = -1;
+        for (int i = 0; i < PROBES_PER_EDGE; i++) {
+            Socket socket = new Socket();
+            try {
+                long start = System.nanoTime();
+                socket.connect(new InetSocketAddress(address, edge.port), timeoutMs);
+                long rtt = (System.nanoTime() - start) / 1000000;
+                if (best < 0 || rtt < best) {
+                    best = rtt;
+                }
+            } catch (IOException e) {
+                // a lost probe, the other ones may still get through
+            } finally {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        return best;
+    }
+
+    private static WritableMap resultToMap(String networkKey, Result result) {
+        WritableMap params = Arguments.createMap();
+        params.putString("network", networkKey);
+        if (result.region != null) {
+            params.putString("region", result.region);
+        }
+        WritableMap rtt = Arguments.createMap();
+        for (String region : result.rttMs.keySet()) {
+            rtt.putDouble(region, result.rttMs.get(region));
+        }
+        params.putMap("rtt", rtt);
+        return params;
+    }
+}
@@ -1,14 +1,27 @@
 package com.happytheapp.react.RNTwilioVoiceSDK;
 
 import androidx.annotation.Nullable;
-import android.util.Log;
+import android.os.Handler;
+import android.os.HandlerThread;
 
+import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static com.happytheapp.react.RNTwilioVoiceSDK.TwilioVoiceSDKModule.TAG;
 
+/*
+ * Events are queued from any thread on an EventQueue and emitted by a single drain
+ * thread. A drain emits everything queued so far in one bridge call. While the
+ * Catalyst instance is not active the queue is kept, without polling, and replayed
+ * by the next flush (module initialized, host resumed) or the next event.
+ */
 public class EventManager {
 
     private ReactApplicationContext mContext;
@@ -19,23 +32,169 @@ public class EventManager {
     public static final String EVENT_RECONNECTED = "reconnect";
     public static final String EVENT_DISCONNECTED = "disconnect";
     public static final String EVENT_RINGING = "ringing";
+    public static final String EVENT_STATS = "stats";
+    public static final String EVENT_INCOMING = "incoming";
+    public static final String EVENT_CANCEL = "cancel";
+    public static final String EVENT_TOKEN_REFRESH_NEEDED = "tokenRefreshNeeded";
+    public static final String EVENT_PROXIMITY = "proximity";
+    public static final String EVENT_AUDIO_ROUTE_CHANGE = "audioRouteChange";
+    public static final String EVENT_AUDIO_FOCUS = "audioFocus";
+    public static final String EVENT_QUALITY_WARNING = "qualityWarning";
+    public static final String EVENT_QUALITY_WARNING_CLEARED = "qualityWarningCleared";
+    public static final String EVENT_RETRY = "retry";
+    public static final String EVENT_DTMF_PROGRESS = "dtmfProgress";
+    public static final String EVENT_PREFLIGHT_WARNING = "preflightWarning";
+    // wraps several events emitted in a single bridge call
+    public static final String EVENT_BATCH = "batch";
+
+    // past it lossy events are dropped, the others still grow the queue
+    public static final int QUEUE_CAPACITY = 256;
+    public static final long COALESCE_WINDOW_MS = 5;
+
+    private final EventQueue queue = new EventQueue(QUEUE_CAPACITY, COALESCE_WINDOW_MS);
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private volatile boolean held = false;
+    private final Handler drainHandler;
+
+    // drain thread only
+    private final ArrayList<EventQueue.Event> batch = new ArrayList<>(QUEUE_CAPACITY);
+
+    private final AtomicInteger droppedEvents = new AtomicInteger();
+    private final AtomicInteger coalescedEvents = new AtomicInteger();
+    private final LatencyHistogram enqueueToEmit = new LatencyHistogram();
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            drainScheduled.set(false);
+            drainQueue();
+        }
+    };
 
     public EventManager(ReactApplicationContext context) {
         mContext = context;
+        HandlerThread thread = new HandlerThread(TAG + "-events");
+        thread.start();
+        drainHandler = new Handler(thread.getLooper());
     }
 
     public void sendEvent(String eventName, @Nullable WritableMap params) {
-        if (BuildConfig.DEBUG) {
-            Log.d(TAG, "sendEvent "+eventName+" params "+params);
+        sendEvent(eventName, params, EventQueue.isLossy(eventName));
+    }
+
+    /*
+     * A lossy event may be dropped when the queue is full
+     */
+    public void sendEvent(String eventName, @Nullable WritableMap params, boolean lossy) {
+        String handle = null;
+        if (params != null && EventQueue.isCoalescable(eventName) && params.hasKey("handle")) {
+            handle = params.getString("handle");
         }
-        if (mContext.hasActiveCatalystInstance()) {
-            mContext
-                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
-                .emit(eventName, params);
+        EventQueue.Event dropped = queue.offer(eventName, handle, params, lossy, System.nanoTime());
+        int size = queue.size();
+        NativeLog.d(NativeLog.CODE_EVENT, handle, eventName, size);
+        if (dropped != null) {
+            NativeLog.w(NativeLog.CODE_EVENT_DROPPED, null, dropped.name, droppedEvents.incrementAndGet());
+        }
+        if (!held || size >= QUEUE_CAPACITY / 2) {
+            scheduleDrain(COALESCE_WINDOW_MS);
+        }
+    }
+
+    /*
+     * While held, e.g. with the app in the background, events are only delivered once
+     * released or when the queue is half full, in a single batch instead of waking JS
+     * up for each one
+     */
+    public void setHeld(boolean held) {
+        this.held = held;
+        if (!held) {
+            flush();
+        }
+    }
+
+    /*
+     * Once no call is left: releases the events still held whatever held them
+     */
+    public void releaseLeaks() {
+        if (held) {
+            setHeld(false);
+        }
+    }
+
+    /*
+     * Called when the JS instance may have become available, replays buffered events
+     */
+    public void flush() {
+        scheduleDrain(0);
+    }
+
+    private void scheduleDrain(long delayMs) {
+        if (drainScheduled.compareAndSet(false, true)) {
+            drainHandler.postDelayed(drain, delayMs);
+        }
+    }
+
+    private void drainQueue() {
+        if (!mContext.hasActiveCatalystInstance()) {
+            // kept until the next flush, no wake ups while JS is away
+            NativeLog.d(NativeLog.CODE_EVENTS_HELD, null, null, queue.size());
+            return;
+        }
+        coalescedEvents.addAndGet(queue.drainTo(batch));
+        if (batch.isEmpty()) {
+            return;
+        }
+        DeviceEventManagerModule.RCTDeviceEventEmitter emitter =
+                mContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class);
+        EventQueue.Event event;
+        if (batch.size() == 1) {
+            event = batch.get(0);
+            emitter.emit(event.name, event.params);
         } else {
-            if (BuildConfig.DEBUG) {
-                Log.d(TAG, "failed Catalyst instance not active");
+            WritableArray events = Arguments.createArray();
+            for (int i = 0; i < batch.size(); i++) {
+                event = batch.get(i);
+                WritableMap wrapper = Arguments.createMap();
+                wrapper.putString("name", event.name);
+                if (event.params != null) {
+                    wrapper.putMap("params", event.params);
+                }
+                events.pushMap(wrapper);
             }
+            emitter.emit(EVENT_BATCH, events);
+        }
+        long now = System.nanoTime();
+        for (int i = 0; i < batch.size(); i++) {
+            enqueueToEmit.recordNanos(now - batch.get(i).enqueuedAt);
         }
+        batch.clear();
+    }
+
+    /*
+     * Stops the drain thread, the events still queued are dropped with the JS instance
+     */
+    public void quit() {
+        drainHandler.getLooper().quitSafely();
+    }
+
+    public WritableMap getMetrics() {
+        return metricsMap(queue.size(), droppedEvents.get(), coalescedEvents.get(), enqueueToEmit);
+    }
+
+    /*
+     * The metrics of a manager that didn't send anything yet
+     */
+    public static WritableMap emptyMetrics() {
+        return metricsMap(0, 0, 0, new LatencyHistogram());
+    }
+
+    private static WritableMap metricsMap(int queued, int dropped, int coalesced, LatencyHistogram enqueueToEmit) {
+        WritableMap metrics = Arguments.createMap();
+        metrics.putInt("queued", queued);
+        metrics.putInt("dropped", dropped);
+        metrics.putInt("coalesced", coalesced);
+        metrics.putMap("enqueueToEmit", enqueueToEmit.toMap());
+        return metrics;
     }
 }
@@ -0,0 +1,142 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_DTMF_PROGRESS;
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_RECONNECTED;
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_RECONNECTING;
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_STATS;
+
+/*
+ * Lock-free queue behind EventManager, offered to from any thread and drained by a
+ * single thread. Past the capacity the oldest lossy event (stats, DTMF progress while
+ * sending) is dropped. Call lifecycle and invite events are never dropped, the queue
+ * grows past the capacity instead. On drain, a reconnected event replaces the
+ * reconnecting event of the same call queued within the coalescing window. It takes
+ * over the delta fields only the reconnecting event carried and, as baseVersion, the
+ * version that event applied to, so JS doesn't take it for a missed event.
+ */
+public class EventQueue {
+
+    public static class Event {
+        public final String name;
+        // only read for the events that can be coalesced
+        @Nullable public final String handle;
+        @Nullable public final WritableMap params;
+        public final boolean lossy;
+        public final long enqueuedAt;
+
+        Event(String name, @Nullable String handle, @Nullable WritableMap params, boolean lossy, long enqueuedAt) {
+            this.name = name;
+            this.handle = handle;
+            this.params = params;
+            this.lossy = lossy;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private final ConcurrentLinkedQueue<Event> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int capacity;
+    private final long coalesceWindowNanos;
+
+    public EventQueue(int capacity, long coalesceWindowMs) {
+        this.capacity = capacity;
+        this.coalesceWindowNanos = coalesceWindowMs * 1000000L;
+    }
+
+    /*
+     * Whether events of this name can be dropped by default, see the lossy offer()
+     */
+    public static boolean isLossy(String name) {
+        return EVENT_STATS.equals(name) || EVENT_DTMF_PROGRESS.equals(name);
+    }
+
+    public static boolean isCoalescable(String name) {
+        return EVENT_RECONNECTING.equals(name) || EVENT_RECONNECTED.equals(name);
+    }
+
+    /*
+     * Returns the event dropped to make room, null when none was
+     */
+    @Nullable
+    public Event offer(String name, @Nullable String handle, @Nullable WritableMap params, long nanos) {
+        return offer(name, handle, params, isLossy(name), nanos);
+    }
+
+    /*
+     * lossy overrides the default of the name, e.g. the last progress event of a DTMF sequence is kept
+     */
+    @Nullable
+    public Event offer(String name, @Nullable String handle, @Nullable WritableMap params, boolean lossy, long nanos) {
+        queue.offer(new Event(name, handle, params, lossy, nanos));
+        if (size.incrementAndGet() <= capacity) {
+            return null;
+        }
+        // only scanned when full, the lossy events are the frequent ones
+        for (Event event : queue) {
+            if (event.lossy && queue.remove(event)) {
+                size.decrementAndGet();
+                return event;
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    /*
+     * Moves every queued event to the batch, returns how many were coalesced. Drain thread only.
+     */
+    public int drainTo(ArrayList<Event> batch) {
+        int coalesced = 0;
+        Event event;
+        while ((event = queue.poll()) != null) {
+            size.decrementAndGet();
+            if (supersedes(batch, event)) {
+                event = merge(batch.remove(batch.size() - 1), event);
+                coalesced++;
+            }
+            batch.add(event);
+        }
+        return coalesced;
+    }
+
+    // the event that replaces previous, with the fields only previous carried
+    private static Event merge(Event previous, Event event) {
+        if (previous.params == null || event.params == null) {
+            return event;
+        }
+        WritableMap params = Arguments.createMap();
+        params.merge(previous.params);
+        params.merge(event.params);
+        if (previous.params.hasKey("version")) {
+            params.putDouble("baseVersion", previous.params.getDouble("version") - 1);
+        }
+        return new Event(event.name, event.handle, params, event.lossy, event.enqueuedAt);
+    }
+
+    // a reconnected event that follows a reconnecting event of the same call within the window replaces it
+    private boolean supersedes(ArrayList<Event> batch, Event event) {
+        if (batch.isEmpty() || event.handle == null || !EVENT_RECONNECTED.equals(event.name)) {
+            return false;
+        }
+        Event previous = batch.get(batch.size() - 1);
+        return EVENT_RECONNECTING.equals(previous.name)
+                && event.handle.equals(previous.handle)
+                && event.enqueuedAt - previous.enqueuedAt <= coalesceWindowNanos;
+    }
+}
@@ -0,0 +1,114 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.twilio.voice.CallException;
+import com.twilio.voice.CallInvite;
+import com.twilio.voice.CancelledCallInvite;
+import com.twilio.voice.MessageListener;
+import com.twilio.voice.Voice;
+
+import java.util.Map;
+
+import static com.happytheapp.react.RNTwilioVoiceSDK.TwilioVoiceSDKModule.TAG;
+
+/*
+ * Process wide entry point for the Twilio push payloads. Invites are parsed once,
+ * cached in the CallInviteCache and only forwarded to the module (and JS) when
+ * they are new; duplicates and invites already cancelled stop here.
+ */
+public class IncomingCallHandler {
+
+    // keys of the Twilio push payload
+    private static final String TWI_CALL_SID = "twi_call_sid";
+    private static final String TWI_MESSAGE_TYPE = "twi_message_type";
+    private static final String MESSAGE_TYPE_CALL = "twilio.voice.call";
+
+    public interface Listener {
+        void onCallInvite(CallInvite callInvite);
+        void onCancelledCallInvite(CancelledCallInvite cancelledCallInvite, @Nullable CallException error);
+    }
+
+    private static final IncomingCallHandler instance = new IncomingCallHandler();
+
+    private final CallInviteCache inviteCache = new CallInviteCache();
+    private volatile Listener listener;
+
+    private final MessageListener messageListener = new MessageListener() {
+        @Override
+        public void onCallInvite(@NonNull CallInvite callInvite) {
+            if (!inviteCache.put(callInvite)) {
+                if (BuildConfig.DEBUG) {
+                    Log.d(TAG, "dropping duplicated call invite "+callInvite.getCallSid());
+                }
+                return;
+            }
+            Listener current = listener;
+            if (current != null) {
+                current.onCallInvite(callInvite);
+            }
+        }
+
+        @Override
+        public void onCancelledCallInvite(@NonNull CancelledCallInvite cancelledCallInvite, @Nullable CallException error) {
+            if (!inviteCache.cancel(cancelledCallInvite.getCallSid())) {
+                if (BuildConfig.DEBUG) {
+                    Log.d(TAG, "dropping cancel without pending invite "+cancelledCallInvite.getCallSid());
+                }
+                return;
+            }
+            Listener current = listener;
+            if (current != null) {
+                current.onCancelledCallInvite(cancelledCallInvite, error);
+            }
+        }
+    };
+
+    private IncomingCallHandler() { }
+
+    public static IncomingCallHandler getInstance() {
+        return instance;
+    }
+
+    /*
+     * Apps that have their own FirebaseMessagingService can forward the data payload here,
+     * returns false when the message is not a Twilio one
+     */
+    public static boolean handleMessage(Context context, Map<String, String> data) {
+        return instance.handle(context, data);
+    }
+
+    private boolean handle(Context context, Map<String, String> data) {
+        // fast path, an invite for a SID already handled or cancelled doesn't need to be parsed
+        String callSid = data.get(TWI_CALL_SID);
+        if (MESSAGE_TYPE_CALL.equals(data.get(TWI_MESSAGE_TYPE)) && inviteCache.isKnown(callSid)) {
+            if (BuildConfig.DEBUG) {
+                Log.d(TAG, "dropping duplicated push "+callSid);
+            }
+            return true;
+        }
+        return Voice.handleMessage(context.getApplicationContext(), data, messageListener);
+    }
+
+    public synchronized void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    /*
+     * Only when it is still the one installed, the module of a reloaded bridge may
+     * have replaced it already
+     */
+    public synchronized void clearListener(Listener listener) {
+        if (this.listener == listener) {
+            this.listener = null;
+        }
+    }
+
+    public CallInviteCache getInviteCache() {
+        return inviteCache;
+    }
+}
@@ -0,0 +1,115 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+/*
+ * Log-linear latency histogram in the spirit of HdrHistogram. Values are kept in
+ * microseconds, every power of two is split in 16 linear buckets (~6% precision).
+ * Recording never allocates.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // covers up to 2^40us, about 12 days
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1000);
+    }
+
+    public void recordMillis(long millis) {
+        recordMicros(millis * 1000);
+    }
+
+    public synchronized void recordMicros(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        counts[bucketIndex(micros)]++;
+        count++;
+        sum += micros;
+        if (micros < min) {
+            min = micros;
+        }
+        if (micros > max) {
+            max = micros;
+        }
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = 0;
+        }
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long percentileMicros(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(count * percentile / 100.0);
+        if (target < 1) {
+            target = 1;
+        }
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(bucketUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    /*
+     * Summary in milliseconds: count, min, max, mean, p50, p90, p99
+     */
+    public synchronized WritableMap toMap() {
+        WritableMap map = Arguments.createMap();
+        map.putDouble("count", count);
+        map.putDouble("min", count == 0 ? 0 : min / 1000.0);
+        map.putDouble("max", max / 1000.0);
+        map.putDouble("mean", count == 0 ? 0 : sum / (double) count / 1000.0);
+        map.putDouble("p50", percentileMicros(50) / 1000.0);
+        map.putDouble("p90", percentileMicros(90) / 1000.0);
+        map.putDouble("p99", percentileMicros(99) / 1000.0);
+        return map;
+    }
+
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
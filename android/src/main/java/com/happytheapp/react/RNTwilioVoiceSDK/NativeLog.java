@@ -0,0 +1,192 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.twilio.voice.LogLevel;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import static com.happytheapp.react.RNTwilioVoiceSDK.TwilioVoiceSDKModule.TAG;
+
+/*
+ * Structured log kept in a preallocated ring of primitive arrays, in release builds
+ * too. A record is a level, a code and a few fields stored as they are: strings are
+ * only referenced (event names, handles, enum names...) and nothing is formatted
+ * until the ring is exported. Records below the level cost a single compare.
+ * Debug builds also print each record to logcat.
+ */
+public final class NativeLog {
+
+    public static final int DEBUG = 0;
+    public static final int INFO = 1;
+    public static final int WARN = 2;
+    public static final int ERROR = 3;
+    public static final int OFF = 4;
+
+    private static final String[] LEVEL_NAMES = { "debug", "info", "warn", "error", "off" };
+
+    // record codes, the names are only used on export
+    public static final int CODE_EVENT = 0;
+    public static final int CODE_EVENT_DROPPED = 1;
+    public static final int CODE_EVENTS_HELD = 2;
+    public static final int CODE_CONNECT = 3;
+    public static final int CODE_CALLBACK = 4;
+    public static final int CODE_CALL_ERROR = 5;
+    public static final int CODE_TOKEN_ERROR = 6;
+    public static final int CODE_LEVEL = 7;
+    public static final int CODE_PREFLIGHT = 8;
+    public static final int CODE_RESOURCE_LEAK = 9;
+
+    // {code name, value name}
+    private static final String[][] CODE_NAMES = {
+            { "event", "queued" },
+            { "eventDropped", "dropped" },
+            { "eventsHeld", "queued" },
+            { "connect", "" },
+            { "callback", "" },
+            { "callError", "code" },
+            { "tokenError", "" },
+            { "level", "" },
+            { "preflight", "rttMs" },
+            { "resourceLeak", "" },
+    };
+
+    public static final int CAPACITY = 1024;
+
+    private static final long[] times = new long[CAPACITY];
+    private static final byte[] levels = new byte[CAPACITY];
+    private static final byte[] codes = new byte[CAPACITY];
+    private static final String[] handles = new String[CAPACITY];
+    private static final String[] texts = new String[CAPACITY];
+    private static final long[] values = new long[CAPACITY];
+    // records written so far, the ring holds the last CAPACITY ones
+    private static long count = 0;
+
+    private static volatile int level = BuildConfig.DEBUG ? DEBUG : INFO;
+
+    private NativeLog() {
+    }
+
+    public static int getLevel() {
+        return level;
+    }
+
+    public static void setLevel(int level) {
+        NativeLog.level = Math.max(DEBUG, Math.min(OFF, level));
+        record(INFO, CODE_LEVEL, null, LEVEL_NAMES[NativeLog.level], 0);
+    }
+
+    /*
+     * "debug", "info", "warn", "error" or "off", -1 when unknown
+     */
+    public static int parseLevel(@Nullable String name) {
+        for (int i = 0; i < LEVEL_NAMES.length; i++) {
+            if (LEVEL_NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * The matching level of the Twilio SDK log
+     */
+    public static LogLevel toVoiceLogLevel(int level) {
+        switch (level) {
+            case DEBUG:
+                return LogLevel.DEBUG;
+            case INFO:
+                return LogLevel.INFO;
+            case WARN:
+                return LogLevel.WARNING;
+            case ERROR:
+                return LogLevel.ERROR;
+            default:
+                return LogLevel.OFF;
+        }
+    }
+
+    public static void d(int code, @Nullable String handle, @Nullable String text, long value) {
+        if (DEBUG >= level) {
+            record(DEBUG, code, handle, text, value);
+        }
+    }
+
+    public static void i(int code, @Nullable String handle, @Nullable String text, long value) {
+        if (INFO >= level) {
+            record(INFO, code, handle, text, value);
+        }
+    }
+
+    public static void w(int code, @Nullable String handle, @Nullable String text, long value) {
+        if (WARN >= level) {
+            record(WARN, code, handle, text, value);
+        }
+    }
+
+    public static void e(int code, @Nullable String handle, @Nullable String text, long value) {
+        if (ERROR >= level) {
+            record(ERROR, code, handle, text, value);
+        }
+    }
+
+    private static void record(int level, int code, @Nullable String handle, @Nullable String text, long value) {
+        long time = System.currentTimeMillis();
+        synchronized (NativeLog.class) {
+            int slot = (int) (count % CAPACITY);
+            times[slot] = time;
+            levels[slot] = (byte) level;
+            codes[slot] = (byte) code;
+            handles[slot] = handle;
+            texts[slot] = text;
+            values[slot] = value;
+            count++;
+        }
+        if (BuildConfig.DEBUG) {
+            StringBuilder line = new StringBuilder();
+            appendFields(line, code, handle, text, value);
+            Log.println(level == ERROR ? Log.ERROR : level == WARN ? Log.WARN : Log.DEBUG, TAG, line.toString());
+        }
+    }
+
+    /*
+     * The records in the ring as text, oldest first, one per line
+     */
+    public static String export() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+        StringBuilder text = new StringBuilder();
+        synchronized (NativeLog.class) {
+            long first = Math.max(0, count - CAPACITY);
+            text.ensureCapacity((int) (count - first) * 64);
+            for (long n = first; n < count; n++) {
+                int slot = (int) (n % CAPACITY);
+                text.append(format.format(new Date(times[slot])))
+                        .append(' ')
+                        .append(LEVEL_NAMES[levels[slot]])
+                        .append(' ');
+                appendFields(text, codes[slot], handles[slot], texts[slot], values[slot]);
+                text.append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    private static void appendFields(StringBuilder line, int code, @Nullable String handle, @Nullable String text,
+                                     long value) {
+        String[] names = code >= 0 && code < CODE_NAMES.length ? CODE_NAMES[code] : null;
+        line.append(names != null ? names[0] : String.valueOf(code));
+        if (handle != null) {
+            line.append(' ').append(handle);
+        }
+        if (text != null) {
+            line.append(' ').append(text);
+        }
+        if (names != null && !names[1].isEmpty()) {
+            line.append(' ').append(names[1]).append('=').append(value);
+        }
+    }
+}
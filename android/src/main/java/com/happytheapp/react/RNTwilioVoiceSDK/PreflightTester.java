@@ -0,0 +1,408 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static com.happytheapp.react.RNTwilioVoiceSDK.TwilioVoiceSDKModule.TAG;
+
+/*
+ * Checks the network before a call. A burst of STUN binding requests to the media
+ * endpoint measures UDP reachability, round trip time, jitter and loss, and a TCP
+ * connect checks the signalling endpoint. The verdict is cached per network for
+ * ttlMs. Connect never waits for a test, it is gated on the cached verdict only.
+ */
+public class PreflightTester {
+
+    public enum Mode {
+        OFF,
+        // connect goes on, a preflightWarning event is emitted
+        WARN,
+        // connect is rejected on a bad network
+        BLOCK
+    }
+
+    public enum Verdict { GOOD, DEGRADED, BAD, UNREACHABLE }
+
+    public interface Clock {
+        long elapsedRealtime();
+    }
+
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long elapsedRealtime() {
+            return SystemClock.elapsedRealtime();
+        }
+    };
+
+    public static final String DEFAULT_STUN_HOST = "global.stun.twilio.com";
+    public static final int DEFAULT_STUN_PORT = 3478;
+    public static final String DEFAULT_SIGNALLING_HOST = "chunderw-vpc-gll.twilio.com";
+    public static final int DEFAULT_SIGNALLING_PORT = 443;
+    public static final int DEFAULT_PROBE_COUNT = 10;
+    public static final int DEFAULT_PROBE_INTERVAL_MS = 50;
+    public static final int DEFAULT_TIMEOUT_MS = 1000;
+    public static final long DEFAULT_TTL_MS = 10 * 60 * 1000;
+
+    // above these a call is still usable but audibly worse
+    private static final double DEGRADED_RTT_MS = 250;
+    private static final double DEGRADED_JITTER_MS = 30;
+    private static final double DEGRADED_LOSS = 0.03;
+    private static final double BAD_RTT_MS = 400;
+    private static final double BAD_JITTER_MS = 60;
+    private static final double BAD_LOSS = 0.1;
+
+    private static final int STUN_BINDING_REQUEST = 0x0001;
+    private static final int STUN_BINDING_RESPONSE = 0x0101;
+    private static final int STUN_MAGIC_COOKIE = 0x2112A442;
+    private static final int STUN_HEADER_SIZE = 20;
+
+    public static class Result {
+        public final String networkKey;
+        public final Verdict verdict;
+        public final int sent;
+        public final int received;
+        public final double rttMs;
+        public final double jitterMs;
+        // -1 when the signalling endpoint can't be reached
+        public final long signallingRttMs;
+        final long measuredAt;
+
+        Result(String networkKey, Verdict verdict, int sent, int received, double rttMs, double jitterMs,
+               long signallingRttMs, long measuredAt) {
+            this.networkKey = networkKey;
+            this.verdict = verdict;
+            this.sent = sent;
+            this.received = received;
+            this.rttMs = rttMs;
+            this.jitterMs = jitterMs;
+            this.signallingRttMs = signallingRttMs;
+            this.measuredAt = measuredAt;
+        }
+
+        public boolean isBad() {
+            return verdict == Verdict.BAD || verdict == Verdict.UNREACHABLE;
+        }
+
+        public WritableMap toMap() {
+            WritableMap params = Arguments.createMap();
+            params.putString("network", networkKey);
+            params.putString("verdict", verdict.name().toLowerCase(Locale.US));
+            WritableMap media = Arguments.createMap();
+            media.putBoolean("reachable", received > 0);
+            media.putInt("sent", sent);
+            media.putInt("received", received);
+            media.putDouble("loss", sent > 0 ? 1 - (double) received / sent : 1);
+            if (received > 0) {
+                media.putDouble("rttMs", rttMs);
+                media.putDouble("jitterMs", jitterMs);
+            }
+            params.putMap("media", media);
+            WritableMap signalling = Arguments.createMap();
+            signalling.putBoolean("reachable", signallingRttMs >= 0);
+            if (signallingRttMs >= 0) {
+                signalling.putDouble("rttMs", signallingRttMs);
+            }
+            params.putMap("signalling", signalling);
+            return params;
+        }
+    }
+
+    private static class Options {
+        final String stunHost;
+        final int stunPort;
+        final String signallingHost;
+        final int signallingPort;
+        final int probeCount;
+        final int probeIntervalMs;
+        final int timeoutMs;
+
+        Options(String stunHost, int stunPort, String signallingHost, int signallingPort, int probeCount,
+                int probeIntervalMs, int timeoutMs) {
+            this.stunHost = stunHost;
+            this.stunPort = stunPort;
+            this.signallingHost = signallingHost;
+            this.signallingPort = signallingPort;
+            this.probeCount = probeCount;
+            this.probeIntervalMs = probeIntervalMs;
+            this.timeoutMs = timeoutMs;
+        }
+    }
+
+    private final Handler handler;
+    private final Clock clock;
+    private final Random random = new Random();
+    private final HashMap<String, Result> results = new HashMap<>();
+    // networks with a test queued or running
+    private final HashMap<String, List<Promise>> testing = new HashMap<>();
+    private Mode mode = Mode.OFF;
+    private long ttlMs = DEFAULT_TTL_MS;
+    private Options options = new Options(DEFAULT_STUN_HOST, DEFAULT_STUN_PORT, DEFAULT_SIGNALLING_HOST,
+            DEFAULT_SIGNALLING_PORT, DEFAULT_PROBE_COUNT, DEFAULT_PROBE_INTERVAL_MS, DEFAULT_TIMEOUT_MS);
+
+    public PreflightTester() {
+        this(startTestThread(), SYSTEM_CLOCK);
+    }
+
+    /*
+     * Tests are run on the handler
+     */
+    public PreflightTester(Handler handler, Clock clock) {
+        this.handler = handler;
+        this.clock = clock;
+    }
+
+    private static Handler startTestThread() {
+        HandlerThread thread = new HandlerThread(TAG + "-preflight");
+        thread.start();
+        return new Handler(thread.getLooper());
+    }
+
+    /*
+     * Stops the test thread, a test in progress still completes
+     */
+    public void quit() {
+        handler.getLooper().quitSafely();
+    }
+
+    public synchronized void configure(Mode mode, String stunHost, int stunPort, String signallingHost,
+                                       int signallingPort, int probeCount, int probeIntervalMs, int timeoutMs,
+                                       long ttlMs) {
+        this.mode = mode;
+        this.ttlMs = Math.max(0, ttlMs);
+        options = new Options(stunHost, stunPort, signallingHost, signallingPort,
+                Math.max(1, Math.min(100, probeCount)), Math.max(10, probeIntervalMs), Math.max(100, timeoutMs));
+        // measured against other endpoints
+        results.clear();
+    }
+
+    public synchronized Mode getMode() {
+        return mode;
+    }
+
+    /*
+     * Cached result for the network when gating is on, null when off or not measured yet.
+     * A stale or missing result starts a test in the background.
+     */
+    @Nullable
+    public synchronized Result check(String networkKey) {
+        if (mode == Mode.OFF || ConnectivityMonitor.NO_NETWORK.equals(networkKey)) {
+            return null;
+        }
+        Result result = results.get(networkKey);
+        if (result == null || clock.elapsedRealtime() - result.measuredAt > ttlMs) {
+            run(networkKey, null);
+        }
+        return result;
+    }
+
+    /*
+     * Tests the network now, the promise is resolved with the result map
+     */
+    public synchronized void run(final String networkKey, @Nullable Promise promise) {
+        List<Promise> waiting = testing.get(networkKey);
+        if (waiting != null) {
+            if (promise != null) {
+                waiting.add(promise);
+            }
+            return;
+        }
+        waiting = new ArrayList<>();
+        if (promise != null) {
+            waiting.add(promise);
+        }
+        testing.put(networkKey, waiting);
+        final Options current = options;
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                runTest(networkKey, current);
+            }
+        });
+    }
+
+    // test thread only
+    private void runTest(String networkKey, Options options) {
+        long[] rttNanos = new long[options.probeCount];
+        Arrays.fill(rttNanos, -1);
+        int sent = probeMedia(options, rttNanos);
+        long signallingRttMs = measureSignalling(options);
+
+        int received = 0;
+        double rttSum = 0;
+        double jitterSum = 0;
+        long previous = -1;
+        for (long rtt : rttNanos) {
+            if (rtt < 0) {
+                continue;
+            }
+            received++;
+            rttSum += rtt;
+            // variation between consecutive answered probes, in probe order
+            if (previous >= 0) {
+                jitterSum += Math.abs(rtt - previous);
+            }
+            previous = rtt;
+        }
+        double rttMs = received > 0 ? rttSum / received / 1e6 : 0;
+        double jitterMs = received > 1 ? jitterSum / (received - 1) / 1e6 : 0;
+        double loss = sent > 0 ? 1 - (double) received / sent : 1;
+        Verdict verdict = verdict(received, rttMs, jitterMs, loss, signallingRttMs);
+        NativeLog.i(NativeLog.CODE_PREFLIGHT, null, verdict.name(), Math.round(rttMs));
+
+        Result result = new Result(networkKey, verdict, sent, received, rttMs, jitterMs, signallingRttMs,
+                clock.elapsedRealtime());
+        List<Promise> waiting;
+        synchronized (this) {
+            results.put(networkKey, result);
+            waiting = testing.remove(networkKey);
+        }
+        if (waiting != null) {
+            for (Promise promise : waiting) {
+                promise.resolve(result.toMap());
+            }
+        }
+    }
+
+    private static Verdict verdict(int received, double rttMs, double jitterMs, double loss, long signallingRttMs) {
+        if (received == 0 || signallingRttMs < 0) {
+            return Verdict.UNREACHABLE;
+        }
+        if (loss > BAD_LOSS || rttMs > BAD_RTT_MS || jitterMs > BAD_JITTER_MS) {
+            return Verdict.BAD;
+        }
+        if (loss > DEGRADED_LOSS || rttMs > DEGRADED_RTT_MS || jitterMs > DEGRADED_JITTER_MS) {
+            return Verdict.DEGRADED;
+        }
+        return Verdict.GOOD;
+    }
+
+    /*
+     * Sends the burst of binding requests, one every probeIntervalMs, while reading the
+     * answers, then waits timeoutMs for the late ones. Returns the number of probes sent.
+     */
+    private int probeMedia(Options options, long[] rttNanos) {
+        DatagramSocket socket = null;
+        int sent = 0;
+        try {
+            InetAddress address = InetAddress.getByName(options.stunHost);
+            socket = new DatagramSocket();
+            byte[][] transactionIds = new byte[options.probeCount][12];
+            long[] sentAt = new long[options.probeCount];
+            byte[] answer = new byte[512];
+            DatagramPacket answerPacket = new DatagramPacket(answer, answer.length);
+            long intervalNanos = options.probeIntervalMs * 1000000L;
+            long nextSend = System.nanoTime();
+            long deadline = Long.MAX_VALUE;
+            while (true) {
+                long now = System.nanoTime();
+                if (sent < options.probeCount && now >= nextSend) {
+                    random.nextBytes(transactionIds[sent]);
+                    byte[] request = bindingRequest(transactionIds[sent]);
+                    sentAt[sent] = System.nanoTime();
+                    socket.send(new DatagramPacket(request, request.length, address, options.stunPort));
+                    sent++;
+                    nextSend = now + intervalNanos;
+                    if (sent == options.probeCount) {
+                        deadline = sentAt[sent - 1] + options.timeoutMs * 1000000L;
+                    }
+                    continue;
+                }
+                long waitNanos = (sent < options.probeCount ? nextSend : deadline) - now;
+                if (sent == options.probeCount && waitNanos <= 0) {
+                    break;
+                }
+                socket.setSoTimeout((int) Math.max(1, waitNanos / 1000000L));
+                try {
+                    answerPacket.setLength(answer.length);
+                    socket.receive(answerPacket);
+                } catch (SocketTimeoutException e) {
+                    continue;
+                }
+                long receivedAt = System.nanoTime();
+                int probe = matchAnswer(answer, answerPacket.getLength(), transactionIds, sent);
+                if (probe >= 0 && rttNanos[probe] < 0) {
+                    rttNanos[probe] = receivedAt - sentAt[probe];
+                }
+            }
+        } catch (IOException e) {
+            // unresolved host or no UDP at all, every probe counts as lost
+            return Math.max(sent, options.probeCount);
+        } finally {
+            if (socket != null) {
+                socket.close();
+            }
+        }
+        return sent;
+    }
+
+    // RFC 5389 binding request without attributes
+    private static byte[] bindingRequest(byte[] transactionId) {
+        byte[] request = new byte[STUN_HEADER_SIZE];
+        request[0] = (byte) (STUN_BINDING_REQUEST >> 8);
+        request[1] = (byte) STUN_BINDING_REQUEST;
+        // message length 0
+        request[4] = (byte) (STUN_MAGIC_COOKIE >> 24);
+        request[5] = (byte) (STUN_MAGIC_COOKIE >> 16);
+        request[6] = (byte) (STUN_MAGIC_COOKIE >> 8);
+        request[7] = (byte) STUN_MAGIC_COOKIE;
+        System.arraycopy(transactionId, 0, request, 8, 12);
+        return request;
+    }
+
+    // the probe the binding response answers, -1 for anything else
+    private static int matchAnswer(byte[] answer, int length, byte[][] transactionIds, int sent) {
+        if (length < STUN_HEADER_SIZE
+                || ((answer[0] & 0xff) << 8 | (answer[1] & 0xff)) != STUN_BINDING_RESPONSE) {
+            return -1;
+        }
+        for (int i = 0; i < sent; i++) {
+            boolean same = true;
+            for (int b = 0; b < 12 && same; b++) {
+                same = answer[8 + b] == transactionIds[i][b];
+            }
+            if (same) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // TCP connect time in ms, -1 when the endpoint can't be reached
+    private static long measureSignalling(Options options) {
+        Socket socket = new Socket();
+        try {
+            InetAddress address = InetAddress.getByName(options.signallingHost);
+            long start = System.nanoTime();
+            socket.connect(new InetSocketAddress(address, options.signallingPort), options.timeoutMs);
+            return (System.nanoTime() - start) / 1000000;
+        } catch (IOException e) {
+            return -1;
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
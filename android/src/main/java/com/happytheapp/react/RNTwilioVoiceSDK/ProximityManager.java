@@ -5,21 +5,39 @@ import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.PowerManager;
 import android.os.PowerManager.WakeLock;
+import android.os.SystemClock;
 import android.util.Log;
 
-//import com.facebook.react.bridge.Arguments;
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.ReactApplicationContext;
-//import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.WritableMap;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_PROXIMITY;
 import static com.happytheapp.react.RNTwilioVoiceSDK.TwilioVoiceSDKModule.TAG;
 
+/*
+ * Turns the screen off while the phone is held against the ear. Readings go through
+ * a ProximityStateMachine and the wake lock only changes on committed state changes.
+ * The sensor is sampled fast while a call is being set up or the state is settling
+ * and backed off once the reading has been stable for a while. Everything but the
+ * start/stop entry points runs on the main looper. The listener and the wake lock
+ * are charged to the ledger for the call owning the sensor, when they are actually
+ * registered or acquired.
+ */
 public class ProximityManager {
 
+    // time the state has to stay unchanged before sampling is backed off
+    public static final long STABLE_BACKOFF_MS = 3000;
+
     private static final String ERROR_PROXIMITY_SENSOR_NOT_SUPPORTED = "Proximity sensor is not supported.";
     private static final String ERROR_PROXIMITY_LOCK_NOT_SUPPORTED = "Proximity lock is not supported.";
 
@@ -31,8 +49,36 @@ public class ProximityManager {
     private WakeLock proximityWakeLock = null;
     private PowerManager powerManager;
 
+    private final EventManager eventManager;
+    private final CallResourceLedger ledger;
+    // call the listener and the wake lock are charged to, main looper only
+    @Nullable private String owner;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ProximityStateMachine stateMachine = new ProximityStateMachine();
+    private volatile boolean eventsEnabled = false;
+    private boolean fastSampling = true;
+    private int samplingDelay = -1;
+
+    private final Runnable debounceTick = new Runnable() {
+        @Override
+        public void run() {
+            if (stateMachine.onTick(SystemClock.uptimeMillis())) {
+                applyState();
+            }
+            updateSampling();
+        }
+    };
 
-    public ProximityManager(ReactApplicationContext context) {
+    private final Runnable backoffCheck = new Runnable() {
+        @Override
+        public void run() {
+            updateSampling();
+        }
+    };
+
+    public ProximityManager(ReactApplicationContext context, EventManager eventManager, CallResourceLedger ledger) {
+        this.eventManager = eventManager;
+        this.ledger = ledger;
         powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
         sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
         proximitySensor = sensorManager.getDefaultSensor(Sensor.TYPE_PROXIMITY);
@@ -72,14 +118,14 @@ public class ProximityManager {
             }
             return;
         }
-        synchronized (proximityWakeLock) {
-            if (proximityWakeLock.isHeld()) {
-                if (BuildConfig.DEBUG) {
-                    Log.d(TAG, "turnScreenOn()");
-                }
-                if (android.os.Build.VERSION.SDK_INT >= 21) {
-                    proximityWakeLock.release(PowerManager.RELEASE_FLAG_WAIT_FOR_NO_PROXIMITY);
-                }
+        // only called on the main looper, no need to synchronize
+        if (proximityWakeLock.isHeld()) {
+            if (BuildConfig.DEBUG) {
+                Log.d(TAG, "turnScreenOn()");
+            }
+            if (android.os.Build.VERSION.SDK_INT >= 21) {
+                proximityWakeLock.release(PowerManager.RELEASE_FLAG_WAIT_FOR_NO_PROXIMITY);
+                ledger.release(owner, CallResourceLedger.PROXIMITY_WAKE_LOCK);
             }
         }
     }
@@ -91,13 +137,12 @@ public class ProximityManager {
             }
             return;
         }
-        synchronized (proximityWakeLock) {
-            if (!proximityWakeLock.isHeld()) {
-                if (BuildConfig.DEBUG) {
-                    Log.d(TAG, "turnScreenOff()");
-                }
-                proximityWakeLock.acquire();
+        if (!proximityWakeLock.isHeld()) {
+            if (BuildConfig.DEBUG) {
+                Log.d(TAG, "turnScreenOff()");
             }
+            proximityWakeLock.acquire();
+            ledger.acquire(owner, CallResourceLedger.PROXIMITY_WAKE_LOCK);
         }
     }
 
@@ -112,17 +157,12 @@ public class ProximityManager {
             @Override
             public void onSensorChanged(SensorEvent sensorEvent) {
                 if (sensorEvent.sensor.getType() == Sensor.TYPE_PROXIMITY) {
-                    boolean isNear = false;
-                    if (sensorEvent.values[0] < proximitySensor.getMaximumRange()) {
-                        isNear = true;
-                    }
-                    if (isNear) {
-                        turnScreenOff();
-                    } else {
-                        turnScreenOn();
+                    long now = SystemClock.uptimeMillis();
+                    if (stateMachine.onReading(sensorEvent.values[0], proximitySensor.getMaximumRange(), now)) {
+                        applyState();
                     }
-//                    WritableMap data = Arguments.createMap();
-//                    data.putBoolean("isNear", isNear);
+                    scheduleDebounceTick();
+                    updateSampling();
                 }
             }
 
@@ -132,26 +172,132 @@ public class ProximityManager {
         };
     }
 
-    public void startProximitySensor() {
+    private void applyState() {
+        boolean isNear = stateMachine.isNear();
+        if (isNear) {
+            turnScreenOff();
+        } else {
+            turnScreenOn();
+        }
+        if (eventsEnabled) {
+            WritableMap data = Arguments.createMap();
+            data.putBoolean("isNear", isNear);
+            eventManager.sendEvent(EVENT_PROXIMITY, data);
+        }
+    }
+
+    private void scheduleDebounceTick() {
+        handler.removeCallbacks(debounceTick);
+        long deadline = stateMachine.pendingDeadline();
+        if (deadline != ProximityStateMachine.NO_DEADLINE) {
+            handler.postAtTime(debounceTick, deadline);
+        }
+    }
+
+    // SENSOR_DELAY_UI(60 ms) while settling, SENSOR_DELAY_NORMAL(200 ms) once stable
+    private void updateSampling() {
+        if (proximityListener == null) {
+            return;
+        }
+        handler.removeCallbacks(backoffCheck);
+        long stableUntil = stateMachine.getStableSince() + STABLE_BACKOFF_MS;
+        boolean settling = stateMachine.isPending() || SystemClock.uptimeMillis() < stableUntil;
+        int delay = fastSampling || settling ? SensorManager.SENSOR_DELAY_UI : SensorManager.SENSOR_DELAY_NORMAL;
+        if (!fastSampling && settling && !stateMachine.isPending()) {
+            handler.postAtTime(backoffCheck, stableUntil);
+        }
+        if (delay == samplingDelay) {
+            return;
+        }
+        if (BuildConfig.DEBUG) {
+            Log.d(TAG, "register proximity listener with delay "+delay);
+        }
+        if (samplingDelay != -1) {
+            sensorManager.unregisterListener(proximityListener);
+        }
+        samplingDelay = delay;
+        sensorManager.registerListener(proximityListener, proximitySensor, delay, handler);
+    }
+
+    /*
+     * Fast sampling is meant for the time the call is ringing or connecting
+     */
+    public void setFastSampling(final boolean fast) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                fastSampling = fast;
+                updateSampling();
+            }
+        });
+    }
+
+    public void setEventsEnabled(boolean enabled) {
+        eventsEnabled = enabled;
+    }
+
+    public void configure(final float nearThreshold, final float farThreshold,
+                          final long nearDebounceMs, final long farDebounceMs) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                stateMachine.configure(nearThreshold, farThreshold, nearDebounceMs, farDebounceMs);
+            }
+        });
+    }
+
+    /*
+     * Already running for another call, the sensor is handed over to this one
+     */
+    public void startProximitySensor(@Nullable final String handle) {
         if (proximitySensor == null) {
             Log.e(TAG, ERROR_PROXIMITY_SENSOR_NOT_SUPPORTED);
             return;
         }
-        initProximitySensorEventListener();
-        if (proximityListener != null) {
-            if (BuildConfig.DEBUG) {
-                Log.d(TAG, "register proximity listener");
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (proximityListener != null) {
+                    moveCharges(handle);
+                    return;
+                }
+                owner = handle;
+                initProximitySensorEventListener();
+                stateMachine.reset(SystemClock.uptimeMillis());
+                samplingDelay = -1;
+                fastSampling = true;
+                updateSampling();
+                ledger.acquire(owner, CallResourceLedger.PROXIMITY_LISTENER);
+            }
+        });
+    }
+
+    /*
+     * The owning call ended while others are left, what it held goes on with the next
+     */
+    public void setOwner(@Nullable final String handle) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                moveCharges(handle);
             }
-            // SensorManager.SENSOR_DELAY_FASTEST(0 ms),
-            // SensorManager.SENSOR_DELAY_GAME(20 ms),
-            // SensorManager.SENSOR_DELAY_UI(60 ms),
-            // SensorManager.SENSOR_DELAY_NORMAL(200 ms)
-            sensorManager.registerListener(
-                    proximityListener,
-                    proximitySensor,
-                    SensorManager.SENSOR_DELAY_NORMAL
-            );
+        });
+    }
+
+    private void moveCharges(@Nullable String handle) {
+        if (handle == null || handle.equals(owner)) {
+            return;
+        }
+        int charged = 0;
+        if (proximityListener != null) {
+            charged |= CallResourceLedger.PROXIMITY_LISTENER;
         }
+        if (proximityWakeLock != null && proximityWakeLock.isHeld()) {
+            charged |= CallResourceLedger.PROXIMITY_WAKE_LOCK;
+        }
+        ledger.release(owner, charged);
+        owner = handle;
+        ledger.acquire(owner, charged);
     }
 
     public void stopProximitySensor() {
@@ -159,12 +305,49 @@ public class ProximityManager {
             Log.e(TAG, ERROR_PROXIMITY_SENSOR_NOT_SUPPORTED);
             return;
         }
-        if (proximityListener != null) {
-            if (BuildConfig.DEBUG) {
-                Log.d(TAG, "unregister proximity listener");
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                handler.removeCallbacks(debounceTick);
+                handler.removeCallbacks(backoffCheck);
+                if (proximityListener != null) {
+                    if (BuildConfig.DEBUG) {
+                        Log.d(TAG, "unregister proximity listener");
+                    }
+                    sensorManager.unregisterListener(proximityListener);
+                    proximityListener = null;
+                    samplingDelay = -1;
+                    ledger.release(owner, CallResourceLedger.PROXIMITY_LISTENER);
+                }
+                // never leave the screen off once the sensor is stopped
+                turnScreenOn();
+                owner = null;
             }
-            sensorManager.unregisterListener(proximityListener);
-            proximityListener = null;
-        }
+        });
+    }
+
+    /*
+     * Once no call is left, after stopProximitySensor: force releases the sensor
+     * listener or the wake lock still held, the ended calls they weren't confirmed
+     * given back for are reported as leaking them
+     */
+    public void releaseLeaks() {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (proximityListener != null) {
+                    handler.removeCallbacks(debounceTick);
+                    handler.removeCallbacks(backoffCheck);
+                    sensorManager.unregisterListener(proximityListener);
+                    proximityListener = null;
+                    samplingDelay = -1;
+                }
+                if (proximityWakeLock != null && proximityWakeLock.isHeld()) {
+                    proximityWakeLock.release();
+                }
+                owner = null;
+                ledger.reportLeaks(CallResourceLedger.PROXIMITY_LISTENER | CallResourceLedger.PROXIMITY_WAKE_LOCK);
+            }
+        });
     }
-}
\ No newline at end of file
+}
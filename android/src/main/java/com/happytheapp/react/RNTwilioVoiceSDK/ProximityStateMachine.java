@@ -0,0 +1,106 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+/*
+ * Turns raw proximity readings into near/far state changes. By default a reading
+ * below the sensor maximum range is near, as the sensor reports it. Hysteresis is
+ * opt-in: readings between the near and far thresholds keep the current state and
+ * a new state is only committed once it has been seen for the whole debounce
+ * window, so sensor jitter doesn't flip the screen on and off.
+ */
+public class ProximityStateMachine {
+
+    // thresholds as a fraction of the sensor maximum range, no band and no debounce by default
+    public static final float DEFAULT_NEAR_THRESHOLD = 1f;
+    public static final float DEFAULT_FAR_THRESHOLD = 1f;
+    public static final long DEFAULT_NEAR_DEBOUNCE_MS = 0;
+    public static final long DEFAULT_FAR_DEBOUNCE_MS = 0;
+
+    public static final long NO_DEADLINE = -1;
+
+    private float nearThreshold = DEFAULT_NEAR_THRESHOLD;
+    private float farThreshold = DEFAULT_FAR_THRESHOLD;
+    private long nearDebounceMs = DEFAULT_NEAR_DEBOUNCE_MS;
+    private long farDebounceMs = DEFAULT_FAR_DEBOUNCE_MS;
+
+    private boolean near = false;
+    private boolean candidateNear = false;
+    private long candidateSince = NO_DEADLINE;
+    private long stableSince = 0;
+    private int transitions = 0;
+
+    public void configure(float nearThreshold, float farThreshold, long nearDebounceMs, long farDebounceMs) {
+        this.nearThreshold = nearThreshold;
+        // the far threshold can't be below the near one
+        this.farThreshold = Math.max(nearThreshold, farThreshold);
+        this.nearDebounceMs = Math.max(0, nearDebounceMs);
+        this.farDebounceMs = Math.max(0, farDebounceMs);
+    }
+
+    public void reset(long nowMs) {
+        near = false;
+        candidateSince = NO_DEADLINE;
+        stableSince = nowMs;
+    }
+
+    /*
+     * Feeds a reading, true when the committed state changed
+     */
+    public boolean onReading(float value, float maxRange, long nowMs) {
+        boolean readingNear;
+        if (value < maxRange * nearThreshold) {
+            readingNear = true;
+        } else if (value >= maxRange * farThreshold) {
+            readingNear = false;
+        } else {
+            // inside the hysteresis band, nothing to decide
+            return false;
+        }
+        if (readingNear == near) {
+            candidateSince = NO_DEADLINE;
+            return false;
+        }
+        if (candidateSince == NO_DEADLINE || candidateNear != readingNear) {
+            candidateNear = readingNear;
+            candidateSince = nowMs;
+        }
+        return onTick(nowMs);
+    }
+
+    /*
+     * Commits the pending state once its debounce window has elapsed
+     */
+    public boolean onTick(long nowMs) {
+        long deadline = pendingDeadline();
+        if (deadline == NO_DEADLINE || nowMs < deadline) {
+            return false;
+        }
+        near = candidateNear;
+        candidateSince = NO_DEADLINE;
+        stableSince = nowMs;
+        transitions++;
+        return true;
+    }
+
+    public long pendingDeadline() {
+        if (candidateSince == NO_DEADLINE) {
+            return NO_DEADLINE;
+        }
+        return candidateSince + (candidateNear ? nearDebounceMs : farDebounceMs);
+    }
+
+    public boolean isNear() {
+        return near;
+    }
+
+    public boolean isPending() {
+        return candidateSince != NO_DEADLINE;
+    }
+
+    public long getStableSince() {
+        return stableSince;
+    }
+
+    public int getTransitions() {
+        return transitions;
+    }
+}
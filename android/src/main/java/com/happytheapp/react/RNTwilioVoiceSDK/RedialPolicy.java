@@ -0,0 +1,90 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import java.util.Random;
+
+/*
+ * Decides whether a call that failed or dropped because of the network is dialled
+ * again and how long to wait before. Delays grow exponentially from baseDelayMs up
+ * to maxDelayMs, a random part of each delay (jitter) spreads the redials of many
+ * clients losing the same network.
+ */
+public class RedialPolicy {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_BASE_DELAY_MS = 500;
+    public static final long DEFAULT_MAX_DELAY_MS = 8000;
+    public static final double DEFAULT_JITTER = 0.5;
+    public static final long DEFAULT_NETWORK_TIMEOUT_MS = 30 * 1000;
+
+    // signalling and media errors caused by the network, the others (auth, busy, declined...) are final
+    private static final int[] RETRYABLE_ERROR_CODES = {
+            31003, // connection timeout
+            31005, // connection error, the gateway hung up
+            31009, // transport error
+            53000, // signalling connection error
+            53001, // signalling connection disconnected
+            53405, // media connection failed
+    };
+
+    private final Random random;
+    private boolean enabled = false;
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private long baseDelayMs = DEFAULT_BASE_DELAY_MS;
+    private long maxDelayMs = DEFAULT_MAX_DELAY_MS;
+    private double jitter = DEFAULT_JITTER;
+    private long networkTimeoutMs = DEFAULT_NETWORK_TIMEOUT_MS;
+
+    public RedialPolicy() {
+        this(new Random());
+    }
+
+    public RedialPolicy(Random random) {
+        this.random = random;
+    }
+
+    public synchronized void configure(boolean enabled, int maxAttempts, long baseDelayMs, long maxDelayMs,
+                                       double jitter, long networkTimeoutMs) {
+        this.enabled = enabled;
+        this.maxAttempts = Math.max(0, maxAttempts);
+        this.baseDelayMs = Math.max(0, baseDelayMs);
+        this.maxDelayMs = Math.max(this.baseDelayMs, maxDelayMs);
+        this.jitter = Math.max(0, Math.min(1, jitter));
+        this.networkTimeoutMs = Math.max(0, networkTimeoutMs);
+    }
+
+    public synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    public static boolean isRetryable(int errorCode) {
+        for (int code : RETRYABLE_ERROR_CODES) {
+            if (code == errorCode) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * attempt is the number of redials already made for the call
+     */
+    public synchronized boolean shouldRedial(int errorCode, int attempt) {
+        return enabled && attempt < maxAttempts && isRetryable(errorCode);
+    }
+
+    /*
+     * Delay before the redial following attempt redials, baseDelayMs * 2^attempt
+     * capped at maxDelayMs and reduced by up to jitter of its value
+     */
+    public synchronized long delayMs(int attempt) {
+        long delay = maxDelayMs;
+        if (attempt < 31 && baseDelayMs <= maxDelayMs >> attempt) {
+            delay = baseDelayMs << attempt;
+        }
+        return (long) (delay * (1 - jitter * random.nextDouble()));
+    }
+
+    public synchronized long getNetworkTimeoutMs() {
+        return networkTimeoutMs;
+    }
+}
@@ -0,0 +1,112 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+/*
+ * Fixed-size ring of stats samples, one primitive column per metric. Adding a
+ * sample never allocates, the oldest sample is overwritten once the ring is full.
+ * Not thread safe, the sampler guards it.
+ */
+public class StatsRing {
+
+    public static final int JITTER = 0;
+    public static final int RTT = 1;
+    public static final int PACKET_LOSS = 2;
+    public static final int AUDIO_LEVEL = 3;
+    public static final int MOS = 4;
+
+    private static final String[] NAMES = { "jitter", "rtt", "packetLoss", "audioLevel", "mos" };
+
+    private final int capacity;
+    private final double[] timestamps;
+    private final float[][] columns;
+    private int head = 0;
+    private int size = 0;
+    // samples added since the last markSent()
+    private int unsent = 0;
+
+    public StatsRing(int capacity) {
+        this.capacity = capacity;
+        timestamps = new double[capacity];
+        columns = new float[NAMES.length][capacity];
+    }
+
+    public void add(double timestamp, float jitter, float rtt, float packetLoss, float audioLevel, float mos) {
+        int i = head;
+        timestamps[i] = timestamp;
+        columns[JITTER][i] = jitter;
+        columns[RTT][i] = rtt;
+        columns[PACKET_LOSS][i] = packetLoss;
+        columns[AUDIO_LEVEL][i] = audioLevel;
+        columns[MOS][i] = mos;
+        head = (head + 1) % capacity;
+        if (size < capacity) {
+            size++;
+        }
+        unsent = Math.min(unsent + 1, capacity);
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+        unsent = 0;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int unsent() {
+        return unsent;
+    }
+
+    public void markSent() {
+        unsent = 0;
+    }
+
+    /*
+     * Sample n of the ring, 0 being the oldest one kept
+     */
+    public double getTimestamp(int n) {
+        return timestamps[index(n, size)];
+    }
+
+    public float get(int metric, int n) {
+        return columns[metric][index(n, size)];
+    }
+
+    /*
+     * Columnar map with the newest count samples, oldest first
+     */
+    public WritableMap toMap(int count) {
+        WritableMap params = Arguments.createMap();
+        WritableArray timestampValues = Arguments.createArray();
+        for (int n = 0; n < count; n++) {
+            timestampValues.pushDouble(timestamps[index(n, count)]);
+        }
+        params.putArray("timestamp", timestampValues);
+        for (int metric = 0; metric < NAMES.length; metric++) {
+            WritableArray values = Arguments.createArray();
+            for (int n = 0; n < count; n++) {
+                values.pushDouble(columns[metric][index(n, count)]);
+            }
+            params.putArray(NAMES[metric], values);
+        }
+        return params;
+    }
+
+    // slot of sample n among the newest count samples
+    private int index(int n, int count) {
+        int start = head - count;
+        if (start < 0) {
+            start += capacity;
+        }
+        return (start + n) % capacity;
+    }
+}
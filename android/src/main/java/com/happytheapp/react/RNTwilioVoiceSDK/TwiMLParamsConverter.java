@@ -0,0 +1,70 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.util.Log;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+
+import static com.happytheapp.react.RNTwilioVoiceSDK.TwilioVoiceSDKModule.TAG;
+
+/*
+ * Converts the params passed to connect() into the String map expected by TwiML.
+ * The ReadableMap is read in a single pass, each value straight into the String
+ * map without a boxed intermediate map.
+ */
+public final class TwiMLParamsConverter {
+
+    // doubles above this can't hold every integer exactly
+    private static final double MAX_EXACT_INTEGER = 9007199254740992.0;
+    // JS switches to the exponent notation from there
+    private static final double MAX_PLAIN_INTEGER = 1e21;
+
+    private TwiMLParamsConverter() { }
+
+    public static HashMap<String, String> convert(ReadableMap params) {
+        // ConnectOptions keeps a reference to the map, so it can't be reused between calls
+        HashMap<String, String> twiMLParams = new HashMap<>();
+        if (params == null) {
+            return twiMLParams;
+        }
+        ReadableMapKeySetIterator keys = params.keySetIterator();
+        while (keys.hasNextKey()) {
+            String key = keys.nextKey();
+            switch (params.getType(key)) {
+                case Null:
+                    twiMLParams.put(key, "");
+                    break;
+                case String:
+                    twiMLParams.put(key, params.getString(key));
+                    break;
+                case Number:
+                    twiMLParams.put(key, formatNumber(params.getDouble(key)));
+                    break;
+                case Boolean:
+                    twiMLParams.put(key, params.getBoolean(key) ? "true" : "false");
+                    break;
+                default:
+                    Log.d(TAG, "Could not convert with key: " + key + ".");
+                    break;
+            }
+        }
+        return twiMLParams;
+    }
+
+    /*
+     * JS numbers arrive as doubles, integers are formatted like JS does: without the
+     * trailing ".0" and past 2^53 with the shortest digits padded with zeros
+     */
+    public static String formatNumber(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < MAX_PLAIN_INTEGER) {
+            if (Math.abs(value) <= MAX_EXACT_INTEGER) {
+                return Long.toString((long) value);
+            }
+            return BigDecimal.valueOf(value).toPlainString();
+        }
+        return Double.toString(value);
+    }
+}
@@ -0,0 +1,144 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.twilio.voice.Call;
+import com.twilio.voice.CallException;
+import com.twilio.voice.CallInvite;
+import com.twilio.voice.ConnectOptions;
+import com.twilio.voice.LogLevel;
+import com.twilio.voice.StatsListener;
+import com.twilio.voice.Voice;
+
+/*
+ * The Twilio Voice SDK behind the VoiceBackend interface
+ */
+public class TwilioVoiceBackend implements VoiceBackend {
+
+    @Override
+    public String getVersion() {
+        return Voice.getVersion();
+    }
+
+    @Override
+    public void setLogLevel(LogLevel level) {
+        Voice.setLogLevel(level);
+    }
+
+    @Override
+    public VoiceCall connect(Context context, ConnectOptions connectOptions, VoiceCall.Listener listener) {
+        TwilioVoiceCall call = new TwilioVoiceCall(listener);
+        call.call = Voice.connect(context, connectOptions, call);
+        return call;
+    }
+
+    @Override
+    public VoiceCall accept(Context context, CallInvite callInvite, VoiceCall.Listener listener) {
+        TwilioVoiceCall call = new TwilioVoiceCall(listener);
+        call.call = callInvite.accept(context, call);
+        return call;
+    }
+
+    /*
+     * Wraps the Call and reports its callbacks with the wrapper, so the module
+     * always sees the same VoiceCall instance for a Call
+     */
+    private static class TwilioVoiceCall implements VoiceCall, Call.Listener {
+
+        private final VoiceCall.Listener listener;
+        // set as soon as the SDK returns it, the callbacks only come later on this thread
+        private Call call;
+
+        TwilioVoiceCall(VoiceCall.Listener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void onConnectFailure(@NonNull Call call, @NonNull CallException error) {
+            listener.onConnectFailure(this, error);
+        }
+
+        @Override
+        public void onRinging(@NonNull Call call) {
+            listener.onRinging(this);
+        }
+
+        @Override
+        public void onConnected(@NonNull Call call) {
+            listener.onConnected(this);
+        }
+
+        @Override
+        public void onReconnecting(@NonNull Call call, @NonNull CallException error) {
+            listener.onReconnecting(this, error);
+        }
+
+        @Override
+        public void onReconnected(@NonNull Call call) {
+            listener.onReconnected(this);
+        }
+
+        @Override
+        public void onDisconnected(@NonNull Call call, @Nullable CallException error) {
+            listener.onDisconnected(this, error);
+        }
+
+        @Override
+        public String getSid() {
+            return call.getSid();
+        }
+
+        @Override
+        public String getFrom() {
+            return call.getFrom();
+        }
+
+        @Override
+        public String getTo() {
+            return call.getTo();
+        }
+
+        @Override
+        public Call.State getState() {
+            return call.getState();
+        }
+
+        @Override
+        public void mute(boolean mute) {
+            call.mute(mute);
+        }
+
+        @Override
+        public boolean isMuted() {
+            return call.isMuted();
+        }
+
+        @Override
+        public void hold(boolean hold) {
+            call.hold(hold);
+        }
+
+        @Override
+        public boolean isOnHold() {
+            return call.isOnHold();
+        }
+
+        @Override
+        public void sendDigits(String digits) {
+            call.sendDigits(digits);
+        }
+
+        @Override
+        public void disconnect() {
+            call.disconnect();
+        }
+
+        @Override
+        public boolean getStats(StatsListener listener) {
+            return call.getStats(listener);
+        }
+    }
+}
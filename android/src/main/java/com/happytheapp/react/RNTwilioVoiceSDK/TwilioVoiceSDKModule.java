@@ -5,13 +5,15 @@ import android.media.AudioManager;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.facebook.react.bridge.LifecycleEventListener;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
 
 import com.facebook.react.bridge.Arguments;
-import com.facebook.react.bridge.ReadableMapKeySetIterator;
-import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 
 import com.facebook.react.bridge.ReactApplicationContext;
@@ -19,13 +21,20 @@ import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 
-import com.twilio.voice.Call;
+import com.twilio.voice.AudioCodec;
 import com.twilio.voice.CallException;
+import com.twilio.voice.CallInvite;
+import com.twilio.voice.CancelledCallInvite;
 import com.twilio.voice.ConnectOptions;
 import com.twilio.voice.LogLevel;
-import com.twilio.voice.Voice;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_RINGING;
 import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_CONNECTED;
@@ -33,34 +42,280 @@ import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_CONNECT_
 import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_RECONNECTING;
 import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_RECONNECTED;
 import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_DISCONNECTED;
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_INCOMING;
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_CANCEL;
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_TOKEN_REFRESH_NEEDED;
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_PREFLIGHT_WARNING;
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_RETRY;
 
 
-public class TwilioVoiceSDKModule extends ReactContextBaseJavaModule implements LifecycleEventListener {
+public class TwilioVoiceSDKModule extends ReactContextBaseJavaModule implements LifecycleEventListener, IncomingCallHandler.Listener {
 
     public static String TAG = "RNTwilioVoiceSDK";
 
-    private Call.Listener callListener = callListener();
-    private Call activeCall;
-    private AudioFocusManager audioFocusManager;
-    private ProximityManager proximityManager;
-    private EventManager eventManager;
+    private CallActor callActor = new CallActor();
+    private final VoiceBackend voiceBackend;
+    private CallRegistry callRegistry;
+    private AccessTokenStore tokenStore;
+    private CallMetrics callMetrics = new CallMetrics();
+    private RedialPolicy redialPolicy = new RedialPolicy();
+    private CallJournal journal;
+    private boolean voiceInitialized = false;
+    // the SDK logs to logcat only, kept quieter than the native log in release builds
+    private LogLevel voiceLogLevel = BuildConfig.DEBUG ? LogLevel.DEBUG : LogLevel.ERROR;
+
+    // built on first use, see the lazy getters
+    private volatile EventManager eventManager;
+    private volatile AudioRouteManager audioRouteManager;
+    private volatile ProximityManager proximityManager;
+    private volatile CallStatsSampler statsSampler;
+    private volatile CallQualityEngine qualityEngine;
+    private volatile ConnectivityMonitor connectivityMonitor;
+    private volatile CodecPolicy codecPolicy;
+    private volatile EdgeSelector edgeSelector;
+    private volatile DtmfScheduler dtmfScheduler;
+    private volatile PreflightTester preflightTester;
+    private final CallPayloads callPayloads = new CallPayloads();
+    private final CallResourceLedger resourceLedger = new CallResourceLedger();
+    // foreground service while the app is in the background, off by default
+    private volatile boolean backgroundServiceEnabled = false;
+    private volatile boolean keepCallOnHostDestroy = false;
+    private volatile String notificationTitle;
+    private volatile String notificationText;
+    // only touched on the call actor thread
+    private boolean callServiceStarted = false;
+    // codec picked for each outgoing call, only touched on the call actor thread
+    private final HashMap<String, CodecPolicy.Choice> codecChoices = new HashMap<>();
+    // outgoing calls that can be dialled again, only touched on the call actor thread
+    private final HashMap<String, Redial> redials = new HashMap<>();
+    // calls put on hold while another app has the audio focus, only touched on the call actor thread
+    private final HashSet<String> heldForFocus = new HashSet<>();
+
+    private static class Redial {
+        final ConnectOptions connectOptions;
+        int attempts = 0;
+        VoiceCall lastCall;
+        CallException lastError;
+        // the scheduled redial, or the give up timer while waiting for the network
+        Runnable pending;
+        boolean waitingForNetwork = false;
+
+        Redial(ConnectOptions connectOptions) {
+            this.connectOptions = connectOptions;
+        }
+    }
 
+    /*
+     * Only what every code path needs is built here, the managers are created on
+     * first use so an app that never places a call doesn't pay for them at startup
+     */
     public TwilioVoiceSDKModule(ReactApplicationContext reactContext) {
+        this(reactContext, new TwilioVoiceBackend());
+    }
+
+    /*
+     * The backend replaces the Twilio SDK, e.g. with the scripted calls of the unit tests
+     */
+    public TwilioVoiceSDKModule(ReactApplicationContext reactContext, VoiceBackend voiceBackend) {
         super(reactContext);
-        if (BuildConfig.DEBUG) {
-            Voice.setLogLevel(LogLevel.DEBUG);
-        } else {
-            Voice.setLogLevel(LogLevel.ERROR);
-        }
+        long start = System.nanoTime();
+        this.voiceBackend = voiceBackend;
         reactContext.addLifecycleEventListener(this);
 
-        eventManager = new EventManager(reactContext);
-        audioFocusManager = new AudioFocusManager(reactContext);
-        proximityManager = new ProximityManager(reactContext);
+        journal = new CallJournal(new File(reactContext.getFilesDir(), CallJournal.FILE_NAME));
+        callRegistry = new CallRegistry(journal);
+        // the file is mapped on the actor, the first message it runs, never on the bridge thread
+        callActor.post(new Runnable() {
+            @Override
+            public void run() {
+                journal.open();
+            }
+        });
+        IncomingCallHandler.getInstance().setListener(this);
+        tokenStore = new AccessTokenStore(callActor.getHandler(), new AccessTokenStore.Listener() {
+            @Override
+            public void onRefreshNeeded(String identity, long expiresAt) {
+                WritableMap params = Arguments.createMap();
+                params.putString("identity", identity);
+                params.putDouble("expiresAt", expiresAt);
+                eventManager().sendEvent(EVENT_TOKEN_REFRESH_NEEDED, params);
+            }
+        });
+        callMetrics.recordInit("module", System.nanoTime() - start);
+    }
+
+    /*
+     * Loads the Twilio native library on a background thread, so the first connect
+     * doesn't pay for it
+     */
+    public void warmUp() {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                initVoice();
+                voiceBackend.getVersion();
+                callMetrics.recordInit("warmUp", System.nanoTime() - start);
+            }
+        }, TAG + "-warmup");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    // region lazy managers
+    private synchronized void initVoice() {
+        if (voiceInitialized) {
+            return;
+        }
+        long start = System.nanoTime();
+        voiceBackend.setLogLevel(voiceLogLevel);
+        voiceInitialized = true;
+        callMetrics.recordInit("voice", System.nanoTime() - start);
+    }
+
+    private synchronized EventManager eventManager() {
+        if (eventManager == null) {
+            long start = System.nanoTime();
+            eventManager = new EventManager(getReactApplicationContext());
+            callMetrics.recordInit("eventManager", System.nanoTime() - start);
+        }
+        return eventManager;
+    }
+
+    private synchronized AudioRouteManager audioRouteManager() {
+        if (audioRouteManager == null) {
+            long start = System.nanoTime();
+            audioRouteManager = new AudioRouteManager(getReactApplicationContext(), eventManager(), resourceLedger);
+            audioRouteManager.setFocusListener(new AudioRouteManager.FocusListener() {
+                @Override
+                public void onPauseCalls() {
+                    callActor.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            holdCallsForFocus(true);
+                        }
+                    });
+                }
+
+                @Override
+                public void onResumeCalls() {
+                    callActor.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            holdCallsForFocus(false);
+                        }
+                    });
+                }
+            });
+            callMetrics.recordInit("audioRouteManager", System.nanoTime() - start);
+        }
+        return audioRouteManager;
+    }
+
+    private synchronized ProximityManager proximityManager() {
+        if (proximityManager == null) {
+            long start = System.nanoTime();
+            proximityManager = new ProximityManager(getReactApplicationContext(), eventManager(), resourceLedger);
+            callMetrics.recordInit("proximityManager", System.nanoTime() - start);
+        }
+        return proximityManager;
+    }
+
+    private synchronized CallStatsSampler statsSampler() {
+        if (statsSampler == null) {
+            long start = System.nanoTime();
+            qualityEngine = new CallQualityEngine(eventManager());
+            statsSampler = new CallStatsSampler(eventManager());
+            statsSampler.setSampleListener(qualityEngine);
+            callMetrics.recordInit("statsSampler", System.nanoTime() - start);
+        }
+        return statsSampler;
+    }
+
+    private synchronized CallQualityEngine qualityEngine() {
+        statsSampler();
+        return qualityEngine;
+    }
+
+    private synchronized ConnectivityMonitor connectivityMonitor() {
+        if (connectivityMonitor == null) {
+            long start = System.nanoTime();
+            connectivityMonitor = new ConnectivityMonitor(getReactApplicationContext());
+            connectivityMonitor.setListener(new ConnectivityMonitor.Listener() {
+                @Override
+                public void onNetworkAvailable() {
+                    callActor.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            redialWaitingCalls();
+                            EdgeSelector edges = edgeSelector;
+                            if (edges != null) {
+                                edges.refresh(connectivityMonitor().getNetworkKey());
+                            }
+                        }
+                    });
+                }
+
+                @Override
+                public void onNetworkLost() {
+                }
+            });
+            callMetrics.recordInit("connectivityMonitor", System.nanoTime() - start);
+        }
+        return connectivityMonitor;
+    }
+
+    private synchronized CodecPolicy codecPolicy() {
+        if (codecPolicy == null) {
+            codecPolicy = new CodecPolicy(connectivityMonitor());
+        }
+        return codecPolicy;
+    }
+
+    // only built once edge selection is configured, a null selector means disabled
+    private synchronized EdgeSelector edgeSelector() {
+        if (edgeSelector == null) {
+            long start = System.nanoTime();
+            edgeSelector = new EdgeSelector();
+            callMetrics.recordInit("edgeSelector", System.nanoTime() - start);
+        }
+        return edgeSelector;
+    }
 
+    // only built once preflight is configured or run, a null tester means no gating
+    private synchronized PreflightTester preflightTester() {
+        if (preflightTester == null) {
+            long start = System.nanoTime();
+            preflightTester = new PreflightTester();
+            callMetrics.recordInit("preflightTester", System.nanoTime() - start);
+        }
+        return preflightTester;
     }
 
+    private synchronized DtmfScheduler dtmfScheduler() {
+        if (dtmfScheduler == null) {
+            long start = System.nanoTime();
+            dtmfScheduler = new DtmfScheduler(callActor, eventManager());
+            callMetrics.recordInit("dtmfScheduler", System.nanoTime() - start);
+        }
+        return dtmfScheduler;
+    }
+    // endregion
+
     // region Lifecycle Event Listener
+
+    /*
+     * The Catalyst instance is up, the events queued before it are replayed
+     */
+    @Override
+    public void initialize() {
+        super.initialize();
+        EventManager events = eventManager;
+        if (events != null) {
+            events.flush();
+        }
+    }
+
     @Override
     public void onHostResume() {
         /*
@@ -69,18 +324,109 @@ public class TwilioVoiceSDKModule extends ReactContextBaseJavaModule implements
         if(getCurrentActivity() != null ) {
             getCurrentActivity().setVolumeControlStream(AudioManager.STREAM_VOICE_CALL);
         }
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // the app owns the calls again
+                stopCallService();
+                // on the actor like the pause, so a pause then a resume always end up not held.
+                // Replays the events queued while JS was not available or held in the background
+                EventManager events = eventManager;
+                if (events != null) {
+                    events.setHeld(false);
+                    resourceLedger.releaseAll(CallResourceLedger.HELD_EVENTS);
+                }
+            }
+        });
     }
 
     @Override
     public void onHostPause() {
-        // the library needs to listen for events even when the app is paused
-//        unregisterReceiver();
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!backgroundServiceEnabled || callRegistry.isEmpty()) {
+                    return;
+                }
+                // started while the app is still visible, a later start would be refused on Android 12+
+                startCallService();
+                EventManager events = eventManager;
+                if (events != null) {
+                    events.setHeld(true);
+                    resourceLedger.acquire(callRegistry.getActiveHandle(), CallResourceLedger.HELD_EVENTS);
+                }
+            }
+        });
     }
 
     @Override
     public void onHostDestroy() {
-        disconnect();
-        audioFocusManager.unsetAudioFocus();
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (callServiceStarted && keepCallOnHostDestroy && !callRegistry.isEmpty()) {
+                    // the service keeps the calls until they end or the app comes back
+                    return;
+                }
+                disconnectAll();
+                releaseCallResources(null);
+            }
+        });
+    }
+
+    /*
+     * The JS instance is gone, e.g. on a reload: the calls are ended, then every
+     * thread started by the module stops once the releases queued on it are done
+     */
+    @Override
+    public void onCatalystInstanceDestroy() {
+        super.onCatalystInstanceDestroy();
+        // a push from now on must not reach the dead context
+        IncomingCallHandler.getInstance().clearListener(this);
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                disconnectAll();
+                releaseCallResources(null);
+                quitManagers();
+                callActor.quit();
+            }
+        });
+    }
+
+    private synchronized void quitManagers() {
+        if (statsSampler != null) {
+            statsSampler.quit();
+        }
+        if (audioRouteManager != null) {
+            audioRouteManager.quit();
+        }
+        if (edgeSelector != null) {
+            edgeSelector.quit();
+        }
+        if (preflightTester != null) {
+            preflightTester.quit();
+        }
+        if (connectivityMonitor != null) {
+            connectivityMonitor.stop();
+        }
+        if (eventManager != null) {
+            eventManager.quit();
+        }
+    }
+
+    private void startCallService() {
+        if (!callServiceStarted) {
+            CallForegroundService.start(getReactApplicationContext(), notificationTitle, notificationText);
+            callServiceStarted = true;
+        }
+    }
+
+    private void stopCallService() {
+        if (callServiceStarted) {
+            CallForegroundService.stop(getReactApplicationContext());
+            callServiceStarted = false;
+        }
     }
     // endregion
 
@@ -90,202 +436,1107 @@ public class TwilioVoiceSDKModule extends ReactContextBaseJavaModule implements
     }
 
 
-    private Call.Listener callListener() {
-        return new Call.Listener() {
+    private VoiceCall.Listener callListener(final String handle) {
+        // calls are created on the actor thread, so are their callbacks
+        return new VoiceCall.Listener() {
             @Override
-            public void onConnected(@NonNull Call call) {
-                if (BuildConfig.DEBUG) {
-                    Log.d(TAG, "CALL CONNECTED callListener().onConnected call state = "+call.getState());
+            public void onConnected(@NonNull VoiceCall call) {
+                NativeLog.d(NativeLog.CODE_CALLBACK, handle, "onConnected", 0);
+                if (isReplaced(handle, call) || !callRegistry.transition(handle, CallStateMachine.State.CONNECTED)) {
+                    return;
                 }
-                activeCall = call;
-                eventManager.sendEvent(EVENT_CONNECTED, paramsFromCall(call));
+                callMetrics.markConnected(handle);
+                WritableMap params = eventParams(handle, call, null, false);
+                CodecPolicy.Choice codecChoice = codecChoices.get(handle);
+                if (codecChoice != null) {
+                    params.putMap("codec", codecChoice.toMap());
+                }
+                Redial redial = redials.get(handle);
+                if (redial != null) {
+                    // a later drop gets the whole set of attempts again
+                    redial.attempts = 0;
+                }
+                callRegistry.put(handle, call);
+                proximityManager().setFastSampling(false);
+                qualityEngine().reset(handle);
+                statsSampler().start(handle, call);
+                if (dtmfScheduler != null) {
+                    dtmfScheduler.start(handle, call);
+                }
+                eventManager().sendEvent(EVENT_CONNECTED, params);
             }
 
             @Override
-            public void onReconnecting(@NonNull Call call, @NonNull CallException error) {
-                if (BuildConfig.DEBUG) {
-                    Log.d(TAG, "reconnecting");
+            public void onReconnecting(@NonNull VoiceCall call, @NonNull CallException error) {
+                NativeLog.d(NativeLog.CODE_CALLBACK, handle, "onReconnecting", 0);
+                if (isReplaced(handle, call) || !callRegistry.transition(handle, CallStateMachine.State.RECONNECTING)) {
+                    return;
                 }
-                activeCall = call;
-                eventManager.sendEvent(EVENT_RECONNECTING, paramsWithError(call, error));
+                callMetrics.markReconnecting(handle);
+                if (dtmfScheduler != null) {
+                    dtmfScheduler.pause(handle);
+                }
+                eventManager().sendEvent(EVENT_RECONNECTING, eventParams(handle, call, error, false));
             }
 
             @Override
-            public void onReconnected(@NonNull Call call) {
-                if (BuildConfig.DEBUG) {
-                    Log.d(TAG, "reconnected");
+            public void onReconnected(@NonNull VoiceCall call) {
+                NativeLog.d(NativeLog.CODE_CALLBACK, handle, "onReconnected", 0);
+                if (isReplaced(handle, call) || !callRegistry.transition(handle, CallStateMachine.State.CONNECTED)) {
+                    return;
+                }
+                callMetrics.markReconnected(handle);
+                if (dtmfScheduler != null) {
+                    dtmfScheduler.start(handle, call);
                 }
-                activeCall = call;
-                eventManager.sendEvent(EVENT_RECONNECTED, paramsFromCall(call));
+                eventManager().sendEvent(EVENT_RECONNECTED, eventParams(handle, call, null, false));
             }
 
             @Override
-            public void onDisconnected(@NonNull Call call, CallException error) {
-                if (BuildConfig.DEBUG) {
-                    Log.d(TAG, "call disconnected");
+            public void onDisconnected(@NonNull VoiceCall call, CallException error) {
+                NativeLog.d(NativeLog.CODE_CALLBACK, handle, "onDisconnected", 0);
+                if (isReplaced(handle, call) || (error != null && redial(handle, call, error))) {
+                    return;
+                }
+                // the call may already be gone after a local disconnect, JS still gets the event
+                if (callRegistry.transition(handle, CallStateMachine.State.DISCONNECTED)) {
+                    removeCall(handle);
                 }
-                activeCall = call;
-                audioFocusManager.unsetAudioFocus();
-                eventManager.sendEvent(EVENT_DISCONNECTED, paramsWithError(call, error));
+                eventManager().sendEvent(EVENT_DISCONNECTED, eventParams(handle, call, error, true));
                 call.disconnect();
-                activeCall = null;
             }
 
             @Override
-            public void onConnectFailure(@NonNull Call call, @NonNull CallException error) {
-                if (BuildConfig.DEBUG) {
-                    Log.d(TAG, "connect failure");
+            public void onConnectFailure(@NonNull VoiceCall call, @NonNull CallException error) {
+                NativeLog.d(NativeLog.CODE_CALLBACK, handle, "onConnectFailure", 0);
+                if (isReplaced(handle, call) || redial(handle, call, error)) {
+                    return;
                 }
-                activeCall = call;
-                audioFocusManager.unsetAudioFocus();
-                WritableMap params = paramsWithError(call, error);
+                if (callRegistry.transition(handle, CallStateMachine.State.DISCONNECTED)) {
+                    removeCall(handle);
+                }
+                WritableMap params = eventParams(handle, call, error, true);
                 call.disconnect();
-                activeCall = null;
-                eventManager.sendEvent(EVENT_CONNECT_FAILURE, params);
+                eventManager().sendEvent(EVENT_CONNECT_FAILURE, params);
             }
 
             @Override
-            public void onRinging(@NonNull Call call) {
-                if (BuildConfig.DEBUG) {
-                    Log.d(TAG, "ringing");
+            public void onRinging(@NonNull VoiceCall call) {
+                NativeLog.d(NativeLog.CODE_CALLBACK, handle, "onRinging", 0);
+                if (isReplaced(handle, call) || !callRegistry.transition(handle, CallStateMachine.State.RINGING)) {
+                    return;
                 }
-                activeCall = call;
-                audioFocusManager.setAudioFocus();
-                eventManager.sendEvent(EVENT_RINGING, paramsFromCall(call));
+                callMetrics.markRinging(handle);
+                callRegistry.put(handle, call);
+                audioRouteManager().requestFocus();
+                resourceLedger.acquire(handle, CallResourceLedger.AUDIO_FOCUS | CallResourceLedger.AUDIO_MODE);
+                eventManager().sendEvent(EVENT_RINGING, eventParams(handle, call, null, false));
             }
         };
     }
 
+    // region Incoming Call Handler Listener
+    @Override
+    public void onCallInvite(final CallInvite callInvite) {
+        eventManager().sendEvent(EVENT_INCOMING, paramsFromCallInvite(callInvite));
+    }
 
-    @ReactMethod
-    public void connect(final String accessToken, ReadableMap params, Promise promise) {
-        if (BuildConfig.DEBUG) {
-            Log.d(TAG, "connect params: "+params);
+    @Override
+    public void onCancelledCallInvite(CancelledCallInvite cancelledCallInvite, @Nullable CallException error) {
+        eventManager().sendEvent(EVENT_CANCEL, paramsFromCancelledCallInvite(cancelledCallInvite, error));
+    }
+    // endregion
+
+    // region actor messages, only called on the call actor thread
+
+    // late callbacks of a call that was dropped and dialled again under the same handle
+    private boolean isReplaced(String handle, VoiceCall call) {
+        Redial redial = redials.get(handle);
+        if (redial != null && redial.lastCall == call) {
+            return true;
         }
+        VoiceCall current = callRegistry.get(handle);
+        return current != null && current != call;
+    }
 
-        if (activeCall != null) {
-            promise.reject("already_connected","Calling connect while a call is connected");
+    /*
+     * Schedules a new attempt when the policy allows it, true when the call will be dialled again
+     */
+    private boolean redial(final String handle, VoiceCall call, CallException error) {
+        Redial redial = redials.get(handle);
+        CallStateMachine.State state = callRegistry.getState(handle);
+        if (redial == null || state == null
+                || state == CallStateMachine.State.DISCONNECTING || state == CallStateMachine.State.DISCONNECTED
+                || !redialPolicy.shouldRedial(error.getErrorCode(), redial.attempts)) {
+            return false;
         }
+        long delayMs = redialPolicy.delayMs(redial.attempts);
+        redial.attempts++;
+        redial.lastCall = call;
+        redial.lastError = error;
+        redial.waitingForNetwork = !connectivityMonitor().isConnected();
+        callRegistry.restart(handle);
+        statsSampler().stop(handle);
+        if (dtmfScheduler != null) {
+            // the new call starts over from the top of the IVR menu
+            dtmfScheduler.cancel(handle, "the call was dropped");
+        }
+        call.disconnect();
 
-        // Enable proximity monitoring
-        proximityManager.startProximitySensor();
+        // the state of the handle, CONNECTING again since the restart, not the one of the dropped call
+        WritableMap params = eventParams(handle, call, callRegistry.getState(handle), error, false);
+        params.putInt("attempt", redial.attempts);
+        params.putDouble("delayMs", delayMs);
+        params.putBoolean("waitingForNetwork", redial.waitingForNetwork);
+        eventManager().sendEvent(EVENT_RETRY, params);
 
-        // create parameters for call
-        HashMap<String, String> twiMLParams = new HashMap<>();
-        ReadableMapKeySetIterator iterator = params.keySetIterator();
-        while (iterator.hasNextKey()) {
-            String key = iterator.nextKey();
-            ReadableType readableType = params.getType(key);
-            switch (readableType) {
-                case Null:
-                    twiMLParams.put(key, "");
-                    break;
-                case Boolean:
-                    twiMLParams.put(key, String.valueOf(params.getBoolean(key)));
-                    break;
-                case Number:
-                    // Can be int or double.
-                    twiMLParams.put(key, String.valueOf(params.getDouble(key)));
-                    break;
-                case String:
-                    twiMLParams.put(key, params.getString(key));
-                    break;
-                default:
-                    Log.d(TAG, "Could not convert with key: " + key + ".");
-                    break;
-            }
-        }
-
-        ConnectOptions connectOptions = new ConnectOptions.Builder(accessToken)
-                .params(twiMLParams)
-                // .iceOptions()
-                // .preferAudioCodecs()
-                // .enableInsights()
-                // .region()
-                .build();
-        activeCall = Voice.connect(getReactApplicationContext(), connectOptions, callListener);
-        promise.resolve(paramsFromCall(activeCall));
-    }
-
-    @ReactMethod
-    public void disconnect() {
-        if (activeCall != null) {
-            setMuted(false);
-            disableSpeakerPhone();
+        if (redial.waitingForNetwork) {
+            // dialled as soon as the network is back, given up after the timeout
+            redial.pending = new Runnable() {
+                @Override
+                public void run() {
+                    giveUpRedial(handle);
+                }
+            };
+            callActor.postDelayed(redial.pending, redialPolicy.getNetworkTimeoutMs());
+        } else {
+            scheduleRedial(handle, redial, delayMs);
+        }
+        return true;
+    }
+
+    private void scheduleRedial(final String handle, Redial redial, long delayMs) {
+        redial.waitingForNetwork = false;
+        redial.pending = new Runnable() {
+            @Override
+            public void run() {
+                dialAgain(handle);
+            }
+        };
+        callActor.postDelayed(redial.pending, delayMs);
+    }
+
+    private void redialWaitingCalls() {
+        for (Map.Entry<String, Redial> entry : redials.entrySet()) {
+            Redial redial = entry.getValue();
+            if (redial.waitingForNetwork && redial.pending != null) {
+                callActor.cancel(redial.pending);
+                scheduleRedial(entry.getKey(), redial, 0);
+            }
+        }
+    }
+
+    private void dialAgain(String handle) {
+        Redial redial = redials.get(handle);
+        if (redial == null || !callRegistry.contains(handle)) {
+            return;
+        }
+        redial.pending = null;
+        journal.recordMethod(handle, "redial");
+        callMetrics.markRedial(handle);
+        VoiceCall call = voiceBackend.connect(getReactApplicationContext(), redial.connectOptions, callListener(handle));
+        callMetrics.markConnectReturned(handle);
+        callRegistry.put(handle, call);
+    }
+
+    private void giveUpRedial(String handle) {
+        Redial redial = redials.get(handle);
+        if (redial == null || !callRegistry.transition(handle, CallStateMachine.State.DISCONNECTED)) {
+            return;
+        }
+        removeCall(handle);
+        eventManager().sendEvent(EVENT_DISCONNECTED, eventParams(handle, redial.lastCall, redial.lastError, true));
+    }
+
+    // true when a redial was scheduled or waiting for the network
+    private boolean cancelRedial(String handle) {
+        Redial redial = redials.remove(handle);
+        if (redial == null || redial.pending == null) {
+            return false;
+        }
+        callActor.cancel(redial.pending);
+        redial.pending = null;
+        return true;
+    }
+
+    /*
+     * Holds the connected calls while another app has the focus, only the calls held
+     * here are taken off hold once it is back
+     */
+    private void holdCallsForFocus(boolean hold) {
+        if (!hold) {
+            for (String handle : heldForFocus) {
+                VoiceCall call = callRegistry.get(handle);
+                if (call != null) {
+                    call.hold(false);
+                }
+            }
+            heldForFocus.clear();
+            return;
+        }
+        for (String handle : callRegistry.handles()) {
+            VoiceCall call = callRegistry.get(handle);
+            if (call != null && !call.isOnHold() && callRegistry.getState(handle) == CallStateMachine.State.CONNECTED) {
+                call.hold(true);
+                heldForFocus.add(handle);
+            }
+        }
+    }
+
+    private void removeCall(String handle) {
+        cancelRedial(handle);
+        codecChoices.remove(handle);
+        heldForFocus.remove(handle);
+        if (dtmfScheduler != null) {
+            dtmfScheduler.cancel(handle, "the call ended");
+        }
+        callRegistry.remove(handle);
+        callMetrics.markDisconnected(handle);
+        statsSampler().stop(handle);
+        resourceLedger.close(handle);
+        if (callRegistry.isEmpty()) {
+            releaseCallResources(handle);
+        } else if (proximityManager != null) {
+            proximityManager.setOwner(callRegistry.getActiveHandle());
+        }
+    }
+
+    /*
+     * Once the last call is gone the audio and proximity state is restored, each
+     * manager confirming to the ledger what it gave back. Then whatever is still held
+     * is force released, and what the ended calls weren't confirmed to give back is
+     * reported as leaked.
+     */
+    private void releaseCallResources(@Nullable String lastHandle) {
+        // nothing to release from a manager that was never built
+        if (statsSampler != null) {
+            statsSampler.stop(null);
+        }
+        if (proximityManager != null) {
             proximityManager.stopProximitySensor();
-            activeCall.disconnect();
-            activeCall = null;
         }
+        if (audioRouteManager != null) {
+            audioRouteManager.abandonFocus();
+        }
+        if (callServiceStarted) {
+            stopCallService();
+            // nothing left to batch for, e.g. an incoming invite must get through
+            EventManager events = eventManager;
+            if (events != null) {
+                events.setHeld(false);
+                resourceLedger.releaseAll(CallResourceLedger.HELD_EVENTS);
+            }
+        }
+        if (lastHandle == null) {
+            return;
+        }
+        // queued behind the releases on the manager threads
+        if (proximityManager != null) {
+            proximityManager.releaseLeaks();
+        }
+        if (audioRouteManager != null) {
+            audioRouteManager.releaseLeaks();
+        }
+        if (eventManager != null) {
+            eventManager.releaseLeaks();
+        }
+        resourceLedger.reportLeaks(CallResourceLedger.HELD_EVENTS);
+    }
+
+    private void disconnectAll() {
+        for (String handle : callRegistry.handles()) {
+            disconnectHandle(handle);
+        }
+    }
+
+    private boolean disconnectHandle(String handle) {
+        VoiceCall call = callRegistry.get(handle);
+        if (call == null || !callRegistry.transition(handle, CallStateMachine.State.DISCONNECTING)) {
+            return false;
+        }
+        boolean redialPending = cancelRedial(handle);
+        call.mute(false);
+        removeCall(handle);
+        call.disconnect();
+        if (redialPending) {
+            // the dropped call won't report anything, JS is told here
+            callRegistry.transition(handle, CallStateMachine.State.DISCONNECTED);
+            eventManager().sendEvent(EVENT_DISCONNECTED, eventParams(handle, call, null, true));
+        }
+        return true;
+    }
+    // endregion
+
+
+    @ReactMethod
+    public void connect(@Nullable String accessToken, final ReadableMap params, final Promise promise) {
+        long invokedAt = callMetrics.now();
+
+        // without a token the one cached for the last identity is used
+        if (accessToken == null || accessToken.isEmpty()) {
+            AccessTokenStore.Token token = tokenStore.get(null);
+            if (token == null) {
+                promise.reject("no_token", "There is no valid cached access token");
+                return;
+            }
+            accessToken = token.jwt;
+        } else {
+            try {
+                tokenStore.put(accessToken);
+            } catch (IllegalArgumentException e) {
+                // not decodable, still handed to the SDK which reports the error
+                NativeLog.w(NativeLog.CODE_TOKEN_ERROR, null, e.getMessage(), 0);
+            }
+        }
+        startCall(accessToken, params, invokedAt, promise);
+    }
+
+    @ReactMethod
+    public void connectAs(String identity, ReadableMap params, Promise promise) {
+        long invokedAt = callMetrics.now();
+        AccessTokenStore.Token token = tokenStore.get(identity);
+        if (token == null) {
+            promise.reject("no_token", "There is no valid cached access token for "+identity);
+            return;
+        }
+        startCall(token.jwt, params, invokedAt, promise);
+    }
+
+    @ReactMethod
+    public void setAccessToken(String accessToken, Promise promise) {
+        try {
+            AccessTokenStore.Token token = tokenStore.put(accessToken);
+            WritableMap params = Arguments.createMap();
+            params.putString("identity", token.identity);
+            params.putDouble("expiresAt", token.expiresAt);
+            promise.resolve(params);
+        } catch (IllegalArgumentException e) {
+            promise.reject("invalid_token", e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void setTokenRefreshLead(int refreshLeadMs) {
+        tokenStore.setRefreshLeadMs(refreshLeadMs);
+    }
+
+    @ReactMethod
+    public void clearAccessTokens() {
+        tokenStore.clear();
+    }
+
+    private void startCall(final String accessToken, ReadableMap params, final long invokedAt, final Promise promise) {
+        // create parameters for call
+        final HashMap<String, String> twiMLParams = TwiMLParamsConverter.convert(params);
+
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // the verdict cached for this network, connect doesn't wait for a test
+                PreflightTester preflight = preflightTester;
+                PreflightTester.Result preflightResult = preflight != null
+                        ? preflight.check(connectivityMonitor().getNetworkKey()) : null;
+                if (preflightResult != null && preflightResult.verdict != PreflightTester.Verdict.GOOD) {
+                    if (preflightResult.isBad() && preflight.getMode() == PreflightTester.Mode.BLOCK) {
+                        promise.reject("preflight_failed", "The network failed the preflight test: "
+                                + preflightResult.verdict.name().toLowerCase(Locale.US));
+                        return;
+                    }
+                    eventManager().sendEvent(EVENT_PREFLIGHT_WARNING, preflightResult.toMap());
+                }
+                initVoice();
+
+                // not set yet: .iceOptions(), .enableInsights()
+                ConnectOptions.Builder builder = new ConnectOptions.Builder(accessToken)
+                        .params(twiMLParams);
+                CodecPolicy.Choice codecChoice = codecPolicy().choose();
+                List<AudioCodec> audioCodecs = codecChoice.toAudioCodecs();
+                if (audioCodecs != null) {
+                    builder.preferAudioCodecs(audioCodecs);
+                }
+                // the fastest edge measured on this network, the SDK default until it is known
+                EdgeSelector edges = edgeSelector;
+                String region = edges != null ? edges.getRegion(connectivityMonitor().getNetworkKey()) : null;
+                if (region != null) {
+                    builder.region(region);
+                }
+                ConnectOptions connectOptions = builder.build();
+                String handle = callRegistry.newHandle();
+                callMetrics.markConnectInvoked(handle, invokedAt);
+                // Enable proximity monitoring
+                proximityManager().startProximitySensor(handle);
+                journal.recordMethod(handle, "connect");
+                NativeLog.i(NativeLog.CODE_CONNECT, handle, null, 0);
+                VoiceCall call = voiceBackend.connect(getReactApplicationContext(), connectOptions, callListener(handle));
+                callMetrics.markConnectReturned(handle);
+                callRegistry.put(handle, call);
+                redials.put(handle, new Redial(connectOptions));
+                codecChoices.put(handle, codecChoice);
+                promise.resolve(paramsFromCall(handle, call));
+            }
+        });
+    }
+
+    @ReactMethod
+    public void disconnect(final Promise promise) {
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                journal.recordMethod(callRegistry.getActiveHandle(), "disconnect");
+                disconnectAll();
+                promise.resolve(null);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void disconnectCall(final String handleOrSid, final Promise promise) {
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                String handle = callRegistry.resolveHandle(handleOrSid);
+                journal.recordMethod(handle, "disconnectCall");
+                if (handle == null || !disconnectHandle(handle)) {
+                    promise.reject("no_call", "There is no call with handle "+handleOrSid);
+                    return;
+                }
+                promise.resolve(null);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void setMuted(final Boolean muteValue, final Promise promise) {
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                journal.recordMethod(callRegistry.getActiveHandle(), "setMuted");
+                VoiceCall call = callRegistry.getActiveCall();
+                if (call != null) {
+                    call.mute(muteValue);
+                }
+                promise.resolve(null);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void setCallMuted(final String handle, final Boolean muteValue, final Promise promise) {
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                journal.recordMethod(handle, "setCallMuted");
+                VoiceCall call = callRegistry.get(handle);
+                if (call == null) {
+                    promise.reject("no_call", "There is no call with handle "+handle);
+                    return;
+                }
+                call.mute(muteValue);
+                promise.resolve(null);
+            }
+        });
     }
 
     @ReactMethod
-    public void setMuted(Boolean muteValue) {
-        if (activeCall != null) {
-            activeCall.mute(muteValue);
+    public void setCallOnHold(final String handle, final Boolean holdValue, final Promise promise) {
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                journal.recordMethod(handle, "setCallOnHold");
+                VoiceCall call = callRegistry.get(handle);
+                if (call == null) {
+                    promise.reject("no_call", "There is no call with handle "+handle);
+                    return;
+                }
+                call.hold(holdValue);
+                if (!holdValue && heldForFocus.remove(handle)) {
+                    // the focus was lost for good, taking a call off hold asks for it again
+                    audioRouteManager().requestFocus();
+                    resourceLedger.acquire(handle, CallResourceLedger.AUDIO_FOCUS | CallResourceLedger.AUDIO_MODE);
+                }
+                promise.resolve(null);
+            }
+        });
+    }
+
+    /*
+     * Holds every other call and makes the given one the active call
+     */
+    @ReactMethod
+    public void swapToCall(final String handleOrSid, final Promise promise) {
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                String handle = callRegistry.resolveHandle(handleOrSid);
+                journal.recordMethod(handle, "swapToCall");
+                if (handle == null) {
+                    promise.reject("no_call", "There is no call with handle "+handleOrSid);
+                    return;
+                }
+                for (String other : callRegistry.handles()) {
+                    VoiceCall call = callRegistry.get(other);
+                    if (call != null) {
+                        call.hold(!other.equals(handle));
+                    }
+                }
+                callRegistry.setActiveHandle(handle);
+                promise.resolve(null);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void sendDigits(final String digits, final Promise promise) {
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                journal.recordMethod(callRegistry.getActiveHandle(), "sendDigits");
+                String handle = callRegistry.getActiveHandle();
+                if (handle == null) {
+                    promise.reject("no_call", "There is no active call");
+                    return;
+                }
+                queueDigits(handle, digits, promise);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void sendCallDigits(final String handle, final String digits, final Promise promise) {
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                journal.recordMethod(handle, "sendCallDigits");
+                if (!callRegistry.contains(handle)) {
+                    promise.reject("no_call", "There is no call with handle "+handle);
+                    return;
+                }
+                queueDigits(handle, digits, promise);
+            }
+        });
+    }
+
+    // the promise is resolved once the last tone is sent, digits sent before connect wait for it
+    private void queueDigits(String handle, String digits, Promise promise) {
+        if (!DtmfScheduler.isValid(digits)) {
+            promise.reject("invalid_digits", "Only 0-9, *, # and , (pause) can be sent: "+digits);
+            return;
+        }
+        DtmfScheduler scheduler = dtmfScheduler();
+        scheduler.enqueue(handle, digits, promise);
+        VoiceCall call = callRegistry.get(handle);
+        if (call != null && callRegistry.getState(handle) == CallStateMachine.State.CONNECTED) {
+            scheduler.start(handle, call);
         }
     }
 
+    /*
+     * Drops the digits not sent yet, of the active call when handle is null
+     */
     @ReactMethod
-    public void sendDigits(String digits) {
-        if (activeCall != null) {
-            activeCall.sendDigits(digits);
+    public void cancelDigits(@Nullable final String handle, final Promise promise) {
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                String resolved = handle != null ? handle : callRegistry.getActiveHandle();
+                if (resolved != null && dtmfScheduler != null) {
+                    dtmfScheduler.cancel(resolved, "cancelled");
+                }
+                promise.resolve(null);
+            }
+        });
+    }
+
+    /*
+     * toneIntervalMs between two tones, pauseMs for each ','
+     */
+    @ReactMethod
+    public void setDtmfOptions(final ReadableMap options) {
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                dtmfScheduler().configure(
+                        (long) optDouble(options, "toneIntervalMs", DtmfScheduler.DEFAULT_TONE_INTERVAL_MS),
+                        (long) optDouble(options, "pauseMs", DtmfScheduler.DEFAULT_PAUSE_MS)
+                );
+            }
+        });
+    }
+
+    @ReactMethod
+    public void acceptCallInvite(final String callSid, final Promise promise) {
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                CallInvite callInvite = IncomingCallHandler.getInstance().getInviteCache().take(callSid);
+                if (callInvite == null) {
+                    promise.reject("no_invite", "There is no pending call invite "+callSid);
+                    return;
+                }
+                initVoice();
+                String handle = callRegistry.newHandle();
+                proximityManager().startProximitySensor(handle);
+                audioRouteManager().requestFocus();
+                resourceLedger.acquire(handle, CallResourceLedger.AUDIO_FOCUS | CallResourceLedger.AUDIO_MODE);
+                journal.recordMethod(handle, "acceptCallInvite");
+                VoiceCall call = voiceBackend.accept(getReactApplicationContext(), callInvite, callListener(handle));
+                callRegistry.put(handle, call);
+                promise.resolve(paramsFromCall(handle, call));
+            }
+        });
+    }
+
+    @ReactMethod
+    public void rejectCallInvite(final String callSid, final Promise promise) {
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                journal.recordMethod(null, "rejectCallInvite");
+                CallInvite callInvite = IncomingCallHandler.getInstance().getInviteCache().take(callSid);
+                if (callInvite == null) {
+                    promise.reject("no_invite", "There is no pending call invite "+callSid);
+                    return;
+                }
+                callInvite.reject(getReactApplicationContext());
+                promise.resolve(null);
+            }
+        });
+    }
+
+    /*
+     * Invites received while JS was not running
+     */
+    @ReactMethod
+    public void getCallInvites(Promise promise) {
+        WritableArray invites = Arguments.createArray();
+        for (CallInvite callInvite : IncomingCallHandler.getInstance().getInviteCache().pending()) {
+            invites.pushMap(paramsFromCallInvite(callInvite));
         }
+        promise.resolve(invites);
     }
 
     @ReactMethod
     public void getVersion(Promise promise) {
-        promise.resolve(Voice.getVersion());
+        promise.resolve(voiceBackend.getVersion());
+    }
+
+    @ReactMethod
+    public void getActiveCall(final Promise promise) {
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                String handle = callRegistry.getActiveHandle();
+                VoiceCall call = callRegistry.get(handle);
+                if (call != null) {
+                    promise.resolve(paramsFromCall(handle, call));
+                    return;
+                }
+                promise.reject("no_call","There was no active call");
+            }
+        });
+    }
+
+    /*
+     * Synchronous read of every call state, null when the snapshot is still at knownVersion
+     * so polling JS code gets no map built nor serialized while nothing changes
+     */
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public WritableMap getCallStateSnapshot(double knownVersion) {
+        CallStateSnapshot snapshot = callRegistry.getSnapshotIfChanged((long) knownVersion);
+        return snapshot != null ? snapshot.toMap() : null;
+    }
+
+    @ReactMethod
+    public void getCall(final String handleOrSid, final Promise promise) {
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                String handle = callRegistry.resolveHandle(handleOrSid);
+                VoiceCall call = callRegistry.get(handle);
+                if (call != null) {
+                    promise.resolve(paramsFromCall(handle, call));
+                    return;
+                }
+                promise.reject("no_call","There is no call with handle "+handleOrSid);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void getCalls(final Promise promise) {
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                WritableArray calls = Arguments.createArray();
+                for (String handle : callRegistry.handles()) {
+                    VoiceCall call = callRegistry.get(handle);
+                    if (call != null) {
+                        calls.pushMap(paramsFromCall(handle, call));
+                    }
+                }
+                promise.resolve(calls);
+            }
+        });
+    }
+
+    /*
+     * Opts in to hysteresis: thresholds are fractions of the sensor range, the far threshold must be above the near one
+     */
+    @ReactMethod
+    public void setProximityOptions(final ReadableMap options) {
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                proximityManager().configure(
+                        (float) optDouble(options, "nearThreshold", ProximityStateMachine.DEFAULT_NEAR_THRESHOLD),
+                        (float) optDouble(options, "farThreshold", ProximityStateMachine.DEFAULT_FAR_THRESHOLD),
+                        (long) optDouble(options, "nearDebounceMs", ProximityStateMachine.DEFAULT_NEAR_DEBOUNCE_MS),
+                        (long) optDouble(options, "farDebounceMs", ProximityStateMachine.DEFAULT_FAR_DEBOUNCE_MS)
+                );
+                if (options.hasKey("events")) {
+                    proximityManager().setEventsEnabled(options.getBoolean("events"));
+                }
+            }
+        });
     }
 
+    /*
+     * Redials outgoing calls dropped by a network error, off by default
+     */
     @ReactMethod
-    public void getActiveCall(Promise promise) {
-        if (activeCall != null) {
-            if (BuildConfig.DEBUG) {
-                Log.d(TAG, "Active call found state = "+activeCall.getState());
+    public void setRedialPolicy(ReadableMap options) {
+        redialPolicy.configure(
+                options.hasKey("enabled") && options.getBoolean("enabled"),
+                (int) optDouble(options, "maxAttempts", RedialPolicy.DEFAULT_MAX_ATTEMPTS),
+                (long) optDouble(options, "baseDelayMs", RedialPolicy.DEFAULT_BASE_DELAY_MS),
+                (long) optDouble(options, "maxDelayMs", RedialPolicy.DEFAULT_MAX_DELAY_MS),
+                optDouble(options, "jitter", RedialPolicy.DEFAULT_JITTER),
+                (long) optDouble(options, "networkTimeoutMs", RedialPolicy.DEFAULT_NETWORK_TIMEOUT_MS)
+        );
+    }
+
+    /*
+     * Tests the current network now, resolved with {network, verdict, media, signalling}
+     */
+    @ReactMethod
+    public void runPreflight(Promise promise) {
+        preflightTester().run(connectivityMonitor().getNetworkKey(), promise);
+    }
+
+    /*
+     * mode is "off", "warn" or "block", the endpoints default to the Twilio global ones
+     */
+    @ReactMethod
+    public void setPreflightOptions(ReadableMap options) {
+        PreflightTester.Mode mode = PreflightTester.Mode.OFF;
+        if (options.hasKey("mode")) {
+            try {
+                mode = PreflightTester.Mode.valueOf(options.getString("mode").toUpperCase(Locale.US));
+            } catch (IllegalArgumentException e) {
+                Log.e(TAG, "Unknown preflight mode "+options.getString("mode")+", using off");
             }
-            promise.resolve(paramsFromCall(activeCall));
+        }
+        preflightTester().configure(
+                mode,
+                options.hasKey("stunHost") ? options.getString("stunHost") : PreflightTester.DEFAULT_STUN_HOST,
+                (int) optDouble(options, "stunPort", PreflightTester.DEFAULT_STUN_PORT),
+                options.hasKey("signallingHost") ? options.getString("signallingHost") : PreflightTester.DEFAULT_SIGNALLING_HOST,
+                (int) optDouble(options, "signallingPort", PreflightTester.DEFAULT_SIGNALLING_PORT),
+                (int) optDouble(options, "probeCount", PreflightTester.DEFAULT_PROBE_COUNT),
+                (int) optDouble(options, "probeIntervalMs", PreflightTester.DEFAULT_PROBE_INTERVAL_MS),
+                (int) optDouble(options, "timeoutMs", PreflightTester.DEFAULT_TIMEOUT_MS),
+                (long) optDouble(options, "ttlMs", PreflightTester.DEFAULT_TTL_MS)
+        );
+    }
+
+    /*
+     * With enabled, a foreground service keeps the calls alive while the app is in the
+     * background and events are delivered in batches until it comes back.
+     * keepCallOnHostDestroy also keeps the calls when the activity is destroyed.
+     */
+    @ReactMethod
+    public void setBackgroundOptions(ReadableMap options) {
+        backgroundServiceEnabled = options.hasKey("enabled") && options.getBoolean("enabled");
+        keepCallOnHostDestroy = options.hasKey("keepCallOnHostDestroy") && options.getBoolean("keepCallOnHostDestroy");
+        notificationTitle = options.hasKey("notificationTitle") ? options.getString("notificationTitle") : null;
+        notificationText = options.hasKey("notificationText") ? options.getString("notificationText") : null;
+    }
+
+    /*
+     * mode is auto, opus, pcmu or default, the bitrates (bps) are used by auto for low, medium and high quality links
+     */
+    @ReactMethod
+    public void setCodecPolicy(ReadableMap options) {
+        CodecPolicy.Mode mode = CodecPolicy.Mode.AUTO;
+        if (options.hasKey("mode")) {
+            try {
+                mode = CodecPolicy.Mode.valueOf(options.getString("mode").toUpperCase(Locale.US));
+            } catch (IllegalArgumentException e) {
+                Log.e(TAG, "Unknown codec mode "+options.getString("mode")+", using auto");
+            }
+        }
+        codecPolicy().configure(
+                mode,
+                (int) optDouble(options, "lowBitrate", CodecPolicy.DEFAULT_LOW_BITRATE),
+                (int) optDouble(options, "mediumBitrate", CodecPolicy.DEFAULT_MEDIUM_BITRATE),
+                (int) optDouble(options, "highBitrate", CodecPolicy.DEFAULT_HIGH_BITRATE)
+        );
+    }
+
+    /*
+     * edges is a list of region names or of {region, host, port} for custom probe endpoints
+     */
+    @ReactMethod
+    public void setEdgeOptions(ReadableMap options) {
+        List<EdgeSelector.Edge> edges = null;
+        ReadableArray edgeValues = options.hasKey("edges") ? options.getArray("edges") : null;
+        if (edgeValues != null) {
+            edges = new ArrayList<>(edgeValues.size());
+            for (int i = 0; i < edgeValues.size(); i++) {
+                if (edgeValues.getType(i) == ReadableType.String) {
+                    edges.add(EdgeSelector.Edge.forRegion(edgeValues.getString(i)));
+                } else if (edgeValues.getType(i) == ReadableType.Map) {
+                    ReadableMap edge = edgeValues.getMap(i);
+                    String region = edge.getString("region");
+                    EdgeSelector.Edge defaults = EdgeSelector.Edge.forRegion(region);
+                    edges.add(new EdgeSelector.Edge(
+                            region,
+                            edge.hasKey("host") ? edge.getString("host") : defaults.host,
+                            (int) optDouble(edge, "port", defaults.port)));
+                }
+            }
+        }
+        edgeSelector().configure(
+                options.hasKey("enabled") && options.getBoolean("enabled"),
+                edges,
+                (long) optDouble(options, "ttlMs", EdgeSelector.DEFAULT_TTL_MS),
+                (int) optDouble(options, "probeTimeoutMs", EdgeSelector.DEFAULT_PROBE_TIMEOUT_MS)
+        );
+    }
+
+    /*
+     * Measures the edges from the current network, even when the cached result is fresh
+     */
+    @ReactMethod
+    public void probeEdges(Promise promise) {
+        edgeSelector().probe(connectivityMonitor().getNetworkKey(), promise);
+    }
+
+    @ReactMethod
+    public void setStatsSampling(int intervalMs, int batchSize) {
+        statsSampler().configure(intervalMs, batchSize);
+    }
+
+    /*
+     * The samples kept for the call, of the last call sampled when handle is null
+     */
+    @ReactMethod
+    public void getStatsHistory(@Nullable String handle, Promise promise) {
+        promise.resolve(statsSampler().getHistory(handle));
+    }
+
+    /*
+     * Each metric takes {raise, clear}, a warning is cleared only once the window mean is back past clear
+     */
+    @ReactMethod
+    public void setQualityThresholds(ReadableMap options) {
+        if (options.hasKey("windowSize")) {
+            qualityEngine().setWindowSize(options.getInt("windowSize"));
+        }
+        String[] names = {
+                CallQualityEngine.METRIC_JITTER,
+                CallQualityEngine.METRIC_RTT,
+                CallQualityEngine.METRIC_PACKET_LOSS,
+                CallQualityEngine.METRIC_MOS
+        };
+        for (String name : names) {
+            ReadableMap thresholds = options.hasKey(name) ? options.getMap(name) : null;
+            if (thresholds != null && thresholds.hasKey("raise")) {
+                double raise = thresholds.getDouble("raise");
+                qualityEngine().setThresholds(name, raise, optDouble(thresholds, "clear", raise));
+            }
+        }
+    }
+
+    @ReactMethod
+    public void getCallQuality(Promise promise) {
+        promise.resolve(qualityEngine().toMap());
+    }
+
+    /*
+     * Journal records of the last calls, kept across app restarts
+     */
+    @ReactMethod
+    public void exportJournal(final int lastCalls, final Promise promise) {
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                promise.resolve(journal.export(lastCalls));
+            }
+        });
+    }
+
+    /*
+     * Level of the native log ring and of the SDK log: "debug", "info", "warn", "error" or "off"
+     */
+    @ReactMethod
+    public void setLogLevel(String level) {
+        int parsed = NativeLog.parseLevel(level);
+        if (parsed < 0) {
+            Log.e(TAG, "Unknown log level "+level);
             return;
         }
-        promise.reject("no_call","There was no active call");
+        NativeLog.setLevel(parsed);
+        synchronized (this) {
+            voiceLogLevel = NativeLog.toVoiceLogLevel(parsed);
+            if (voiceInitialized) {
+                voiceBackend.setLogLevel(voiceLogLevel);
+            }
+        }
     }
 
+    /*
+     * The native log ring as text, only formatted here
+     */
     @ReactMethod
-    public void setSpeakerPhone(Boolean value) {
-        audioFocusManager.setSpeakerPhone(value);
-        if(value) {
-            proximityManager.stopProximitySensor();
-        } else {
-            proximityManager.startProximitySensor();
+    public void exportLog(Promise promise) {
+        promise.resolve(NativeLog.export());
+    }
+
+    @ReactMethod
+    public void getMetrics(final Promise promise) {
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                WritableMap metrics = callMetrics.toMap();
+                // zeros for the managers not built yet, they aren't built just to be read
+                EventManager events = eventManager;
+                AudioRouteManager audioRoutes = audioRouteManager;
+                metrics.putMap("events", events != null ? events.getMetrics() : EventManager.emptyMetrics());
+                metrics.putMap("audioRouteSwitch", audioRoutes != null
+                        ? audioRoutes.getMetrics() : AudioRouteManager.emptyMetrics());
+                metrics.putMap("resources", resourceLedger.toMap());
+                promise.resolve(metrics);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void setSpeakerPhone(final Boolean value, final Promise promise) {
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                journal.recordMethod(callRegistry.getActiveHandle(), "setSpeakerPhone");
+                // the switch happens on the audio thread, turning the speaker off goes back to the automatic route
+                audioRouteManager().setRoute(value ? AudioRouteManager.Route.SPEAKER : null, null);
+                updateProximityForRoute(value);
+                promise.resolve(null);
+            }
+        });
+    }
+
+    /*
+     * Resolved with the route and the available routes once the switch is applied
+     */
+    @ReactMethod
+    public void setAudioRoute(@Nullable String route, final Promise promise) {
+        final AudioRouteManager.Route requested = AudioRouteManager.Route.fromJS(route);
+        if (route != null && requested == null) {
+            promise.reject("invalid_route", "Unknown audio route "+route);
+            return;
         }
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                journal.recordMethod(callRegistry.getActiveHandle(), "setAudioRoute");
+                audioRouteManager().setRoute(requested, promise);
+                updateProximityForRoute(requested == AudioRouteManager.Route.SPEAKER);
+            }
+        });
     }
 
-    private void disableSpeakerPhone() {
-        audioFocusManager.setSpeakerPhone(false);
+    @ReactMethod
+    public void getAudioRoutes(final Promise promise) {
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                promise.resolve(audioRouteManager().getRoutes());
+            }
+        });
+    }
+
+    // the screen only needs to turn off while the phone is held to the ear
+    private void updateProximityForRoute(final boolean speaker) {
+        callActor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (speaker) {
+                    proximityManager().stopProximitySensor();
+                } else if (!callRegistry.isEmpty()) {
+                    proximityManager().startProximitySensor(callRegistry.getActiveHandle());
+                }
+            }
+        });
     }
 
     // region create JSObjects helpers
-    private WritableMap paramsFromCall(Call call) {
+    private static double optDouble(ReadableMap map, String key, double fallback) {
+        if (map == null || !map.hasKey(key) || map.isNull(key)) {
+            return fallback;
+        }
+        return map.getDouble(key);
+    }
+
+    // the state of the handle, a call being dialled again is CONNECTING while the dropped one is DISCONNECTED
+    private WritableMap paramsFromCall(String handle, VoiceCall call) {
+        CallStateMachine.State state = callRegistry.getState(handle);
+        return state != null ? callPayloads.full(handle, call, state.name()) : callPayloads.full(handle, call);
+    }
+
+    private WritableMap paramsFromCallInvite(CallInvite callInvite) {
         WritableMap params = Arguments.createMap();
-        if(call != null) {
-            if (call.getSid() != null) {
-                params.putString("sid", call.getSid());
-            }
-            if (call.getFrom() != null) {
-                params.putString("from", activeCall.getFrom());
-            }
-            if (call.getTo() != null) {
-                params.putString("to", activeCall.getTo());
+        params.putString("sid", callInvite.getCallSid());
+        params.putString("from", callInvite.getFrom());
+        params.putString("to", callInvite.getTo());
+        WritableMap customParameters = Arguments.createMap();
+        Map<String, String> customValues = callInvite.getCustomParameters();
+        if (customValues != null) {
+            for (Map.Entry<String, String> entry : customValues.entrySet()) {
+                customParameters.putString(entry.getKey(), entry.getValue());
             }
-            params.putString("state", call.getState().name());
         }
+        params.putMap("customParameters", customParameters);
         return params;
     }
 
-    private WritableMap paramsWithError(Call call, CallException error) {
-        WritableMap params = paramsFromCall(call);
+    private WritableMap paramsFromCancelledCallInvite(CancelledCallInvite cancelledCallInvite, CallException error) {
+        WritableMap params = Arguments.createMap();
+        params.putString("sid", cancelledCallInvite.getCallSid());
+        params.putString("from", cancelledCallInvite.getFrom());
+        params.putString("to", cancelledCallInvite.getTo());
+        if (error != null) {
+            WritableMap errorParams = Arguments.createMap();
+            errorParams.putInt("code", error.getErrorCode());
+            errorParams.putString("message", error.getLocalizedMessage());
+            params.putMap("error", errorParams);
+        }
+        return params;
+    }
+
+    // the changed fields of the call, last is the final event of the call
+    private WritableMap eventParams(String handle, VoiceCall call, @Nullable CallException error, boolean last) {
+        return eventParams(handle, call, null, error, last);
+    }
+
+    // state replaces the state of the call when given
+    private WritableMap eventParams(String handle, VoiceCall call, @Nullable CallStateMachine.State state,
+                                    @Nullable CallException error, boolean last) {
+        WritableMap params = state != null
+                ? callPayloads.event(handle, call, state.name(), last)
+                : callPayloads.event(handle, call, last);
         if (error != null) {
-            Log.e(TAG, String.format("CallListener onDisconnected error: %d, %s",
-                    error.getErrorCode(), error.getMessage()));
+            journal.recordError(handle, error.getErrorCode(), error.getMessage());
+            NativeLog.e(NativeLog.CODE_CALL_ERROR, handle, error.getMessage(), error.getErrorCode());
             WritableMap errorParams = Arguments.createMap();
             errorParams.putInt("code", error.getErrorCode());
             errorParams.putString("message", error.getLocalizedMessage());
@@ -12,12 +12,37 @@ import java.util.List;
 
 public class TwilioVoiceSDKPackage implements ReactPackage {
 
-    public TwilioVoiceSDKPackage() { }
+    private final boolean warmUp;
+    private final VoiceBackend voiceBackend;
+
+    public TwilioVoiceSDKPackage() {
+        this(false);
+    }
+
+    /*
+     * With warmUp the Twilio native library is loaded on a background thread as soon
+     * as the module is created, instead of on the first call
+     */
+    public TwilioVoiceSDKPackage(boolean warmUp) {
+        this(warmUp, new TwilioVoiceBackend());
+    }
+
+    /*
+     * The backend replaces the Twilio SDK, for tests only
+     */
+    public TwilioVoiceSDKPackage(boolean warmUp, VoiceBackend voiceBackend) {
+        this.warmUp = warmUp;
+        this.voiceBackend = voiceBackend;
+    }
 
     @Override
     public List<NativeModule> createNativeModules(ReactApplicationContext reactContext) {
         List<NativeModule> modules = new ArrayList<>();
-        modules.add(new TwilioVoiceSDKModule(reactContext));
+        TwilioVoiceSDKModule module = new TwilioVoiceSDKModule(reactContext, voiceBackend);
+        if (warmUp) {
+            module.warmUp();
+        }
+        modules.add(module);
         return modules;
     }
 
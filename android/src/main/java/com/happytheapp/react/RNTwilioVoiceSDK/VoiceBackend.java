@@ -0,0 +1,22 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.content.Context;
+
+import com.twilio.voice.CallInvite;
+import com.twilio.voice.ConnectOptions;
+import com.twilio.voice.LogLevel;
+
+/*
+ * Entry points of the voice SDK used by the module. TwilioVoiceBackend is the
+ * default, the unit tests play scripted calls with a FakeVoiceBackend.
+ */
+public interface VoiceBackend {
+
+    String getVersion();
+
+    void setLogLevel(LogLevel level);
+
+    VoiceCall connect(Context context, ConnectOptions connectOptions, VoiceCall.Listener listener);
+
+    VoiceCall accept(Context context, CallInvite callInvite, VoiceCall.Listener listener);
+}
@@ -0,0 +1,51 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import androidx.annotation.Nullable;
+
+import com.twilio.voice.Call;
+import com.twilio.voice.CallException;
+import com.twilio.voice.StatsListener;
+
+/*
+ * The part of a Twilio Call the module uses. Calls come from a VoiceBackend, the
+ * listener is called on the thread that made the call.
+ */
+public interface VoiceCall {
+
+    interface Listener {
+        void onConnectFailure(VoiceCall call, CallException error);
+        void onRinging(VoiceCall call);
+        void onConnected(VoiceCall call);
+        void onReconnecting(VoiceCall call, CallException error);
+        void onReconnected(VoiceCall call);
+        void onDisconnected(VoiceCall call, @Nullable CallException error);
+    }
+
+    @Nullable
+    String getSid();
+
+    @Nullable
+    String getFrom();
+
+    @Nullable
+    String getTo();
+
+    Call.State getState();
+
+    void mute(boolean mute);
+
+    boolean isMuted();
+
+    void hold(boolean hold);
+
+    boolean isOnHold();
+
+    void sendDigits(String digits);
+
+    void disconnect();
+
+    /*
+     * False when no stats will be reported
+     */
+    boolean getStats(StatsListener listener);
+}
@@ -0,0 +1,30 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.util.Log;
+
+import com.google.firebase.messaging.FirebaseMessagingService;
+import com.google.firebase.messaging.RemoteMessage;
+
+import java.util.Map;
+
+import static com.happytheapp.react.RNTwilioVoiceSDK.TwilioVoiceSDKModule.TAG;
+
+/*
+ * Receives the Twilio incoming call pushes without going through JS. Not declared
+ * by the library, an app without a FirebaseMessagingService of its own opts in by
+ * declaring it in its manifest, only one service can receive the messages.
+ */
+public class VoiceFirebaseMessagingService extends FirebaseMessagingService {
+
+    @Override
+    public void onMessageReceived(RemoteMessage remoteMessage) {
+        Map<String, String> data = remoteMessage.getData();
+        if (data == null || data.isEmpty()) {
+            return;
+        }
+        boolean handled = IncomingCallHandler.handleMessage(this, data);
+        if (!handled && BuildConfig.DEBUG) {
+            Log.d(TAG, "ignoring push that is not a Twilio call message");
+        }
+    }
+}
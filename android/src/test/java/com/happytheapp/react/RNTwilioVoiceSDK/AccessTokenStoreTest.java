@@ -0,0 +1,153 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.os.Handler;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class AccessTokenStoreTest {
+
+    private static final long NOW = 1700000000000L;
+
+    private static class FakeClock implements AccessTokenStore.Clock {
+        long now = NOW;
+
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    private final FakeClock clock = new FakeClock();
+    private final ArrayList<String> refreshes = new ArrayList<>();
+    private Handler handler;
+    private AccessTokenStore store;
+
+    @Before
+    public void setUp() {
+        handler = mock(Handler.class);
+        store = new AccessTokenStore(clock, handler, new AccessTokenStore.Listener() {
+            @Override
+            public void onRefreshNeeded(String identity, long expiresAt) {
+                refreshes.add(identity + "@" + expiresAt);
+            }
+        });
+    }
+
+    // an unsigned token with the claims Twilio puts in its access tokens
+    private static String jwt(String identity, long expiresAtMs) {
+        String payload = "{\"jti\":\"SK-1\",\"sub\":\"AC1\",\"exp\":" + expiresAtMs / 1000
+                + ",\"grants\":{\"identity\":\"" + identity + "\",\"voice\":{}}}";
+        return "eyJhbGciOiJIUzI1NiJ9." + base64Url(payload) + ".c2lnbmF0dXJl";
+    }
+
+    private static String base64Url(String value) {
+        return java.util.Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void decodesTheIdentityAndExpiry() {
+        AccessTokenStore.Token token = AccessTokenStore.decode(jwt("alice", NOW + 3600000));
+        assertEquals("alice", token.identity);
+        assertEquals(NOW + 3600000, token.expiresAt);
+    }
+
+    @Test
+    public void fallsBackToTheSubjectWithoutAnIdentityGrant() {
+        String token = "e30." + base64Url("{\"sub\":\"AC1\",\"exp\":1}") + ".e30";
+        assertEquals("AC1", AccessTokenStore.decode(token).identity);
+    }
+
+    @Test
+    public void decodesEveryBase64UrlLength() {
+        for (String value : new String[] { "", "a", "ab", "abc", "~~>??", "\u00e9\u00e8" }) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            String encoded = base64Url(value);
+            assertEquals(value, new String(AccessTokenStore.decodeBase64Url(encoded), StandardCharsets.UTF_8));
+            assertEquals(bytes.length, AccessTokenStore.decodeBase64Url(encoded + "==").length);
+        }
+    }
+
+    @Test
+    public void rejectsWhatIsNotAJwt() {
+        for (String token : new String[] { null, "abc", "a.b", "a.!!.c", "a." + base64Url("{}") + ".c" }) {
+            try {
+                AccessTokenStore.decode(token);
+                fail("decoded " + token);
+            } catch (IllegalArgumentException expected) {
+                // not a JWT, not decodable or no exp claim
+            }
+        }
+    }
+
+    @Test
+    public void expiredTokensAreNotHandedOut() {
+        String jwt = jwt("alice", NOW + 60000);
+        store.put(jwt);
+        assertEquals(jwt, store.get("alice").jwt);
+        assertSame(store.get("alice"), store.get(null));
+        // within the 5s margin of its expiry
+        clock.now = NOW + 56000;
+        assertNull(store.get("alice"));
+        assertNull(store.get("bob"));
+    }
+
+    @Test
+    public void refreshIsScheduledAheadOfTheExpiry() {
+        store.put(jwt("alice", NOW + 3600000));
+        ArgumentCaptor<Runnable> timer = ArgumentCaptor.forClass(Runnable.class);
+        verify(handler).postDelayed(timer.capture(), eq(3600000L - AccessTokenStore.DEFAULT_REFRESH_LEAD_MS));
+
+        timer.getValue().run();
+        assertEquals(1, refreshes.size());
+        assertEquals("alice@" + (NOW + 3600000), refreshes.get(0));
+        // a timer that fired is not fired twice
+        timer.getValue().run();
+        assertEquals(1, refreshes.size());
+    }
+
+    @Test
+    public void aNewTokenReplacesThePendingRefresh() {
+        store.put(jwt("alice", NOW + 3600000));
+        ArgumentCaptor<Runnable> first = ArgumentCaptor.forClass(Runnable.class);
+        verify(handler).postDelayed(first.capture(), anyLong());
+        store.put(jwt("alice", NOW + 7200000));
+        verify(handler).removeCallbacks(first.getValue());
+
+        // the stale timer fires anyway, e.g. already dequeued
+        first.getValue().run();
+        assertEquals(0, refreshes.size());
+    }
+
+    @Test
+    public void aShorterLeadReschedulesEveryToken() {
+        store.put(jwt("alice", NOW + 3600000));
+        store.put(jwt("bob", NOW + 3600000));
+        store.setRefreshLeadMs(10000);
+        verify(handler, times(2)).postDelayed(any(Runnable.class), eq(3590000L));
+        store.clear();
+        assertNull(store.get(null));
+    }
+
+    @Test
+    public void tokensPastTheLeadRefreshAtOnce() {
+        store.put(jwt("alice", NOW + 30000));
+        verify(handler).postDelayed(any(Runnable.class), eq(0L));
+    }
+}
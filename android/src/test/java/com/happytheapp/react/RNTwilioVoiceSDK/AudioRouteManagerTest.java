@@ -0,0 +1,120 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.content.Context;
+import android.media.AudioManager;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.WritableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.MockedStatic;
+
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_AUDIO_FOCUS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AudioRouteManagerTest {
+
+    private MockedStatic<Arguments> arguments;
+    private VirtualLooper looper;
+    private AudioManager audioManager;
+    private EventManager eventManager;
+    private AudioRouteManager routes;
+    private int paused;
+    private int resumed;
+
+    @Before
+    public void setUp() {
+        arguments = JavaOnlyArguments.mock();
+        looper = new VirtualLooper();
+        audioManager = mock(AudioManager.class);
+        when(audioManager.requestAudioFocus(any(AudioManager.OnAudioFocusChangeListener.class), anyInt(), anyInt()))
+                .thenReturn(AudioManager.AUDIOFOCUS_REQUEST_GRANTED);
+        ReactApplicationContext context = mock(ReactApplicationContext.class);
+        when(context.getSystemService(Context.AUDIO_SERVICE)).thenReturn(audioManager);
+        eventManager = mock(EventManager.class);
+        routes = new AudioRouteManager(context, eventManager, new CallResourceLedger());
+        routes.setFocusListener(new AudioRouteManager.FocusListener() {
+            @Override
+            public void onPauseCalls() {
+                paused++;
+            }
+
+            @Override
+            public void onResumeCalls() {
+                resumed++;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        looper.close();
+        arguments.close();
+    }
+
+    private AudioManager.OnAudioFocusChangeListener requestFocus() {
+        routes.requestFocus();
+        looper.advance(0);
+        ArgumentCaptor<AudioManager.OnAudioFocusChangeListener> listener =
+                ArgumentCaptor.forClass(AudioManager.OnAudioFocusChangeListener.class);
+        verify(audioManager, atLeastOnce()).requestAudioFocus(listener.capture(), anyInt(), anyInt());
+        return listener.getValue();
+    }
+
+    private boolean hasFocus() {
+        return routes.getRoutes().getBoolean("focus");
+    }
+
+    @Test
+    public void transientLossHoldsUntilTheFocusIsBack() {
+        AudioManager.OnAudioFocusChangeListener listener = requestFocus();
+        listener.onAudioFocusChange(AudioManager.AUDIOFOCUS_LOSS_TRANSIENT);
+        assertEquals(1, paused);
+        assertTrue(hasFocus());
+        listener.onAudioFocusChange(AudioManager.AUDIOFOCUS_GAIN);
+        assertEquals(1, resumed);
+    }
+
+    @Test
+    public void permanentLossHoldsAndGivesTheFocusBack() {
+        AudioManager.OnAudioFocusChangeListener listener = requestFocus();
+        listener.onAudioFocusChange(AudioManager.AUDIOFOCUS_LOSS);
+        assertEquals(1, paused);
+        assertFalse(hasFocus());
+        verify(audioManager).abandonAudioFocus(listener);
+        ArgumentCaptor<WritableMap> params = ArgumentCaptor.forClass(WritableMap.class);
+        verify(eventManager).sendEvent(eq(EVENT_AUDIO_FOCUS), params.capture());
+        assertEquals("loss", params.getValue().getString("state"));
+        assertTrue(params.getValue().getBoolean("callsPaused"));
+
+        // asked again, e.g. a call taken off hold
+        requestFocus();
+        verify(audioManager, times(2)).requestAudioFocus(any(AudioManager.OnAudioFocusChangeListener.class), anyInt(), anyInt());
+        assertTrue(hasFocus());
+        assertEquals(1, resumed);
+    }
+
+    @Test
+    public void lossWithoutACallHoldsNothing() {
+        AudioManager.OnAudioFocusChangeListener listener = requestFocus();
+        routes.abandonFocus();
+        looper.advance(0);
+        listener.onAudioFocusChange(AudioManager.AUDIOFOCUS_LOSS);
+        assertEquals(0, paused);
+        assertFalse(hasFocus());
+    }
+}
@@ -0,0 +1,42 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import java.lang.management.ManagementFactory;
+
+/*
+ * Minimal JUnit-driven micro-benchmark: warms the body up, then measures the time
+ * and the bytes allocated per operation on the calling thread for the test to assert
+ */
+final class Bench {
+
+    static final class Result {
+        final double nanosPerOp;
+        final double bytesPerOp;
+
+        Result(double nanosPerOp, double bytesPerOp) {
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+
+    private Bench() {
+    }
+
+    static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    static Result run(int ops, Runnable op) {
+        for (int i = 0; i < ops; i++) {
+            op.run();
+        }
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            op.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        bytes = allocatedBytes() - bytes;
+        return new Result(elapsed / (double) ops, bytes / (double) ops);
+    }
+}
@@ -0,0 +1,81 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import com.twilio.voice.CallInvite;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CallInviteCacheTest {
+
+    private static CallInvite invite(String callSid) {
+        CallInvite invite = mock(CallInvite.class);
+        when(invite.getCallSid()).thenReturn(callSid);
+        return invite;
+    }
+
+    @Test
+    public void dropsDuplicatedPushes() {
+        CallInviteCache cache = new CallInviteCache();
+        CallInvite first = invite("CA1");
+        assertFalse(cache.isKnown("CA1"));
+        assertTrue(cache.put(first));
+        assertTrue(cache.isKnown("CA1"));
+        assertFalse(cache.put(invite("CA1")));
+        assertSame(first, cache.get("CA1"));
+        assertEquals(1, cache.pending().size());
+    }
+
+    @Test
+    public void dropsInvitesArrivingAfterTheirCancel() {
+        CallInviteCache cache = new CallInviteCache();
+        // nothing pending yet, the SID is remembered anyway
+        assertFalse(cache.cancel("CA1"));
+        assertFalse(cache.put(invite("CA1")));
+        assertTrue(cache.pending().isEmpty());
+    }
+
+    @Test
+    public void cancelAndTakeRemoveThePendingInvite() {
+        CallInviteCache cache = new CallInviteCache();
+        cache.put(invite("CA1"));
+        cache.put(invite("CA2"));
+        assertTrue(cache.cancel("CA1"));
+        assertNull(cache.get("CA1"));
+        assertEquals("CA2", cache.take("CA2").getCallSid());
+        assertNull(cache.take("CA2"));
+        assertFalse(cache.cancel(null));
+        assertFalse(cache.put(invite(null)));
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedInvite() {
+        CallInviteCache cache = new CallInviteCache(2);
+        cache.put(invite("CA1"));
+        cache.put(invite("CA2"));
+        // CA1 was used last, CA2 goes
+        cache.get("CA1");
+        cache.put(invite("CA3"));
+        assertEquals(2, cache.pending().size());
+        assertNull(cache.get("CA2"));
+        // the evicted invite is still known, a late duplicate is dropped
+        assertFalse(cache.put(invite("CA2")));
+    }
+
+    @Test
+    public void forgetsSeenSidsPastItsCapacity() {
+        CallInviteCache cache = new CallInviteCache(1);
+        for (int i = 0; i < 9; i++) {
+            cache.put(invite("CA" + i));
+        }
+        // 8 SIDs are remembered per invite kept
+        assertFalse(cache.isKnown("CA0"));
+        assertTrue(cache.isKnown("CA1"));
+    }
+}
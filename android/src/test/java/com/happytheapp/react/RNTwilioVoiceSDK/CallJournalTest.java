@@ -0,0 +1,170 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.MockedStatic;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+
+public class CallJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockedStatic<Arguments> arguments;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        arguments = JavaOnlyArguments.mock();
+        file = new File(folder.getRoot(), CallJournal.FILE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        arguments.close();
+    }
+
+    private static void recordCall(CallJournal journal, String handle, String sid) {
+        journal.recordMethod(handle, "connect");
+        journal.recordState(handle, CallStateMachine.State.RINGING);
+        journal.recordSid(handle, sid);
+        journal.recordState(handle, CallStateMachine.State.CONNECTED);
+        journal.recordError(handle, 31005, "Connection error");
+        journal.recordState(handle, CallStateMachine.State.DISCONNECTED);
+    }
+
+    @Test
+    public void exportsTheLastCallsOldestFirst() {
+        CallJournal journal = new CallJournal(file, 64);
+        recordCall(journal, "call-1", "CA1");
+        recordCall(journal, "call-2", "CA2");
+        // not bound to a call, not exported
+        journal.recordMethod(null, "setLogLevel");
+
+        ReadableArray calls = journal.export(5);
+        assertEquals(2, calls.size());
+        ReadableMap first = calls.getMap(0);
+        assertEquals("call-1", first.getString("handle"));
+        assertEquals("CA1", first.getString("sid"));
+        assertEquals(1, first.getInt("session"));
+        ReadableArray events = first.getArray("events");
+        assertEquals(6, events.size());
+        assertEquals("method", events.getMap(0).getString("type"));
+        assertEquals("connect", events.getMap(0).getString("payload"));
+        assertEquals("error", events.getMap(4).getString("type"));
+        assertEquals(31005, events.getMap(4).getInt("code"));
+
+        ReadableArray last = journal.export(1);
+        assertEquals(1, last.size());
+        assertEquals("call-2", last.getMap(0).getString("handle"));
+    }
+
+    @Test
+    public void survivesAReopenInANewSession() {
+        CallJournal journal = new CallJournal(file, 64);
+        recordCall(journal, "call-1", "CA1");
+
+        // a new process, the handles start over at call-1
+        CallJournal reopened = new CallJournal(file, 64);
+        recordCall(reopened, "call-1", "CA9");
+        ReadableArray calls = reopened.export(5);
+        assertEquals(2, calls.size());
+        assertEquals(1, calls.getMap(0).getInt("session"));
+        assertEquals("CA1", calls.getMap(0).getString("sid"));
+        assertEquals(2, calls.getMap(1).getInt("session"));
+        assertEquals("CA9", calls.getMap(1).getString("sid"));
+        // seq goes on from the newest record
+        ReadableArray events = calls.getMap(1).getArray("events");
+        assertEquals(7, events.getMap(0).getDouble("seq"), 0);
+    }
+
+    @Test
+    public void skipsATornSlot() throws IOException {
+        CallJournal journal = new CallJournal(file, 64);
+        recordCall(journal, "call-1", "CA1");
+
+        // a crash in the middle of the write of the 4th record (CONNECTED)
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(3 * CallJournal.SLOT_SIZE + 40);
+            raf.write(new byte[] { 'X', 'Y', 'Z' });
+        } finally {
+            raf.close();
+        }
+
+        CallJournal reopened = new CallJournal(file, 64);
+        ReadableArray events = reopened.export(1).getMap(0).getArray("events");
+        assertEquals(5, events.size());
+        assertEquals("CA1", events.getMap(2).getString("payload"));
+        assertEquals("error", events.getMap(3).getString("type"));
+    }
+
+    @Test
+    public void aTornNewestSlotIsOverwrittenNext() throws IOException {
+        CallJournal journal = new CallJournal(file, 64);
+        recordCall(journal, "call-1", "CA1");
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            // the CRC of the last record
+            raf.seek(5 * CallJournal.SLOT_SIZE + 60);
+            raf.writeInt(0);
+        } finally {
+            raf.close();
+        }
+
+        CallJournal reopened = new CallJournal(file, 64);
+        reopened.recordMethod("call-1", "connect");
+        ReadableArray calls = reopened.export(2);
+        // the torn DISCONNECTED is gone, the new record took its slot and its seq
+        assertEquals(5, calls.getMap(0).getArray("events").size());
+        ReadableMap next = calls.getMap(1).getArray("events").getMap(0);
+        assertEquals("connect", next.getString("payload"));
+        assertEquals(6, next.getDouble("seq"), 0);
+    }
+
+    @Test
+    public void wrapsAroundKeepingTheNewestRecords() {
+        CallJournal journal = new CallJournal(file, 8);
+        for (int i = 1; i <= 5; i++) {
+            recordCall(journal, "call-" + i, "CA" + i);
+        }
+        // 30 records in 8 slots: the end of call-4 and call-5
+        ReadableArray calls = journal.export(5);
+        assertEquals(2, calls.size());
+        assertEquals("call-4", calls.getMap(0).getString("handle"));
+        assertEquals(2, calls.getMap(0).getArray("events").size());
+        assertEquals(6, calls.getMap(1).getArray("events").size());
+
+        CallJournal reopened = new CallJournal(file, 8);
+        reopened.recordMethod("call-1", "connect");
+        assertEquals(31, reopened.export(1).getMap(0).getArray("events").getMap(0).getDouble("seq"), 0);
+    }
+
+    @Test
+    public void payloadsAreTruncatedAscii() {
+        CallJournal journal = new CallJournal(file, 8);
+        journal.recordError("call-1", 1, "\u00e9rror with a message longer than a slot can hold");
+        String payload = journal.export(1).getMap(0).getArray("events").getMap(0).getString("payload");
+        assertEquals("?rror with a message longer ", payload);
+    }
+
+    @Test
+    public void parsesCallIds() {
+        assertEquals(12, CallJournal.callId("call-12"));
+        assertEquals(0, CallJournal.callId(null));
+        assertEquals(0, CallJournal.callId("CA12"));
+        assertEquals(0, CallJournal.callId("call-1x"));
+    }
+}
@@ -0,0 +1,106 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CallMetricsTest {
+
+    private static final long MS = 1000000L;
+
+    private static class FakeClock implements CallMetrics.Clock {
+        long now = 1;
+
+        @Override
+        public long elapsedRealtimeNanos() {
+            return now;
+        }
+    }
+
+    @Test
+    public void concurrentCallsKeepTheirOwnTimeline() {
+        FakeClock clock = new FakeClock();
+        CallMetrics metrics = new CallMetrics(clock);
+
+        metrics.markConnectInvoked("call-1", clock.now);
+        clock.now += 100 * MS;
+        metrics.markConnectInvoked("call-2", clock.now);
+        clock.now += 50 * MS;
+        metrics.markRinging("call-1");
+        clock.now += 400 * MS;
+        metrics.markRinging("call-2");
+        assertEquals(2, metrics.getLiveCallCount());
+
+        // 150ms and 450ms, each from its own connect()
+        assertEquals(2, metrics.getTimeToRing().getCount());
+        assertEquals(450000, metrics.getTimeToRing().percentileMicros(100), 450000 * 0.07);
+        assertEquals(150000, metrics.getTimeToRing().percentileMicros(50), 150000 * 0.07);
+    }
+
+    @Test
+    public void reconnectIsMeasuredPerCall() {
+        FakeClock clock = new FakeClock();
+        CallMetrics metrics = new CallMetrics(clock);
+        metrics.markConnectInvoked("call-1", clock.now);
+        metrics.markConnectInvoked("call-2", clock.now);
+        metrics.markReconnecting("call-1");
+        clock.now += 200 * MS;
+        // the other call reconnecting doesn't end the reconnect of call-1
+        metrics.markReconnected("call-2");
+        assertEquals(0, metrics.getReconnectDuration().getCount());
+        metrics.markReconnected("call-1");
+        assertEquals(1, metrics.getReconnectDuration().getCount());
+        assertEquals(200000, metrics.getReconnectDuration().percentileMicros(100), 200000 * 0.07);
+    }
+
+    @Test
+    public void disconnectRemovesTheTimeline() {
+        FakeClock clock = new FakeClock();
+        CallMetrics metrics = new CallMetrics(clock);
+        metrics.markConnectInvoked("call-1", clock.now);
+        metrics.markReconnecting("call-1");
+        clock.now += 30 * MS;
+        metrics.markDisconnected("call-1");
+        assertEquals(0, metrics.getLiveCallCount());
+        // dropped while reconnecting
+        assertEquals(1, metrics.getReconnectDuration().getCount());
+        // a late callback of the ended call is ignored once it is gone again
+        metrics.markDisconnected("call-1");
+        assertEquals(0, metrics.getLiveCallCount());
+    }
+
+    @Test
+    public void redialedCallRecordsTheNewAttempt() {
+        FakeClock clock = new FakeClock();
+        CallMetrics metrics = new CallMetrics(clock);
+        metrics.markConnectInvoked("call-1", clock.now);
+        clock.now += 100 * MS;
+        metrics.markConnected("call-1");
+        metrics.markReconnecting("call-1");
+        clock.now += 50 * MS;
+        // dropped while reconnecting, dialled again
+        metrics.markRedial("call-1");
+        assertEquals(1, metrics.getReconnectDuration().getCount());
+        clock.now += 900 * MS;
+        metrics.markRinging("call-1");
+        clock.now += 100 * MS;
+        metrics.markConnected("call-1");
+        // the second one from the redial, not from the first connect()
+        assertEquals(2, metrics.getTimeToConnect().getCount());
+        assertEquals(1000000, metrics.getTimeToConnect().percentileMicros(100), 1000000 * 0.07);
+        assertEquals(1, metrics.getTimeToRing().getCount());
+        assertEquals(1, metrics.getLiveCallCount());
+    }
+
+    @Test
+    public void acceptedCallsOnlyRecordWhatTheyReach() {
+        FakeClock clock = new FakeClock();
+        CallMetrics metrics = new CallMetrics(clock);
+        // no connect() for an accepted invite
+        metrics.markConnected("call-1");
+        assertEquals(0, metrics.getTimeToConnect().getCount());
+        assertEquals(1, metrics.getLiveCallCount());
+        metrics.markDisconnected("call-1");
+        assertEquals(0, metrics.getLiveCallCount());
+    }
+}
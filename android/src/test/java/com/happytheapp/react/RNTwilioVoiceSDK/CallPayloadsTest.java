@@ -0,0 +1,113 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+import com.twilio.voice.Call;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CallPayloadsTest {
+
+    private MockedStatic<Arguments> arguments;
+    private CallPayloads payloads;
+    private TestCall call;
+
+    @Before
+    public void setUp() {
+        arguments = JavaOnlyArguments.mock();
+        payloads = new CallPayloads();
+        call = new TestCall(null);
+    }
+
+    @After
+    public void tearDown() {
+        arguments.close();
+    }
+
+    @Test
+    public void firstEventCarriesEveryField() {
+        call.sid = "CA1";
+        WritableMap params = payloads.event("1", call, false);
+        assertEquals("1", params.getString("handle"));
+        assertEquals(1, params.getInt("version"));
+        assertEquals("CA1", params.getString("sid"));
+        assertEquals("+15550000000", params.getString("from"));
+        assertEquals("+15551111111", params.getString("to"));
+        assertEquals("CONNECTING", params.getString("state"));
+    }
+
+    @Test
+    public void laterEventsOnlyCarryWhatChanged() {
+        payloads.event("1", call, false);
+        call.state = Call.State.RINGING;
+        call.sid = "CA1";
+        WritableMap params = payloads.event("1", call, false);
+        assertEquals(2, params.getInt("version"));
+        assertEquals("RINGING", params.getString("state"));
+        assertEquals("CA1", params.getString("sid"));
+        assertFalse(params.hasKey("from"));
+        assertFalse(params.hasKey("to"));
+
+        // nothing changed, only the handle and the next version
+        params = payloads.event("1", call, false);
+        assertEquals(3, params.getInt("version"));
+        assertFalse(params.hasKey("state"));
+        assertFalse(params.hasKey("sid"));
+    }
+
+    @Test
+    public void versionsArePerCall() {
+        payloads.event("1", call, false);
+        payloads.event("1", call, false);
+        assertEquals(1, payloads.event("2", new TestCall(null), false).getInt("version"));
+        assertEquals(3, payloads.event("1", call, false).getInt("version"));
+    }
+
+    @Test
+    public void stateOfTheHandleOverridesTheCall() {
+        payloads.event("1", call, false);
+        call.state = Call.State.DISCONNECTED;
+        // dropped and dialled again
+        WritableMap params = payloads.event("1", call, CallStateMachine.State.CONNECTING.name(), false);
+        assertFalse(params.hasKey("state"));
+        assertEquals("CONNECTING", payloads.full("1", call, CallStateMachine.State.CONNECTING.name()).getString("state"));
+        assertEquals("DISCONNECTED", payloads.full("1", call).getString("state"));
+    }
+
+    @Test
+    public void lastEventForgetsTheCall() {
+        payloads.event("1", call, false);
+        WritableMap params = payloads.event("1", call, true);
+        assertEquals(2, params.getInt("version"));
+        assertEquals(0, payloads.full("1", call).getInt("version"));
+        // a handle seen again starts over with a full event
+        params = payloads.event("1", call, false);
+        assertEquals(1, params.getInt("version"));
+        assertTrue(params.hasKey("from"));
+    }
+
+    @Test
+    public void fullMapIsAtTheVersionOfTheLastEvent() {
+        call.sid = "CA1";
+        payloads.event("1", call, false);
+        payloads.event("1", call, false);
+        WritableMap params = payloads.full("1", call);
+        assertEquals(2, params.getInt("version"));
+        assertEquals("CA1", params.getString("sid"));
+        assertEquals("+15550000000", params.getString("from"));
+        assertEquals("+15551111111", params.getString("to"));
+        assertEquals("CONNECTING", params.getString("state"));
+        // doesn't bump the version
+        assertEquals(3, payloads.event("1", call, false).getInt("version"));
+        // unknown handle
+        assertEquals(0, payloads.full("2", null).getInt("version"));
+        assertFalse(payloads.full("2", null).hasKey("state"));
+    }
+}
@@ -0,0 +1,158 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.MockedStatic;
+
+import java.util.List;
+
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_QUALITY_WARNING;
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_QUALITY_WARNING_CLEARED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class CallQualityEngineTest {
+
+    private MockedStatic<Arguments> arguments;
+    private EventManager eventManager;
+    private CallQualityEngine engine;
+
+    @Before
+    public void setUp() {
+        arguments = JavaOnlyArguments.mock();
+        eventManager = mock(EventManager.class);
+        engine = new CallQualityEngine(eventManager);
+        engine.reset("call-1");
+    }
+
+    @After
+    public void tearDown() {
+        arguments.close();
+    }
+
+    private void feed(int samples, float jitter, float rtt, float packetLoss, float mos) {
+        for (int i = 0; i < samples; i++) {
+            engine.onSample("call-1", jitter, rtt, packetLoss, 0.5f, mos);
+        }
+    }
+
+    private List<WritableMap> sent(String eventName) {
+        ArgumentCaptor<WritableMap> params = ArgumentCaptor.forClass(WritableMap.class);
+        verify(eventManager, atLeast(0)).sendEvent(eq(eventName), params.capture());
+        return params.getAllValues();
+    }
+
+    @Test
+    public void aGoodCallRaisesNothing() {
+        feed(100, 10, 120, 0, 4.3f);
+        verify(eventManager, never()).sendEvent(anyString(), any(WritableMap.class));
+    }
+
+    @Test
+    public void jitterIsRaisedOnceAndClearedPastTheClearThreshold() {
+        feed(10, 10, 120, 0, 4.3f);
+        feed(10, 45, 120, 0, 4.3f);
+        List<WritableMap> raised = sent(EVENT_QUALITY_WARNING);
+        assertEquals(1, raised.size());
+        assertEquals("high-jitter", raised.get(0).getString("warning"));
+        assertEquals("jitter", raised.get(0).getString("metric"));
+        assertEquals("call-1", raised.get(0).getString("handle"));
+        assertTrue(raised.get(0).getBoolean("active"));
+
+        // a mean between clear (25) and raise (30) keeps the warning
+        feed(10, 28, 120, 0, 4.3f);
+        assertEquals(0, sent(EVENT_QUALITY_WARNING_CLEARED).size());
+        feed(10, 10, 120, 0, 4.3f);
+        List<WritableMap> cleared = sent(EVENT_QUALITY_WARNING_CLEARED);
+        assertEquals(1, cleared.size());
+        assertFalse(cleared.get(0).getBoolean("active"));
+        assertEquals(1, sent(EVENT_QUALITY_WARNING).size());
+    }
+
+    @Test
+    public void lowMosIsRaisedAndZeroMosIsIgnored() {
+        // no MOS until the remote track has stats
+        feed(10, 10, 120, 0, 0);
+        assertEquals(0, sent(EVENT_QUALITY_WARNING).size());
+        feed(10, 10, 120, 0, 3.0f);
+        List<WritableMap> raised = sent(EVENT_QUALITY_WARNING);
+        assertEquals(1, raised.size());
+        assertEquals("low-mos", raised.get(0).getString("warning"));
+    }
+
+    @Test
+    public void fewSamplesAreNotEnough() {
+        feed(CallQualityEngine.MIN_SAMPLES - 1, 10, 900, 10, 4.3f);
+        assertEquals(0, sent(EVENT_QUALITY_WARNING).size());
+        feed(1, 10, 900, 10, 4.3f);
+        assertEquals(2, sent(EVENT_QUALITY_WARNING).size());
+    }
+
+    @Test
+    public void samplesOfAnotherCallAreIgnored() {
+        for (int i = 0; i < 20; i++) {
+            engine.onSample("call-2", 90, 900, 20, 0.5f, 1.5f);
+        }
+        verify(eventManager, never()).sendEvent(anyString(), any(WritableMap.class));
+        ReadableMap jitter = engine.toMap().getMap("jitter");
+        assertEquals(0, jitter.getInt("samples"));
+    }
+
+    @Test
+    public void windowAggregatesTheLastSamples() {
+        engine.setWindowSize(10);
+        for (int i = 1; i <= 20; i++) {
+            engine.onSample("call-1", i, 120, 0, 0.5f, 4.3f);
+        }
+        ReadableMap jitter = engine.toMap().getMap("jitter");
+        // 11..20
+        assertEquals(10, jitter.getInt("samples"));
+        assertEquals(15.5, jitter.getDouble("mean"), 1e-6);
+        // the newer half (16..20) against the older one (11..15)
+        assertEquals(5, jitter.getDouble("trend"), 1e-6);
+        // 4ms buckets over 0..200
+        assertEquals(20, jitter.getDouble("p90"), 4);
+    }
+
+    @Test
+    public void resetDropsTheWarnings() {
+        feed(10, 45, 120, 0, 4.3f);
+        engine.reset("call-2");
+        assertFalse(engine.toMap().getMap("jitter").getBoolean("active"));
+        // the new call has to fill its window again
+        for (int i = 0; i < 2; i++) {
+            engine.onSample("call-2", 45, 120, 0, 0.5f, 4.3f);
+        }
+        assertEquals(1, sent(EVENT_QUALITY_WARNING).size());
+    }
+
+    /*
+     * The samples of a steady call are folded in without allocating
+     */
+    @Test
+    public void benchmarkSamples() {
+        Bench.Result result = Bench.run(1000000, new Runnable() {
+            int i;
+
+            @Override
+            public void run() {
+                engine.onSample("call-1", 10 + (i++ & 7), 120, 0, 0.5f, 4.3f);
+            }
+        });
+        assertTrue("allocates " + result.bytesPerOp + " bytes per sample", result.bytesPerOp < 0.01);
+    }
+}
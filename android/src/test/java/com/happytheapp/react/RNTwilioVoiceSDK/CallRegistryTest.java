@@ -0,0 +1,105 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CallRegistryTest {
+
+    private CallRegistry registry;
+
+    @Before
+    public void setUp() {
+        registry = new CallRegistry();
+    }
+
+    @Test
+    public void everyChangePublishesANewVersion() {
+        assertEquals(0, registry.getSnapshot().version);
+        String handle = registry.newHandle();
+        TestCall call = new TestCall(null);
+        registry.put(handle, call);
+        long version = registry.getSnapshot().version;
+        assertTrue(version > 0);
+
+        call.sid = "CA1";
+        registry.put(handle, call);
+        assertTrue(registry.getSnapshot().version > version);
+        version = registry.getSnapshot().version;
+
+        registry.transition(handle, CallStateMachine.State.RINGING);
+        assertEquals(version + 1, registry.getSnapshot().version);
+        registry.transition(handle, CallStateMachine.State.CONNECTED);
+        assertEquals(version + 2, registry.getSnapshot().version);
+        registry.remove(handle);
+        assertEquals(version + 3, registry.getSnapshot().version);
+    }
+
+    @Test
+    public void nothingPublishedWithoutAChange() {
+        String handle = registry.newHandle();
+        TestCall call = new TestCall("CA1");
+        registry.put(handle, call);
+        long version = registry.getSnapshot().version;
+        // same call, same SID
+        registry.put(handle, call);
+        // not allowed from CONNECTING
+        registry.transition(handle, CallStateMachine.State.RECONNECTING);
+        registry.setActiveHandle(handle);
+        assertEquals(version, registry.getSnapshot().version);
+    }
+
+    @Test
+    public void nullWhileTheKnownVersionIsCurrent() {
+        String handle = registry.newHandle();
+        registry.put(handle, new TestCall(null));
+        CallStateSnapshot snapshot = registry.getSnapshot();
+        assertNull(registry.getSnapshotIfChanged(snapshot.version));
+        // an older or unknown version gets the current snapshot
+        assertSame(snapshot, registry.getSnapshotIfChanged(snapshot.version - 1));
+        assertSame(snapshot, registry.getSnapshotIfChanged(-1));
+
+        registry.transition(handle, CallStateMachine.State.RINGING);
+        CallStateSnapshot next = registry.getSnapshotIfChanged(snapshot.version);
+        assertEquals(snapshot.version + 1, next.version);
+        assertNull(registry.getSnapshotIfChanged(next.version));
+    }
+
+    @Test
+    public void snapshotsDontChangeAfterLaterTransitions() {
+        String handle = registry.newHandle();
+        TestCall call = new TestCall(null);
+        registry.put(handle, call);
+        registry.transition(handle, CallStateMachine.State.RINGING);
+        CallStateSnapshot ringing = registry.getSnapshot();
+
+        call.sid = "CA1";
+        registry.put(handle, call);
+        registry.transition(handle, CallStateMachine.State.CONNECTED);
+        String other = registry.newHandle();
+        registry.put(other, new TestCall("CA2"));
+        registry.remove(handle);
+
+        assertEquals(1, ringing.calls.size());
+        assertEquals(handle, ringing.calls.get(0).handle);
+        assertNull(ringing.calls.get(0).sid);
+        assertEquals(CallStateMachine.State.RINGING, ringing.calls.get(0).state);
+        assertEquals(handle, ringing.activeHandle);
+
+        CallStateSnapshot current = registry.getSnapshot();
+        assertEquals(1, current.calls.size());
+        assertEquals(other, current.calls.get(0).handle);
+        assertEquals(other, current.activeHandle);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void snapshotCallsCantBeModified() {
+        String handle = registry.newHandle();
+        registry.put(handle, new TestCall(null));
+        registry.getSnapshot().calls.clear();
+    }
+}
@@ -0,0 +1,219 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.PowerManager;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReactApplicationContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+
+import static com.happytheapp.react.RNTwilioVoiceSDK.CallResourceLedger.AUDIO_FOCUS;
+import static com.happytheapp.react.RNTwilioVoiceSDK.CallResourceLedger.AUDIO_MODE;
+import static com.happytheapp.react.RNTwilioVoiceSDK.CallResourceLedger.HELD_EVENTS;
+import static com.happytheapp.react.RNTwilioVoiceSDK.CallResourceLedger.PROXIMITY_LISTENER;
+import static com.happytheapp.react.RNTwilioVoiceSDK.CallResourceLedger.PROXIMITY_WAKE_LOCK;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CallResourceLedgerTest {
+
+    private MockedStatic<Arguments> arguments;
+    private CallResourceLedger ledger;
+
+    @Before
+    public void setUp() {
+        arguments = JavaOnlyArguments.mock();
+        ledger = new CallResourceLedger();
+    }
+
+    @After
+    public void tearDown() {
+        arguments.close();
+    }
+
+    private int count(String name, String counter) {
+        return ledger.toMap().getMap(name).getInt(counter);
+    }
+
+    private int liveCalls() {
+        return ledger.toMap().getInt("liveCalls");
+    }
+
+    @Test
+    public void acquiringTwiceIsCountedOnce() {
+        ledger.acquire("1", AUDIO_FOCUS);
+        ledger.acquire("1", AUDIO_FOCUS | AUDIO_MODE);
+        ledger.acquire(null, AUDIO_FOCUS);
+        assertEquals(1, count("audioFocus", "acquired"));
+        assertEquals(1, count("audioMode", "acquired"));
+        assertEquals(1, liveCalls());
+
+        ledger.close("1");
+        assertEquals(0, liveCalls());
+        ledger.releaseAll(AUDIO_FOCUS | AUDIO_MODE);
+        assertEquals(1, count("audioFocus", "released"));
+        assertEquals(1, count("audioMode", "released"));
+    }
+
+    @Test
+    public void releaseOnlyCountsWhatTheCallHolds() {
+        ledger.acquire("1", AUDIO_FOCUS | PROXIMITY_LISTENER);
+        ledger.release("1", PROXIMITY_LISTENER | PROXIMITY_WAKE_LOCK);
+        assertEquals(1, count("proximityListener", "released"));
+        assertEquals(0, count("proximityWakeLock", "released"));
+        assertEquals(1, liveCalls());
+
+        // a call holding nothing is gone
+        ledger.release("1", AUDIO_FOCUS);
+        assertEquals(0, liveCalls());
+        ledger.close("1");
+        ledger.release("1", AUDIO_FOCUS);
+        assertEquals(1, count("audioFocus", "released"));
+    }
+
+    @Test
+    public void closeCountsNothingUntilTheReleaseIsConfirmed() {
+        ledger.acquire("1", PROXIMITY_LISTENER | AUDIO_FOCUS);
+        ledger.close("1");
+        assertEquals(0, count("proximityListener", "released"));
+        assertEquals(0, liveCalls());
+
+        ledger.release("1", PROXIMITY_LISTENER);
+        ledger.release("1", PROXIMITY_LISTENER);
+        ledger.release("2", PROXIMITY_LISTENER);
+        ledger.release(null, PROXIMITY_LISTENER);
+        assertEquals(1, count("proximityListener", "acquired"));
+        assertEquals(1, count("proximityListener", "released"));
+        // confirmed, so not a leak
+        assertEquals(0, ledger.reportLeaks(PROXIMITY_LISTENER));
+        assertEquals(0, count("proximityListener", "leaked"));
+        assertEquals(AUDIO_FOCUS, ledger.reportLeaks(AUDIO_FOCUS | AUDIO_MODE));
+        assertEquals(1, count("audioFocus", "leaked"));
+        // counted once
+        assertEquals(0, ledger.reportLeaks(AUDIO_FOCUS));
+        assertEquals(1, count("audioFocus", "leaked"));
+    }
+
+    @Test
+    public void releaseAllGivesBackWhateverCallHoldsThem() {
+        ledger.acquire("1", AUDIO_FOCUS | HELD_EVENTS);
+        ledger.acquire("2", AUDIO_FOCUS);
+        ledger.releaseAll(HELD_EVENTS);
+        assertEquals(1, count("heldEvents", "acquired"));
+        assertEquals(1, count("heldEvents", "released"));
+        assertEquals(0, count("audioFocus", "released"));
+        assertEquals(2, liveCalls());
+        ledger.releaseAll(AUDIO_FOCUS);
+        assertEquals(2, count("audioFocus", "released"));
+        assertEquals(0, liveCalls());
+    }
+
+    @Test
+    public void onlyTheEndedCallsLeak() {
+        ledger.acquire("1", PROXIMITY_WAKE_LOCK | AUDIO_MODE);
+        ledger.acquire("2", AUDIO_MODE | HELD_EVENTS);
+        ledger.acquire("3", AUDIO_MODE);
+        ledger.close("1");
+        ledger.close("2");
+        ledger.reportLeaks(0);
+        ledger.reportLeaks(PROXIMITY_WAKE_LOCK | AUDIO_MODE);
+        assertEquals(1, count("proximityWakeLock", "leaked"));
+        assertEquals(2, count("audioMode", "leaked"));
+        assertEquals(0, count("heldEvents", "leaked"));
+        // still going on
+        assertEquals(1, liveCalls());
+
+        ledger.releaseAll(HELD_EVENTS);
+        assertEquals(1, count("heldEvents", "released"));
+        assertEquals(0, ledger.reportLeaks(HELD_EVENTS));
+    }
+
+    @Test
+    public void proximityListenerIsChargedToTheCallOwningIt() {
+        VirtualLooper looper = new VirtualLooper();
+        try {
+            SensorManager sensors = mock(SensorManager.class);
+            when(sensors.getDefaultSensor(Sensor.TYPE_PROXIMITY)).thenReturn(mock(Sensor.class));
+            ReactApplicationContext context = mock(ReactApplicationContext.class);
+            when(context.getSystemService(Context.POWER_SERVICE)).thenReturn(mock(PowerManager.class));
+            when(context.getSystemService(Context.SENSOR_SERVICE)).thenReturn(sensors);
+            ProximityManager proximity = new ProximityManager(context, mock(EventManager.class), ledger);
+
+            proximity.startProximitySensor("1");
+            looper.advance(0);
+            assertEquals(1, count("proximityListener", "acquired"));
+
+            // a second call takes the running sensor over
+            proximity.startProximitySensor("2");
+            looper.advance(0);
+            verify(sensors, times(1)).registerListener(any(SensorEventListener.class),
+                    any(Sensor.class), anyInt(), any(Handler.class));
+            assertEquals(2, count("proximityListener", "acquired"));
+            assertEquals(1, count("proximityListener", "released"));
+            assertEquals(1, liveCalls());
+
+            // ended before the hand over ran, what it was charged goes on with the other call
+            proximity.startProximitySensor("3");
+            ledger.close("3");
+            proximity.setOwner("2");
+            looper.advance(0);
+            assertEquals(4, count("proximityListener", "acquired"));
+            assertEquals(3, count("proximityListener", "released"));
+
+            proximity.stopProximitySensor();
+            looper.advance(0);
+            assertEquals(4, count("proximityListener", "released"));
+            assertEquals(0, liveCalls());
+
+            // only what is still held once no call is left is a leak
+            ledger.close("2");
+            proximity.releaseLeaks();
+            looper.advance(0);
+            assertEquals(0, count("proximityListener", "leaked"));
+            // no proximity wake lock on this device
+            assertEquals(0, count("proximityWakeLock", "acquired"));
+        } finally {
+            looper.close();
+        }
+    }
+
+    @Test
+    public void aSensorLeftRunningIsDetected() {
+        VirtualLooper looper = new VirtualLooper();
+        try {
+            SensorManager sensors = mock(SensorManager.class);
+            when(sensors.getDefaultSensor(Sensor.TYPE_PROXIMITY)).thenReturn(mock(Sensor.class));
+            ReactApplicationContext context = mock(ReactApplicationContext.class);
+            when(context.getSystemService(Context.POWER_SERVICE)).thenReturn(mock(PowerManager.class));
+            when(context.getSystemService(Context.SENSOR_SERVICE)).thenReturn(sensors);
+            ProximityManager proximity = new ProximityManager(context, mock(EventManager.class), ledger);
+
+            proximity.startProximitySensor("1");
+            looper.advance(0);
+            // the call ends without stopProximitySensor
+            ledger.close("1");
+            proximity.releaseLeaks();
+            looper.advance(0);
+
+            verify(sensors).unregisterListener(any(SensorEventListener.class));
+            assertEquals(1, count("proximityListener", "acquired"));
+            assertEquals(0, count("proximityListener", "released"));
+            assertEquals(1, count("proximityListener", "leaked"));
+        } finally {
+            looper.close();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.happytheapp.react.RNTwilioVoiceSDK.CallStateMachine.State.CONNECTED;
+import static com.happytheapp.react.RNTwilioVoiceSDK.CallStateMachine.State.CONNECTING;
+import static com.happytheapp.react.RNTwilioVoiceSDK.CallStateMachine.State.DISCONNECTED;
+import static com.happytheapp.react.RNTwilioVoiceSDK.CallStateMachine.State.DISCONNECTING;
+import static com.happytheapp.react.RNTwilioVoiceSDK.CallStateMachine.State.RECONNECTING;
+import static com.happytheapp.react.RNTwilioVoiceSDK.CallStateMachine.State.RINGING;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CallStateMachineTest {
+
+    @Test
+    public void followsTheCallLifecycle() {
+        CallStateMachine stateMachine = new CallStateMachine();
+        assertEquals(CONNECTING, stateMachine.getState());
+        assertTrue(stateMachine.moveTo(RINGING));
+        assertTrue(stateMachine.moveTo(CONNECTED));
+        assertTrue(stateMachine.moveTo(RECONNECTING));
+        assertTrue(stateMachine.moveTo(CONNECTED));
+        assertFalse(stateMachine.isEnded());
+        assertTrue(stateMachine.moveTo(DISCONNECTING));
+        assertTrue(stateMachine.isEnded());
+        assertTrue(stateMachine.moveTo(DISCONNECTED));
+    }
+
+    @Test
+    public void refusesLateCallbacks() {
+        CallStateMachine stateMachine = new CallStateMachine();
+        assertTrue(stateMachine.moveTo(DISCONNECTING));
+        // a ringing or connected reported after a local disconnect
+        assertFalse(stateMachine.moveTo(RINGING));
+        assertFalse(stateMachine.moveTo(CONNECTED));
+        assertTrue(stateMachine.moveTo(DISCONNECTED));
+        // nothing leaves DISCONNECTED, not even a duplicated disconnect
+        for (CallStateMachine.State next : CallStateMachine.State.values()) {
+            assertFalse(next.name(), stateMachine.moveTo(next));
+        }
+    }
+
+    @Test
+    public void refusesImpossibleTransitions() {
+        CallStateMachine stateMachine = new CallStateMachine();
+        assertFalse(stateMachine.moveTo(RECONNECTING));
+        assertFalse(stateMachine.moveTo(CONNECTING));
+        assertTrue(stateMachine.moveTo(CONNECTED));
+        assertFalse(stateMachine.moveTo(RINGING));
+        assertEquals(CONNECTED, stateMachine.getState());
+    }
+
+    @Test
+    public void registryRefusesUnknownHandles() {
+        CallRegistry registry = new CallRegistry();
+        assertFalse(registry.transition("call-9", CONNECTED));
+        assertNull(registry.getState("call-9"));
+        String handle = registry.newHandle();
+        registry.put(handle, new TestCall("CA1"));
+        assertTrue(registry.transition(handle, RINGING));
+        assertEquals(handle, registry.resolveHandle("CA1"));
+        registry.remove(handle);
+        assertFalse(registry.transition(handle, CONNECTED));
+        assertNull(registry.resolveHandle("CA1"));
+    }
+
+    /*
+     * Calls driven through their lifecycle on one thread, like the actor, while
+     * other threads read the published snapshots: versions only go up and every
+     * snapshot is consistent
+     */
+    @Test
+    public void snapshotsStayConsistentUnderConcurrentReads() throws InterruptedException {
+        final CallRegistry registry = new CallRegistry();
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final int readers = 4;
+        final CountDownLatch done = new CountDownLatch(readers);
+        for (int r = 0; r < readers; r++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long version = -1;
+                    while (running.get()) {
+                        CallStateSnapshot snapshot = registry.getSnapshot();
+                        if (snapshot.version < version) {
+                            failure.set("version went back from " + version + " to " + snapshot.version);
+                        }
+                        version = snapshot.version;
+                        // never more than the 4 calls up at once
+                        if (snapshot.calls.size() > 4) {
+                            failure.set(snapshot.calls.size() + " calls published");
+                        }
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        ArrayList<String> live = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            String handle = registry.newHandle();
+            registry.put(handle, new TestCall("CA" + i));
+            registry.transition(handle, RINGING);
+            registry.transition(handle, CONNECTED);
+            live.add(handle);
+            // a few calls stay up while the next ones come and go
+            if (live.size() > 3) {
+                String ended = live.remove(0);
+                assertTrue(registry.transition(ended, DISCONNECTING));
+                registry.remove(ended);
+            }
+        }
+        for (String handle : live) {
+            registry.transition(handle, DISCONNECTING);
+            registry.remove(handle);
+        }
+        running.set(false);
+        done.await();
+
+        assertNull(failure.get(), failure.get());
+        assertTrue(registry.isEmpty());
+        assertNull(registry.getActiveHandle());
+        assertEquals(0, registry.getSnapshot().calls.size());
+    }
+}
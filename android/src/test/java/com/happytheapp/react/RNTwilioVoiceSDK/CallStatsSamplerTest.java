@@ -0,0 +1,164 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+import com.twilio.voice.LocalAudioTrackStats;
+import com.twilio.voice.RemoteAudioTrackStats;
+import com.twilio.voice.StatsListener;
+import com.twilio.voice.StatsReport;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.dynamic.scaffold.subclass.ConstructorStrategy;
+import net.bytebuddy.implementation.FixedValue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.MockedStatic;
+import org.objenesis.ObjenesisStd;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_STATS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static net.bytebuddy.matcher.ElementMatchers.named;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class CallStatsSamplerTest {
+
+    private MockedStatic<Arguments> arguments;
+    private VirtualLooper looper;
+    private EventManager eventManager;
+    private List<StatsReport> reports;
+
+    // records the listener the sampler polls the call with
+    private static class PolledCall extends TestCall {
+        StatsListener listener;
+
+        PolledCall() {
+            super("CA1");
+        }
+
+        @Override
+        public boolean getStats(StatsListener listener) {
+            this.listener = listener;
+            return true;
+        }
+    }
+
+    private static class SummingListener implements CallStatsSampler.SampleListener {
+        int samples;
+        float jitter;
+
+        @Override
+        public void onSample(String handle, float jitter, float rtt, float packetLoss, float audioLevel, float mos) {
+            samples++;
+            this.jitter += jitter;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        arguments = JavaOnlyArguments.mock();
+        looper = new VirtualLooper();
+        eventManager = mock(EventManager.class);
+        reports = new ArrayList<>();
+        reports.add(fixedReport());
+    }
+
+    @After
+    public void tearDown() {
+        looper.close();
+        arguments.close();
+    }
+
+    /*
+     * A report of one local and one remote track built without a mock, the invocations
+     * Mockito records would allocate far more than the path measured. The SDK doesn't
+     * expose its constructors, the instances skip them.
+     */
+    private static StatsReport fixedReport() {
+        ObjenesisStd objenesis = new ObjenesisStd();
+        List<LocalAudioTrackStats> local = Collections.singletonList(objenesis.newInstance(LocalAudioTrackStats.class));
+        List<RemoteAudioTrackStats> remote = Collections.singletonList(objenesis.newInstance(RemoteAudioTrackStats.class));
+        Class<? extends StatsReport> type = new ByteBuddy()
+                .subclass(StatsReport.class, ConstructorStrategy.Default.NO_CONSTRUCTORS)
+                .method(named("getLocalAudioTrackStats")).intercept(FixedValue.value(local))
+                .method(named("getRemoteAudioTrackStats")).intercept(FixedValue.value(remote))
+                .make()
+                .load(StatsReport.class.getClassLoader(), ClassLoadingStrategy.Default.WRAPPER)
+                .getLoaded();
+        return objenesis.newInstance(type);
+    }
+
+    private StatsListener poll(CallStatsSampler sampler) {
+        PolledCall call = new PolledCall();
+        sampler.start("1", call);
+        looper.advance(0);
+        assertNotNull(call.listener);
+        return call.listener;
+    }
+
+    @Test
+    public void sendsABatchEveryBatchSizeSamples() {
+        CallStatsSampler sampler = new CallStatsSampler(eventManager);
+        sampler.configure(1000, 3);
+        SummingListener samples = new SummingListener();
+        sampler.setSampleListener(samples);
+        StatsListener listener = poll(sampler);
+        for (int i = 0; i < 7; i++) {
+            listener.onStats(reports);
+        }
+        assertEquals(7, samples.samples);
+        ArgumentCaptor<WritableMap> batches = ArgumentCaptor.forClass(WritableMap.class);
+        verify(eventManager, times(2)).sendEvent(eq(EVENT_STATS), batches.capture());
+        assertEquals("1", batches.getValue().getString("handle"));
+        assertEquals(3, batches.getValue().getArray("jitter").size());
+
+        // the sample left is flushed once the call ends
+        sampler.stop("1");
+        looper.advance(0);
+        verify(eventManager, times(3)).sendEvent(eq(EVENT_STATS), batches.capture());
+        assertEquals(1, batches.getValue().getArray("jitter").size());
+        ReadableMap history = sampler.getHistory("1");
+        assertEquals(7, history.getArray("jitter").size());
+    }
+
+    /*
+     * From the stats listener of the call to the ring and the sample listener, no
+     * allocation but the batch itself
+     */
+    @Test
+    public void benchmarkSamplePath() {
+        int samples = 100000;
+        // large enough for no batch to be sent while measuring
+        CallStatsSampler sampler = new CallStatsSampler(eventManager, 4 * samples);
+        sampler.configure(1000, 4 * samples);
+        SummingListener sampleListener = new SummingListener();
+        sampler.setSampleListener(sampleListener);
+        final StatsListener listener = poll(sampler);
+        Bench.Result result = Bench.run(samples, new Runnable() {
+            @Override
+            public void run() {
+                listener.onStats(reports);
+            }
+        });
+        assertEquals(2 * samples, sampleListener.samples);
+        verify(eventManager, never()).sendEvent(anyString(), any(WritableMap.class));
+        // a few KB once for the whole run, an object per sample would be 16 bytes or more
+        assertTrue("allocates " + result.bytesPerOp + " bytes per sample", result.bytesPerOp < 1);
+    }
+}
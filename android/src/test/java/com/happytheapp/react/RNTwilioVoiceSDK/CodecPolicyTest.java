@@ -0,0 +1,119 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableMap;
+
+import com.twilio.voice.AudioCodec;
+import com.twilio.voice.OpusCodec;
+import com.twilio.voice.PcmuCodec;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CodecPolicyTest {
+
+    private static class FakeClassifier implements CodecPolicy.NetworkClassifier {
+        CodecPolicy.LinkQuality linkQuality = CodecPolicy.LinkQuality.UNKNOWN;
+        int calls = 0;
+
+        @Override
+        public CodecPolicy.LinkQuality classify() {
+            calls++;
+            return linkQuality;
+        }
+    }
+
+    private final FakeClassifier classifier = new FakeClassifier();
+    private final CodecPolicy policy = new CodecPolicy(classifier);
+    private MockedStatic<Arguments> arguments;
+
+    @Before
+    public void setUp() {
+        arguments = JavaOnlyArguments.mock();
+    }
+
+    @After
+    public void tearDown() {
+        arguments.close();
+    }
+
+    @Test
+    public void bitrateFollowsTheLink() {
+        classifier.linkQuality = CodecPolicy.LinkQuality.LOW;
+        assertEquals(CodecPolicy.DEFAULT_LOW_BITRATE, policy.choose().maxAverageBitrate);
+        classifier.linkQuality = CodecPolicy.LinkQuality.MEDIUM;
+        assertEquals(CodecPolicy.DEFAULT_MEDIUM_BITRATE, policy.choose().maxAverageBitrate);
+        classifier.linkQuality = CodecPolicy.LinkQuality.HIGH;
+        CodecPolicy.Choice choice = policy.choose();
+        assertEquals(OpusCodec.NAME, choice.codec);
+        assertEquals(CodecPolicy.DEFAULT_HIGH_BITRATE, choice.maxAverageBitrate);
+        assertEquals(CodecPolicy.LinkQuality.HIGH, choice.linkQuality);
+    }
+
+    @Test
+    public void anUnknownLinkGetsTheMiddleGround() {
+        CodecPolicy.Choice choice = policy.choose();
+        assertEquals(CodecPolicy.DEFAULT_MEDIUM_BITRATE, choice.maxAverageBitrate);
+        assertEquals(CodecPolicy.LinkQuality.UNKNOWN, choice.linkQuality);
+    }
+
+    @Test
+    public void fixedModesDontClassifyTheLink() {
+        policy.configure(CodecPolicy.Mode.PCMU, 0, 0, 0);
+        assertEquals(PcmuCodec.NAME, policy.choose().codec);
+        policy.configure(CodecPolicy.Mode.OPUS, 0, 0, 0);
+        assertEquals(OpusCodec.NAME, policy.choose().codec);
+        assertEquals(0, policy.choose().maxAverageBitrate);
+        policy.configure(CodecPolicy.Mode.DEFAULT, 0, 0, 0);
+        assertNull(policy.choose().toAudioCodecs());
+        assertEquals(0, classifier.calls);
+    }
+
+    @Test
+    public void bitratesAreClampedToTheOpusRange() {
+        policy.configure(CodecPolicy.Mode.AUTO, 1000, 32000, 1000000);
+        classifier.linkQuality = CodecPolicy.LinkQuality.LOW;
+        assertEquals(6000, policy.choose().maxAverageBitrate);
+        classifier.linkQuality = CodecPolicy.LinkQuality.MEDIUM;
+        assertEquals(32000, policy.choose().maxAverageBitrate);
+        classifier.linkQuality = CodecPolicy.LinkQuality.HIGH;
+        assertEquals(510000, policy.choose().maxAverageBitrate);
+    }
+
+    @Test
+    public void theOtherCodecIsKeptAsFallback() {
+        classifier.linkQuality = CodecPolicy.LinkQuality.LOW;
+        List<AudioCodec> codecs = policy.choose().toAudioCodecs();
+        assertEquals(2, codecs.size());
+        assertTrue(codecs.get(0) instanceof OpusCodec);
+        assertTrue(codecs.get(1) instanceof PcmuCodec);
+
+        policy.configure(CodecPolicy.Mode.PCMU, 0, 0, 0);
+        codecs = policy.choose().toAudioCodecs();
+        assertTrue(codecs.get(0) instanceof PcmuCodec);
+        assertTrue(codecs.get(1) instanceof OpusCodec);
+    }
+
+    @Test
+    public void choiceIsReportedToJs() {
+        classifier.linkQuality = CodecPolicy.LinkQuality.HIGH;
+        ReadableMap map = policy.choose().toMap();
+        assertEquals("opus", map.getString("name"));
+        assertEquals(CodecPolicy.DEFAULT_HIGH_BITRATE, map.getInt("maxAverageBitrate"));
+        assertEquals("high", map.getString("linkQuality"));
+
+        policy.configure(CodecPolicy.Mode.PCMU, 0, 0, 0);
+        map = policy.choose().toMap();
+        assertFalse(map.hasKey("maxAverageBitrate"));
+        assertEquals("unknown", map.getString("linkQuality"));
+    }
+}
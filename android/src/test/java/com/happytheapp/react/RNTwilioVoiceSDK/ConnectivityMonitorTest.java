@@ -0,0 +1,115 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkRequest;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConnectivityMonitorTest {
+
+    private ReactApplicationContext context;
+    private ConnectivityManager connectivityManager;
+    private int available;
+    private int lost;
+
+    private final ConnectivityMonitor.Listener listener = new ConnectivityMonitor.Listener() {
+        @Override
+        public void onNetworkAvailable() {
+            available++;
+        }
+
+        @Override
+        public void onNetworkLost() {
+            lost++;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        context = mock(ReactApplicationContext.class);
+        connectivityManager = mock(ConnectivityManager.class);
+        when(context.getApplicationContext()).thenReturn(context);
+        when(context.getSystemService(Context.CONNECTIVITY_SERVICE)).thenReturn(connectivityManager);
+    }
+
+    private ConnectivityManager.NetworkCallback start(ConnectivityMonitor monitor, boolean defaultNetworkOnly) {
+        monitor.setListener(listener);
+        ArgumentCaptor<ConnectivityManager.NetworkCallback> callback =
+                ArgumentCaptor.forClass(ConnectivityManager.NetworkCallback.class);
+        if (defaultNetworkOnly) {
+            verify(connectivityManager).registerDefaultNetworkCallback(callback.capture());
+        } else {
+            verify(connectivityManager).registerNetworkCallback(nullable(NetworkRequest.class), callback.capture());
+        }
+        return callback.getValue();
+    }
+
+    @Test
+    public void switchingTheDefaultNetworkIsNotALoss() {
+        ConnectivityMonitor monitor = new ConnectivityMonitor(context, true);
+        ConnectivityManager.NetworkCallback callback = start(monitor, true);
+        Network wifi = mock(Network.class);
+        Network cell = mock(Network.class);
+
+        callback.onAvailable(wifi);
+        // Wi-Fi to mobile, the old one is never reported lost
+        callback.onAvailable(cell);
+        assertEquals(1, available);
+        assertTrue(monitor.isConnected());
+
+        // a late loss of the previous default network
+        callback.onLost(wifi);
+        assertTrue(monitor.isConnected());
+        assertEquals(0, lost);
+
+        callback.onLost(cell);
+        assertFalse(monitor.isConnected());
+        assertEquals(1, lost);
+
+        callback.onAvailable(wifi);
+        assertTrue(monitor.isConnected());
+        assertEquals(2, available);
+    }
+
+    @Test
+    public void everyNetworkHasToGoBeforeAPI24() {
+        ConnectivityMonitor monitor = new ConnectivityMonitor(context, false);
+        ConnectivityManager.NetworkCallback callback = start(monitor, false);
+        Network wifi = mock(Network.class);
+        Network cell = mock(Network.class);
+
+        callback.onAvailable(wifi);
+        callback.onAvailable(cell);
+        assertEquals(1, available);
+        callback.onLost(wifi);
+        assertTrue(monitor.isConnected());
+        assertEquals(0, lost);
+        callback.onLost(cell);
+        assertFalse(monitor.isConnected());
+        assertEquals(1, lost);
+    }
+
+    @Test
+    public void stopUnregisters() {
+        ConnectivityMonitor monitor = new ConnectivityMonitor(context, true);
+        ConnectivityManager.NetworkCallback callback = start(monitor, true);
+        monitor.stop();
+        verify(connectivityManager).unregisterNetworkCallback(callback);
+        callback.onAvailable(mock(Network.class));
+        assertEquals(0, available);
+    }
+}
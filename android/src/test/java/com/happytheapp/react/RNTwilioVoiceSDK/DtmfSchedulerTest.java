@@ -0,0 +1,234 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.WritableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_DTMF_PROGRESS;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class DtmfSchedulerTest {
+
+    private static class FakeClock implements DtmfScheduler.Clock {
+        long now = 0;
+
+        @Override
+        public long uptimeMillis() {
+            return now;
+        }
+    }
+
+    private static class Timer {
+        final Runnable message;
+        final long at;
+
+        Timer(Runnable message, long at) {
+            this.message = message;
+            this.at = at;
+        }
+    }
+
+    private final FakeClock clock = new FakeClock();
+    // messages posted to the actor, run by advanceTo() on the virtual clock
+    private final ArrayList<Timer> timers = new ArrayList<>();
+    private final ArrayList<Long> toneTimes = new ArrayList<>();
+    private MockedStatic<Arguments> arguments;
+    private EventManager eventManager;
+    private DtmfScheduler scheduler;
+    private TestCall call;
+
+    @Before
+    public void setUp() {
+        arguments = JavaOnlyArguments.mock();
+        CallActor callActor = mock(CallActor.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                timers.add(new Timer((Runnable) invocation.getArgument(0), (Long) invocation.getArgument(1)));
+                return null;
+            }
+        }).when(callActor).postAtTime(any(Runnable.class), anyLong());
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                Iterator<Timer> iterator = timers.iterator();
+                while (iterator.hasNext()) {
+                    if (iterator.next().message == invocation.getArgument(0)) {
+                        iterator.remove();
+                    }
+                }
+                return null;
+            }
+        }).when(callActor).cancel(any(Runnable.class));
+        eventManager = mock(EventManager.class);
+        scheduler = new DtmfScheduler(callActor, eventManager, clock);
+        call = new TestCall("CA1") {
+            @Override
+            public void sendDigits(String digits) {
+                super.sendDigits(digits);
+                toneTimes.add(clock.now);
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        arguments.close();
+    }
+
+    // runs the messages due until then, in order, each at its due time
+    private void advanceTo(long time) {
+        while (true) {
+            Timer next = null;
+            for (Timer timer : timers) {
+                if (timer.at <= time && (next == null || timer.at < next.at)) {
+                    next = timer;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            timers.remove(next);
+            clock.now = Math.max(clock.now, next.at);
+            next.message.run();
+        }
+        clock.now = time;
+    }
+
+    // the next message is run late, at time
+    private void runLate(long time) {
+        Timer next = timers.remove(0);
+        assertTrue(next.at < time);
+        clock.now = time;
+        next.message.run();
+    }
+
+    @Test
+    public void tonesArePacedByTheInterval() {
+        Promise promise = mock(Promise.class);
+        scheduler.start("call-1", call);
+        int id = scheduler.enqueue("call-1", "12#", promise);
+        advanceTo(10000);
+        assertEquals("12#", call.digits.toString());
+        assertEquals(Arrays.asList(0L, 250L, 500L), toneTimes);
+        verify(promise).resolve(id);
+    }
+
+    @Test
+    public void onlyTheSendingProgressCanBeDropped() {
+        scheduler.start("call-1", call);
+        scheduler.enqueue("call-1", "12", null);
+        scheduler.enqueue("call-1", "3", null);
+        advanceTo(250);
+        // the "sending" of 1, then "done" once 2 is sent
+        verify(eventManager, times(1)).sendEvent(eq(EVENT_DTMF_PROGRESS), any(WritableMap.class), eq(true));
+        verify(eventManager, times(1)).sendEvent(eq(EVENT_DTMF_PROGRESS), any(WritableMap.class), eq(false));
+        scheduler.cancel("call-1", "the call ended");
+        verify(eventManager, times(2)).sendEvent(eq(EVENT_DTMF_PROGRESS), any(WritableMap.class), eq(false));
+    }
+
+    @Test
+    public void aCommaWaitsThePause() {
+        scheduler.configure(200, 1000);
+        scheduler.start("call-1", call);
+        scheduler.enqueue("call-1", "1,,2", null);
+        advanceTo(10000);
+        // 1 at 0, the pauses at 200 and 1200
+        assertEquals(Arrays.asList(0L, 2200L), toneTimes);
+    }
+
+    @Test
+    public void aTrailingPauseIsWaitedForBeforeTheSequenceIsDone() {
+        Promise first = mock(Promise.class);
+        scheduler.start("call-1", call);
+        scheduler.enqueue("call-1", "1,", first);
+        scheduler.enqueue("call-1", "2", null);
+        // the pause starts at 250 and ends at 750
+        advanceTo(749);
+        verify(first, never()).resolve(any());
+        assertEquals("1", call.digits.toString());
+        advanceTo(750);
+        verify(first).resolve(1);
+        assertEquals(Arrays.asList(0L, 750L), toneTimes);
+    }
+
+    @Test
+    public void digitsAreHeldUntilConnected() {
+        scheduler.enqueue("call-1", "12", null);
+        advanceTo(1000);
+        assertEquals("", call.digits.toString());
+        scheduler.start("call-1", call);
+        advanceTo(5000);
+        assertEquals(Arrays.asList(1000L, 1250L), toneTimes);
+    }
+
+    @Test
+    public void aLateTickDoesntBurst() {
+        scheduler.start("call-1", call);
+        scheduler.enqueue("call-1", "1234", null);
+        advanceTo(0);
+        // the tick due at 250 only runs at 900, e.g. a busy actor
+        runLate(900);
+        advanceTo(10000);
+        // one tone length after the late one, then the interval again
+        assertEquals(Arrays.asList(0L, 900L, 1000L, 1250L), toneTimes);
+    }
+
+    @Test
+    public void reconnectingPausesTheRemainingTones() {
+        scheduler.start("call-1", call);
+        scheduler.enqueue("call-1", "123", null);
+        advanceTo(300);
+        scheduler.pause("call-1");
+        advanceTo(2000);
+        assertEquals("12", call.digits.toString());
+        scheduler.start("call-1", call);
+        advanceTo(5000);
+        assertEquals(Arrays.asList(0L, 250L, 2000L), toneTimes);
+    }
+
+    @Test
+    public void cancelRejectsTheQueuedSequences() {
+        Promise first = mock(Promise.class);
+        Promise second = mock(Promise.class);
+        scheduler.start("call-1", call);
+        scheduler.enqueue("call-1", "12", first);
+        scheduler.enqueue("call-1", "3", second);
+        advanceTo(0);
+        scheduler.cancel("call-1", "the call ended");
+        advanceTo(5000);
+        assertEquals("1", call.digits.toString());
+        verify(first).reject(eq("dtmf_cancelled"), anyString());
+        verify(second).reject(eq("dtmf_cancelled"), anyString());
+        assertTrue(timers.isEmpty());
+    }
+
+    @Test
+    public void validatesTheDigits() {
+        assertTrue(DtmfScheduler.isValid("0123456789*#,"));
+        assertFalse(DtmfScheduler.isValid(""));
+        assertFalse(DtmfScheduler.isValid("12a"));
+    }
+}
@@ -0,0 +1,275 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.os.Handler;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.MockedStatic;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EdgeSelectorTest {
+
+    private static final String LOOPBACK = "127.0.0.1";
+
+    private static class FakeClock implements EdgeSelector.Clock {
+        long now = 1000;
+
+        @Override
+        public long elapsedRealtime() {
+            return now;
+        }
+    }
+
+    /*
+     * Local stand-in for an edge: accepts connections and echoes what it reads
+     */
+    private static class EchoServer implements Runnable {
+        final ServerSocket socket;
+
+        EchoServer() throws IOException {
+            socket = new ServerSocket(0, 50, InetAddress.getByName(LOOPBACK));
+            Thread thread = new Thread(this, "echo-" + socket.getLocalPort());
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int port() {
+            return socket.getLocalPort();
+        }
+
+        @Override
+        public void run() {
+            while (!socket.isClosed()) {
+                try {
+                    Socket client = socket.accept();
+                    InputStream in = client.getInputStream();
+                    OutputStream out = client.getOutputStream();
+                    byte[] buffer = new byte[256];
+                    int read;
+                    while ((read = in.read(buffer)) > 0) {
+                        out.write(buffer, 0, read);
+                    }
+                    client.close();
+                } catch (IOException e) {
+                    // closed or the client went away
+                }
+            }
+        }
+
+        void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    /*
+     * The TCP probe against the local servers, the extra delay stands for the
+     * distance to each edge
+     */
+    private static class DelayedProber implements EdgeSelector.Prober {
+        final HashMap<String, Long> delays = new HashMap<>();
+        int probes = 0;
+
+        @Override
+        public long measure(EdgeSelector.Edge edge, int timeoutMs) {
+            probes++;
+            long rtt = EdgeSelector.TCP_PROBER.measure(edge, timeoutMs);
+            Long delay = delays.get(edge.region);
+            return rtt < 0 || delay == null ? rtt : rtt + delay;
+        }
+    }
+
+    private final FakeClock clock = new FakeClock();
+    private final DelayedProber prober = new DelayedProber();
+    private final ArrayList<Runnable> posted = new ArrayList<>();
+    private final ArrayList<EchoServer> servers = new ArrayList<>();
+    private MockedStatic<Arguments> arguments;
+    private EdgeSelector selector;
+
+    @Before
+    public void setUp() {
+        arguments = JavaOnlyArguments.mock();
+        Handler handler = mock(Handler.class);
+        when(handler.post(any(Runnable.class))).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) {
+                posted.add((Runnable) invocation.getArgument(0));
+                return true;
+            }
+        });
+        selector = new EdgeSelector(handler, clock, prober);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        arguments.close();
+        for (EchoServer server : servers) {
+            server.close();
+        }
+    }
+
+    private EdgeSelector.Edge reachable(String region) throws IOException {
+        EchoServer server = new EchoServer();
+        servers.add(server);
+        return new EdgeSelector.Edge(region, LOOPBACK, server.port());
+    }
+
+    // nothing listens on the port, every probe is lost
+    private static EdgeSelector.Edge unreachable(String region) throws IOException {
+        ServerSocket socket = new ServerSocket(0, 1, InetAddress.getByName(LOOPBACK));
+        int port = socket.getLocalPort();
+        socket.close();
+        return new EdgeSelector.Edge(region, LOOPBACK, port);
+    }
+
+    private void runProbes() {
+        ArrayList<Runnable> toRun = new ArrayList<>(posted);
+        posted.clear();
+        for (Runnable probe : toRun) {
+            probe.run();
+        }
+    }
+
+    @Test
+    public void echoServerAnswers() throws IOException {
+        EdgeSelector.Edge edge = reachable("us1");
+        Socket socket = new Socket(edge.host, edge.port);
+        socket.getOutputStream().write(new byte[] { 1, 2, 3 });
+        byte[] echoed = new byte[3];
+        int read = 0;
+        while (read < 3) {
+            read += socket.getInputStream().read(echoed, read, 3 - read);
+        }
+        socket.close();
+        assertEquals(Arrays.toString(new byte[] { 1, 2, 3 }), Arrays.toString(echoed));
+        assertTrue(EdgeSelector.TCP_PROBER.measure(edge, 1000) >= 0);
+    }
+
+    @Test
+    public void disabledByDefault() throws IOException {
+        selector.configure(false, Arrays.asList(reachable("us1")), EdgeSelector.DEFAULT_TTL_MS, 1000);
+        assertNull(selector.getRegion("wifi:home"));
+        assertTrue(posted.isEmpty());
+    }
+
+    @Test
+    public void picksTheClosestEdge() throws IOException {
+        selector.configure(true, Arrays.asList(reachable("us1"), reachable("de1"), reachable("sg1")),
+                EdgeSelector.DEFAULT_TTL_MS, 1000);
+        prober.delays.put("us1", 120L);
+        prober.delays.put("de1", 20L);
+        prober.delays.put("sg1", 250L);
+
+        // connect never waits for the first probe
+        assertNull(selector.getRegion("wifi:home"));
+        runProbes();
+        assertEquals("de1", selector.getRegion("wifi:home"));
+        assertTrue(posted.isEmpty());
+    }
+
+    @Test
+    public void lostEdgesAreLeftOut() throws IOException {
+        selector.configure(true, Arrays.asList(unreachable("us1"), reachable("ie1")),
+                EdgeSelector.DEFAULT_TTL_MS, 1000);
+        prober.delays.put("ie1", 300L);
+        Promise promise = mock(Promise.class);
+        selector.probe("wifi:home", promise);
+        runProbes();
+
+        ArgumentCaptor<Object> result = ArgumentCaptor.forClass(Object.class);
+        verify(promise).resolve(result.capture());
+        ReadableMap map = (ReadableMap) result.getValue();
+        assertEquals("wifi:home", map.getString("network"));
+        assertEquals("ie1", map.getString("region"));
+        assertTrue(map.getMap("rtt").hasKey("ie1"));
+        assertFalse(map.getMap("rtt").hasKey("us1"));
+    }
+
+    @Test
+    public void anUnreachableSetIsNotCached() throws IOException {
+        selector.configure(true, Arrays.asList(unreachable("us1"), unreachable("us2")),
+                EdgeSelector.DEFAULT_TTL_MS, 1000);
+        Promise promise = mock(Promise.class);
+        selector.probe("cell:1", promise);
+        runProbes();
+        ArgumentCaptor<Object> result = ArgumentCaptor.forClass(Object.class);
+        verify(promise).resolve(result.capture());
+        assertFalse(((ReadableMap) result.getValue()).hasKey("region"));
+
+        // the next connect probes again
+        assertNull(selector.getRegion("cell:1"));
+        assertEquals(1, posted.size());
+    }
+
+    @Test
+    public void concurrentProbesOfANetworkAreMerged() throws IOException {
+        selector.configure(true, Arrays.asList(reachable("us1")), EdgeSelector.DEFAULT_TTL_MS, 1000);
+        Promise first = mock(Promise.class);
+        Promise second = mock(Promise.class);
+        selector.probe("wifi:home", first);
+        selector.getRegion("wifi:home");
+        selector.probe("wifi:home", second);
+        assertEquals(1, posted.size());
+        runProbes();
+        assertEquals(1, prober.probes);
+        verify(first).resolve(any());
+        verify(second).resolve(any());
+    }
+
+    @Test
+    public void resultsAreCachedPerNetworkUntilStale() throws IOException {
+        selector.configure(true, Arrays.asList(reachable("us1"), reachable("jp1")), 60000, 1000);
+        prober.delays.put("us1", 10L);
+        prober.delays.put("jp1", 200L);
+        selector.refresh("wifi:home");
+        runProbes();
+        assertEquals("us1", selector.getRegion("wifi:home"));
+
+        // another network is measured on its own
+        prober.delays.put("us1", 400L);
+        selector.refresh("cell:1");
+        runProbes();
+        assertEquals("jp1", selector.getRegion("cell:1"));
+        assertEquals("us1", selector.getRegion("wifi:home"));
+        assertTrue(posted.isEmpty());
+
+        // past the ttl the cached region is still used while it is measured again
+        clock.now += 60001;
+        assertEquals("us1", selector.getRegion("wifi:home"));
+        runProbes();
+        assertEquals("jp1", selector.getRegion("wifi:home"));
+    }
+
+    @Test
+    public void noProbeWithoutANetwork() throws IOException {
+        selector.configure(true, Arrays.asList(reachable("us1")), EdgeSelector.DEFAULT_TTL_MS, 1000);
+        assertNull(selector.getRegion(ConnectivityMonitor.NO_NETWORK));
+        selector.refresh(ConnectivityMonitor.NO_NETWORK);
+        assertTrue(posted.isEmpty());
+    }
+}
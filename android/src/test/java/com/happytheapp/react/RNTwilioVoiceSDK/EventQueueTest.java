@@ -0,0 +1,198 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableMap;
+import com.twilio.voice.Call;
+
+import org.junit.Test;
+import org.mockito.MockedStatic;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_CONNECTED;
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_DISCONNECTED;
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_DTMF_PROGRESS;
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_INCOMING;
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_RECONNECTED;
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_RECONNECTING;
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_STATS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EventQueueTest {
+
+    private static final long MS = 1000000L;
+
+    @Test
+    public void coalescesReconnectingOfTheSameCall() {
+        EventQueue queue = new EventQueue(16, 5);
+        queue.offer(EVENT_RECONNECTING, "1", null, 0);
+        queue.offer(EVENT_RECONNECTED, "1", null, 2 * MS);
+        ArrayList<EventQueue.Event> batch = new ArrayList<>();
+        assertEquals(1, queue.drainTo(batch));
+        assertEquals(1, batch.size());
+        assertEquals(EVENT_RECONNECTED, batch.get(0).name);
+    }
+
+    @Test
+    public void coalescedEventLeavesNoVersionGap() {
+        MockedStatic<Arguments> arguments = JavaOnlyArguments.mock();
+        try {
+            CallPayloads payloads = new CallPayloads();
+            TestCall call = new TestCall(null);
+            EventQueue queue = new EventQueue(16, 5);
+            queue.offer(EVENT_CONNECTED, "1", payloads.event("1", call, false), 0);
+            call.state = Call.State.RECONNECTING;
+            // the SID is only known from the reconnecting event
+            call.sid = "CA1";
+            queue.offer(EVENT_RECONNECTING, "1", payloads.event("1", call, false), MS);
+            call.state = Call.State.CONNECTED;
+            queue.offer(EVENT_RECONNECTED, "1", payloads.event("1", call, false), 3 * MS);
+
+            ArrayList<EventQueue.Event> batch = new ArrayList<>();
+            assertEquals(1, queue.drainTo(batch));
+            assertEquals(2, batch.size());
+            ReadableMap reconnected = batch.get(1).params;
+            assertEquals(3, reconnected.getInt("version"));
+            assertEquals(1, reconnected.getInt("baseVersion"));
+            assertEquals("CONNECTED", reconnected.getString("state"));
+            assertEquals("CA1", reconnected.getString("sid"));
+
+            // what JS checks: each event applies to the last version it has, no resync
+            int applied = 0;
+            for (EventQueue.Event event : batch) {
+                int base = event.params.hasKey("baseVersion")
+                        ? event.params.getInt("baseVersion") : event.params.getInt("version") - 1;
+                assertEquals(applied, base);
+                applied = event.params.getInt("version");
+            }
+        } finally {
+            arguments.close();
+        }
+    }
+
+    @Test
+    public void keepsReconnectingOfAnotherCall() {
+        EventQueue queue = new EventQueue(16, 5);
+        queue.offer(EVENT_RECONNECTING, "1", null, 0);
+        queue.offer(EVENT_RECONNECTED, "2", null, MS);
+        ArrayList<EventQueue.Event> batch = new ArrayList<>();
+        assertEquals(0, queue.drainTo(batch));
+        assertEquals(2, batch.size());
+    }
+
+    @Test
+    public void keepsReconnectingOutsideTheWindow() {
+        EventQueue queue = new EventQueue(16, 5);
+        queue.offer(EVENT_RECONNECTING, "1", null, 0);
+        queue.offer(EVENT_RECONNECTED, "1", null, 6 * MS);
+        ArrayList<EventQueue.Event> batch = new ArrayList<>();
+        assertEquals(0, queue.drainTo(batch));
+        assertEquals(2, batch.size());
+    }
+
+    @Test
+    public void dropsTheOldestLossyEventWhenFull() {
+        EventQueue queue = new EventQueue(3, 5);
+        queue.offer(EVENT_CONNECTED, "1", null, 0);
+        queue.offer(EVENT_STATS, null, null, 1);
+        queue.offer(EVENT_STATS, null, null, 2);
+        EventQueue.Event dropped = queue.offer(EVENT_DISCONNECTED, "1", null, 3);
+        assertEquals(EVENT_STATS, dropped.name);
+        assertEquals(1, dropped.enqueuedAt);
+        assertEquals(3, queue.size());
+
+        ArrayList<EventQueue.Event> batch = new ArrayList<>();
+        queue.drainTo(batch);
+        assertEquals(EVENT_CONNECTED, batch.get(0).name);
+        assertEquals(EVENT_DISCONNECTED, batch.get(2).name);
+    }
+
+    @Test
+    public void lossyOverridesTheDefaultOfTheName() {
+        EventQueue queue = new EventQueue(3, 5);
+        // the last progress of a DTMF sequence, then one still sending
+        queue.offer(EVENT_DTMF_PROGRESS, "1", null, false, 0);
+        queue.offer(EVENT_DTMF_PROGRESS, "1", null, true, 1);
+        queue.offer(EVENT_CONNECTED, "2", null, 2);
+        EventQueue.Event dropped = queue.offer(EVENT_DISCONNECTED, "2", null, 3);
+        assertEquals(1, dropped.enqueuedAt);
+        // nothing lossy left, the queue grows
+        assertNull(queue.offer(EVENT_DISCONNECTED, "3", null, 4));
+        assertEquals(4, queue.size());
+        assertTrue(EventQueue.isLossy(EVENT_DTMF_PROGRESS));
+    }
+
+    @Test
+    public void neverDropsLifecycleOrInviteEvents() {
+        EventQueue queue = new EventQueue(2, 5);
+        assertNull(queue.offer(EVENT_INCOMING, null, null, 0));
+        assertNull(queue.offer(EVENT_CONNECTED, "1", null, 1));
+        assertNull(queue.offer(EVENT_DISCONNECTED, "1", null, 2));
+        assertEquals(3, queue.size());
+        // a lossy event offered to a queue of lifecycle events is the one dropped
+        EventQueue.Event dropped = queue.offer(EVENT_STATS, null, null, 3);
+        assertEquals(EVENT_STATS, dropped.name);
+
+        ArrayList<EventQueue.Event> batch = new ArrayList<>();
+        queue.drainTo(batch);
+        assertEquals(3, batch.size());
+        assertEquals(0, queue.size());
+        assertTrue(queue.isEmpty());
+    }
+
+    /*
+     * Synthetic listener callbacks from several threads through a single drainer,
+     * no lifecycle event is lost
+     */
+    @Test
+    public void keepsLifecycleEventsWithConcurrentProducers() throws InterruptedException {
+        final EventQueue queue = new EventQueue(EventManager.QUEUE_CAPACITY, EventManager.COALESCE_WINDOW_MS);
+        final int producers = 4;
+        final int callsPerProducer = 20000;
+        final CountDownLatch done = new CountDownLatch(producers);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final int[] lifecycle = new int[1];
+        Thread drainer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                ArrayList<EventQueue.Event> batch = new ArrayList<>(EventManager.QUEUE_CAPACITY);
+                while (running.get() || !queue.isEmpty()) {
+                    queue.drainTo(batch);
+                    for (EventQueue.Event event : batch) {
+                        if (!EventQueue.isLossy(event.name)) {
+                            lifecycle[0]++;
+                        }
+                    }
+                    batch.clear();
+                }
+            }
+        });
+        drainer.start();
+
+        for (int p = 0; p < producers; p++) {
+            final String handle = String.valueOf(p);
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < callsPerProducer; i++) {
+                        queue.offer(EVENT_STATS, null, null, System.nanoTime());
+                        if (i % 10 == 0) {
+                            queue.offer(EVENT_CONNECTED, handle, null, System.nanoTime());
+                        }
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        running.set(false);
+        drainer.join();
+
+        assertEquals(producers * callsPerProducer / 10, lifecycle[0]);
+        assertEquals(0, queue.size());
+    }
+}
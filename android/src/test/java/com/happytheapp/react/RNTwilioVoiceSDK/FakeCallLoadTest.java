@@ -0,0 +1,251 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorManager;
+import android.media.AudioManager;
+import android.net.ConnectivityManager;
+import android.net.wifi.WifiManager;
+import android.os.PowerManager;
+import android.telephony.TelephonyManager;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import com.twilio.voice.CallException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.MockedStatic;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_BATCH;
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_CONNECTED;
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_CONNECT_FAILURE;
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_DISCONNECTED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/*
+ * Load harness: many concurrent scripted calls through the whole module on the
+ * virtual looper, then checks that nothing is left behind, neither a live call
+ * nor a resource of the ledger
+ */
+public class FakeCallLoadTest {
+
+    // -DfakeCallLoad.calls=20000 for a longer run, rounded down to a multiple of the scripts
+    private static final int CALLS = Integer.getInteger("fakeCallLoad.calls", 2000);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final HashMap<String, Integer> emitted = new HashMap<>();
+    private MockedStatic<Arguments> arguments;
+    private VirtualLooper looper;
+    private FakeVoiceBackend backend;
+    private TwilioVoiceSDKModule module;
+
+    private static class Result implements Promise {
+        Object value;
+        String error;
+
+        @Override
+        public void resolve(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public void reject(String code, String message) {
+            error = code;
+        }
+
+        @Override
+        public void reject(String code, Throwable throwable) {
+            error = code;
+        }
+
+        @Override
+        public void reject(String code, String message, Throwable throwable) {
+            error = code;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        arguments = JavaOnlyArguments.mock();
+        looper = new VirtualLooper();
+
+        DeviceEventManagerModule.RCTDeviceEventEmitter emitter = mock(DeviceEventManagerModule.RCTDeviceEventEmitter.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                String name = invocation.getArgument(0);
+                if (EVENT_BATCH.equals(name)) {
+                    ReadableArray events = invocation.getArgument(1);
+                    for (int i = 0; i < events.size(); i++) {
+                        count(events.getMap(i).getString("name"));
+                    }
+                } else {
+                    count(name);
+                }
+                return null;
+            }
+        }).when(emitter).emit(anyString(), any());
+
+        ReactApplicationContext context = mock(ReactApplicationContext.class);
+        when(context.getFilesDir()).thenReturn(folder.getRoot());
+        when(context.getApplicationContext()).thenReturn(context);
+        when(context.hasActiveCatalystInstance()).thenReturn(true);
+        when(context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)).thenReturn(emitter);
+        when(context.getSystemService(Context.AUDIO_SERVICE)).thenReturn(mock(AudioManager.class));
+        when(context.getSystemService(Context.POWER_SERVICE)).thenReturn(mock(PowerManager.class));
+        SensorManager sensors = mock(SensorManager.class);
+        when(sensors.getDefaultSensor(Sensor.TYPE_PROXIMITY)).thenReturn(mock(Sensor.class));
+        when(context.getSystemService(Context.SENSOR_SERVICE)).thenReturn(sensors);
+        when(context.getSystemService(Context.CONNECTIVITY_SERVICE)).thenReturn(mock(ConnectivityManager.class));
+        when(context.getSystemService(Context.WIFI_SERVICE)).thenReturn(mock(WifiManager.class));
+        when(context.getSystemService(Context.TELEPHONY_SERVICE)).thenReturn(mock(TelephonyManager.class));
+
+        backend = new FakeVoiceBackend();
+        module = new TwilioVoiceSDKModule(context, backend);
+        module.initialize();
+    }
+
+    @After
+    public void tearDown() {
+        looper.close();
+        arguments.close();
+    }
+
+    private void count(String name) {
+        Integer n = emitted.get(name);
+        emitted.put(name, n != null ? n + 1 : 1);
+    }
+
+    private int emittedCount(String name) {
+        Integer n = emitted.get(name);
+        return n != null ? n : 0;
+    }
+
+    private static List<FakeVoiceBackend.Step> script(FakeVoiceBackend.Step... steps) {
+        return Arrays.asList(steps);
+    }
+
+    private static FakeVoiceBackend.Step step(FakeVoiceBackend.Event event, long delayMs) {
+        return new FakeVoiceBackend.Step(event, delayMs);
+    }
+
+    @Test
+    public void concurrentCallsLeaveNothingBehind() {
+        List<List<FakeVoiceBackend.Step>> scripts = Arrays.asList(
+                // hung up by the remote side
+                script(step(FakeVoiceBackend.Event.RINGING, 200), step(FakeVoiceBackend.Event.CONNECTED, 800),
+                        step(FakeVoiceBackend.Event.DISCONNECTED, 20000)),
+                // reconnects, then hung up locally
+                script(step(FakeVoiceBackend.Event.RINGING, 300), step(FakeVoiceBackend.Event.CONNECTED, 700),
+                        step(FakeVoiceBackend.Event.RECONNECTING, 5000), step(FakeVoiceBackend.Event.RECONNECTED, 2000)),
+                // never connects
+                script(step(FakeVoiceBackend.Event.RINGING, 100), step(FakeVoiceBackend.Event.CONNECT_FAILURE, 1500)),
+                // dropped by a network error
+                script(step(FakeVoiceBackend.Event.CONNECTED, 400),
+                        new FakeVoiceBackend.Step(FakeVoiceBackend.Event.DISCONNECTED, 9000,
+                                CallException.EXCEPTION_CONNECTION_ERROR)));
+
+        int calls = Math.max(1, CALLS / scripts.size()) * scripts.size();
+        ArrayList<Result> connects = new ArrayList<>();
+        // a connect at uptime 0 would look like one never made
+        looper.advance(1);
+        long start = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            backend.setScript(scripts.get(i % scripts.size()));
+            Result result = new Result();
+            JavaOnlyMap params = new JavaOnlyMap();
+            params.putString("to", "client:agent" + i);
+            module.connect("fake-token", params, result);
+            connects.add(result);
+            // about 3 calls per ms
+            looper.advance(i % 3 == 0 ? 1 : 0);
+        }
+        looper.advance(12000);
+        assertEquals(calls, backend.getCallCount());
+        // the first two scripts are still up
+        assertEquals(calls / scripts.size() * 2, backend.getLiveCallCount());
+
+        // the calls still up are hung up locally
+        for (int i = 1; i < calls; i += scripts.size()) {
+            String handle = ((ReadableMap) connects.get(i).value).getString("handle");
+            Result result = new Result();
+            module.disconnectCall(handle, result);
+            looper.advance(10);
+            assertNull(result.error);
+        }
+        looper.advance(60000);
+
+        assertEquals(0, backend.getLiveCallCount());
+        assertEquals(calls, emittedCount(EVENT_CONNECT_FAILURE) + emittedCount(EVENT_DISCONNECTED));
+        assertEquals(calls / scripts.size() * 3, emittedCount(EVENT_CONNECTED));
+
+        Result metrics = new Result();
+        module.getMetrics(metrics);
+        looper.advance(0);
+        assertNotNull(metrics.value);
+        ReadableMap map = (ReadableMap) metrics.value;
+        assertFalse(map.getMap("calls").keySetIterator().hasNextKey());
+        ReadableMap resources = map.getMap("resources");
+        assertEquals(0, resources.getInt("liveCalls"));
+        // taken by every call that rang
+        assertEquals(calls / scripts.size() * 3, resources.getMap("audioFocus").getInt("acquired"));
+        // registered once for calls that overlap, handed over as they end
+        assertTrue(resources.getMap("proximityListener").getInt("acquired") > 0);
+        assertEquals(0, resources.getMap("proximityWakeLock").getInt("acquired"));
+        ReadableMapKeySetIterator names = resources.keySetIterator();
+        while (names.hasNextKey()) {
+            String name = names.nextKey();
+            if ("liveCalls".equals(name)) {
+                continue;
+            }
+            ReadableMap counters = resources.getMap(name);
+            assertEquals(name + " leaked", 0, counters.getInt("leaked"));
+            assertEquals(name + " released", counters.getInt("acquired"), counters.getInt("released"));
+        }
+        assertEquals(0, module.getCallStateSnapshot(-1).getArray("calls").size());
+
+        // throughput: the whole run in real time and the handler messages it took, per call
+        double nanosPerCall = (System.nanoTime() - start) / (double) calls;
+        double messagesPerCall = looper.getRunCount() / (double) calls;
+        assertTrue(nanosPerCall + " ns per call", nanosPerCall < 20 * 1000000);
+        assertTrue(messagesPerCall + " messages per call", messagesPerCall < 30);
+        // latency: the module adds nothing to the scripts under load, nor drops an event
+        ReadableMap timeToConnect = map.getMap("timeToConnect");
+        assertEquals(calls / scripts.size() * 3, (int) timeToConnect.getDouble("count"));
+        assertEquals(400, timeToConnect.getDouble("min"), 0);
+        assertEquals(1000, timeToConnect.getDouble("max"), 0);
+        assertEquals(0, map.getMap("events").getInt("dropped"));
+
+        module.onCatalystInstanceDestroy();
+        looper.advance(60000);
+    }
+}
@@ -0,0 +1,275 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+
+import com.twilio.voice.Call;
+import com.twilio.voice.CallException;
+import com.twilio.voice.CallInvite;
+import com.twilio.voice.ConnectOptions;
+import com.twilio.voice.LogLevel;
+import com.twilio.voice.StatsListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Backend playing scripted calls, for the JVM tests of the module (e.g. the load
+ * harness). Every call plays the script, each step delayMs after the previous one,
+ * on the thread that made the call like the SDK. A local disconnect ends the script
+ * and reports onDisconnected without an error.
+ */
+class FakeVoiceBackend implements VoiceBackend {
+
+    public enum Event { RINGING, CONNECTED, RECONNECTING, RECONNECTED, DISCONNECTED, CONNECT_FAILURE }
+
+    public static class Step {
+        public final Event event;
+        public final long delayMs;
+        // for the events with an error, 0 for a DISCONNECTED without one
+        public final int errorCode;
+
+        public Step(Event event, long delayMs) {
+            this(event, delayMs, defaultErrorCode(event));
+        }
+
+        public Step(Event event, long delayMs, int errorCode) {
+            this.event = event;
+            this.delayMs = delayMs;
+            this.errorCode = errorCode;
+        }
+
+        private static int defaultErrorCode(Event event) {
+            switch (event) {
+                case RECONNECTING:
+                    return CallException.EXCEPTION_SIGNALING_CONNECTION_DISCONNECTED;
+                case CONNECT_FAILURE:
+                    return CallException.EXCEPTION_CONNECTION_ERROR;
+                default:
+                    return 0;
+            }
+        }
+    }
+
+    // rings then connects, the call stays up until disconnected
+    public static final List<Step> DEFAULT_SCRIPT = Collections.unmodifiableList(Arrays.asList(
+            new Step(Event.RINGING, 200),
+            new Step(Event.CONNECTED, 800)
+    ));
+
+    private volatile List<Step> script = DEFAULT_SCRIPT;
+    // one handler per looper the calls are made on, a call doesn't need its own
+    private final HashMap<Looper, Handler> handlers = new HashMap<>();
+    private final AtomicInteger callCount = new AtomicInteger();
+    private final AtomicInteger liveCallCount = new AtomicInteger();
+
+    /*
+     * Script of the calls made from now on
+     */
+    public void setScript(List<Step> script) {
+        this.script = Collections.unmodifiableList(new ArrayList<>(script));
+    }
+
+    public int getCallCount() {
+        return callCount.get();
+    }
+
+    /*
+     * Calls not disconnected yet, what is left once every call ended is a leak
+     */
+    public int getLiveCallCount() {
+        return liveCallCount.get();
+    }
+
+    @Override
+    public String getVersion() {
+        return "fake";
+    }
+
+    @Override
+    public void setLogLevel(LogLevel level) {
+    }
+
+    @Override
+    public VoiceCall connect(Context context, ConnectOptions connectOptions, VoiceCall.Listener listener) {
+        int n = callCount.incrementAndGet();
+        FakeCall call = new FakeCall("CAfake" + n, "client:fake", "fake-" + n, listener);
+        call.play(script);
+        return call;
+    }
+
+    @Override
+    public VoiceCall accept(Context context, CallInvite callInvite, VoiceCall.Listener listener) {
+        callCount.incrementAndGet();
+        FakeCall call = new FakeCall(callInvite.getCallSid(), callInvite.getFrom(), callInvite.getTo(), listener);
+        call.play(script);
+        return call;
+    }
+
+    private synchronized Handler handlerForThisThread() {
+        Looper looper = Looper.myLooper();
+        if (looper == null) {
+            looper = Looper.getMainLooper();
+        }
+        Handler handler = handlers.get(looper);
+        if (handler == null) {
+            handler = new Handler(looper);
+            handlers.put(looper, handler);
+        }
+        return handler;
+    }
+
+    private class FakeCall implements VoiceCall {
+
+        private final String sid;
+        private final String from;
+        private final String to;
+        private final VoiceCall.Listener listener;
+        private final Handler handler;
+        private final ArrayList<Runnable> pending = new ArrayList<>();
+        private Call.State state = Call.State.CONNECTING;
+        private boolean muted = false;
+        private boolean onHold = false;
+
+        FakeCall(@Nullable String sid, @Nullable String from, @Nullable String to, VoiceCall.Listener listener) {
+            this.sid = sid;
+            this.from = from;
+            this.to = to;
+            this.listener = listener;
+            handler = handlerForThisThread();
+            liveCallCount.incrementAndGet();
+        }
+
+        void play(List<Step> script) {
+            long delayMs = 0;
+            for (final Step step : script) {
+                delayMs += step.delayMs;
+                Runnable message = new Runnable() {
+                    @Override
+                    public void run() {
+                        pending.remove(this);
+                        apply(step);
+                    }
+                };
+                pending.add(message);
+                handler.postDelayed(message, delayMs);
+            }
+        }
+
+        private void apply(Step step) {
+            if (state == Call.State.DISCONNECTED) {
+                return;
+            }
+            switch (step.event) {
+                case RINGING:
+                    state = Call.State.RINGING;
+                    listener.onRinging(this);
+                    break;
+                case CONNECTED:
+                    state = Call.State.CONNECTED;
+                    listener.onConnected(this);
+                    break;
+                case RECONNECTING:
+                    state = Call.State.RECONNECTING;
+                    listener.onReconnecting(this, error(step.errorCode));
+                    break;
+                case RECONNECTED:
+                    state = Call.State.CONNECTED;
+                    listener.onReconnected(this);
+                    break;
+                case DISCONNECTED:
+                    finish();
+                    listener.onDisconnected(this, step.errorCode != 0 ? error(step.errorCode) : null);
+                    break;
+                case CONNECT_FAILURE:
+                    finish();
+                    listener.onConnectFailure(this, error(step.errorCode));
+                    break;
+            }
+        }
+
+        private void finish() {
+            state = Call.State.DISCONNECTED;
+            for (Runnable message : pending) {
+                handler.removeCallbacks(message);
+            }
+            pending.clear();
+            liveCallCount.decrementAndGet();
+        }
+
+        private CallException error(int errorCode) {
+            return new CallException(errorCode, "Scripted error " + errorCode);
+        }
+
+        @Override
+        public String getSid() {
+            return sid;
+        }
+
+        @Override
+        public String getFrom() {
+            return from;
+        }
+
+        @Override
+        public String getTo() {
+            return to;
+        }
+
+        @Override
+        public Call.State getState() {
+            return state;
+        }
+
+        @Override
+        public void mute(boolean mute) {
+            muted = mute;
+        }
+
+        @Override
+        public boolean isMuted() {
+            return muted;
+        }
+
+        @Override
+        public void hold(boolean hold) {
+            onHold = hold;
+        }
+
+        @Override
+        public boolean isOnHold() {
+            return onHold;
+        }
+
+        @Override
+        public void sendDigits(String digits) {
+        }
+
+        @Override
+        public void disconnect() {
+            if (state == Call.State.DISCONNECTED) {
+                return;
+            }
+            finish();
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onDisconnected(FakeCall.this, null);
+                }
+            });
+        }
+
+        @Override
+        public boolean getStats(StatsListener listener) {
+            // a StatsReport can't be built outside the SDK
+            return false;
+        }
+    }
+}
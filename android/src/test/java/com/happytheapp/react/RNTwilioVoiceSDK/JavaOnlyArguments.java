@@ -0,0 +1,48 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.mockito.MockedStatic;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.mockito.Mockito.mockStatic;
+
+/*
+ * Arguments backed by the Java only maps and arrays, the native ones can't be
+ * loaded in JVM tests. Close it once done, e.g. in an @After.
+ */
+final class JavaOnlyArguments {
+
+    private JavaOnlyArguments() {
+    }
+
+    static MockedStatic<Arguments> mock() {
+        MockedStatic<Arguments> arguments = mockStatic(Arguments.class);
+        arguments.when(new MockedStatic.Verification() {
+            @Override
+            public void apply() {
+                Arguments.createMap();
+            }
+        }).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return new JavaOnlyMap();
+            }
+        });
+        arguments.when(new MockedStatic.Verification() {
+            @Override
+            public void apply() {
+                Arguments.createArray();
+            }
+        }).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return new JavaOnlyArray();
+            }
+        });
+        return arguments;
+    }
+}
@@ -0,0 +1,91 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.percentileMicros(50));
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 0; micros < 16; micros++) {
+            histogram.recordMicros(micros);
+        }
+        assertEquals(16, histogram.getCount());
+        assertEquals(7, histogram.percentileMicros(50));
+        assertEquals(15, histogram.percentileMicros(100));
+    }
+
+    @Test
+    public void percentilesStayWithinTheBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int ms = 1; ms <= 1000; ms++) {
+            histogram.recordMillis(ms);
+        }
+        assertWithin(500000, histogram.percentileMicros(50));
+        assertWithin(900000, histogram.percentileMicros(90));
+        assertWithin(990000, histogram.percentileMicros(99));
+        // never above the largest value recorded
+        assertEquals(1000000, histogram.percentileMicros(100));
+    }
+
+    @Test
+    public void convertsNanosAndClampsNegativeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(-5);
+        histogram.recordNanos(3000);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.percentileMicros(50));
+        assertEquals(3, histogram.percentileMicros(100));
+    }
+
+    @Test
+    public void valuesPastTheRangeLandInTheLastBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordMicros(Long.MAX_VALUE / 2);
+        assertEquals(1, histogram.getCount());
+        // reported as the top of the range, 2^40us
+        assertTrue(histogram.percentileMicros(100) >= 1L << 40);
+    }
+
+    @Test
+    public void resetForgetsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordMillis(20);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        histogram.recordMillis(1);
+        assertEquals(1000, histogram.percentileMicros(100));
+    }
+
+    /*
+     * The recording done from the call listener must not allocate
+     */
+    @Test
+    public void benchmarkRecording() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final long[] value = { 0 };
+        Bench.Result result = Bench.run(1000000, new Runnable() {
+            @Override
+            public void run() {
+                value[0] = (value[0] + 7919) % 5000000000L;
+                histogram.recordNanos(value[0]);
+            }
+        });
+        assertTrue("allocates " + result.bytesPerOp + " bytes per record", result.bytesPerOp < 0.01);
+    }
+
+    // 16 sub-buckets per power of two, ~6% of error
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected ~" + expected + " got " + actual, Math.abs(actual - expected) <= expected * 0.07);
+    }
+}
@@ -0,0 +1,334 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.content.Context;
+import android.hardware.SensorManager;
+import android.media.AudioManager;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.net.wifi.WifiManager;
+import android.os.PowerManager;
+import android.telephony.TelephonyManager;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.MockedStatic;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_BATCH;
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_CONNECTED;
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_CONNECT_FAILURE;
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_DISCONNECTED;
+import static com.happytheapp.react.RNTwilioVoiceSDK.EventManager.EVENT_RETRY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/*
+ * Redials of the module: scripted calls of the fake backend dropped by network errors,
+ * the network comes and goes through the callback of the mocked ConnectivityManager
+ */
+public class ModuleRedialTest {
+
+    private static final int CONNECTION_ERROR = 31005;
+    private static final int SIGNALLING_DISCONNECTED = 53001;
+    private static final int CALL_DECLINED = 31603;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ArrayList<String> names = new ArrayList<>();
+    private final ArrayList<ReadableMap> retries = new ArrayList<>();
+    private MockedStatic<Arguments> arguments;
+    private VirtualLooper looper;
+    private ConnectivityManager connectivityManager;
+    private NetworkInfo networkInfo;
+    private FakeVoiceBackend backend;
+    private TwilioVoiceSDKModule module;
+
+    private static class Result implements Promise {
+        Object value;
+        String error;
+
+        @Override
+        public void resolve(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public void reject(String code, String message) {
+            error = code;
+        }
+
+        @Override
+        public void reject(String code, Throwable throwable) {
+            error = code;
+        }
+
+        @Override
+        public void reject(String code, String message, Throwable throwable) {
+            error = code;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        arguments = JavaOnlyArguments.mock();
+        looper = new VirtualLooper();
+
+        DeviceEventManagerModule.RCTDeviceEventEmitter emitter = mock(DeviceEventManagerModule.RCTDeviceEventEmitter.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                String name = invocation.getArgument(0);
+                if (EVENT_BATCH.equals(name)) {
+                    ReadableArray events = invocation.getArgument(1);
+                    for (int i = 0; i < events.size(); i++) {
+                        ReadableMap event = events.getMap(i);
+                        record(event.getString("name"), event.hasKey("params") ? event.getMap("params") : null);
+                    }
+                } else {
+                    record(name, (ReadableMap) invocation.getArgument(1));
+                }
+                return null;
+            }
+        }).when(emitter).emit(anyString(), any());
+
+        connectivityManager = mock(ConnectivityManager.class);
+        networkInfo = mock(NetworkInfo.class);
+        when(networkInfo.isConnected()).thenReturn(true);
+        when(connectivityManager.getActiveNetworkInfo()).thenReturn(networkInfo);
+
+        ReactApplicationContext context = mock(ReactApplicationContext.class);
+        when(context.getFilesDir()).thenReturn(folder.getRoot());
+        when(context.getApplicationContext()).thenReturn(context);
+        when(context.hasActiveCatalystInstance()).thenReturn(true);
+        when(context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)).thenReturn(emitter);
+        when(context.getSystemService(Context.AUDIO_SERVICE)).thenReturn(mock(AudioManager.class));
+        when(context.getSystemService(Context.POWER_SERVICE)).thenReturn(mock(PowerManager.class));
+        when(context.getSystemService(Context.SENSOR_SERVICE)).thenReturn(mock(SensorManager.class));
+        when(context.getSystemService(Context.CONNECTIVITY_SERVICE)).thenReturn(connectivityManager);
+        when(context.getSystemService(Context.WIFI_SERVICE)).thenReturn(mock(WifiManager.class));
+        when(context.getSystemService(Context.TELEPHONY_SERVICE)).thenReturn(mock(TelephonyManager.class));
+
+        backend = new FakeVoiceBackend();
+        module = new TwilioVoiceSDKModule(context, backend);
+        module.initialize();
+    }
+
+    @After
+    public void tearDown() {
+        module.onCatalystInstanceDestroy();
+        looper.advance(60000);
+        looper.close();
+        arguments.close();
+    }
+
+    private void record(String name, ReadableMap params) {
+        names.add(name);
+        if (EVENT_RETRY.equals(name)) {
+            retries.add(params);
+        }
+    }
+
+    private int emittedCount(String name) {
+        int n = 0;
+        for (String emitted : names) {
+            if (emitted.equals(name)) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private void setRedialPolicy(int maxAttempts, long networkTimeoutMs) {
+        JavaOnlyMap options = new JavaOnlyMap();
+        options.putBoolean("enabled", true);
+        options.putDouble("maxAttempts", maxAttempts);
+        options.putDouble("baseDelayMs", 500);
+        options.putDouble("maxDelayMs", 8000);
+        // no jitter, the delays are exact
+        options.putDouble("jitter", 0);
+        options.putDouble("networkTimeoutMs", networkTimeoutMs);
+        module.setRedialPolicy(options);
+    }
+
+    // the next calls fail after 100ms with this error
+    private void failWith(int errorCode) {
+        backend.setScript(Arrays.asList(
+                new FakeVoiceBackend.Step(FakeVoiceBackend.Event.CONNECT_FAILURE, 100, errorCode)));
+    }
+
+    private String connect() {
+        Result result = new Result();
+        JavaOnlyMap params = new JavaOnlyMap();
+        params.putString("to", "client:agent");
+        module.connect("fake-token", params, result);
+        looper.advance(0);
+        return ((ReadableMap) result.value).getString("handle");
+    }
+
+    // the events queued so far reach JS once the coalescing window is over
+    private void flushEvents() {
+        looper.advance(EventManager.COALESCE_WINDOW_MS);
+    }
+
+    private ConnectivityManager.NetworkCallback networkCallback() {
+        ArgumentCaptor<ConnectivityManager.NetworkCallback> callback =
+                ArgumentCaptor.forClass(ConnectivityManager.NetworkCallback.class);
+        verify(connectivityManager).registerNetworkCallback(nullable(NetworkRequest.class), callback.capture());
+        return callback.getValue();
+    }
+
+    private void assertRetry(int index, String handle, int attempt, long delayMs, boolean waitingForNetwork) {
+        ReadableMap retry = retries.get(index);
+        assertEquals(handle, retry.getString("handle"));
+        assertEquals(attempt, retry.getInt("attempt"));
+        assertEquals(delayMs, (long) retry.getDouble("delayMs"));
+        assertEquals(waitingForNetwork, retry.getBoolean("waitingForNetwork"));
+    }
+
+    @Test
+    public void disabledByDefault() {
+        failWith(CONNECTION_ERROR);
+        connect();
+        looper.advance(60000);
+        assertEquals(1, backend.getCallCount());
+        assertEquals(0, retries.size());
+        assertEquals(1, emittedCount(EVENT_CONNECT_FAILURE));
+    }
+
+    @Test
+    public void redialsUntilTheCallConnects() {
+        setRedialPolicy(3, 30000);
+        failWith(CONNECTION_ERROR);
+        String handle = connect();
+        looper.advance(100);
+        flushEvents();
+        assertEquals(1, retries.size());
+        assertRetry(0, handle, 1, 500, false);
+
+        failWith(SIGNALLING_DISCONNECTED);
+        looper.advance(499 - EventManager.COALESCE_WINDOW_MS);
+        assertEquals(1, backend.getCallCount());
+        looper.advance(1);
+        assertEquals(2, backend.getCallCount());
+        looper.advance(100);
+        flushEvents();
+        assertEquals(2, retries.size());
+        assertRetry(1, handle, 2, 1000, false);
+
+        backend.setScript(FakeVoiceBackend.DEFAULT_SCRIPT);
+        looper.advance(1000 - EventManager.COALESCE_WINDOW_MS);
+        assertEquals(3, backend.getCallCount());
+        looper.advance(1000);
+        flushEvents();
+        assertEquals(1, emittedCount(EVENT_CONNECTED));
+        assertEquals(0, emittedCount(EVENT_CONNECT_FAILURE));
+        assertEquals(0, emittedCount(EVENT_DISCONNECTED));
+        assertEquals(2, retries.size());
+        assertEquals(1, backend.getLiveCallCount());
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() {
+        setRedialPolicy(2, 30000);
+        failWith(CONNECTION_ERROR);
+        String handle = connect();
+        looper.advance(60000);
+        // the first dial and 2 redials
+        assertEquals(3, backend.getCallCount());
+        assertEquals(2, retries.size());
+        assertRetry(1, handle, 2, 1000, false);
+        assertEquals(1, emittedCount(EVENT_CONNECT_FAILURE));
+        assertEquals(0, backend.getLiveCallCount());
+    }
+
+    @Test
+    public void aFinalErrorStopsTheRedials() {
+        setRedialPolicy(5, 30000);
+        failWith(CONNECTION_ERROR);
+        connect();
+        looper.advance(100);
+        failWith(CALL_DECLINED);
+        looper.advance(60000);
+        assertEquals(2, backend.getCallCount());
+        assertEquals(1, retries.size());
+        assertEquals(1, emittedCount(EVENT_CONNECT_FAILURE));
+    }
+
+    @Test
+    public void waitsForTheNetworkInsteadOfTheDelay() {
+        setRedialPolicy(3, 30000);
+        when(networkInfo.isConnected()).thenReturn(false);
+        failWith(SIGNALLING_DISCONNECTED);
+        String handle = connect();
+        looper.advance(100);
+        flushEvents();
+        assertEquals(1, retries.size());
+        assertRetry(0, handle, 1, 500, true);
+
+        // long past the delay, still no network
+        backend.setScript(FakeVoiceBackend.DEFAULT_SCRIPT);
+        looper.advance(10000);
+        assertEquals(1, backend.getCallCount());
+
+        networkCallback().onAvailable(mock(Network.class));
+        looper.advance(0);
+        assertEquals(2, backend.getCallCount());
+        looper.advance(1000);
+        flushEvents();
+        assertEquals(1, emittedCount(EVENT_CONNECTED));
+        // the give up timer went with the redial
+        looper.advance(60000);
+        assertEquals(0, emittedCount(EVENT_DISCONNECTED));
+    }
+
+    @Test
+    public void givesUpWhenTheNetworkDoesNotComeBack() {
+        setRedialPolicy(3, 5000);
+        when(networkInfo.isConnected()).thenReturn(false);
+        failWith(SIGNALLING_DISCONNECTED);
+        connect();
+        looper.advance(100);
+        flushEvents();
+        assertEquals(1, retries.size());
+        assertTrue(retries.get(0).getBoolean("waitingForNetwork"));
+
+        looper.advance(4999 - EventManager.COALESCE_WINDOW_MS);
+        assertEquals(0, emittedCount(EVENT_DISCONNECTED));
+        looper.advance(1);
+        flushEvents();
+        assertEquals(1, emittedCount(EVENT_DISCONNECTED));
+
+        // too late, the call is gone
+        networkCallback().onAvailable(mock(Network.class));
+        looper.advance(60000);
+        assertEquals(1, backend.getCallCount());
+        assertFalse(module.getCallStateSnapshot(-1).getArray("calls").size() > 0);
+    }
+}
@@ -0,0 +1,125 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NativeLogTest {
+
+    @After
+    public void tearDown() {
+        NativeLog.setLevel(NativeLog.DEBUG);
+    }
+
+    private static String[] lines() {
+        return NativeLog.export().split("\n");
+    }
+
+    private static String lastLine() {
+        String[] lines = lines();
+        return lines[lines.length - 1];
+    }
+
+    @Test
+    public void formatsTheFieldsOnExport() {
+        NativeLog.setLevel(NativeLog.DEBUG);
+        NativeLog.e(NativeLog.CODE_CALL_ERROR, "call-3", "Connection error", 31005);
+        assertTrue(lastLine(), lastLine().endsWith(" error callError call-3 Connection error code=31005"));
+        NativeLog.d(NativeLog.CODE_CALLBACK, "call-3", "onRinging", 0);
+        // no value name for a callback
+        assertTrue(lastLine(), lastLine().endsWith(" debug callback call-3 onRinging"));
+        NativeLog.w(NativeLog.CODE_EVENT_DROPPED, null, NativeLog.class.getSimpleName(), 7);
+        assertTrue(lastLine(), lastLine().endsWith(" warn eventDropped NativeLog dropped=7"));
+    }
+
+    @Test
+    public void recordsBelowTheLevelAreSkipped() {
+        NativeLog.setLevel(NativeLog.WARN);
+        assertTrue(lastLine().endsWith(" info level warn"));
+        NativeLog.d(NativeLog.CODE_CALLBACK, "call-1", "skipped-debug", 0);
+        NativeLog.i(NativeLog.CODE_CONNECT, "call-1", "skipped-info", 0);
+        assertTrue(lastLine().endsWith(" info level warn"));
+        NativeLog.w(NativeLog.CODE_TOKEN_ERROR, null, "kept-warn", 0);
+        assertTrue(lastLine().endsWith("kept-warn"));
+
+        NativeLog.setLevel(NativeLog.OFF);
+        NativeLog.e(NativeLog.CODE_CALL_ERROR, null, "skipped-error", 1);
+        assertFalse(NativeLog.export().contains("skipped"));
+    }
+
+    @Test
+    public void theRingKeepsTheLastRecords() {
+        NativeLog.setLevel(NativeLog.DEBUG);
+        int records = NativeLog.CAPACITY + 100;
+        for (int i = 0; i < records; i++) {
+            NativeLog.d(NativeLog.CODE_EVENT, null, "ring-" + i, i);
+        }
+        String[] lines = lines();
+        assertEquals(NativeLog.CAPACITY, lines.length);
+        // oldest first, the first 100 were overwritten
+        assertTrue(lines[0], lines[0].endsWith(" ring-100 queued=100"));
+        assertTrue(lines[lines.length - 1].endsWith(" ring-" + (records - 1) + " queued=" + (records - 1)));
+    }
+
+    @Test
+    public void concurrentWritersDontLoseRecords() throws InterruptedException {
+        NativeLog.setLevel(NativeLog.DEBUG);
+        final int threads = 4;
+        final int perThread = NativeLog.CAPACITY / threads;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final String handle = "call-" + t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        NativeLog.i(NativeLog.CODE_CONNECT, handle, "concurrent", i);
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        int[] perHandle = new int[threads];
+        for (String line : lines()) {
+            for (int t = 0; t < threads; t++) {
+                if (line.endsWith(" connect call-" + t + " concurrent")) {
+                    perHandle[t]++;
+                }
+            }
+        }
+        for (int t = 0; t < threads; t++) {
+            assertEquals(perThread, perHandle[t]);
+        }
+    }
+
+    @Test
+    public void parsesTheLevels() {
+        assertEquals(NativeLog.WARN, NativeLog.parseLevel("warn"));
+        assertEquals(NativeLog.OFF, NativeLog.parseLevel("off"));
+        assertEquals(-1, NativeLog.parseLevel("verbose"));
+        assertEquals(-1, NativeLog.parseLevel(null));
+        NativeLog.setLevel(42);
+        assertEquals(NativeLog.OFF, NativeLog.getLevel());
+    }
+
+    /*
+     * A record below the level must cost nothing but the compare
+     */
+    @Test
+    public void benchmarkSkippedRecords() {
+        NativeLog.setLevel(NativeLog.ERROR);
+        Bench.Result result = Bench.run(1000000, new Runnable() {
+            @Override
+            public void run() {
+                NativeLog.d(NativeLog.CODE_EVENT, "call-1", "stats", 3);
+            }
+        });
+        assertTrue("allocates " + result.bytesPerOp + " bytes per record", result.bytesPerOp < 0.01);
+    }
+}
@@ -0,0 +1,242 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.os.Handler;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.MockedStatic;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PreflightTesterTest {
+
+    private static final String LOOPBACK = "127.0.0.1";
+    private static final int PROBES = 10;
+
+    private static class FakeClock implements PreflightTester.Clock {
+        long now = 1000;
+
+        @Override
+        public long elapsedRealtime() {
+            return now;
+        }
+    }
+
+    /*
+     * Local stand-in for the STUN endpoint: echoes each binding request back as a
+     * binding response, after the delay of the probe, and drops every dropEvery-th one
+     */
+    private static class StunEchoServer implements Runnable {
+        final DatagramSocket socket;
+        final ScheduledExecutorService replies = Executors.newSingleThreadScheduledExecutor();
+        long[] delaysMs = { 0 };
+        int dropEvery = 0;
+        int requests = 0;
+
+        StunEchoServer() throws IOException {
+            socket = new DatagramSocket(0, InetAddress.getByName(LOOPBACK));
+            Thread thread = new Thread(this, "stun-" + socket.getLocalPort());
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int port() {
+            return socket.getLocalPort();
+        }
+
+        @Override
+        public void run() {
+            byte[] buffer = new byte[512];
+            while (!socket.isClosed()) {
+                final DatagramPacket request = new DatagramPacket(buffer, buffer.length);
+                try {
+                    socket.receive(request);
+                } catch (IOException e) {
+                    return;
+                }
+                int n = ++requests;
+                if (dropEvery > 0 && n % dropEvery == 0) {
+                    continue;
+                }
+                final byte[] answer = Arrays.copyOf(request.getData(), request.getLength());
+                answer[0] = 0x01;
+                answer[1] = 0x01;
+                final DatagramPacket response = new DatagramPacket(answer, answer.length, request.getSocketAddress());
+                replies.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            socket.send(response);
+                        } catch (IOException ignored) {
+                        }
+                    }
+                }, delaysMs[(n - 1) % delaysMs.length], TimeUnit.MILLISECONDS);
+            }
+        }
+
+        void close() {
+            replies.shutdownNow();
+            socket.close();
+        }
+    }
+
+    private final FakeClock clock = new FakeClock();
+    private final ArrayList<Runnable> posted = new ArrayList<>();
+    private MockedStatic<Arguments> arguments;
+    private StunEchoServer stun;
+    private ServerSocket signalling;
+    private PreflightTester tester;
+
+    @Before
+    public void setUp() throws IOException {
+        arguments = JavaOnlyArguments.mock();
+        stun = new StunEchoServer();
+        signalling = new ServerSocket(0, 50, InetAddress.getByName(LOOPBACK));
+        Handler handler = mock(Handler.class);
+        when(handler.post(any(Runnable.class))).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) {
+                posted.add((Runnable) invocation.getArgument(0));
+                return true;
+            }
+        });
+        tester = new PreflightTester(handler, clock);
+        configure(PreflightTester.Mode.WARN, stun.port(), signalling.getLocalPort());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        stun.close();
+        signalling.close();
+        arguments.close();
+    }
+
+    private void configure(PreflightTester.Mode mode, int stunPort, int signallingPort) {
+        tester.configure(mode, LOOPBACK, stunPort, LOOPBACK, signallingPort, PROBES, 10, 500, 60000);
+    }
+
+    private void runTests() {
+        ArrayList<Runnable> toRun = new ArrayList<>(posted);
+        posted.clear();
+        for (Runnable test : toRun) {
+            test.run();
+        }
+    }
+
+    private ReadableMap run() {
+        Promise promise = mock(Promise.class);
+        tester.run("wifi:home", promise);
+        runTests();
+        ArgumentCaptor<Object> result = ArgumentCaptor.forClass(Object.class);
+        verify(promise).resolve(result.capture());
+        return (ReadableMap) result.getValue();
+    }
+
+    @Test
+    public void aQuickLosslessLinkIsGood() {
+        ReadableMap result = run();
+        assertEquals("good", result.getString("verdict"));
+        ReadableMap media = result.getMap("media");
+        assertEquals(PROBES, media.getInt("sent"));
+        assertEquals(PROBES, media.getInt("received"));
+        assertEquals(0, media.getDouble("loss"), 0);
+        assertTrue(result.getMap("signalling").getBoolean("reachable"));
+    }
+
+    @Test
+    public void aSlowLinkIsDegraded() {
+        stun.delaysMs = new long[] { 300 };
+        ReadableMap result = run();
+        assertEquals("degraded", result.getString("verdict"));
+        assertTrue(result.getMap("media").getDouble("rttMs") >= 300);
+    }
+
+    @Test
+    public void heavyLossIsBad() {
+        // 2 probes out of 10
+        stun.dropEvery = 5;
+        ReadableMap result = run();
+        assertEquals("bad", result.getString("verdict"));
+        assertEquals(8, result.getMap("media").getInt("received"));
+        assertEquals(0.2, result.getMap("media").getDouble("loss"), 1e-9);
+    }
+
+    @Test
+    public void jitterIsBad() {
+        stun.delaysMs = new long[] { 0, 150 };
+        ReadableMap result = run();
+        assertEquals("bad", result.getString("verdict"));
+        assertTrue(result.getMap("media").getDouble("jitterMs") > 60);
+    }
+
+    @Test
+    public void noMediaAnswerIsUnreachable() {
+        stun.dropEvery = 1;
+        ReadableMap result = run();
+        assertEquals("unreachable", result.getString("verdict"));
+        assertFalse(result.getMap("media").getBoolean("reachable"));
+        assertFalse(result.getMap("media").hasKey("rttMs"));
+    }
+
+    @Test
+    public void noSignallingIsUnreachable() throws IOException {
+        int port = signalling.getLocalPort();
+        signalling.close();
+        configure(PreflightTester.Mode.WARN, stun.port(), port);
+        ReadableMap result = run();
+        assertEquals("unreachable", result.getString("verdict"));
+        assertFalse(result.getMap("signalling").getBoolean("reachable"));
+        assertTrue(result.getMap("media").getBoolean("reachable"));
+    }
+
+    @Test
+    public void connectIsGatedOnTheCachedVerdict() {
+        // nothing cached yet, a test starts in the background
+        assertNull(tester.check("wifi:home"));
+        assertEquals(1, posted.size());
+        // a second connect doesn't start another one
+        assertNull(tester.check("wifi:home"));
+        assertEquals(1, posted.size());
+        runTests();
+        assertEquals(PreflightTester.Verdict.GOOD, tester.check("wifi:home").verdict);
+        assertTrue(posted.isEmpty());
+
+        clock.now += 60001;
+        assertEquals(PreflightTester.Verdict.GOOD, tester.check("wifi:home").verdict);
+        assertEquals(1, posted.size());
+    }
+
+    @Test
+    public void offChecksNothing() {
+        configure(PreflightTester.Mode.OFF, stun.port(), signalling.getLocalPort());
+        assertNull(tester.check("wifi:home"));
+        assertNull(tester.check(ConnectivityMonitor.NO_NETWORK));
+        assertTrue(posted.isEmpty());
+    }
+}
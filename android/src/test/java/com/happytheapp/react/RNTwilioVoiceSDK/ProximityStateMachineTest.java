@@ -0,0 +1,116 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProximityStateMachineTest {
+
+    private static final float MAX_RANGE = 5f;
+    // SENSOR_DELAY_UI
+    private static final long SAMPLE_MS = 60;
+
+    /*
+     * A binary sensor held to the ear, with single readings flickering to far while
+     * the ear moves, then taken away with a flicker back to near
+     */
+    private static final float[] JITTERY_TRACE = {
+            5, 5, 0, 0, 0, 5, 0, 0, 0, 0, 5, 0, 0, 5, 0, 0, 0, 0, 0, 5,
+            5, 5, 5, 0, 5, 5, 5, 5, 5, 5,
+    };
+
+    // replays the trace, ticking the pending deadline like the manager does, returns the wake lock transitions
+    private static int replay(ProximityStateMachine stateMachine, float[] trace) {
+        long now = 0;
+        stateMachine.reset(now);
+        for (float value : trace) {
+            long deadline = stateMachine.pendingDeadline();
+            if (deadline != ProximityStateMachine.NO_DEADLINE && deadline <= now) {
+                stateMachine.onTick(deadline);
+            }
+            stateMachine.onReading(value, MAX_RANGE, now);
+            now += SAMPLE_MS;
+        }
+        stateMachine.onTick(now + 1000);
+        return stateMachine.getTransitions();
+    }
+
+    @Test
+    public void defaultsFollowTheSensorLikeBefore() {
+        ProximityStateMachine stateMachine = new ProximityStateMachine();
+        stateMachine.reset(0);
+        // near iff the reading is below the maximum range, committed at once
+        assertTrue(stateMachine.onReading(4.99f, MAX_RANGE, 0));
+        assertTrue(stateMachine.isNear());
+        assertTrue(stateMachine.onReading(MAX_RANGE, MAX_RANGE, 1));
+        assertFalse(stateMachine.isNear());
+        assertFalse(stateMachine.isPending());
+    }
+
+    @Test
+    public void defaultsFlipOnEveryFlicker() {
+        int transitions = replay(new ProximityStateMachine(), JITTERY_TRACE);
+        int changes = 0;
+        boolean near = false;
+        for (float value : JITTERY_TRACE) {
+            if ((value < MAX_RANGE) != near) {
+                near = !near;
+                changes++;
+            }
+        }
+        assertEquals(changes, transitions);
+    }
+
+    @Test
+    public void hysteresisIgnoresTheFlickers() {
+        ProximityStateMachine stateMachine = new ProximityStateMachine();
+        stateMachine.configure(0.6f, 0.9f, 100, 250);
+        // near once, far once
+        assertEquals(2, replay(stateMachine, JITTERY_TRACE));
+        assertFalse(stateMachine.isNear());
+    }
+
+    @Test
+    public void readingsInTheBandKeepTheState() {
+        ProximityStateMachine stateMachine = new ProximityStateMachine();
+        stateMachine.configure(0.6f, 0.9f, 0, 0);
+        stateMachine.reset(0);
+        assertTrue(stateMachine.onReading(1, MAX_RANGE, 0));
+        // between 3 and 4.5
+        assertFalse(stateMachine.onReading(4, MAX_RANGE, 10));
+        assertTrue(stateMachine.isNear());
+        assertTrue(stateMachine.onReading(4.5f, MAX_RANGE, 20));
+        assertFalse(stateMachine.isNear());
+    }
+
+    @Test
+    public void debounceCommitsOnTheDeadline() {
+        ProximityStateMachine stateMachine = new ProximityStateMachine();
+        stateMachine.configure(0.6f, 0.9f, 100, 250);
+        stateMachine.reset(0);
+        assertFalse(stateMachine.onReading(0, MAX_RANGE, 1000));
+        assertEquals(1100, stateMachine.pendingDeadline());
+        assertFalse(stateMachine.onTick(1099));
+        assertTrue(stateMachine.onTick(1100));
+        assertTrue(stateMachine.isNear());
+        assertEquals(1100, stateMachine.getStableSince());
+        // a far reading that goes back to near before its window is dropped
+        assertFalse(stateMachine.onReading(5, MAX_RANGE, 1200));
+        assertFalse(stateMachine.onReading(0, MAX_RANGE, 1300));
+        assertFalse(stateMachine.isPending());
+        assertFalse(stateMachine.onTick(2000));
+        assertEquals(1, stateMachine.getTransitions());
+    }
+
+    @Test
+    public void farThresholdIsNeverBelowTheNearOne() {
+        ProximityStateMachine stateMachine = new ProximityStateMachine();
+        stateMachine.configure(0.8f, 0.2f, 0, 0);
+        stateMachine.reset(0);
+        assertTrue(stateMachine.onReading(3, MAX_RANGE, 0));
+        assertTrue(stateMachine.onReading(4, MAX_RANGE, 1));
+        assertFalse(stateMachine.isNear());
+    }
+}
@@ -0,0 +1,80 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RedialPolicyTest {
+
+    private static class FixedRandom extends Random {
+        double next;
+
+        FixedRandom(double next) {
+            this.next = next;
+        }
+
+        @Override
+        public double nextDouble() {
+            return next;
+        }
+    }
+
+    @Test
+    public void disabledByDefault() {
+        RedialPolicy policy = new RedialPolicy();
+        assertFalse(policy.isEnabled());
+        assertFalse(policy.shouldRedial(31005, 0));
+    }
+
+    @Test
+    public void onlyNetworkErrorsAreRetried() {
+        assertTrue(RedialPolicy.isRetryable(31003));
+        assertTrue(RedialPolicy.isRetryable(53405));
+        // access token expired, call declined
+        assertFalse(RedialPolicy.isRetryable(20104));
+        assertFalse(RedialPolicy.isRetryable(31603));
+    }
+
+    @Test
+    public void delaysGrowExponentiallyUpToTheCap() {
+        RedialPolicy policy = new RedialPolicy(new FixedRandom(0));
+        policy.configure(true, 10, 500, 3000, 0.5, 30000);
+        assertEquals(500, policy.delayMs(0));
+        assertEquals(1000, policy.delayMs(1));
+        assertEquals(2000, policy.delayMs(2));
+        assertEquals(3000, policy.delayMs(3));
+        // no overflow far past the cap
+        assertEquals(3000, policy.delayMs(40));
+        assertEquals(3000, policy.delayMs(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void jitterShortensTheDelay() {
+        FixedRandom random = new FixedRandom(1);
+        RedialPolicy policy = new RedialPolicy(random);
+        policy.configure(true, 3, 1000, 8000, 0.5, 30000);
+        assertEquals(500, policy.delayMs(0));
+        random.next = 0.5;
+        assertEquals(750, policy.delayMs(0));
+        // clamped to [0, 1]
+        policy.configure(true, 3, 1000, 8000, 4, 30000);
+        random.next = 1;
+        assertEquals(0, policy.delayMs(0));
+    }
+
+    @Test
+    public void configureClampsTheOptions() {
+        RedialPolicy policy = new RedialPolicy(new FixedRandom(0));
+        policy.configure(true, -1, -5, 10, -1, -1);
+        assertFalse(policy.shouldRedial(31005, 0));
+        assertEquals(0, policy.delayMs(0));
+        assertEquals(0, policy.getNetworkTimeoutMs());
+        // the cap is never below the base delay
+        policy.configure(true, 3, 2000, 100, 0, 0);
+        assertEquals(2000, policy.delayMs(3));
+    }
+}
@@ -0,0 +1,64 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StatsRingTest {
+
+    @Test
+    public void keepsTheNewestSamplesOldestFirst() {
+        StatsRing ring = new StatsRing(4);
+        for (int i = 1; i <= 6; i++) {
+            ring.add(i * 1000, i, 10 * i, 0, 0, 4);
+        }
+        assertEquals(4, ring.size());
+        assertEquals(3000, ring.getTimestamp(0), 0);
+        assertEquals(6000, ring.getTimestamp(3), 0);
+        assertEquals(3, ring.get(StatsRing.JITTER, 0), 0);
+        assertEquals(60, ring.get(StatsRing.RTT, 3), 0);
+    }
+
+    @Test
+    public void countsUnsentSamplesUpToCapacity() {
+        StatsRing ring = new StatsRing(3);
+        ring.add(1, 0, 0, 0, 0, 0);
+        ring.add(2, 0, 0, 0, 0, 0);
+        assertEquals(2, ring.unsent());
+        ring.markSent();
+        assertEquals(0, ring.unsent());
+        for (int i = 0; i < 5; i++) {
+            ring.add(i, 0, 0, 0, 0, 0);
+        }
+        assertEquals(3, ring.unsent());
+        ring.clear();
+        assertEquals(0, ring.size());
+        assertEquals(0, ring.unsent());
+    }
+
+    @Test
+    public void addingASampleDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        StatsRing ring = new StatsRing(CallStatsSampler.DEFAULT_CAPACITY);
+        int samples = 100000;
+        // warm up so the measured loop runs compiled
+        fill(ring, samples);
+
+        long before = threads.getThreadAllocatedBytes(thread);
+        fill(ring, samples);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        // a few bytes of slack for the measurement itself
+        assertTrue("allocated " + allocated + " bytes for " + samples + " samples", allocated < 1024);
+    }
+
+    private static void fill(StatsRing ring, int samples) {
+        for (int i = 0; i < samples; i++) {
+            ring.add(i, i % 50, i % 300, i % 5, 0.5f, 4.2f);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import androidx.annotation.Nullable;
+
+import com.twilio.voice.Call;
+import com.twilio.voice.StatsListener;
+
+/*
+ * VoiceCall that only records what the module does to it
+ */
+class TestCall implements VoiceCall {
+
+    @Nullable String sid;
+    Call.State state = Call.State.CONNECTING;
+    boolean muted;
+    boolean onHold;
+    final StringBuilder digits = new StringBuilder();
+    int disconnects;
+
+    TestCall(@Nullable String sid) {
+        this.sid = sid;
+    }
+
+    @Nullable
+    @Override
+    public String getSid() {
+        return sid;
+    }
+
+    @Nullable
+    @Override
+    public String getFrom() {
+        return "+15550000000";
+    }
+
+    @Nullable
+    @Override
+    public String getTo() {
+        return "+15551111111";
+    }
+
+    @Override
+    public Call.State getState() {
+        return state;
+    }
+
+    @Override
+    public void mute(boolean mute) {
+        muted = mute;
+    }
+
+    @Override
+    public boolean isMuted() {
+        return muted;
+    }
+
+    @Override
+    public void hold(boolean hold) {
+        onHold = hold;
+    }
+
+    @Override
+    public boolean isOnHold() {
+        return onHold;
+    }
+
+    @Override
+    public void sendDigits(String digits) {
+        this.digits.append(digits);
+    }
+
+    @Override
+    public void disconnect() {
+        disconnects++;
+        state = Call.State.DISCONNECTED;
+    }
+
+    @Override
+    public boolean getStats(StatsListener listener) {
+        return false;
+    }
+}
@@ -0,0 +1,84 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TwiMLParamsConverterTest {
+
+    @Test
+    public void keepsIntegersIntact() {
+        assertEquals("42", TwiMLParamsConverter.formatNumber(42.0));
+        assertEquals("-7", TwiMLParamsConverter.formatNumber(-7.0));
+        assertEquals("1.5", TwiMLParamsConverter.formatNumber(1.5));
+        assertEquals("0", TwiMLParamsConverter.formatNumber(-0.0));
+        // what String(value) gives in JS
+        assertEquals("100000000000000000", TwiMLParamsConverter.formatNumber(1e17));
+        assertEquals("9007199254740992", TwiMLParamsConverter.formatNumber(9007199254740992.0));
+        // past 2^53 a double doesn't hold every integer, JS pads the shortest digits
+        assertEquals("12345678901234567000", TwiMLParamsConverter.formatNumber(12345678901234567890.0));
+        assertEquals("Infinity", TwiMLParamsConverter.formatNumber(Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    public void convertsEveryType() {
+        JavaOnlyMap params = new JavaOnlyMap();
+        params.putString("to", "+15551234567");
+        params.putDouble("agent", 42);
+        params.putDouble("ratio", 0.25);
+        params.putBoolean("record", true);
+        params.putNull("empty");
+        params.putMap("nested", new JavaOnlyMap());
+        HashMap<String, String> converted = TwiMLParamsConverter.convert(params);
+        assertEquals("+15551234567", converted.get("to"));
+        assertEquals("42", converted.get("agent"));
+        assertEquals("0.25", converted.get("ratio"));
+        assertEquals("true", converted.get("record"));
+        assertEquals("", converted.get("empty"));
+        // TwiML params are flat
+        assertFalse(converted.containsKey("nested"));
+        assertTrue(TwiMLParamsConverter.convert(null).isEmpty());
+    }
+
+    @Test
+    public void benchmarkConversion() {
+        for (int keys : new int[] { 5, 50, 500 }) {
+            final JavaOnlyMap params = params(keys);
+            final int[] size = new int[1];
+            Bench.Result result = Bench.run(200000 / keys, new Runnable() {
+                @Override
+                public void run() {
+                    size[0] = TwiMLParamsConverter.convert(params).size();
+                }
+            });
+            assertEquals(keys, size[0]);
+            // the output map and the formatted numbers, nothing in between
+            assertTrue("allocates " + result.bytesPerOp + " bytes for " + keys + " keys",
+                    result.bytesPerOp < 72 * keys + 128);
+        }
+    }
+
+    private static JavaOnlyMap params(int keys) {
+        JavaOnlyMap params = new JavaOnlyMap();
+        for (int i = 0; i < keys; i++) {
+            switch (i % 3) {
+                case 0:
+                    params.putString("key" + i, "value" + i);
+                    break;
+                case 1:
+                    params.putDouble("key" + i, i);
+                    break;
+                default:
+                    params.putBoolean("key" + i, i % 2 == 0);
+                    break;
+            }
+        }
+        return params;
+    }
+}
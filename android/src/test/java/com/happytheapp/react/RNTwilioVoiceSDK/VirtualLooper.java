@@ -0,0 +1,179 @@
+package com.happytheapp.react.RNTwilioVoiceSDK;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import org.mockito.MockedConstruction;
+import org.mockito.MockedStatic;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockConstruction;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+
+/*
+ * Every Handler created while it is open posts to a single queue that runs on the
+ * test thread against a virtual clock, so the module threads (actor, events, audio,
+ * stats...) and the fake calls are played in order, in no time. SystemClock reads
+ * the virtual clock too, what is posted at an uptime runs then. Close it once done.
+ */
+final class VirtualLooper {
+
+    private static class Message {
+        final Handler handler;
+        final Runnable runnable;
+        final long at;
+        final long seq;
+
+        Message(Handler handler, Runnable runnable, long at, long seq) {
+            this.handler = handler;
+            this.runnable = runnable;
+            this.at = at;
+            this.seq = seq;
+        }
+    }
+
+    // in time then post order
+    private final PriorityQueue<Message> messages = new PriorityQueue<>(64, new Comparator<Message>() {
+        @Override
+        public int compare(Message a, Message b) {
+            if (a.at != b.at) {
+                return a.at < b.at ? -1 : 1;
+            }
+            return Long.compare(a.seq, b.seq);
+        }
+    });
+    private final Looper looper = mock(Looper.class);
+    private final MockedConstruction<Handler> handlers;
+    private final MockedStatic<SystemClock> clock;
+    private long now = 0;
+    private long lastSeq = 0;
+    private long ran = 0;
+
+    VirtualLooper() {
+        clock = mockStatic(SystemClock.class);
+        Answer<Long> millis = new Answer<Long>() {
+            @Override
+            public Long answer(InvocationOnMock invocation) {
+                return now;
+            }
+        };
+        clock.when(new MockedStatic.Verification() {
+            @Override
+            public void apply() {
+                SystemClock.uptimeMillis();
+            }
+        }).thenAnswer(millis);
+        clock.when(new MockedStatic.Verification() {
+            @Override
+            public void apply() {
+                SystemClock.elapsedRealtime();
+            }
+        }).thenAnswer(millis);
+        clock.when(new MockedStatic.Verification() {
+            @Override
+            public void apply() {
+                SystemClock.elapsedRealtimeNanos();
+            }
+        }).thenAnswer(new Answer<Long>() {
+            @Override
+            public Long answer(InvocationOnMock invocation) {
+                return now * 1000000L;
+            }
+        });
+        handlers = mockConstruction(Handler.class, new MockedConstruction.MockInitializer<Handler>() {
+            @Override
+            public void prepare(final Handler handler, MockedConstruction.Context context) {
+                when(handler.getLooper()).thenReturn(looper);
+                when(handler.post(any(Runnable.class))).thenAnswer(new Answer<Boolean>() {
+                    @Override
+                    public Boolean answer(InvocationOnMock invocation) {
+                        return enqueue(handler, invocation.<Runnable>getArgument(0), now);
+                    }
+                });
+                when(handler.postDelayed(any(Runnable.class), anyLong())).thenAnswer(new Answer<Boolean>() {
+                    @Override
+                    public Boolean answer(InvocationOnMock invocation) {
+                        long delayMs = invocation.getArgument(1);
+                        return enqueue(handler, invocation.<Runnable>getArgument(0), now + Math.max(0, delayMs));
+                    }
+                });
+                when(handler.postAtTime(any(Runnable.class), anyLong())).thenAnswer(new Answer<Boolean>() {
+                    @Override
+                    public Boolean answer(InvocationOnMock invocation) {
+                        return enqueue(handler, invocation.<Runnable>getArgument(0), invocation.<Long>getArgument(1));
+                    }
+                });
+                doAnswer(new Answer<Void>() {
+                    @Override
+                    public Void answer(InvocationOnMock invocation) {
+                        remove(handler, invocation.<Runnable>getArgument(0));
+                        return null;
+                    }
+                }).when(handler).removeCallbacks(any(Runnable.class));
+            }
+        });
+    }
+
+    private synchronized boolean enqueue(Handler handler, Runnable runnable, long at) {
+        messages.add(new Message(handler, runnable, at, ++lastSeq));
+        return true;
+    }
+
+    private synchronized void remove(Handler handler, Runnable runnable) {
+        Iterator<Message> iterator = messages.iterator();
+        while (iterator.hasNext()) {
+            Message message = iterator.next();
+            if (message.handler == handler && message.runnable == runnable) {
+                iterator.remove();
+            }
+        }
+    }
+
+    // the next message due by then
+    private synchronized Message next(long until) {
+        Message next = messages.peek();
+        return next != null && next.at <= until ? messages.poll() : null;
+    }
+
+    long now() {
+        return now;
+    }
+
+    long getRunCount() {
+        return ran;
+    }
+
+    synchronized int size() {
+        return messages.size();
+    }
+
+    /*
+     * Runs every message due within ms, the clock is then ms later
+     */
+    void advance(long ms) {
+        long until = now + ms;
+        Message message;
+        while ((message = next(until)) != null) {
+            now = Math.max(now, message.at);
+            message.runnable.run();
+            ran++;
+        }
+        now = until;
+    }
+
+    void close() {
+        handlers.close();
+        clock.close();
+    }
+}
@@ -3,10 +3,25 @@ import AbstractCall, {nativeCallBase} from "./abstractCall"
 
 const TwilioVoice = NativeModules.RNTwilioVoiceSDK
 
-type callState = "RINGING" | "CONNECTING" | "CONNECTED" | "RECONNECTING" | "DISCONNECTED"
+// DISCONNECTING only comes from getCall, between disconnect() and the disconnect event
+type callState = "RINGING" | "CONNECTING" | "CONNECTED" | "RECONNECTING" | "DISCONNECTING" | "DISCONNECTED"
 
+export type callCodec = {
+  name: "opus" | "PCMU" | "default",
+  maxAverageBitrate?: number,
+  linkQuality: "unknown" | "low" | "medium" | "high",
+}
+
+// events only carry the fields changed since the previous event of the call
 export interface nativeCallObject extends nativeCallBase {
-  state: callState,
+  handle: string,
+  state?: callState,
+  // bumped by every event of the call
+  version?: number,
+  // the version the fields apply to when events were coalesced natively, version - 1 otherwise
+  baseVersion?: number,
+  // codec preferred by the native codec policy, sent with the connect event
+  codec?: callCodec,
   error?: {
     code?: number,
     domain?: string,
@@ -18,8 +33,12 @@ export interface nativeCallObject extends nativeCallBase {
 class Call extends AbstractCall {
   // @ts-ignore
   private _state: callState
+  // @ts-ignore
+  private _handle: string
   private _isMuted: boolean = false
   private _onSpeaker: boolean = false
+  private _codec: callCodec | undefined
+  private _version: number = 0
 
   // The constructor is meant to be called only from the Device class
   // when making a connect, or receiving an incoming
@@ -28,10 +47,24 @@ class Call extends AbstractCall {
     this.updateFromNative(call)
   }
 
+  // Local identifier of the call, available before the call sid is known
+  public get handle(): string {
+    return this._handle
+  }
+
   public get state(): callState {
     return this._state
   }
 
+  // Version of the last native update applied, older ones are ignored
+  public get version(): number {
+    return this._version
+  }
+
+  public get codec(): callCodec | undefined {
+    return this._codec
+  }
+
   public get isMuted(): boolean {
     return this._isMuted
   }
@@ -40,26 +73,34 @@ class Call extends AbstractCall {
     return this._onSpeaker
   }
 
-  public disconnect = () => {
-    TwilioVoice.disconnect()
+  // The returned promises resolve once the native side has applied the change
+  public disconnect = (): Promise<void> => {
+    return TwilioVoice.disconnectCall(this._handle)
   }
 
-  public mute = (value: boolean) => {
-    TwilioVoice.setMuted(value)
+  public mute = (value: boolean): Promise<void> => {
     this._isMuted = value
+    return TwilioVoice.setCallMuted(this._handle, value)
+  }
+
+  public hold = (value: boolean): Promise<void> => {
+    return TwilioVoice.setCallOnHold(this._handle, value)
   }
 
-  public setSpeakerPhone = (value: boolean) => {
-    TwilioVoice.setSpeakerPhone(value)
+  public setSpeakerPhone = (value: boolean): Promise<void> => {
     this._onSpeaker = value
+    return TwilioVoice.setSpeakerPhone(value)
   }
 
-  public sendDigits = (digits: string) => {
-    TwilioVoice.sendDigits(digits)
+  // Resolved with the sequence id once the last tone is sent, digits sent before connect are queued until then.
+  // A "," waits before the next tone
+  public sendDigits = (digits: string): Promise<number> => {
+    return TwilioVoice.sendCallDigits(this._handle, digits)
   }
 
+  // Resyncs every field from the native call, done when an event of the call was missed
   public refresh = (): Promise<Call> => {
-    return TwilioVoice.getActiveCall()
+    return TwilioVoice.getCall(this._handle)
       .then((call: nativeCallObject) => {
         this.updateFromNative(call)
         return Promise.resolve(this)
@@ -73,8 +114,20 @@ class Call extends AbstractCall {
   }
 
   private updateFromNative = (call: nativeCallObject) => {
+    if (call.version !== undefined) {
+      if (call.version < this._version) {
+        return
+      }
+      this._version = call.version
+    }
     this.updateFromNativeCallObject(call)
-    this._state = call.state
+    this._handle = call.handle
+    if (call.state !== undefined) {
+      this._state = call.state
+    }
+    if (call.codec !== undefined) {
+      this._codec = call.codec
+    }
   }
 
 }
@@ -1,9 +1,12 @@
+import { NativeModules } from 'react-native'
 import AbstractCall, {nativeCallBase} from "./abstractCall"
 
+const TwilioVoice = NativeModules.RNTwilioVoiceSDK
+
 type customParams = {
   [key: string]: string
 }
-interface nativeCallInviteObject extends nativeCallBase {
+export interface nativeCallInviteObject extends nativeCallBase {
   customParameters?: customParams
 }
 
@@ -26,12 +29,13 @@ class CallInvite extends AbstractCall {
   }
 
   // TODO: accept should take an options object
-  public accept() {
-
+  // The accepted call is delivered through the "connect" event
+  public accept(): Promise<void> {
+    return TwilioVoice.acceptCallInvite(this.sid)
   }
 
-  public reject() {
-
+  public reject(): Promise<void> {
+    return TwilioVoice.rejectCallInvite(this.sid)
   }
 }
 
@@ -0,0 +1,11 @@
+// Samples are columnar: the value at index i of every array belongs to the same sample
+export type callStats = {
+  // the call the samples belong to, missing when no call was sampled
+  handle?: string,
+  timestamp: number[],
+  jitter: number[],
+  rtt: number[],
+  packetLoss: number[],
+  audioLevel: number[],
+  mos: number[],
+}
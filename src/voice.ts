@@ -1,9 +1,10 @@
 import {EmitterSubscription, NativeEventEmitter, NativeModules} from 'react-native'
 
 import Call, {nativeCallObject} from './call'
-import CallInvite from "./callInvite"
+import CallInvite, {nativeCallInviteObject} from "./callInvite"
 import CancelledCallInvite from "./cancelledCallInvite"
 import CallError from "./callError"
+import {callStats} from "./callStats"
 
 const version = require('../package.json').version
 
@@ -16,36 +17,224 @@ type inviteEvent = "incoming" | "cancel"
 type callEventWithoutError = "connect" | "reconnect" | "ringing"
 type callEventWithError = "connectFailure" | "reconnecting" | "disconnect"
 type callEvent = callEventWithoutError | callEventWithError
-type voiceEvent = registrationEvent | inviteEvent | callEvent
+type statsEvent = "stats"
+type tokenEvent = "tokenRefreshNeeded"
+type proximityEvent = "proximity"
+type audioEvent = "audioRouteChange" | "audioFocus"
+type qualityEvent = "qualityWarning" | "qualityWarningCleared"
+type retryEvent = "retry"
+type dtmfEvent = "dtmfProgress"
+type preflightEvent = "preflightWarning"
+type voiceEvent = registrationEvent | inviteEvent | callEvent | statsEvent | tokenEvent | proximityEvent | audioEvent
+  | qualityEvent | retryEvent | dtmfEvent | preflightEvent
 
 type callEventHandler = (call: Call) => void
 type callEventWithErrorHandler = (call: Call, err?: CallError) => void
 type callInviteHandler = (invite: CallInvite) => void
-type callInviteCancelHandler = (canceledInvite: CancelledCallInvite) => void
+type callInviteCancelHandler = (canceledInvite: CancelledCallInvite, err?: CallError) => void
 type registrationEventHandler = (err?: Error) => void
-type handlerFn = callEventHandler | callInviteHandler | callInviteCancelHandler | registrationEventHandler
+type statsEventHandler = (stats: callStats) => void
+type tokenRefreshNeededHandler = (identity: string, expiresAt: number) => void
+type proximityEventHandler = (isNear: boolean) => void
+type audioRouteChangeHandler = (routes: audioRoutes) => void
+// callsPaused: the connected calls are on hold until the focus is back
+type audioFocusHandler = (state: audioFocusState, callsPaused: boolean) => void
+type qualityWarningHandler = (warning: qualityWarning) => void
+type retryEventHandler = (call: Call, retry: retryInfo, err?: CallError) => void
+type dtmfProgressHandler = (progress: dtmfProgress) => void
+type preflightWarningHandler = (result: preflightResult) => void
+type handlerFn = callEventHandler | callInviteHandler | callInviteCancelHandler | registrationEventHandler | statsEventHandler
+  | tokenRefreshNeededHandler | proximityEventHandler | audioRouteChangeHandler | audioFocusHandler | qualityWarningHandler
+  | retryEventHandler | dtmfProgressHandler | preflightWarningHandler
 type voiceEventHandlers = Partial<{
     [key in voiceEvent]: Array<handlerFn>
 }>
-type internalCallEventHandlers = Partial<{
-  [key in callEvent]: EmitterSubscription | null
+// batch is only emitted by the native module, it wraps several events in a single bridge call
+type nativeEvent = callEvent | inviteEvent | statsEvent | tokenEvent | proximityEvent | audioEvent | qualityEvent | retryEvent | dtmfEvent
+  | preflightEvent | "batch"
+type nativeEventHandler = (payload: any) => void
+type nativeEventBatch = Array<{ name: nativeEvent, params?: any }>
+type internalVoiceEventHandlers = Partial<{
+  [key in nativeEvent]: EmitterSubscription | null
 }>
-type internalInviteEventHandlers = Partial<{
-  [key in inviteEvent]: EmitterSubscription | null
-}>
-type internalVoiceEventHandlers = internalCallEventHandlers & internalInviteEventHandlers
 
 type removeHandlerFn = () => void
 
+type logLevel = "debug" | "info" | "warn" | "error" | "off"
+
+export type audioRoute = "earpiece" | "speaker" | "bluetooth" | "wired"
+type audioFocusState = "gain" | "loss" | "lossTransient"
+
+type qualityMetric = "jitter" | "rtt" | "packetLoss" | "mos"
+// aggregates over the last windowSize stats samples
+type qualityWindow = {
+  mean: number,
+  p90: number,
+  // mean of the newer half of the window minus the mean of the older half
+  trend: number,
+  samples: number,
+  active: boolean,
+}
+type qualityWarning = qualityWindow & {
+  warning: "high-jitter" | "high-rtt" | "high-packet-loss" | "low-mos",
+  metric: qualityMetric,
+  handle?: string,
+}
+type qualityThresholds = Partial<{ [key in qualityMetric]: { raise: number, clear?: number } }> & {
+  windowSize?: number,
+}
+type journalEntry = {
+  seq: number,
+  time: number,
+  type: "method" | "state" | "error" | "sid",
+  code: number,
+  // method name, state name, error message or call sid, at most 28 characters
+  payload: string,
+}
+type journalCall = {
+  // incremented on every app start, handles restart at call-1
+  session: number,
+  handle: string,
+  sid?: string,
+  events: journalEntry[],
+}
+
+type callQuality = { [key in qualityMetric]: qualityWindow } & {
+  windowSize: number,
+  handle?: string,
+}
+type audioRoutes = {
+  route: audioRoute,
+  availableRoutes: audioRoute[],
+  // only set when the route was switched, how long the switch blocked the audio thread
+  switchMs?: number,
+  focus?: boolean,
+}
+
+type redialPolicy = {
+  enabled: boolean,
+  maxAttempts?: number,
+  // the delay doubles on every attempt from baseDelayMs up to maxDelayMs
+  baseDelayMs?: number,
+  maxDelayMs?: number,
+  // fraction of each delay that is randomized, 0 to 1
+  jitter?: number,
+  // how long to wait for a network to come back before giving up
+  networkTimeoutMs?: number,
+}
+type retryInfo = {
+  attempt: number,
+  delayMs: number,
+  waitingForNetwork: boolean,
+}
+
+type dtmfOptions = {
+  // from one tone to the next
+  toneIntervalMs?: number,
+  // for each "," in the digits
+  pauseMs?: number,
+}
+type dtmfProgress = {
+  handle: string,
+  // resolved by sendDigits once done
+  sequence: number,
+  // the last digit sent, missing when cancelled
+  digit?: string,
+  sent: number,
+  total: number,
+  state: "sending" | "done" | "cancelled",
+}
+
+type backgroundOptions = {
+  // a foreground service keeps the calls alive while the app is in the background
+  enabled?: boolean,
+  // the calls also survive the activity being destroyed
+  keepCallOnHostDestroy?: boolean,
+  notificationTitle?: string,
+  notificationText?: string,
+}
+
+type preflightOptions = {
+  // warn emits "preflightWarning" on connect, block rejects connect on a bad network
+  mode?: "off" | "warn" | "block",
+  stunHost?: string,
+  stunPort?: number,
+  signallingHost?: string,
+  signallingPort?: number,
+  probeCount?: number,
+  probeIntervalMs?: number,
+  timeoutMs?: number,
+  // how long a verdict is kept for a network
+  ttlMs?: number,
+}
+type preflightResult = {
+  network: string,
+  verdict: "good" | "degraded" | "bad" | "unreachable",
+  media: { reachable: boolean, sent: number, received: number, loss: number, rttMs?: number, jitterMs?: number },
+  signalling: { reachable: boolean, rttMs?: number },
+}
+
+type codecPolicy = {
+  // auto picks the Opus bitrate from the link quality, default leaves the SDK defaults
+  mode?: "auto" | "opus" | "pcmu" | "default",
+  // Opus max average bitrates in bps
+  lowBitrate?: number,
+  mediumBitrate?: number,
+  highBitrate?: number,
+}
+
+type edge = string | { region: string, host?: string, port?: number }
+type edgeOptions = {
+  enabled: boolean,
+  // regions to probe, by default au1, br1, de1, ie1, jp1, sg1, us1 and us2
+  edges?: edge[],
+  // how long the best edge of a network is kept
+  ttlMs?: number,
+  probeTimeoutMs?: number,
+}
+type edgeProbeResult = {
+  network: string,
+  region?: string,
+  // round trip time in ms per reachable region
+  rtt: { [region: string]: number },
+}
+
+type callStateSnapshot = {
+  // bumped on every native change, the same version means the same content
+  version: number,
+  activeHandle?: string,
+  calls: Array<{
+    handle: string,
+    sid?: string,
+    from?: string,
+    to?: string,
+    state: "CONNECTING" | "RINGING" | "CONNECTED" | "RECONNECTING" | "DISCONNECTING" | "DISCONNECTED",
+  }>,
+}
+
+type proximityOptions = {
+  // Fractions of the sensor range, readings between both keep the current state. Both default to 1 and
+  // both debounces to 0: a reading below the sensor range is near at once, e.g. 0.6, 0.9, 100 and 250
+  // filter a jittery sensor.
+  nearThreshold?: number,
+  farThreshold?: number,
+  nearDebounceMs?: number,
+  farDebounceMs?: number,
+  // emit the "proximity" event
+  events?: boolean,
+}
+
 class TwilioVoice {
   // private _registered: boolean = false
   private _currentCall: Call | null = null
+  private _calls: { [handle: string]: Call } = {}
   // private _currentInvite: CallInvite | null = null
   private _nativeAppEventEmitter = new NativeEventEmitter(RNTwilioVoice)
   private _internalEventHandlers: internalVoiceEventHandlers = {}
   private _eventHandlers: voiceEventHandlers = {}
   private _isSetup: boolean = false
   private _nativeVersion: string | undefined
+  private _snapshot: callStateSnapshot = { version: 0, calls: [] }
 
   public constructor () {
     this.setup()
@@ -71,21 +260,166 @@ class TwilioVoice {
     return "OFFLINE"
   }
 
-  public connect = (accessToken: string, params = {}): Promise<Call> => {
+  // All the calls currently handled by the native module
+  public get calls(): Call[] {
+    return Object.keys(this._calls).map(handle => this._calls[handle])
+  }
+
+  public get currentCall(): Call | null {
+    return this._currentCall
+  }
+
+  // Without an accessToken the token cached natively for the last identity is used
+  public connect = (accessToken: string | null, params = {}): Promise<Call> => {
     if(!this._isSetup) {
       return Promise.reject(new Error("Can't call connect on a destroyed Voice instance"));
     }
-    if(this._currentCall !== null) {
-      return Promise.reject(new Error("Can't call connect while a call is still going on"));
-    }
     return new Promise((resolve, reject) => {
-      RNTwilioVoice.connect(accessToken, params).then((call: Call) => {
-        this.createOrUpdateCall(call)
-        resolve(this._currentCall as Call)
+      RNTwilioVoice.connect(accessToken, params).then((call: nativeCallObject) => {
+        resolve(this.createOrUpdateCall(call))
       }).catch((err: any) => reject(err))
     })
   }
 
+  // Connects with the token cached for the identity
+  public connectAs = (identity: string, params = {}): Promise<Call> => {
+    if(!this._isSetup) {
+      return Promise.reject(new Error("Can't call connect on a destroyed Voice instance"));
+    }
+    return RNTwilioVoice.connectAs(identity, params)
+      .then((call: nativeCallObject) => this.createOrUpdateCall(call))
+  }
+
+  // Caches the token natively, "tokenRefreshNeeded" is emitted before it expires
+  public setAccessToken = (accessToken: string): Promise<{ identity: string, expiresAt: number }> => {
+    return RNTwilioVoice.setAccessToken(accessToken)
+  }
+
+  public setTokenRefreshLead = (refreshLeadMs: number) => {
+    RNTwilioVoice.setTokenRefreshLead(refreshLeadMs)
+  }
+
+  public clearAccessTokens = () => {
+    RNTwilioVoice.clearAccessTokens()
+  }
+
+  // Outgoing calls dropped by a network error are dialled again natively, a "retry" event is emitted for each attempt
+  public setRedialPolicy = (policy: redialPolicy) => {
+    RNTwilioVoice.setRedialPolicy(policy)
+  }
+
+  // Digits are sent natively one tone at a time, a "dtmfProgress" event is emitted for each
+  public setDtmfOptions = (options: dtmfOptions) => {
+    RNTwilioVoice.setDtmfOptions(options)
+  }
+
+  // Drops the digits of the call not sent yet, their sendDigits promises are rejected
+  public cancelDigits = (call?: Call): Promise<void> => {
+    return RNTwilioVoice.cancelDigits(call ? call.handle : null)
+  }
+
+  // Events are delivered in batches while the service owns the calls, and at once when the app comes back
+  public setBackgroundOptions = (options: backgroundOptions) => {
+    RNTwilioVoice.setBackgroundOptions(options)
+  }
+
+  // Checks the network with a short burst of UDP probes, the verdict is cached for the network and used by connect
+  public runPreflight = (): Promise<preflightResult> => {
+    return RNTwilioVoice.runPreflight()
+  }
+
+  public setPreflightOptions = (options: preflightOptions) => {
+    RNTwilioVoice.setPreflightOptions(options)
+  }
+
+  // The preferred codec of new calls, reported as call.codec once connected
+  public setCodecPolicy = (policy: codecPolicy) => {
+    RNTwilioVoice.setCodecPolicy(policy)
+  }
+
+  // The fastest edge measured from the current network is used as the connect region
+  public setEdgeOptions = (options: edgeOptions) => {
+    RNTwilioVoice.setEdgeOptions(options)
+  }
+
+  public probeEdges = (): Promise<edgeProbeResult> => {
+    return RNTwilioVoice.probeEdges()
+  }
+
+  public setProximityOptions = (options: proximityOptions) => {
+    RNTwilioVoice.setProximityOptions(options)
+  }
+
+  // Puts every other call on hold
+  public swapTo = (call: Call): Promise<void> => {
+    this._currentCall = call
+    return RNTwilioVoice.swapToCall(call.handle)
+  }
+
+  // Switches the output of the calls, null lets the native module pick the best available route
+  public setAudioRoute = (route: audioRoute | null): Promise<audioRoutes> => {
+    return RNTwilioVoice.setAudioRoute(route)
+  }
+
+  public getAudioRoutes = (): Promise<audioRoutes> => {
+    return RNTwilioVoice.getAudioRoutes()
+  }
+
+  // Polls the call stats every intervalMs and emits a "stats" event every batchSize samples
+  public setStatsSampling = (intervalMs: number, batchSize: number) => {
+    RNTwilioVoice.setStatsSampling(intervalMs, batchSize)
+  }
+
+  // Invites received by the native push handler that haven't been accepted or rejected yet
+  public getCallInvites = (): Promise<CallInvite[]> => {
+    return RNTwilioVoice.getCallInvites()
+      .then((invites: nativeCallInviteObject[]) => invites.map(invite => this.createCallInvite(invite)))
+  }
+
+  // The samples kept for the call, of the last call sampled without one
+  public getStatsHistory = (call?: Call): Promise<callStats> => {
+    return RNTwilioVoice.getStatsHistory(call ? call.handle : null)
+  }
+
+  // A warning is raised when the window mean crosses raise and cleared once it is back past clear
+  public setQualityThresholds = (thresholds: qualityThresholds) => {
+    RNTwilioVoice.setQualityThresholds(thresholds)
+  }
+
+  public getCallQuality = (): Promise<callQuality> => {
+    return RNTwilioVoice.getCallQuality()
+  }
+
+  // Native state of every call, read synchronously (not available while debugging in Chrome).
+  // Cheap to poll: nothing crosses the bridge until the state changes
+  public getCallStateSnapshot = (): callStateSnapshot => {
+    const snapshot = RNTwilioVoice.getCallStateSnapshot(this._snapshot.version)
+    if (snapshot) {
+      this._snapshot = snapshot
+    }
+    return this._snapshot
+  }
+
+  // What happened during the last calls, kept across app restarts, e.g. to attach to a support ticket
+  public exportJournal = (lastCalls: number = 5): Promise<journalCall[]> => {
+    return RNTwilioVoice.exportJournal(lastCalls)
+  }
+
+  // Level of the native log (release builds default to info) and of the Twilio SDK log
+  public setLogLevel = (level: logLevel) => {
+    RNTwilioVoice.setLogLevel(level)
+  }
+
+  // The last native log records as text, one per line
+  public exportLog = (): Promise<string> => {
+    return RNTwilioVoice.exportLog()
+  }
+
+  // Latency histograms (in ms) of the calls made since the app started, and the native init timings
+  public getMetrics = (): Promise<object> => {
+    return RNTwilioVoice.getMetrics()
+  }
+
   public destroy = () => {
     this.disconnectAll()
     this._eventHandlers = {}
@@ -115,8 +449,18 @@ class TwilioVoice {
   on(event: "connectFailure", handler: callEventWithErrorHandler): removeHandlerFn;
   on(event: "reconnecting", handler: callEventWithErrorHandler): removeHandlerFn;
   on(event: "disconnect", handler: callEventWithErrorHandler): removeHandlerFn;
-  // on(event: "incoming", handler: callInviteHandler): removeEventHandler;
-  // on(event: "cancel", handler: callInviteCancelHandler): removeEventHandler;
+  on(event: "retry", handler: retryEventHandler): removeHandlerFn;
+  on(event: "dtmfProgress", handler: dtmfProgressHandler): removeHandlerFn;
+  on(event: "preflightWarning", handler: preflightWarningHandler): removeHandlerFn;
+  on(event: "stats", handler: statsEventHandler): removeHandlerFn;
+  on(event: "tokenRefreshNeeded", handler: tokenRefreshNeededHandler): removeHandlerFn;
+  on(event: "proximity", handler: proximityEventHandler): removeHandlerFn;
+  on(event: "audioRouteChange", handler: audioRouteChangeHandler): removeHandlerFn;
+  on(event: "audioFocus", handler: audioFocusHandler): removeHandlerFn;
+  on(event: "qualityWarning", handler: qualityWarningHandler): removeHandlerFn;
+  on(event: "qualityWarningCleared", handler: qualityWarningHandler): removeHandlerFn;
+  on(event: "incoming", handler: callInviteHandler): removeHandlerFn;
+  on(event: "cancel", handler: callInviteCancelHandler): removeHandlerFn;
   // on(event: registrationEvent, handler: registrationEventHandler):removeEventHandler
   public on(event: voiceEvent, handler: handlerFn) {
     if(this._eventHandlers[event] === undefined) {
@@ -151,16 +495,31 @@ class TwilioVoice {
     this._isSetup = true
   }
 
+  private nativeEventHandlers = (): { [key in nativeEvent]: nativeEventHandler } => ({
+    "connect": this.onConnect,
+    "disconnect": this.onDisconnect,
+    "connectFailure": this.onConnectFailure,
+    "reconnect": this.onReconnect,
+    "reconnecting": this.onReconnecting,
+    "ringing": this.onRinging,
+    "retry": this.onRetry,
+    "dtmfProgress": this.onDtmfProgress,
+    "preflightWarning": this.onPreflightWarning,
+    "incoming": this.onIncoming,
+    "cancel": this.onCancel,
+    "stats": this.onStats,
+    "tokenRefreshNeeded": this.onTokenRefreshNeeded,
+    "proximity": this.onProximity,
+    "audioRouteChange": this.onAudioRouteChange,
+    "audioFocus": this.onAudioFocus,
+    "qualityWarning": this.onQualityWarning,
+    "qualityWarningCleared": this.onQualityWarningCleared,
+    "batch": this.onBatch
+  })
+
   private addInternalCallEventHandlers = () => {
-    const handlers: { [key in callEvent]: handlerFn} = {
-      "connect": this.onConnect,
-      "disconnect": this.onDisconnect,
-      "connectFailure": this.onConnectFailure,
-      "reconnect": this.onReconnect,
-      "reconnecting": this.onReconnecting,
-      "ringing": this.onRinging
-    }
-    let event: callEvent
+    const handlers = this.nativeEventHandlers()
+    let event: nativeEvent
     for (event in handlers) {
       if(this._internalEventHandlers[event] === undefined) {
         this._internalEventHandlers[event] = this._nativeAppEventEmitter.addListener(event, handlers[event])
@@ -169,9 +528,8 @@ class TwilioVoice {
   }
 
   private removeInternalCallEventHandlers = () => {
-    const callEvents: Set<callEvent> = new Set(["connect", "disconnect", "connectFailure", "reconnect", "reconnecting", "ringing"])
-    let event: callEvent
-    for(event of callEvents) {
+    let event: nativeEvent
+    for(event in this.nativeEventHandlers()) {
       if(this._internalEventHandlers[event] !== undefined) {
         this._internalEventHandlers[event]!.remove()
         delete this._internalEventHandlers[event]
@@ -190,15 +548,47 @@ class TwilioVoice {
     }
   }
 
-  private createOrUpdateCall = (nativeCallObject: nativeCallObject) => {
-    if(this._currentCall === null) {
+  private createOrUpdateCall = (nativeCallObject: nativeCallObject): Call => {
+    let call = this._calls[nativeCallObject.handle]
+    if(call === undefined) {
       // @ts-ignore we're calling the private constructor on purpose
       // the constructor is private to hide it from Intellisense
-      this._currentCall = new Call(nativeCallObject)
+      call = new Call(nativeCallObject)
+      this._calls[nativeCallObject.handle] = call
+      this._currentCall = call
     } else {
       // @ts-ignore we're calling the protected method on purpose
       // that method is protected to hide it from Intellisense
-      this._currentCall.updateFromNative(nativeCallObject)
+      call.updateFromNative(nativeCallObject)
+    }
+    return call
+  }
+
+  // null when the event is older than what the call already applied, e.g. delivered out of order.
+  // An event past the next version means one was missed, its fields are only in a full snapshot.
+  // A coalesced event applies to its baseVersion instead of the version before its own
+  private callFromEvent = (nativeCallObject: nativeCallObject): Call | null => {
+    const known = this._calls[nativeCallObject.handle]
+    const current = known !== undefined ? known.version : 0
+    const version = nativeCallObject.version
+    if(version !== undefined && version < current) {
+      return null
+    }
+    const base = nativeCallObject.baseVersion !== undefined
+      ? nativeCallObject.baseVersion
+      : version !== undefined ? version - 1 : current
+    const call = this.createOrUpdateCall(nativeCallObject)
+    if(base > current && call.state !== "DISCONNECTED") {
+      call.refresh()
+    }
+    return call
+  }
+
+  private removeCall = (call: Call) => {
+    delete this._calls[call.handle]
+    if(this._currentCall === call) {
+      const remaining = this.calls
+      this._currentCall = remaining.length > 0 ? remaining[remaining.length - 1] : null
     }
   }
 
@@ -210,43 +600,111 @@ class TwilioVoice {
     return
   }
 
-  private parseNativeCallObject = (nativeCallObject: nativeCallObject): Error | undefined => {
-    this.createOrUpdateCall(nativeCallObject)
-    return this.createCallError(nativeCallObject)
-  }
-
   private onConnect = (nativeCallObject: nativeCallObject) => {
-    this.parseNativeCallObject(nativeCallObject)
-    this.handleEvent("connect", this._currentCall)
+    const call = this.callFromEvent(nativeCallObject)
+    if(call === null) { return }
+    this.handleEvent("connect", call)
   }
 
   private onDisconnect = (nativeCallObject: nativeCallObject) => {
-    const error = this.parseNativeCallObject(nativeCallObject)
-    this.handleEvent("disconnect", this._currentCall, error)
-    // After disconnect the current call is null
-    this._currentCall = null
+    const call = this.callFromEvent(nativeCallObject)
+    if(call === null) { return }
+    this.handleEvent("disconnect", call, this.createCallError(nativeCallObject))
+    // After disconnect the call is no longer tracked
+    this.removeCall(call)
   }
 
   private onConnectFailure = (nativeCallObject: nativeCallObject) => {
-    const error = this.parseNativeCallObject(nativeCallObject)
-    this.handleEvent("connectFailure", this._currentCall, error)
-    // After connect failure the current call is null
-    this._currentCall = null
+    const call = this.callFromEvent(nativeCallObject)
+    if(call === null) { return }
+    this.handleEvent("connectFailure", call, this.createCallError(nativeCallObject))
+    // After connect failure the call is no longer tracked
+    this.removeCall(call)
   }
 
   private onReconnect = (nativeCallObject: nativeCallObject) => {
-    this.parseNativeCallObject(nativeCallObject)
-    this.handleEvent("reconnect", this._currentCall)
+    const call = this.callFromEvent(nativeCallObject)
+    if(call === null) { return }
+    this.handleEvent("reconnect", call)
   }
 
   private onReconnecting = (nativeCallObject: nativeCallObject) => {
-    const error = this.parseNativeCallObject(nativeCallObject)
-    this.handleEvent("reconnecting", this._currentCall, error)
+    const call = this.callFromEvent(nativeCallObject)
+    if(call === null) { return }
+    this.handleEvent("reconnecting", call, this.createCallError(nativeCallObject))
   }
 
   private onRinging = (nativeCallObject: nativeCallObject) => {
-    this.parseNativeCallObject(nativeCallObject)
-    this.handleEvent("ringing", this._currentCall)
+    const call = this.callFromEvent(nativeCallObject)
+    if(call === null) { return }
+    this.handleEvent("ringing", call)
+  }
+
+  private onRetry = (nativeCallObject: nativeCallObject & retryInfo) => {
+    const { attempt, delayMs, waitingForNetwork } = nativeCallObject
+    const call = this.callFromEvent(nativeCallObject)
+    if(call === null) { return }
+    this.handleEvent("retry", call, { attempt, delayMs, waitingForNetwork }, this.createCallError(nativeCallObject))
+  }
+
+  private onDtmfProgress = (progress: dtmfProgress) => {
+    this.handleEvent("dtmfProgress", progress)
+  }
+
+  private onPreflightWarning = (result: preflightResult) => {
+    this.handleEvent("preflightWarning", result)
+  }
+
+  private createCallInvite = (nativeCallInvite: nativeCallInviteObject): CallInvite => {
+    // @ts-ignore we're calling the private constructor on purpose
+    return new CallInvite(nativeCallInvite)
+  }
+
+  private onIncoming = (nativeCallInvite: nativeCallInviteObject) => {
+    this.handleEvent("incoming", this.createCallInvite(nativeCallInvite))
+  }
+
+  private onCancel = (nativeCancelledCallInvite: nativeCallObject) => {
+    // @ts-ignore we're calling the private constructor on purpose
+    const cancelledCallInvite = new CancelledCallInvite(nativeCancelledCallInvite)
+    this.handleEvent("cancel", cancelledCallInvite, this.createCallError(nativeCancelledCallInvite))
+  }
+
+  private onStats = (stats: callStats) => {
+    this.handleEvent("stats", stats)
+  }
+
+  private onProximity = ({ isNear }: { isNear: boolean }) => {
+    this.handleEvent("proximity", isNear)
+  }
+
+  private onAudioRouteChange = (routes: audioRoutes) => {
+    this.handleEvent("audioRouteChange", routes)
+  }
+
+  private onAudioFocus = ({ state, callsPaused }: { state: audioFocusState, callsPaused: boolean }) => {
+    this.handleEvent("audioFocus", state, callsPaused)
+  }
+
+  private onQualityWarning = (warning: qualityWarning) => {
+    this.handleEvent("qualityWarning", warning)
+  }
+
+  private onQualityWarningCleared = (warning: qualityWarning) => {
+    this.handleEvent("qualityWarningCleared", warning)
+  }
+
+  private onTokenRefreshNeeded = ({ identity, expiresAt }: { identity: string, expiresAt: number }) => {
+    this.handleEvent("tokenRefreshNeeded", identity, expiresAt)
+  }
+
+  private onBatch = (events: nativeEventBatch) => {
+    const handlers = this.nativeEventHandlers()
+    for(const event of events) {
+      if(event.name !== "batch" && handlers[event.name] !== undefined) {
+        handlers[event.name](event.params)
+      }
+    }
   }
 
   private disconnectAll() {
@@ -255,10 +713,11 @@ class TwilioVoice {
     //   this._currentInvite.reject()
     //   this._currentInvite = null
     // }
-    if(this._currentCall !== null) {
-      this._currentCall.disconnect()
-      this._currentCall = null
+    for(const call of this.calls) {
+      call.disconnect().catch(() => undefined)
     }
+    this._calls = {}
+    this._currentCall = null
   }
 }
 